@@ -0,0 +1,238 @@
+package game;
+
+import game.simulation.GameResult;
+import game.simulation.GameSetup;
+import game.simulation.Policy;
+import game.simulation.Simulator;
+import game.simulation.SquareHeatmap;
+import game.utils.GameUtils;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays games without the Swing UI and streams one result record per game, as NDJSON or CSV, to
+ * stdout or a file. Game threads hand finished records to a single writer thread through a
+ * bounded queue, so a slow consumer slows the games down instead of filling memory. The writer
+ * flushes whenever the queue runs dry, so `tail -f` sees records while the run is going.
+ *
+ * <pre>
+ *   --config path      board config (default the built in config)
+ *   --players n        number of players (default 4)
+ *   --policies a,b,..  policy per dragon in turn order, or one for all (default random)
+ *   --seeds from-to    seed range, end exclusive (default 0-1000)
+ *   --threads n        game threads (default all cores)
+ *   --format f         ndjson or csv (default ndjson)
+ *   --out path         output file, appended to (default stdout)
+ *   --heatmap dir      also count square visits, blocked moves and swaps, and add them to the
+ *                      heatmap of the config in dir (default off)
+ * </pre>
+ *
+ * <p>Records are written in the order games finish, not in seed order. The winner is an index
+ * into the policies and colours of the record, -1 when the game hit the turn limit.
+ */
+public class BatchApplication {
+
+  private static final int QUEUE_CAPACITY = 4096;
+  private static final String END = "";
+  private static final String CSV_HEADER =
+      "seed,config_hash,players,policies,colours,winner,winner_colour,winner_policy,turns,"
+          + "flips,swaps";
+
+  /**
+   * Runs the batch.
+   *
+   * @param args command line options, see the class comment
+   * @throws Exception if the config cannot be read or the output cannot be written
+   */
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("Expected an option but got " + args[i]);
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    String configPath = options.getOrDefault("config", GameUtils.CONFIG_PATH);
+    int numPlayers = Integer.parseInt(options.getOrDefault("players", "4"));
+    String[] seeds = options.getOrDefault("seeds", "0-1000").split("-");
+    long firstSeed = Long.parseLong(seeds[0]);
+    long endSeed = Long.parseLong(seeds[1]);
+    int threads = Integer.parseInt(options.getOrDefault("threads",
+        String.valueOf(Runtime.getRuntime().availableProcessors())));
+    boolean csv = options.getOrDefault("format", "ndjson").equals("csv");
+
+    GameSetup setup = GameSetup.load(configPath, numPlayers);
+    String[] policyNames = options.getOrDefault("policies", "random").split(",");
+    Policy[] policies = new Policy[setup.getNumDragons()];
+    for (int dragon = 0; dragon < policies.length; dragon++) {
+      policies[dragon] = Policy.forName(policyNames[policyNames.length == 1 ? 0 : dragon]);
+    }
+    Simulator simulator = new Simulator(setup, policies, Simulator.DEFAULT_MAX_TURNS);
+    String heatmapDir = options.get("heatmap");
+    SquareHeatmap heatmap = heatmapDir == null ? null : SquareHeatmap.forSetup(setup);
+
+    String out = options.get("out");
+    OutputStream stream = out == null ? System.out : new FileOutputStream(out, true);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+    if (csv && (out == null || new File(out).length() == 0)) {
+      writer.write(CSV_HEADER);
+      writer.write('\n');
+      writer.flush();
+    }
+
+    BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    AtomicLong nextSeed = new AtomicLong(firstSeed);
+    List<Thread> players = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      Thread thread = new Thread(() -> {
+        long seed;
+        try {
+          while ((seed = nextSeed.getAndIncrement()) < endSeed) {
+            GameResult result = simulator.play(seed, heatmap);
+            // blocks while the writer is behind, which is the backpressure
+            queue.put(csv ? toCsv(result, setup, policies) : toJson(result, setup, policies));
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }, "batch-game-" + i);
+      thread.start();
+      players.add(thread);
+    }
+    Thread finisher = new Thread(() -> {
+      try {
+        for (Thread thread : players) {
+          thread.join();
+        }
+        // waits for room like the players, add would throw on a full queue and lose the end
+        queue.put(END);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, "batch-finisher");
+    finisher.start();
+
+    writeRecords(queue, writer);
+    writer.close();
+    if (heatmap != null) {
+      System.err.println("Heatmap written to " + heatmap.export(Paths.get(heatmapDir), setup));
+    }
+  }
+
+  /**
+   * Writes records from the queue until the end marker, flushing whenever the queue is empty.
+   *
+   * @param queue  the queue of formatted records
+   * @param writer the output
+   * @throws IOException          if writing fails
+   * @throws InterruptedException if interrupted while waiting for records
+   */
+  private static void writeRecords(BlockingQueue<String> queue, Writer writer)
+      throws IOException, InterruptedException {
+    while (true) {
+      String record = queue.poll();
+      if (record == null) {
+        writer.flush();
+        record = queue.take();
+      }
+      if (record.isEmpty()) {
+        writer.flush();
+        return;
+      }
+      writer.write(record);
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * Formats a result as one line of JSON.
+   *
+   * @param result   the result
+   * @param setup    the setup the game was played on
+   * @param policies the policy of each dragon
+   * @return the JSON object
+   */
+  private static String toJson(GameResult result, GameSetup setup, Policy[] policies) {
+    StringBuilder json = new StringBuilder(256);
+    json.append("{\"seed\":").append(result.getSeed())
+        .append(",\"configHash\":\"").append(Long.toHexString(result.getConfigHash()))
+        .append("\",\"players\":").append(policies.length)
+        .append(",\"policies\":[");
+    for (int dragon = 0; dragon < policies.length; dragon++) {
+      json.append(dragon == 0 ? "\"" : ",\"").append(policies[dragon].getName()).append('"');
+    }
+    json.append("],\"colours\":[");
+    for (int dragon = 0; dragon < policies.length; dragon++) {
+      json.append(dragon == 0 ? "\"" : ",\"")
+          .append(GameUtils.colorToString(setup.getDragonColour(dragon))).append('"');
+    }
+    json.append("],\"winner\":").append(result.getWinner())
+        .append(",\"winnerColour\":").append(quoteOrNull(result.getWinnerColour()))
+        .append(",\"winnerPolicy\":").append(quoteOrNull(winnerPolicy(result, policies)))
+        .append(",\"turns\":").append(result.getTurns())
+        .append(",\"flips\":").append(result.getFlips())
+        .append(",\"swaps\":").append(result.getSwaps())
+        .append('}');
+    return json.toString();
+  }
+
+  /**
+   * Formats a result as one CSV row matching CSV_HEADER. Lists are separated by semicolons.
+   *
+   * @param result   the result
+   * @param setup    the setup the game was played on
+   * @param policies the policy of each dragon
+   * @return the CSV row
+   */
+  private static String toCsv(GameResult result, GameSetup setup, Policy[] policies) {
+    StringBuilder names = new StringBuilder();
+    StringBuilder colours = new StringBuilder();
+    for (int dragon = 0; dragon < policies.length; dragon++) {
+      names.append(dragon == 0 ? "" : ";").append(policies[dragon].getName());
+      colours.append(dragon == 0 ? "" : ";")
+          .append(GameUtils.colorToString(setup.getDragonColour(dragon)));
+    }
+    String winnerColour = result.getWinnerColour();
+    String winnerPolicy = winnerPolicy(result, policies);
+    return result.getSeed() + "," + Long.toHexString(result.getConfigHash()) + ","
+        + policies.length + "," + names + "," + colours + "," + result.getWinner() + ","
+        + (winnerColour == null ? "" : winnerColour) + ","
+        + (winnerPolicy == null ? "" : winnerPolicy) + "," + result.getTurns() + ","
+        + result.getFlips() + "," + result.getSwaps();
+  }
+
+  /**
+   * Returns the name of the policy that won.
+   *
+   * @param result   the result
+   * @param policies the policy of each dragon
+   * @return the policy name, or null for a drawn game
+   */
+  private static String winnerPolicy(GameResult result, Policy[] policies) {
+    return result.getWinner() == -1 ? null : policies[result.getWinner()].getName();
+  }
+
+  /**
+   * Quotes a JSON string value.
+   *
+   * @param value the value, which needs no escaping
+   * @return the quoted value, or null
+   */
+  private static String quoteOrNull(String value) {
+    return value == null ? "null" : "\"" + value + "\"";
+  }
+}
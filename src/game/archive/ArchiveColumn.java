@@ -0,0 +1,93 @@
+package game.archive;
+
+import game.simulation.GameResult;
+
+/**
+ * The columns of a game archive. Every column is stored in its own file of fixed width values,
+ * and read back as longs by queries.
+ */
+public enum ArchiveColumn {
+  SEED(8),
+  CONFIG_HASH(8),
+  PLAYERS(1),
+  WINNER(1),
+  WINNER_SEAT(1),
+  WHITE_SEAT(1),
+  GREEN_SEAT(1),
+  BLUE_SEAT(1),
+  ORANGE_SEAT(1),
+  TURNS(4),
+  FLIPS(4),
+  SWAPS(4);
+
+  private final int width;
+
+  /**
+   * Constructs a column.
+   *
+   * @param width the number of bytes each value takes
+   */
+  ArchiveColumn(int width) {
+    this.width = width;
+  }
+
+  /**
+   * Returns the number of bytes each value takes.
+   *
+   * @return the width in bytes
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the name of the file holding this column.
+   *
+   * @return the file name
+   */
+  public String getFileName() {
+    return name().toLowerCase() + ".col";
+  }
+
+  /**
+   * Returns the seat column of a colour. Colours are identified by the animal of their cave, so
+   * WHITE_SEAT belongs to the Salamander cave.
+   *
+   * @param animal the cave animal code
+   * @return the seat column
+   */
+  public static ArchiveColumn seatOf(int animal) {
+    return values()[WHITE_SEAT.ordinal() + animal];
+  }
+
+  /**
+   * Extracts this column's value from a game result. Winner and seat columns hold -1 when there is
+   * no winner or the colour did not play.
+   *
+   * @param result the game result
+   * @return the value of this column
+   */
+  public long valueOf(GameResult result) {
+    return switch (this) {
+      case SEED -> result.getSeed();
+      case CONFIG_HASH -> result.getConfigHash();
+      case PLAYERS -> result.getSeatAnimals().length;
+      case WINNER -> result.getWinnerAnimal();
+      case WINNER_SEAT -> result.getWinnerSeat();
+      case WHITE_SEAT, GREEN_SEAT, BLUE_SEAT, ORANGE_SEAT -> {
+        byte[] seats = result.getSeatAnimals();
+        int animal = ordinal() - WHITE_SEAT.ordinal();
+        int seat = -1;
+        for (int i = 0; i < seats.length; i++) {
+          if (seats[i] == animal) {
+            seat = i;
+          }
+        }
+        yield seat;
+      }
+      case TURNS -> result.getTurns();
+      case FLIPS -> result.getFlips();
+      case SWAPS -> result.getSwaps();
+    };
+  }
+}
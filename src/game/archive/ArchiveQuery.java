@@ -0,0 +1,252 @@
+package game.archive;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable query over a game archive: a conjunction of inclusive range filters followed by an
+ * aggregation. Row groups whose min/max statistics exclude a filter are skipped without being
+ * read, filters a row group satisfies entirely are not evaluated, and the remaining groups are
+ * scanned in parallel a column at a time over primitive arrays.
+ */
+public class ArchiveQuery {
+
+  private static final int DENSE_GROUP_LIMIT = 4096;
+
+  private final GameArchive archive;
+  private final List<Filter> filters;
+
+  /**
+   * Constructs a query without filters.
+   *
+   * @param archive the archive to query
+   */
+  ArchiveQuery(GameArchive archive) {
+    this(archive, List.of());
+  }
+
+  /**
+   * Constructs a query with the given filters.
+   *
+   * @param archive the archive to query
+   * @param filters the filters every counted row must pass
+   */
+  private ArchiveQuery(GameArchive archive, List<Filter> filters) {
+    this.archive = archive;
+    this.filters = filters;
+  }
+
+  /**
+   * Returns a query that additionally requires a column to lie within a range.
+   *
+   * @param column the column to filter on
+   * @param min    the smallest accepted value
+   * @param max    the largest accepted value
+   * @return the narrowed query
+   */
+  public ArchiveQuery where(ArchiveColumn column, long min, long max) {
+    List<Filter> narrowed = new ArrayList<>(filters);
+    narrowed.add(new Filter(column, min, max));
+    return new ArchiveQuery(archive, List.copyOf(narrowed));
+  }
+
+  /**
+   * Returns a query that additionally requires a column to equal a value.
+   *
+   * @param column the column to filter on
+   * @param value  the accepted value
+   * @return the narrowed query
+   */
+  public ArchiveQuery whereEquals(ArchiveColumn column, long value) {
+    return where(column, value, value);
+  }
+
+  /**
+   * Counts the matching rows.
+   *
+   * @return the number of matching rows
+   */
+  public long count() {
+    return run(null, false).count;
+  }
+
+  /**
+   * Sums a column over the matching rows.
+   *
+   * @param column the column to sum
+   * @return the sum
+   */
+  public long sum(ArchiveColumn column) {
+    return run(column, false).sum;
+  }
+
+  /**
+   * Averages a column over the matching rows.
+   *
+   * @param column the column to average
+   * @return the average, or 0 if no row matches
+   */
+  public double average(ArchiveColumn column) {
+    Partial result = run(column, false);
+    return result.count == 0 ? 0 : (double) result.sum / result.count;
+  }
+
+  /**
+   * Counts the matching rows for every distinct value of a column, eg: wins by WINNER.
+   *
+   * @param column the column to group by
+   * @return a map from column value to number of matching rows
+   */
+  public Map<Long, Long> countBy(ArchiveColumn column) {
+    return new TreeMap<>(run(column, true).groups);
+  }
+
+  /**
+   * Scans the archive, aggregating one optional column.
+   *
+   * @param column  the column to aggregate, or null to only count
+   * @param grouped whether to count the rows of every value of the column, as only countBy needs
+   * @return the aggregate over every row group
+   */
+  private Partial run(ArchiveColumn column, boolean grouped) {
+    return IntStream.range(0, archive.getGroupCount()).parallel()
+        .mapToObj(group -> scanGroup(group, column, grouped))
+        .reduce(new Partial(grouped), Partial::merge);
+  }
+
+  /**
+   * Aggregates one row group.
+   *
+   * @param group   the row group
+   * @param column  the column to aggregate, or null to only count
+   * @param grouped whether to count the rows of every value of the column
+   * @return the aggregate over the group
+   */
+  private Partial scanGroup(int group, ArchiveColumn column, boolean grouped) {
+    Partial partial = new Partial(grouped);
+    List<Filter> remaining = new ArrayList<>();
+    for (Filter filter : filters) {
+      long min = archive.getMin(group, filter.column);
+      long max = archive.getMax(group, filter.column);
+      if (max < filter.min || min > filter.max) {
+        return partial;
+      }
+      if (min < filter.min || max > filter.max) {
+        remaining.add(filter);
+      }
+    }
+
+    int rows = archive.getGroupRows(group);
+    long[] values = new long[rows];
+    boolean[] selected = null;
+    for (Filter filter : remaining) {
+      archive.read(group, filter.column, values);
+      if (selected == null) {
+        selected = new boolean[rows];
+        for (int i = 0; i < rows; i++) {
+          selected[i] = values[i] >= filter.min & values[i] <= filter.max;
+        }
+      } else {
+        for (int i = 0; i < rows; i++) {
+          selected[i] &= values[i] >= filter.min & values[i] <= filter.max;
+        }
+      }
+    }
+
+    if (column == null && selected == null) {
+      partial.count = rows;
+      return partial;
+    }
+    if (column == null) {
+      for (int i = 0; i < rows; i++) {
+        partial.count += selected[i] ? 1 : 0;
+      }
+      return partial;
+    }
+
+    archive.read(group, column, values);
+    if (!grouped) {
+      for (int i = 0; i < rows; i++) {
+        if (selected == null || selected[i]) {
+          partial.count++;
+          partial.sum += values[i];
+        }
+      }
+      return partial;
+    }
+
+    // low cardinality columns such as WINNER are grouped into a dense array
+    long base = archive.getMin(group, column);
+    long range = archive.getMax(group, column) - base + 1;
+    if (range > 0 && range <= DENSE_GROUP_LIMIT) {
+      long[] counts = new long[(int) range];
+      for (int i = 0; i < rows; i++) {
+        if (selected == null || selected[i]) {
+          counts[(int) (values[i] - base)]++;
+          partial.sum += values[i];
+        }
+      }
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0) {
+          partial.count += counts[i];
+          partial.groups.put(base + i, counts[i]);
+        }
+      }
+      return partial;
+    }
+    for (int i = 0; i < rows; i++) {
+      if (selected == null || selected[i]) {
+        partial.count++;
+        partial.sum += values[i];
+        partial.groups.merge(values[i], 1L, Long::sum);
+      }
+    }
+    return partial;
+  }
+
+  /**
+   * An inclusive range filter on one column.
+   */
+  private static class Filter {
+
+    private final ArchiveColumn column;
+    private final long min;
+    private final long max;
+
+    private Filter(ArchiveColumn column, long min, long max) {
+      this.column = column;
+      this.min = min;
+      this.max = max;
+    }
+  }
+
+  /**
+   * The aggregate of part of the archive.
+   */
+  private static class Partial {
+
+    // null unless the rows of every value are counted
+    private final Map<Long, Long> groups;
+    private long count;
+    private long sum;
+
+    private Partial(boolean grouped) {
+      this.groups = grouped ? new HashMap<>() : null;
+    }
+
+    private Partial merge(Partial other) {
+      Partial merged = new Partial(groups != null);
+      merged.count = count + other.count;
+      merged.sum = sum + other.sum;
+      if (groups != null) {
+        merged.groups.putAll(groups);
+        other.groups.forEach((value, count) -> merged.groups.merge(value, count, Long::sum));
+      }
+      return merged;
+    }
+  }
+}
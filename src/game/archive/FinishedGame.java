@@ -0,0 +1,226 @@
+package game.archive;
+
+import game.simulation.GameSetup;
+import game.utils.GameUtils;
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * One finished game as kept by the FinishedGameStore. Colours are stored as cave animals in turn
+ * order, as numbered by GameSetup.
+ *
+ * <p>Record layout (little endian, RECORD_SIZE bytes):
+ * <pre>
+ *   0  long  game id
+ *   8  long  seed of the chit card shuffle
+ *   16 long  config hash
+ *   24 long  finish time, epoch milliseconds
+ *   32 long  duration in milliseconds
+ *   40 long  journal offset, -1 without a journal
+ *   48 byte  winner animal, -1 for none
+ *   49 byte  number of players
+ *   50 byte  animal of each seat, four bytes
+ *   60 int   CRC32 of bytes 0 to 59
+ * </pre>
+ */
+public class FinishedGame {
+
+  static final int RECORD_SIZE = 64;
+  private static final int CHECKSUM_OFFSET = 60;
+  private static final int MAX_PLAYERS = 4;
+
+  private final long gameId;
+  private final long seed;
+  private final long configHash;
+  private final byte[] animals;
+  private final int winner;
+  private final long finishedAt;
+  private final long durationMillis;
+  private final long journalOffset;
+
+  /**
+   * Constructs a FinishedGame.
+   *
+   * @param gameId         the id of the game, handed out by FinishedGameStore.nextGameId
+   * @param seed           the seed of the chit card shuffle
+   * @param configHash     the hash of the board setup
+   * @param animals        the cave animal of each player in turn order
+   * @param winner         the cave animal of the winner, -1 for none
+   * @param finishedAt     the time the game finished, in epoch milliseconds
+   * @param durationMillis how long the game took
+   * @param journalOffset  the offset of the game's moves in a journal, -1 without one
+   */
+  public FinishedGame(long gameId, long seed, long configHash, byte[] animals, int winner,
+      long finishedAt, long durationMillis, long journalOffset) {
+    if (animals.length > MAX_PLAYERS) {
+      throw new IllegalArgumentException("At most " + MAX_PLAYERS + " players are supported");
+    }
+    this.gameId = gameId;
+    this.seed = seed;
+    this.configHash = configHash;
+    this.animals = animals.clone();
+    this.winner = winner;
+    this.finishedAt = finishedAt;
+    this.durationMillis = durationMillis;
+    this.journalOffset = journalOffset;
+  }
+
+  /**
+   * Returns the cave animal of a colour.
+   *
+   * @param colour the dragon colour
+   * @return the animal, or -1 if the colour is not a dragon colour
+   */
+  public static int animalOf(Color colour) {
+    return Arrays.asList(GameSetup.CAVE_COLOURS).indexOf(colour);
+  }
+
+  /**
+   * Writes the game as one record.
+   *
+   * @param buffer the buffer receiving the record at its position
+   */
+  void write(ByteBuffer buffer) {
+    int start = buffer.position();
+    buffer.putLong(gameId).putLong(seed).putLong(configHash).putLong(finishedAt)
+        .putLong(durationMillis).putLong(journalOffset).put((byte) winner)
+        .put((byte) animals.length);
+    for (int seat = 0; seat < MAX_PLAYERS; seat++) {
+      buffer.put(seat < animals.length ? animals[seat] : -1);
+    }
+    buffer.position(start + CHECKSUM_OFFSET);
+    buffer.putInt(checksum(buffer, start));
+  }
+
+  /**
+   * Reads a record, checking its checksum.
+   *
+   * @param buffer the buffer holding the record
+   * @param offset the offset of the record
+   * @return the game, or null if the record is torn or corrupt
+   */
+  static FinishedGame read(ByteBuffer buffer, int offset) {
+    if (buffer.getInt(offset + CHECKSUM_OFFSET) != checksum(buffer, offset)) {
+      return null;
+    }
+    int players = buffer.get(offset + 49);
+    if (players < 0 || players > MAX_PLAYERS) {
+      return null;
+    }
+    byte[] animals = new byte[players];
+    buffer.get(offset + 50, animals);
+    return new FinishedGame(buffer.getLong(offset), buffer.getLong(offset + 8),
+        buffer.getLong(offset + 16), animals, buffer.get(offset + 48), buffer.getLong(offset + 24),
+        buffer.getLong(offset + 32), buffer.getLong(offset + 40));
+  }
+
+  /**
+   * Computes the checksum of the record at an offset.
+   *
+   * @param buffer the buffer holding the record
+   * @param offset the offset of the record
+   * @return the low 32 bits of the CRC32
+   */
+  private static int checksum(ByteBuffer buffer, int offset) {
+    CRC32 crc = new CRC32();
+    crc.update(buffer.duplicate().limit(offset + CHECKSUM_OFFSET).position(offset));
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Returns the id of the game.
+   *
+   * @return the game id
+   */
+  public long getGameId() {
+    return gameId;
+  }
+
+  /**
+   * Returns the seed of the chit card shuffle.
+   *
+   * @return the seed
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Returns the hash of the board setup.
+   *
+   * @return the config hash
+   */
+  public long getConfigHash() {
+    return configHash;
+  }
+
+  /**
+   * Returns the colour of every player in turn order.
+   *
+   * @return the colours
+   */
+  public Color[] getColours() {
+    Color[] colours = new Color[animals.length];
+    for (int seat = 0; seat < animals.length; seat++) {
+      colours[seat] = GameSetup.CAVE_COLOURS[animals[seat]];
+    }
+    return colours;
+  }
+
+  /**
+   * Returns the cave animal of the winner.
+   *
+   * @return the animal, -1 for none
+   */
+  public int getWinner() {
+    return winner;
+  }
+
+  /**
+   * Returns the colour of the winner.
+   *
+   * @return the colour name, or null if nobody won
+   */
+  public String getWinnerColour() {
+    return winner < 0 ? null : GameUtils.colorToString(GameSetup.CAVE_COLOURS[winner]);
+  }
+
+  /**
+   * Returns the time the game finished.
+   *
+   * @return epoch milliseconds
+   */
+  public long getFinishedAt() {
+    return finishedAt;
+  }
+
+  /**
+   * Returns how long the game took.
+   *
+   * @return the duration in milliseconds
+   */
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  /**
+   * Returns the offset of the game's moves in a journal.
+   *
+   * @return the offset, -1 without a journal
+   */
+  public long getJournalOffset() {
+    return journalOffset;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder colours = new StringBuilder();
+    for (Color colour : getColours()) {
+      colours.append(colours.length() == 0 ? "" : ",").append(GameUtils.colorToString(colour));
+    }
+    return String.format("#%d seed=%d config=%016x players=%s winner=%s finished=%d took=%dms",
+        gameId, seed, configHash, colours, getWinnerColour(), finishedAt, durationMillis);
+  }
+}
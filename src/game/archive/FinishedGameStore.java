@@ -0,0 +1,588 @@
+package game.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+/**
+ * Append-only store of finished games keyed by game id. New games are appended to an active log
+ * and kept in memory; once the log holds SEGMENT_RECORDS games it is sealed into an immutable
+ * segment. Game ids only grow, so segments cover disjoint id ranges and hold their records sorted.
+ *
+ * <p>Each sealed segment has three memory-mapped files: the records, a sparse index holding the
+ * id of every SPARSE_INTERVAL-th record, and a secondary index of (kind, key, id) entries sorted
+ * for lookups by winner, finish day and config hash. Opening a store only maps these files and
+ * reads the active log, so it stays fast however many games are stored. A background thread
+ * merges runs of similarly sized segments to keep the number of files small.
+ */
+public class FinishedGameStore implements AutoCloseable {
+
+  static final int SEGMENT_RECORDS = 4096;
+  private static final int SPARSE_INTERVAL = 32;
+  private static final int MERGE_FACTOR = 4;
+  private static final int MAX_SEGMENT_RECORDS = 1 << 20;
+  private static final int SECONDARY_ENTRY_SIZE = 1 + 2 * Long.BYTES;
+  private static final long MILLIS_PER_DAY = 86_400_000L;
+  private static final byte BY_WINNER = 0;
+  private static final byte BY_DAY = 1;
+  private static final byte BY_CONFIG = 2;
+  private static final String ACTIVE_FILE = "active.log";
+  private static final String LOG = ".log";
+  private static final String SPARSE_INDEX = ".idx";
+  private static final String SECONDARY_INDEX = ".sec";
+  private static final String TEMP = ".tmp";
+
+  private final Path directory;
+  private final FileChannel activeLog;
+  private final TreeMap<Long, FinishedGame> active = new TreeMap<>();
+  private final ExecutorService compactor;
+  private volatile List<Segment> segments;
+  private long lastGameId;
+
+  /**
+   * Opens a store, creating it if needed. Segments left behind by an interrupted merge and records
+   * already sealed before a crash are dropped, as is a torn record at the end of the active log.
+   *
+   * @param directory the store directory
+   * @throws IOException if the store cannot be opened
+   */
+  public FinishedGameStore(Path directory) throws IOException {
+    this.directory = directory;
+    Files.createDirectories(directory);
+    this.segments = openSegments();
+    this.lastGameId = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).lastId;
+
+    this.activeLog = FileChannel.open(directory.resolve(ACTIVE_FILE), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    ByteBuffer log = ByteBuffer.allocate((int) activeLog.size()).order(ByteOrder.LITTLE_ENDIAN);
+    activeLog.read(log, 0);
+    long sealedUpTo = lastGameId;
+    int valid = 0;
+    for (int offset = 0; offset + FinishedGame.RECORD_SIZE <= log.limit();
+        offset += FinishedGame.RECORD_SIZE) {
+      FinishedGame game = FinishedGame.read(log, offset);
+      if (game == null) {
+        break;
+      }
+      valid = offset + FinishedGame.RECORD_SIZE;
+      if (game.getGameId() > sealedUpTo) {
+        active.put(game.getGameId(), game);
+        lastGameId = Math.max(lastGameId, game.getGameId());
+      }
+    }
+    activeLog.truncate(valid);
+    activeLog.position(valid);
+
+    this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "finished-game-compactor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    compactor.execute(this::compact);
+  }
+
+  /**
+   * Maps the sealed segments, deleting segments covered by a newer merged one and index files
+   * whose segment was never completed.
+   *
+   * @return the segments sorted by first id
+   * @throws IOException if a segment cannot be mapped
+   */
+  private List<Segment> openSegments() throws IOException {
+    List<Segment> found = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*")) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(LOG)) {
+          found.add(new Segment(file));
+        } else if (name.endsWith(TEMP) || !Files.exists(sibling(file, LOG))) {
+          Files.delete(file);
+        }
+      }
+    }
+    // a merged segment covers every source it was built from, prefer the later generation
+    found.sort(Comparator.comparingInt((Segment segment) -> segment.generation).reversed());
+    List<Segment> kept = new ArrayList<>();
+    for (Segment segment : found) {
+      boolean covered = kept.stream().anyMatch(other -> other.firstId <= segment.firstId
+          && segment.lastId <= other.lastId);
+      if (covered) {
+        segment.delete();
+      } else {
+        kept.add(segment);
+      }
+    }
+    kept.sort(Comparator.comparingLong(segment -> segment.firstId));
+    return Collections.unmodifiableList(kept);
+  }
+
+  /**
+   * Returns the id to give the next finished game.
+   *
+   * @return an id larger than any stored id
+   */
+  public synchronized long nextGameId() {
+    return lastGameId + 1;
+  }
+
+  /**
+   * Appends a finished game and forces it to disk.
+   *
+   * @param game the game, with an id from nextGameId
+   * @throws IOException if the game cannot be written
+   */
+  public synchronized void put(FinishedGame game) throws IOException {
+    if (game.getGameId() <= lastGameId) {
+      throw new IllegalArgumentException("Game " + game.getGameId() + " is already stored");
+    }
+    ByteBuffer record = ByteBuffer.allocate(FinishedGame.RECORD_SIZE)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    game.write(record);
+    record.flip();
+    while (record.hasRemaining()) {
+      activeLog.write(record);
+    }
+    activeLog.force(false);
+    active.put(game.getGameId(), game);
+    lastGameId = game.getGameId();
+    if (active.size() >= SEGMENT_RECORDS) {
+      seal();
+    }
+  }
+
+  /**
+   * Writes the active games as a new segment and empties the active log.
+   *
+   * @throws IOException if the segment cannot be written
+   */
+  private void seal() throws IOException {
+    List<Segment> updated = new ArrayList<>(segments);
+    updated.add(writeSegment(new ArrayList<>(active.values()), 0));
+    segments = Collections.unmodifiableList(updated);
+    active.clear();
+    activeLog.truncate(0);
+    activeLog.position(0);
+    compactor.execute(this::compact);
+  }
+
+  /**
+   * Merges runs of MERGE_FACTOR neighbouring segments of the same size tier until none are left.
+   * Runs on the compactor thread; readers keep using the old segments until the swap.
+   */
+  private void compact() {
+    try {
+      while (true) {
+        List<Segment> current = segments;
+        int start = -1;
+        for (int i = 0; i + MERGE_FACTOR <= current.size() && start < 0; i++) {
+          int tier = current.get(i).tier();
+          long total = 0;
+          boolean sameTier = true;
+          for (int j = i; j < i + MERGE_FACTOR; j++) {
+            sameTier &= current.get(j).tier() == tier;
+            total += current.get(j).records;
+          }
+          if (sameTier && total <= MAX_SEGMENT_RECORDS) {
+            start = i;
+          }
+        }
+        if (start < 0) {
+          return;
+        }
+        List<Segment> sources = current.subList(start, start + MERGE_FACTOR);
+        List<FinishedGame> games = new ArrayList<>();
+        int generation = 0;
+        for (Segment source : sources) {
+          source.forEach(games::add);
+          generation = Math.max(generation, source.generation + 1);
+        }
+        Segment merged = writeSegment(games, generation);
+        synchronized (this) {
+          // sealing only appends, so the sources are still where they were
+          List<Segment> updated = new ArrayList<>(segments);
+          updated.subList(start, start + MERGE_FACTOR).clear();
+          updated.add(start, merged);
+          segments = Collections.unmodifiableList(updated);
+        }
+        for (Segment source : sources) {
+          source.delete();
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("Error compacting finished games: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Writes games sorted by id as a segment with its sparse and secondary index. The record file
+   * is renamed into place last, so an incomplete segment is never opened.
+   *
+   * @param games      the games, sorted by id
+   * @param generation the merge generation of the segment
+   * @return the mapped segment
+   * @throws IOException if the segment cannot be written
+   */
+  private Segment writeSegment(List<FinishedGame> games, int generation) throws IOException {
+    String name = String.format("segment-%016x-%d", games.get(0).getGameId(), generation);
+    Path log = directory.resolve(name + LOG);
+
+    ByteBuffer records = ByteBuffer.allocate(games.size() * FinishedGame.RECORD_SIZE)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    ByteBuffer sparse = ByteBuffer.allocate(
+        (games.size() + SPARSE_INTERVAL - 1) / SPARSE_INTERVAL * Long.BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    List<Map<Long, LongStream.Builder>> postings = List.of(new TreeMap<>(), new TreeMap<>(),
+        new TreeMap<>());
+    for (int i = 0; i < games.size(); i++) {
+      FinishedGame game = games.get(i);
+      game.write(records);
+      if (i % SPARSE_INTERVAL == 0) {
+        sparse.putLong(game.getGameId());
+      }
+      long[] keys = secondaryKeys(game);
+      for (int kind = 0; kind < keys.length; kind++) {
+        postings.get(kind).computeIfAbsent(keys[kind], key -> LongStream.builder())
+            .add(game.getGameId());
+      }
+    }
+    // ids are added in ascending order, so entries come out sorted by (kind, key, id)
+    ByteBuffer secondary = ByteBuffer.allocate(
+        games.size() * postings.size() * SECONDARY_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    for (int kind = 0; kind < postings.size(); kind++) {
+      for (Map.Entry<Long, LongStream.Builder> entry : postings.get(kind).entrySet()) {
+        for (long id : entry.getValue().build().toArray()) {
+          secondary.put((byte) kind).putLong(entry.getKey()).putLong(id);
+        }
+      }
+    }
+
+    writeFile(sibling(log, SPARSE_INDEX), sparse.flip());
+    writeFile(sibling(log, SECONDARY_INDEX), secondary.flip());
+    writeFile(log, records.flip());
+    return new Segment(log);
+  }
+
+  /**
+   * Writes a file through a temporary file and an atomic rename.
+   *
+   * @param path    the file
+   * @param content the bytes to write
+   * @throws IOException if writing fails
+   */
+  private static void writeFile(Path path, ByteBuffer content) throws IOException {
+    Path temp = path.resolveSibling(path.getFileName() + TEMP);
+    try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (content.hasRemaining()) {
+        file.write(content);
+      }
+      file.force(true);
+    }
+    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Returns the path of another file of the same segment.
+   *
+   * @param file      a file of the segment
+   * @param extension the extension of the wanted file
+   * @return the path of the wanted file
+   */
+  private static Path sibling(Path file, String extension) {
+    String name = file.getFileName().toString();
+    return file.resolveSibling(name.substring(0, name.lastIndexOf('.')) + extension);
+  }
+
+  /**
+   * Returns the secondary index keys of a game, indexed by kind.
+   *
+   * @param game the game
+   * @return the winner, finish day and config hash
+   */
+  private static long[] secondaryKeys(FinishedGame game) {
+    return new long[]{game.getWinner(), Math.floorDiv(game.getFinishedAt(), MILLIS_PER_DAY),
+        game.getConfigHash()};
+  }
+
+  /**
+   * Looks up a game by id.
+   *
+   * @param gameId the game id
+   * @return the game, or null if it is not stored
+   */
+  public FinishedGame get(long gameId) {
+    synchronized (this) {
+      FinishedGame game = active.get(gameId);
+      if (game != null) {
+        return game;
+      }
+    }
+    List<Segment> current = segments;
+    int low = 0;
+    int high = current.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      Segment segment = current.get(mid);
+      if (gameId < segment.firstId) {
+        high = mid - 1;
+      } else if (gameId > segment.lastId) {
+        low = mid + 1;
+      } else {
+        return segment.find(gameId);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds every game won by a colour.
+   *
+   * @param animal the cave animal of the winner, -1 for games nobody won
+   * @return the games sorted by id
+   */
+  public List<FinishedGame> findByWinner(int animal) {
+    return find(BY_WINNER, animal, animal);
+  }
+
+  /**
+   * Finds every game played with a board setup.
+   *
+   * @param configHash the config hash
+   * @return the games sorted by id
+   */
+  public List<FinishedGame> findByConfig(long configHash) {
+    return find(BY_CONFIG, configHash, configHash);
+  }
+
+  /**
+   * Finds every game finished between two dates, in UTC.
+   *
+   * @param from the first day, inclusive
+   * @param to   the last day, inclusive
+   * @return the games sorted by id
+   */
+  public List<FinishedGame> findByDate(LocalDate from, LocalDate to) {
+    return find(BY_DAY, from.toEpochDay(), to.toEpochDay());
+  }
+
+  /**
+   * Returns the number of stored games.
+   *
+   * @return the number of games
+   */
+  public synchronized long size() {
+    return active.size() + segments.stream().mapToLong(segment -> segment.records).sum();
+  }
+
+  /**
+   * Collects the games whose secondary key of one kind lies in a range.
+   *
+   * @param kind the kind of key
+   * @param min  the smallest key, inclusive
+   * @param max  the largest key, inclusive
+   * @return the games sorted by id
+   */
+  private List<FinishedGame> find(byte kind, long min, long max) {
+    List<FinishedGame> result = new ArrayList<>();
+    List<Segment> current;
+    List<FinishedGame> unsealed;
+    synchronized (this) {
+      current = segments;
+      unsealed = new ArrayList<>(active.values());
+    }
+    for (Segment segment : current) {
+      segment.findSecondary(kind, min, max, result);
+    }
+    result.sort(Comparator.comparingLong(FinishedGame::getGameId));
+    for (FinishedGame game : unsealed) {
+      long key = secondaryKeys(game)[kind];
+      if (key >= min && key <= max) {
+        result.add(game);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Waits for a running merge and closes the active log. Mapped segments stay valid until they
+   * are garbage collected.
+   *
+   * @throws IOException if the log cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    compactor.shutdown();
+    try {
+      compactor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      activeLog.force(true);
+      activeLog.close();
+    }
+  }
+
+  /**
+   * A sealed segment with its mapped record file and indexes.
+   */
+  private static class Segment {
+
+    private final Path log;
+    private final int generation;
+    private final ByteBuffer data;
+    private final LongBuffer sparse;
+    private final ByteBuffer secondary;
+    private final int records;
+    private final long firstId;
+    private final long lastId;
+
+    /**
+     * Maps the files of a segment.
+     *
+     * @param log the record file of the segment
+     * @throws IOException if a file cannot be mapped
+     */
+    private Segment(Path log) throws IOException {
+      this.log = log;
+      String name = log.getFileName().toString();
+      this.generation = Integer.parseInt(
+          name.substring(name.lastIndexOf('-') + 1, name.length() - LOG.length()));
+      this.data = map(log);
+      this.sparse = map(sibling(log, SPARSE_INDEX)).asLongBuffer();
+      this.secondary = map(sibling(log, SECONDARY_INDEX));
+      this.records = data.limit() / FinishedGame.RECORD_SIZE;
+      this.firstId = data.getLong(0);
+      this.lastId = data.getLong((records - 1) * FinishedGame.RECORD_SIZE);
+    }
+
+    /**
+     * Maps a whole file read-only.
+     *
+     * @param path the file
+     * @return the mapped buffer
+     * @throws IOException if the file cannot be mapped
+     */
+    private static ByteBuffer map(Path path) throws IOException {
+      try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+        return file.map(FileChannel.MapMode.READ_ONLY, 0, file.size())
+            .order(ByteOrder.LITTLE_ENDIAN);
+      }
+    }
+
+    /**
+     * Returns the size tier of the segment, growing by one every MERGE_FACTOR merges.
+     *
+     * @return the tier
+     */
+    private int tier() {
+      int tier = 0;
+      for (long size = SEGMENT_RECORDS * (long) MERGE_FACTOR; size <= records;
+          size *= MERGE_FACTOR) {
+        tier++;
+      }
+      return tier;
+    }
+
+    /**
+     * Finds a game through the sparse index and a short scan of the records after it.
+     *
+     * @param gameId the game id
+     * @return the game, or null if the segment does not hold it
+     */
+    private FinishedGame find(long gameId) {
+      int low = 0;
+      int high = sparse.limit() - 1;
+      while (low < high) {
+        int mid = (low + high + 1) >>> 1;
+        if (sparse.get(mid) <= gameId) {
+          low = mid;
+        } else {
+          high = mid - 1;
+        }
+      }
+      int end = Math.min(records, (low + 1) * SPARSE_INTERVAL);
+      for (int record = low * SPARSE_INTERVAL; record < end; record++) {
+        if (data.getLong(record * FinishedGame.RECORD_SIZE) == gameId) {
+          return FinishedGame.read(data, record * FinishedGame.RECORD_SIZE);
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Adds the games whose secondary key of one kind lies in a range.
+     *
+     * @param kind   the kind of key
+     * @param min    the smallest key, inclusive
+     * @param max    the largest key, inclusive
+     * @param result the list receiving the games
+     */
+    private void findSecondary(byte kind, long min, long max, List<FinishedGame> result) {
+      int entries = secondary.limit() / SECONDARY_ENTRY_SIZE;
+      int low = 0;
+      int high = entries;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        int offset = mid * SECONDARY_ENTRY_SIZE;
+        byte midKind = secondary.get(offset);
+        if (midKind < kind || midKind == kind && secondary.getLong(offset + 1) < min) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      for (int entry = low; entry < entries; entry++) {
+        int offset = entry * SECONDARY_ENTRY_SIZE;
+        if (secondary.get(offset) != kind || secondary.getLong(offset + 1) > max) {
+          return;
+        }
+        result.add(find(secondary.getLong(offset + 9)));
+      }
+    }
+
+    /**
+     * Reads every game of the segment in id order.
+     *
+     * @param action receives each game
+     */
+    private void forEach(Consumer<FinishedGame> action) {
+      for (int record = 0; record < records; record++) {
+        action.accept(FinishedGame.read(data, record * FinishedGame.RECORD_SIZE));
+      }
+    }
+
+    /**
+     * Deletes the files of the segment. A file that cannot be deleted yet is left for the next
+     * open to clean up.
+     */
+    private void delete() {
+      for (Path file : List.of(log, sibling(log, SPARSE_INDEX), sibling(log, SECONDARY_INDEX))) {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          // still mapped on some platforms, covered segments are dropped on open
+        }
+      }
+    }
+  }
+}
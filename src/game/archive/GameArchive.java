@@ -0,0 +1,272 @@
+package game.archive;
+
+import game.simulation.GameSetup;
+import game.simulation.RandomPolicy;
+import game.simulation.Simulator;
+import game.utils.GameUtils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.LongStream;
+
+/**
+ * Read side of a columnar game archive written by GameArchiveWriter. Row group statistics are
+ * loaded eagerly; column data is memory-mapped one row group at a time, the first time a query
+ * needs it, and kept mapped for later queries.
+ */
+public class GameArchive implements AutoCloseable {
+
+  private static final ArchiveColumn[] COLUMNS = ArchiveColumn.values();
+  static final int STATS_RECORD_SIZE = Integer.BYTES + COLUMNS.length * 2 * Long.BYTES;
+
+  private final FileChannel[] columnFiles = new FileChannel[COLUMNS.length];
+  private final int[] groupRows;
+  private final long[] groupFirstRow;
+  private final long[][] groupMin;
+  private final long[][] groupMax;
+  // indexed by column ordinal
+  private final List<AtomicReferenceArray<ByteBuffer>> mapped;
+
+  /**
+   * Opens an archive for querying.
+   *
+   * @param directory the archive directory
+   * @throws IOException if the archive cannot be read
+   */
+  public GameArchive(Path directory) throws IOException {
+    ByteBuffer stats = ByteBuffer.wrap(Files.readAllBytes(
+        directory.resolve(GameArchiveWriter.STATS_FILE))).order(ByteOrder.LITTLE_ENDIAN);
+    int groups = stats.limit() / STATS_RECORD_SIZE;
+    this.groupRows = new int[groups];
+    this.groupFirstRow = new long[groups];
+    this.groupMin = new long[groups][COLUMNS.length];
+    this.groupMax = new long[groups][COLUMNS.length];
+    long firstRow = 0;
+    for (int group = 0; group < groups; group++) {
+      groupRows[group] = stats.getInt();
+      groupFirstRow[group] = firstRow;
+      firstRow += groupRows[group];
+      for (int column = 0; column < COLUMNS.length; column++) {
+        groupMin[group][column] = stats.getLong();
+        groupMax[group][column] = stats.getLong();
+      }
+    }
+    List<AtomicReferenceArray<ByteBuffer>> buffers = new ArrayList<>(COLUMNS.length);
+    for (ArchiveColumn column : COLUMNS) {
+      columnFiles[column.ordinal()] = FileChannel.open(directory.resolve(column.getFileName()),
+          StandardOpenOption.READ);
+      buffers.add(new AtomicReferenceArray<>(groups));
+    }
+    this.mapped = List.copyOf(buffers);
+  }
+
+  /**
+   * Writes or queries an archive.
+   *
+   * <pre>
+   *   write   dir games [config] [players]   append simulated games
+   *   winrate dir [config] [players]         win rate of every colour by seat
+   * </pre>
+   *
+   * @param args command line arguments
+   * @throws IOException if the archive cannot be accessed
+   */
+  public static void main(String[] args) throws IOException {
+    Path directory = Paths.get(args[1]);
+    if (args[0].equals("write")) {
+      long games = Long.parseLong(args[2]);
+      String configPath = args.length > 3 ? args[3] : GameUtils.CONFIG_PATH;
+      int numPlayers = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+      Simulator simulator = new Simulator(GameSetup.load(configPath, numPlayers),
+          new RandomPolicy());
+      AtomicLong nextSeed = new AtomicLong(countRows(directory));
+      long lastSeed = nextSeed.get() + games;
+      try (GameArchiveWriter writer = new GameArchiveWriter(directory,
+          GameArchiveWriter.DEFAULT_ROW_GROUP)) {
+        LongStream.range(0, games).parallel().forEach(i -> {
+          try {
+            writer.add(simulator.play(nextSeed.getAndIncrement()));
+          } catch (IOException e) {
+            throw new IllegalStateException(e);
+          }
+        });
+      }
+      System.out.println("Archived seeds up to " + lastSeed);
+      return;
+    }
+
+    String configPath = args.length > 2 ? args[2] : GameUtils.CONFIG_PATH;
+    int numPlayers = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+    long configHash = GameSetup.load(configPath, numPlayers).getConfigHash();
+    try (GameArchive archive = new GameArchive(directory)) {
+      long start = System.nanoTime();
+      for (int animal = 0; animal < GameSetup.CAVE_COLOURS.length; animal++) {
+        String colour = GameUtils.colorToString(GameSetup.CAVE_COLOURS[animal]);
+        for (int seat = 0; seat < numPlayers; seat++) {
+          ArchiveQuery query = archive.query()
+              .whereEquals(ArchiveColumn.CONFIG_HASH, configHash)
+              .whereEquals(ArchiveColumn.seatOf(animal), seat);
+          long games = query.count();
+          long wins = query.whereEquals(ArchiveColumn.WINNER, animal).count();
+          if (games > 0) {
+            System.out.printf("%-6s seat %d: %5.1f%% of %d games%n", colour, seat + 1,
+                100.0 * wins / games, games);
+          }
+        }
+      }
+      System.out.printf("Queries over %d games took %.1f ms%n", archive.getRowCount(),
+          (System.nanoTime() - start) / 1e6);
+    }
+  }
+
+  /**
+   * Counts the rows of an archive without opening its columns.
+   *
+   * @param directory the archive directory
+   * @return the number of rows, 0 if the archive does not exist yet
+   * @throws IOException if the stats file cannot be read
+   */
+  public static long countRows(Path directory) throws IOException {
+    Path statsPath = directory.resolve(GameArchiveWriter.STATS_FILE);
+    if (!Files.exists(statsPath)) {
+      return 0;
+    }
+    ByteBuffer stats = ByteBuffer.wrap(Files.readAllBytes(statsPath))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    long rows = 0;
+    for (int offset = 0; offset + STATS_RECORD_SIZE <= stats.limit();
+        offset += STATS_RECORD_SIZE) {
+      rows += stats.getInt(offset);
+    }
+    return rows;
+  }
+
+  /**
+   * Starts a query over every row of the archive.
+   *
+   * @return a query without filters
+   */
+  public ArchiveQuery query() {
+    return new ArchiveQuery(this);
+  }
+
+  /**
+   * Returns the number of rows in the archive.
+   *
+   * @return the number of rows
+   */
+  public long getRowCount() {
+    int groups = groupRows.length;
+    return groups == 0 ? 0 : groupFirstRow[groups - 1] + groupRows[groups - 1];
+  }
+
+  /**
+   * Returns the number of row groups.
+   *
+   * @return the number of row groups
+   */
+  int getGroupCount() {
+    return groupRows.length;
+  }
+
+  /**
+   * Returns the number of rows in a row group.
+   *
+   * @param group the row group
+   * @return the number of rows
+   */
+  int getGroupRows(int group) {
+    return groupRows[group];
+  }
+
+  /**
+   * Returns the smallest value of a column within a row group.
+   *
+   * @param group  the row group
+   * @param column the column
+   * @return the minimum value
+   */
+  long getMin(int group, ArchiveColumn column) {
+    return groupMin[group][column.ordinal()];
+  }
+
+  /**
+   * Returns the largest value of a column within a row group.
+   *
+   * @param group  the row group
+   * @param column the column
+   * @return the maximum value
+   */
+  long getMax(int group, ArchiveColumn column) {
+    return groupMax[group][column.ordinal()];
+  }
+
+  /**
+   * Reads the values of a column within a row group into an array.
+   *
+   * @param group  the row group
+   * @param column the column
+   * @param target the array receiving the values, at least as long as the group
+   */
+  void read(int group, ArchiveColumn column, long[] target) {
+    ByteBuffer buffer = map(group, column);
+    int rows = groupRows[group];
+    switch (column.getWidth()) {
+      case 1 -> {
+        for (int i = 0; i < rows; i++) {
+          target[i] = buffer.get(i);
+        }
+      }
+      case 4 -> {
+        for (int i = 0; i < rows; i++) {
+          target[i] = buffer.getInt(i << 2);
+        }
+      }
+      default -> buffer.asLongBuffer().get(0, target, 0, rows);
+    }
+  }
+
+  /**
+   * Returns the mapped column data of a row group, mapping it on first use.
+   *
+   * @param group  the row group
+   * @param column the column
+   * @return the mapped buffer
+   */
+  private ByteBuffer map(int group, ArchiveColumn column) {
+    AtomicReferenceArray<ByteBuffer> buffers = mapped.get(column.ordinal());
+    ByteBuffer buffer = buffers.get(group);
+    if (buffer == null) {
+      try {
+        buffer = columnFiles[column.ordinal()].map(FileChannel.MapMode.READ_ONLY,
+            groupFirstRow[group] * column.getWidth(), (long) groupRows[group] * column.getWidth())
+            .order(ByteOrder.LITTLE_ENDIAN);
+      } catch (IOException e) {
+        throw new IllegalStateException("Cannot map " + column.getFileName(), e);
+      }
+      buffers.set(group, buffer);
+    }
+    return buffer;
+  }
+
+  /**
+   * Closes the column files. Mapped buffers stay valid until they are garbage collected.
+   *
+   * @throws IOException if a file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    for (FileChannel file : columnFiles) {
+      file.close();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package game.archive;
+
+import game.simulation.GameResult;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends game results to a columnar archive. Results are buffered into a row group, then each
+ * column of the group is appended to its own file and the group's row count and per column
+ * min/max statistics are appended to the stats file. Re-opening an archive appends new groups.
+ */
+public class GameArchiveWriter implements AutoCloseable {
+
+  public static final String STATS_FILE = "stats.bin";
+  public static final int DEFAULT_ROW_GROUP = 1 << 16;
+
+  private static final ArchiveColumn[] COLUMNS = ArchiveColumn.values();
+
+  private final FileChannel[] columnFiles = new FileChannel[COLUMNS.length];
+  private final FileChannel statsFile;
+  private final long[][] values;
+  private final ByteBuffer scratch;
+  private int rows;
+
+  /**
+   * Opens an archive for appending, creating it if needed. Column data left behind by a row group
+   * whose stats were never written is cut off first.
+   *
+   * @param directory    the archive directory
+   * @param rowGroupSize the number of rows per row group
+   * @throws IOException if the files cannot be opened
+   */
+  public GameArchiveWriter(Path directory, int rowGroupSize) throws IOException {
+    Files.createDirectories(directory);
+    long rowCount = GameArchive.countRows(directory);
+    for (ArchiveColumn column : COLUMNS) {
+      FileChannel file = FileChannel.open(directory.resolve(column.getFileName()),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      file.truncate(rowCount * column.getWidth());
+      file.position(rowCount * column.getWidth());
+      columnFiles[column.ordinal()] = file;
+    }
+    this.statsFile = FileChannel.open(directory.resolve(STATS_FILE), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+    statsFile.truncate(statsFile.size() - statsFile.size() % GameArchive.STATS_RECORD_SIZE);
+    statsFile.position(statsFile.size());
+    this.values = new long[COLUMNS.length][rowGroupSize];
+    this.scratch = ByteBuffer.allocateDirect(rowGroupSize * Long.BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Adds one game to the archive. Safe to call from several threads.
+   *
+   * @param result the result of the game
+   * @throws IOException if a full row group cannot be written
+   */
+  public synchronized void add(GameResult result) throws IOException {
+    for (ArchiveColumn column : COLUMNS) {
+      values[column.ordinal()][rows] = column.valueOf(result);
+    }
+    rows++;
+    if (rows == values[0].length) {
+      flushGroup();
+    }
+  }
+
+  /**
+   * Writes the buffered rows as one row group.
+   *
+   * @throws IOException if writing fails
+   */
+  private void flushGroup() throws IOException {
+    if (rows == 0) {
+      return;
+    }
+    ByteBuffer stats = ByteBuffer.allocate(Integer.BYTES + COLUMNS.length * 2 * Long.BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    stats.putInt(rows);
+    for (ArchiveColumn column : COLUMNS) {
+      long[] columnValues = values[column.ordinal()];
+      long min = Long.MAX_VALUE;
+      long max = Long.MIN_VALUE;
+      scratch.clear();
+      for (int i = 0; i < rows; i++) {
+        long value = columnValues[i];
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        switch (column.getWidth()) {
+          case 1 -> scratch.put((byte) value);
+          case 4 -> scratch.putInt((int) value);
+          default -> scratch.putLong(value);
+        }
+      }
+      scratch.flip();
+      FileChannel file = columnFiles[column.ordinal()];
+      while (scratch.hasRemaining()) {
+        file.write(scratch);
+      }
+      stats.putLong(min).putLong(max);
+    }
+    // stats are written last, so a crash never leaves a group without its column data
+    stats.flip();
+    while (stats.hasRemaining()) {
+      statsFile.write(stats);
+    }
+    rows = 0;
+  }
+
+  /**
+   * Writes the last partial row group and closes the files.
+   *
+   * @throws IOException if writing fails
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    flushGroup();
+    for (FileChannel file : columnFiles) {
+      file.force(false);
+      file.close();
+    }
+    statsFile.force(false);
+    statsFile.close();
+  }
+}
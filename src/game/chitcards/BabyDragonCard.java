@@ -29,6 +29,16 @@ public class BabyDragonCard extends ChitCard {
     dragon.visit(this);
   }
 
+  /**
+   * Returns the name of this card's type as used in save files.
+   *
+   * @return the type name.
+   */
+  @Override
+  public String getTypeName() {
+    return "BabyDragon";
+  }
+
   /**
    * Converts the state of the implementing object to a JSON string representation.
    *
@@ -36,6 +46,6 @@ public class BabyDragonCard extends ChitCard {
    */
   @Override
   public String saveState() {
-    return "BabyDragon_" + getNumMoves();
+    return getTypeName() + "_" + getNumMoves();
   }
 }
@@ -42,7 +42,12 @@ public abstract class ChitCard implements Savable {
         .getScaledInstance(smallButtonSize.width, smallButtonSize.height, Image.SCALE_SMOOTH));
 
     button.setIcon(backIcon);  // Start with the back icon
-    button.addActionListener(e -> performAction());
+    button.addActionListener(e -> {
+      // the computer flips its own chit cards
+      if (!GameEngine.getInstance().isComputerTurn()) {
+        performAction();
+      }
+    });
   }
 
   /**
@@ -67,6 +72,13 @@ public abstract class ChitCard implements Savable {
    */
   public abstract void accept(Dragon dragon);
 
+  /**
+   * Returns the name of this card's type as used in save files, eg: BabyDragon.
+   *
+   * @return the type name.
+   */
+  public abstract String getTypeName();
+
   /**
    * Returns the number of moves associated with this card.
    *
@@ -76,6 +88,16 @@ public abstract class ChitCard implements Savable {
     return numMoves;
   }
 
+  /**
+   * Flips this card for the current dragon as if it had been clicked. Used by computer players.
+   */
+  public void play() {
+    performAction();
+  }
+
+  /**
+   * Flips this card and plays it for the current dragon, unless flipping is not allowed.
+   */
   private void performAction() {
     if (!this.flipped && ChitCard.allowFlipping) {
       ChitCard.allowFlipping = false;
@@ -83,6 +105,7 @@ public abstract class ChitCard implements Savable {
       Dragon curDragon = GameEngine.getInstance().getCurrentDragon();
       GameEngine.getInstance().addChitCard(this);
       this.accept(curDragon);
+      GameEngine.getInstance().chitCardPlayed();
       ChitCard.allowFlipping = true;
     }
   }
@@ -114,6 +137,15 @@ public abstract class ChitCard implements Savable {
     return backIcon;
   }
 
+  /**
+   * Returns whether the card shows its front.
+   *
+   * @return true if the card is face up.
+   */
+  public boolean isFlipped() {
+    return flipped;
+  }
+
   /**
    * Flips the card to show the other icon depending on the current state.
    */
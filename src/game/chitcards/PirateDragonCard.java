@@ -28,6 +28,16 @@ public class PirateDragonCard extends ChitCard {
     dragon.visit(this);
   }
 
+  /**
+   * Returns the name of this card's type as used in save files.
+   *
+   * @return the type name.
+   */
+  @Override
+  public String getTypeName() {
+    return "PirateDragon";
+  }
+
   /**
    * Converts the state of the implementing object to a JSON string representation.
    *
@@ -35,6 +45,6 @@ public class PirateDragonCard extends ChitCard {
    */
   @Override
   public String saveState() {
-    return "PirateDragon_" + getNumMoves();
+    return getTypeName() + "_" + getNumMoves();
   }
 }
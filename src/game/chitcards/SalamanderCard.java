@@ -26,6 +26,16 @@ public class SalamanderCard extends ChitCard {
     dragon.visit(this);
   }
 
+  /**
+   * Returns the name of this card's type as used in save files.
+   *
+   * @return the type name.
+   */
+  @Override
+  public String getTypeName() {
+    return "Salamander";
+  }
+
   /**
    * Converts the state of the implementing object to a JSON string representation.
    *
@@ -33,6 +43,6 @@ public class SalamanderCard extends ChitCard {
    */
   @Override
   public String saveState() {
-    return "Salamander_" + getNumMoves();
+    return getTypeName() + "_" + getNumMoves();
   }
 }
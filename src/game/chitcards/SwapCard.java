@@ -23,6 +23,16 @@ public class SwapCard extends ChitCard implements Savable {
     dragon.visit(this);
   }
 
+  /**
+   * Returns the name of this card's type as used in save files.
+   *
+   * @return the type name.
+   */
+  @Override
+  public String getTypeName() {
+    return "SwapCard";
+  }
+
   /**
    * Converts the state of the implementing object to a JSON string representation.
    *
@@ -30,6 +40,6 @@ public class SwapCard extends ChitCard implements Savable {
    */
   @Override
   public String saveState() {
-    return "SwapCard_" + getNumMoves();
+    return getTypeName() + "_" + getNumMoves();
   }
 }
@@ -0,0 +1,145 @@
+package game.corpus;
+
+import game.simulation.GameSetup;
+import game.simulation.HeadlessGame;
+
+/**
+ * One recorded game of a corpus: the setup and seed it started from, every action taken, and the
+ * state hash and dragon positions after every turn. Actions are chit card indices, or END_TURN
+ * when a turn ran out of time without a flip ending it.
+ */
+public class CorpusGame {
+
+  public static final byte GUI = 0;
+  public static final byte SIMULATOR = 1;
+  public static final int END_TURN = -1;
+
+  private final GameSetup setup;
+  private final long seed;
+  private final byte source;
+  private final int[] actions;
+  private final int[] hashes;
+  private final int[] positions;
+
+  /**
+   * Constructs a CorpusGame.
+   *
+   * @param setup     the setup the game started from
+   * @param seed      the seed of the chit card shuffle
+   * @param source    GUI or SIMULATOR
+   * @param actions   the chit card flipped by every action, or END_TURN
+   * @param hashes    the state hash after every turn, plus one after the winning flip
+   * @param positions the packed position of every dragon after every turn, turn by turn
+   */
+  public CorpusGame(GameSetup setup, long seed, byte source, int[] actions, int[] hashes,
+      int[] positions) {
+    this.setup = setup;
+    this.seed = seed;
+    this.source = source;
+    this.actions = actions;
+    this.hashes = hashes;
+    this.positions = positions;
+  }
+
+  /**
+   * Hashes the state compared after every turn with 32 bit FNV-1a.
+   *
+   * @param turns         the number of turns played
+   * @param currentDragon the dragon whose turn it is
+   * @param winner        the winner, or -1
+   * @param positions     the packed position of every dragon
+   * @param offset        the index of the first dragon's position
+   * @param numDragons    the number of dragons
+   * @return the hash
+   */
+  public static int stateHash(int turns, int currentDragon, int winner, int[] positions,
+      int offset, int numDragons) {
+    int hash = 0x811c9dc5;
+    hash = (hash ^ turns) * 0x01000193;
+    hash = (hash ^ currentDragon) * 0x01000193;
+    hash = (hash ^ winner) * 0x01000193;
+    for (int dragon = 0; dragon < numDragons; dragon++) {
+      hash = (hash ^ positions[offset + dragon]) * 0x01000193;
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the packed position of every dragon of a headless game.
+   *
+   * @param game the game
+   * @return the positions, card in the upper 16 bits and index in the lower 16 bits
+   */
+  public static int[] positionsOf(HeadlessGame game) {
+    int[] positions = new int[game.getNumDragons()];
+    for (int dragon = 0; dragon < positions.length; dragon++) {
+      positions[dragon] = pack(game.getDragonCard(dragon), game.getDragonIndex(dragon));
+    }
+    return positions;
+  }
+
+  /**
+   * Packs a position.
+   *
+   * @param card  the volcano card
+   * @param index the square index, -1 for a cave
+   * @return the packed position
+   */
+  public static int pack(int card, int index) {
+    return card << 16 | (index & 0xFFFF);
+  }
+
+  /**
+   * Returns the setup the game started from.
+   *
+   * @return the setup
+   */
+  public GameSetup getSetup() {
+    return setup;
+  }
+
+  /**
+   * Returns the seed of the chit card shuffle.
+   *
+   * @return the seed
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Returns where the game was recorded.
+   *
+   * @return GUI or SIMULATOR
+   */
+  public byte getSource() {
+    return source;
+  }
+
+  /**
+   * Returns the actions of the game.
+   *
+   * @return the chit card of every action, or END_TURN
+   */
+  public int[] getActions() {
+    return actions;
+  }
+
+  /**
+   * Returns the state hash after every turn.
+   *
+   * @return the hashes
+   */
+  public int[] getHashes() {
+    return hashes;
+  }
+
+  /**
+   * Returns the packed position of every dragon after every turn.
+   *
+   * @return the positions, numDragons per hash
+   */
+  public int[] getPositions() {
+    return positions;
+  }
+}
@@ -0,0 +1,190 @@
+package game.corpus;
+
+import game.simulation.GameSetup;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the games of a corpus file written by CorpusWriter, in the order they were written. A
+ * record cut short at the end of the file is treated as the end of the corpus. Corpora of version
+ * 1, which held setups and squares as single bytes, are read as well.
+ */
+public class CorpusReader implements AutoCloseable {
+
+  private final DataInputStream in;
+  private final Map<Long, GameSetup> setups = new HashMap<>();
+  private final byte version;
+  private long validLength;
+  private byte[] buffer = new byte[4096];
+
+  /**
+   * Opens a corpus for reading.
+   *
+   * @param path the corpus file
+   * @throws IOException if the file cannot be opened or is not a corpus
+   */
+  public CorpusReader(Path path) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+    if (in.readInt() != CorpusWriter.MAGIC) {
+      in.close();
+      throw new IOException("Not a game corpus: " + path);
+    }
+    this.version = in.readByte();
+    if (version != 1 && version != CorpusWriter.VERSION) {
+      in.close();
+      throw new IOException("Unsupported corpus version " + version + ": " + path);
+    }
+    this.validLength = Integer.BYTES + 1;
+  }
+
+  /**
+   * Reads the next game.
+   *
+   * @return the game, or null at the end of the corpus
+   * @throws IOException if reading fails or a record is corrupt
+   */
+  public CorpusGame next() throws IOException {
+    while (true) {
+      byte kind;
+      int length;
+      try {
+        kind = in.readByte();
+        length = in.readInt();
+        if (buffer.length < length) {
+          buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        in.readFully(buffer, 0, length);
+      } catch (EOFException e) {
+        return null;
+      }
+      validLength += 1 + Integer.BYTES + length;
+      DataInputStream payload = new DataInputStream(new ByteArrayInputStream(buffer, 0, length));
+      long key = payload.readLong();
+      if (kind == CorpusWriter.SETUP_RECORD) {
+        setups.put(key, version == 1 ? GameSetup.readVersion1(payload) : GameSetup.read(payload));
+      } else if (kind == CorpusWriter.GAME_RECORD) {
+        return readGame(setups.get(key), payload, version);
+      } else {
+        throw new IOException("Unknown corpus record kind " + kind);
+      }
+    }
+  }
+
+  /**
+   * Decodes the payload of a game record after its setup key.
+   *
+   * @param setup   the setup the game refers to
+   * @param payload the rest of the payload
+   * @param version the version of the corpus
+   * @return the game
+   * @throws IOException if the record is corrupt
+   */
+  private static CorpusGame readGame(GameSetup setup, DataInputStream payload, byte version)
+      throws IOException {
+    if (setup == null) {
+      throw new IOException("Game record before its setup record");
+    }
+    long seed = payload.readLong();
+    byte source = payload.readByte();
+    int[] actions = new int[readVarint(payload)];
+    for (int i = 0; i < actions.length; i++) {
+      actions[i] = readVarint(payload) - 1;
+    }
+    int numDragons = setup.getNumDragons();
+    int[] current = new int[numDragons];
+    for (int dragon = 0; dragon < numDragons; dragon++) {
+      current[dragon] = CorpusGame.pack(setup.getDragonCard(dragon), setup.getDragonIndex(dragon));
+    }
+    int[] hashes = new int[readVarint(payload)];
+    int[] positions = new int[hashes.length * numDragons];
+    for (int turn = 0; turn < hashes.length; turn++) {
+      hashes[turn] = payload.readInt();
+      int moved = readVarint(payload);
+      for (int dragon = 0; dragon < numDragons; dragon++) {
+        if ((moved & 1 << dragon) != 0) {
+          int card = readVarint(payload);
+          int index = version == 1 ? payload.readByte() : readSignedVarint(payload);
+          current[dragon] = CorpusGame.pack(card, index);
+        }
+      }
+      System.arraycopy(current, 0, positions, turn * numDragons, numDragons);
+    }
+    return new CorpusGame(setup, seed, source, actions, hashes, positions);
+  }
+
+  /**
+   * Reads an unsigned varint written by CorpusWriter.writeVarint.
+   *
+   * @param in the input
+   * @return the value
+   * @throws IOException if reading fails
+   */
+  static int readVarint(DataInputStream in) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  /**
+   * Reads a zigzag varint written by CorpusWriter.writeSignedVarint.
+   *
+   * @param in the input
+   * @return the value
+   * @throws IOException if reading fails
+   */
+  static int readSignedVarint(DataInputStream in) throws IOException {
+    int zigzag = readVarint(in);
+    return zigzag >>> 1 ^ -(zigzag & 1);
+  }
+
+  /**
+   * Returns the version of the corpus.
+   *
+   * @return the version byte
+   */
+  public byte getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns the keys of the setups read so far.
+   *
+   * @return the setup keys
+   */
+  public Set<Long> getSetupKeys() {
+    return setups.keySet();
+  }
+
+  /**
+   * Returns the length of the file up to the end of the last complete record read.
+   *
+   * @return the length in bytes
+   */
+  public long getValidLength() {
+    return validLength;
+  }
+
+  /**
+   * Closes the corpus.
+   *
+   * @throws IOException if closing fails
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
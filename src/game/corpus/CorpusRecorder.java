@@ -0,0 +1,89 @@
+package game.corpus;
+
+import game.simulation.GameSetup;
+import game.simulation.Policy;
+import game.simulation.Simulator;
+import game.utils.GameUtils;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records simulated games into a corpus. Games recorded in the GUI are appended to
+ * GameUtils.CORPUS_PATH by the GameEngine as they finish.
+ */
+public class CorpusRecorder {
+
+  /**
+   * Records a range of seeded games. Arguments are the corpus file, the number of games, and
+   * optionally a comma separated list of policies (one per dragon or one for all), the config
+   * path, the number of players, the first seed and the number of threads. The corpus is
+   * replaced.
+   *
+   * @param args command line arguments
+   * @throws Exception if the config cannot be read or the corpus cannot be written
+   */
+  public static void main(String[] args) throws Exception {
+    Path out = Paths.get(args[0]);
+    long games = Long.parseLong(args[1]);
+    String[] policyNames = (args.length > 2 ? args[2] : "random").split(",");
+    String configPath = args.length > 3 ? args[3] : GameUtils.CONFIG_PATH;
+    int numPlayers = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+    long firstSeed = args.length > 5 ? Long.parseLong(args[5]) : 0;
+    int threads = args.length > 6 ? Integer.parseInt(args[6])
+        : Runtime.getRuntime().availableProcessors();
+
+    GameSetup setup = GameSetup.load(configPath, numPlayers);
+    Policy[] policies = new Policy[setup.getNumDragons()];
+    for (int dragon = 0; dragon < policies.length; dragon++) {
+      policies[dragon] = Policy.forName(policyNames[policyNames.length == 1 ? 0 : dragon]);
+    }
+    Simulator simulator = new Simulator(setup, policies, Simulator.DEFAULT_MAX_TURNS);
+
+    long start = System.nanoTime();
+    AtomicLong nextSeed = new AtomicLong(firstSeed);
+    try (CorpusWriter writer = new CorpusWriter(out, false)) {
+      List<Thread> workers = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        Thread thread = new Thread(() -> {
+          long seed;
+          while ((seed = nextSeed.getAndIncrement()) < firstSeed + games) {
+            try {
+              writer.write(record(simulator, seed));
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+        }, "corpus-recorder-" + i);
+        thread.start();
+        workers.add(thread);
+      }
+      for (Thread thread : workers) {
+        thread.join();
+      }
+    }
+    System.out.printf("Recorded %d games in %.1f s%n", games, (System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * Plays and records one simulated game.
+   *
+   * @param simulator the simulator
+   * @param seed      the seed of the game
+   * @return the recorded game
+   */
+  public static CorpusGame record(Simulator simulator, long seed) {
+    GameRecording recording = new GameRecording(simulator.getSetup(), seed,
+        CorpusGame.SIMULATOR);
+    simulator.play(seed, (gameId, turn, dragon, chit, fromSquare, toSquare, outcome) -> {
+      recording.flipped(chit);
+      recording.followShadow();
+    });
+    return recording.finish(recording.getShadow().getWinner(),
+        CorpusGame.positionsOf(recording.getShadow()));
+  }
+}
@@ -0,0 +1,279 @@
+package game.corpus;
+
+import game.simulation.GameSetup;
+import game.simulation.HeadlessGame;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays every game of a corpus on the current HeadlessGame and checks that every turn ends in
+ * the recorded state. The corpus is read on the calling thread and handed to the replay threads
+ * in batches through a bounded queue. Each diverging game is reported at its first diverging turn
+ * with the recorded and replayed boards side by side.
+ */
+public class CorpusReplayer {
+
+  private static final int BATCH_SIZE = 256;
+  private static final int DEFAULT_REPORTS = 10;
+  private static final List<CorpusGame> END = new ArrayList<>();
+  private static final String ANIMAL_LETTERS = "SDBP";
+
+  /**
+   * Replays a corpus. Arguments are the corpus file, and optionally the number of threads and the
+   * number of diverging games to print. Exits with status 1 if any game diverges.
+   *
+   * @param args command line arguments
+   * @throws IOException          if the corpus cannot be read
+   * @throws InterruptedException if interrupted while waiting for the threads
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int threads = args.length > 1 ? Integer.parseInt(args[1])
+        : Runtime.getRuntime().availableProcessors();
+    int maxReports = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_REPORTS;
+
+    BlockingQueue<List<CorpusGame>> queue = new ArrayBlockingQueue<>(threads * 4);
+    LongAdder turns = new LongAdder();
+    LongAdder diverged = new LongAdder();
+    // the earliest diverging games in corpus order
+    ConcurrentSkipListMap<Long, String> reports = new ConcurrentSkipListMap<>();
+    List<Thread> workers = new ArrayList<>();
+    long start = System.nanoTime();
+    for (int i = 0; i < threads; i++) {
+      Thread thread = new Thread(() -> {
+        try {
+          List<CorpusGame> batch;
+          while ((batch = queue.take()) != END) {
+            long number = ((NumberedBatch) batch).first;
+            for (CorpusGame game : batch) {
+              String report = replay(game, number);
+              turns.add(game.getHashes().length);
+              if (report != null) {
+                diverged.increment();
+                synchronized (reports) {
+                  reports.put(number, report);
+                  if (reports.size() > maxReports) {
+                    reports.remove(reports.lastKey());
+                  }
+                }
+              }
+              number++;
+            }
+          }
+          queue.put(END);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }, "corpus-replayer-" + i);
+      thread.start();
+      workers.add(thread);
+    }
+
+    long games = 0;
+    try (CorpusReader reader = new CorpusReader(Paths.get(args[0]))) {
+      NumberedBatch batch = new NumberedBatch(games);
+      CorpusGame game;
+      while ((game = reader.next()) != null) {
+        batch.add(game);
+        games++;
+        if (batch.size() == BATCH_SIZE) {
+          queue.put(batch);
+          batch = new NumberedBatch(games);
+        }
+      }
+      if (!batch.isEmpty()) {
+        queue.put(batch);
+      }
+    }
+    queue.put(END);
+    for (Thread thread : workers) {
+      thread.join();
+    }
+
+    double elapsed = (System.nanoTime() - start) / 1e9;
+    System.out.printf("Replayed %d games, %d turns in %.1f s (%.0f games/s), %d diverged%n",
+        games, turns.sum(), elapsed, games / elapsed, diverged.sum());
+    for (String report : reports.values()) {
+      System.out.println();
+      System.out.print(report);
+    }
+    if (diverged.sum() > 0) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * A batch of games that knows the corpus number of its first game.
+   */
+  private static class NumberedBatch extends ArrayList<CorpusGame> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long first;
+
+    /**
+     * Constructs an empty batch.
+     *
+     * @param first the corpus number of the first game added
+     */
+    NumberedBatch(long first) {
+      super(BATCH_SIZE);
+      this.first = first;
+    }
+  }
+
+  /**
+   * Replays a game, comparing the state after every turn with the recording.
+   *
+   * @param game   the recorded game
+   * @param number the number of the game in the corpus
+   * @return a report of the first divergence, or null if the replay matches
+   */
+  public static String replay(CorpusGame game, long number) {
+    GameSetup setup = game.getSetup();
+    HeadlessGame replay = new HeadlessGame(setup, game.getSeed());
+    int[] actions = game.getActions();
+    int[] hashes = game.getHashes();
+    int turn = 0;
+    for (int action = 0; action < actions.length; action++) {
+      int turnsBefore = replay.getTurns();
+      try {
+        if (actions[action] == CorpusGame.END_TURN) {
+          replay.endTurn();
+        } else {
+          replay.flip(actions[action]);
+        }
+      } catch (IllegalStateException e) {
+        return report(game, number, action, turn, e.getMessage(), replay);
+      }
+      if (replay.getTurns() == turnsBefore && !replay.isOver()) {
+        continue;
+      }
+      if (turn == hashes.length) {
+        return report(game, number, action, turn, "the recording ends before this turn", replay);
+      }
+      int[] positions = CorpusGame.positionsOf(replay);
+      int hash = CorpusGame.stateHash(replay.getTurns(), replay.getCurrentDragon(),
+          replay.getWinner(), positions, 0, positions.length);
+      if (hash != hashes[turn]) {
+        return report(game, number, action, turn, String.format(
+            "recorded hash %08x but replayed %08x", hashes[turn], hash), replay);
+      }
+      turn++;
+    }
+    if (turn != hashes.length) {
+      return report(game, number, actions.length - 1, turn,
+          "the recording has " + hashes.length + " turns but the replay " + turn, replay);
+    }
+    return null;
+  }
+
+  /**
+   * Describes a divergence with the recorded and replayed boards side by side, one volcano card
+   * per line. Squares are shown by a letter for their animal (Salamander, baby Dragon, Bat,
+   * sPider) followed by the dragon on them, and the cave of a card is shown in brackets first.
+   *
+   * @param game   the recorded game
+   * @param number the number of the game in the corpus
+   * @param action the action after which the game diverged
+   * @param turn   the turn that diverged
+   * @param reason what differed
+   * @param replay the replayed game
+   * @return the report
+   */
+  private static String report(CorpusGame game, long number, int action, int turn,
+      String reason, HeadlessGame replay) {
+    GameSetup setup = game.getSetup();
+    int numDragons = setup.getNumDragons();
+    // the last recorded board when the recording ran out of turns, the start when it has none
+    int[] recorded = new int[numDragons];
+    int recordedTurn = Math.min(turn, game.getHashes().length - 1);
+    for (int dragon = 0; dragon < numDragons; dragon++) {
+      recorded[dragon] = recordedTurn >= 0 ? game.getPositions()[recordedTurn * numDragons + dragon]
+          : CorpusGame.pack(setup.getDragonCard(dragon), setup.getDragonIndex(dragon));
+    }
+    int[] replayed = CorpusGame.positionsOf(replay);
+    int chit = action < 0 ? CorpusGame.END_TURN : game.getActions()[action];
+    StringBuilder text = new StringBuilder();
+    text.append(String.format("Game %d (%s, seed %d) diverged at turn %d after action %d (%s)%n",
+        number, game.getSource() == CorpusGame.GUI ? "gui" : "simulator", game.getSeed(),
+        turn + 1, action, chit == CorpusGame.END_TURN ? "turn timed out" : "flip chit " + chit));
+    text.append("  ").append(reason).append('\n');
+    for (int dragon = 0; dragon < numDragons; dragon++) {
+      text.append(String.format("  dragon %d %-12s recorded %-6s replayed %-6s%s", dragon,
+          GameSetup.typeName(setup.getDragonAnimal(dragon)), format(recorded[dragon]),
+          format(replayed[dragon]), recorded[dragon] == replayed[dragon] ? "" : " <<")
+          .stripTrailing()).append('\n');
+    }
+    String[] recordedBoard = formatBoard(setup, recorded);
+    String[] replayedBoard = formatBoard(setup, replayed);
+    int width = 0;
+    for (String line : recordedBoard) {
+      width = Math.max(width, line.length());
+    }
+    text.append(String.format("  card %-" + width + "s   %s%n", "recorded", "replayed"));
+    for (int card = 0; card < setup.getNumCards(); card++) {
+      text.append(String.format("  %4d %-" + width + "s   %s%s%n", card, recordedBoard[card],
+          replayedBoard[card], recordedBoard[card].equals(replayedBoard[card]) ? "" : "  <<"));
+    }
+    return text.toString();
+  }
+
+  /**
+   * Draws every volcano card of a board as one line.
+   *
+   * @param setup     the board
+   * @param positions the packed position of every dragon
+   * @return one line per volcano card
+   */
+  private static String[] formatBoard(GameSetup setup, int[] positions) {
+    String[] lines = new String[setup.getNumCards()];
+    for (int card = 0; card < lines.length; card++) {
+      StringBuilder line = new StringBuilder();
+      if (setup.getCaveAnimal(card) != -1) {
+        line.append('[').append(ANIMAL_LETTERS.charAt(setup.getCaveAnimal(card)))
+            .append(occupant(positions, card, -1)).append("] ");
+      }
+      for (int index = 0; index < setup.getNumSquares(card); index++) {
+        byte animal = setup.getSquareAnimal(setup.getCardOffset(card) + index);
+        line.append(ANIMAL_LETTERS.charAt(animal)).append(occupant(positions, card, index))
+            .append(' ');
+      }
+      lines[card] = line.toString().trim();
+    }
+    return lines;
+  }
+
+  /**
+   * Returns the dragon standing on a position.
+   *
+   * @param positions the packed position of every dragon
+   * @param card      the volcano card
+   * @param index     the square index, -1 for the cave
+   * @return the dragon number, or a dot
+   */
+  private static String occupant(int[] positions, int card, int index) {
+    int packed = CorpusGame.pack(card, index);
+    for (int dragon = 0; dragon < positions.length; dragon++) {
+      if (positions[dragon] == packed) {
+        return String.valueOf(dragon);
+      }
+    }
+    return ".";
+  }
+
+  /**
+   * Formats a packed position as card/index.
+   *
+   * @param packed the packed position
+   * @return the position
+   */
+  private static String format(int packed) {
+    return (packed >>> 16) + "/" + (short) packed;
+  }
+}
@@ -0,0 +1,203 @@
+package game.corpus;
+
+import game.simulation.GameSetup;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Appends games to a corpus file. The file starts with MAGIC and VERSION, followed by records of
+ * a kind byte, a payload length and the payload. A setup record holds a setup and the key games
+ * refer to it by, and is written before the first game played on it. A game record holds the
+ * setup key, the seed, the source, the actions as varints and, for every turn, the state hash and
+ * the positions of the dragons that moved since the previous turn. A position is the card as a
+ * varint and the square as a zigzag varint, -1 being the cave.
+ */
+public class CorpusWriter implements AutoCloseable {
+
+  public static final int MAGIC = 0x46444347;
+  public static final byte VERSION = 2;
+  public static final byte SETUP_RECORD = 1;
+  public static final byte GAME_RECORD = 2;
+
+  private final DataOutputStream out;
+  private final Set<Long> writtenSetups = new HashSet<>();
+  private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+  private final DataOutputStream payloadOut = new DataOutputStream(payload);
+
+  /**
+   * Opens a corpus for writing. When appending to an existing corpus, a record cut short by a
+   * crash is cut off and the setups already in the file are not written again. A corpus of an
+   * older version is moved aside to the same name ending in its version, eg: .v1, and a new one
+   * started.
+   *
+   * @param path   the corpus file
+   * @param append whether to keep the games already in the file
+   * @throws IOException if the file cannot be opened or is not a corpus
+   */
+  public CorpusWriter(Path path, boolean append) throws IOException {
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    long validLength = 0;
+    if (append && Files.exists(path) && Files.size(path) > 0) {
+      int version;
+      try (CorpusReader reader = new CorpusReader(path)) {
+        version = reader.getVersion();
+        if (version == VERSION) {
+          while (reader.next() != null) {
+            // reading registers every setup
+          }
+          writtenSetups.addAll(reader.getSetupKeys());
+          validLength = reader.getValidLength();
+        }
+      }
+      if (validLength == 0) {
+        Path old = path.resolveSibling(path.getFileName() + ".v" + version);
+        Files.move(path, old, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+    channel.truncate(validLength);
+    channel.position(validLength);
+    this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+        1 << 16));
+    if (validLength == 0) {
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+    }
+  }
+
+  /**
+   * Returns the key games refer to a setup by. The config hash leaves out the first dragon, which
+   * matters to a replay, so it is mixed in.
+   *
+   * @param setup the setup
+   * @return the key
+   */
+  public static long keyOf(GameSetup setup) {
+    return setup.getConfigHash() ^ (setup.getFirstDragon() + 1) * 0x9E3779B97F4A7C15L;
+  }
+
+  /**
+   * Appends a game, and its setup if the corpus does not hold it yet. Safe to call from several
+   * threads.
+   *
+   * @param game the game
+   * @throws IOException if writing fails
+   */
+  public synchronized void write(CorpusGame game) throws IOException {
+    GameSetup setup = game.getSetup();
+    long key = keyOf(setup);
+    if (writtenSetups.add(key)) {
+      payload.reset();
+      payloadOut.writeLong(key);
+      setup.write(payloadOut);
+      writeRecord(SETUP_RECORD);
+    }
+    payload.reset();
+    payloadOut.writeLong(key);
+    payloadOut.writeLong(game.getSeed());
+    payloadOut.writeByte(game.getSource());
+    int[] actions = game.getActions();
+    writeVarint(payloadOut, actions.length);
+    for (int action : actions) {
+      writeVarint(payloadOut, action + 1);
+    }
+    int numDragons = setup.getNumDragons();
+    int[] previous = new int[numDragons];
+    for (int dragon = 0; dragon < numDragons; dragon++) {
+      previous[dragon] = CorpusGame.pack(setup.getDragonCard(dragon),
+          setup.getDragonIndex(dragon));
+    }
+    int[] hashes = game.getHashes();
+    int[] positions = game.getPositions();
+    writeVarint(payloadOut, hashes.length);
+    for (int turn = 0; turn < hashes.length; turn++) {
+      payloadOut.writeInt(hashes[turn]);
+      int moved = 0;
+      for (int dragon = 0; dragon < numDragons; dragon++) {
+        if (positions[turn * numDragons + dragon] != previous[dragon]) {
+          moved |= 1 << dragon;
+        }
+      }
+      writeVarint(payloadOut, moved);
+      for (int dragon = 0; dragon < numDragons; dragon++) {
+        if ((moved & 1 << dragon) != 0) {
+          int position = positions[turn * numDragons + dragon];
+          writeVarint(payloadOut, position >>> 16);
+          writeSignedVarint(payloadOut, (short) position);
+          previous[dragon] = position;
+        }
+      }
+    }
+    writeRecord(GAME_RECORD);
+  }
+
+  /**
+   * Writes the buffered payload as a record.
+   *
+   * @param kind SETUP_RECORD or GAME_RECORD
+   * @throws IOException if writing fails
+   */
+  private void writeRecord(byte kind) throws IOException {
+    out.writeByte(kind);
+    out.writeInt(payload.size());
+    payload.writeTo(out);
+  }
+
+  /**
+   * Writes an unsigned varint, seven bits per byte, low bits first.
+   *
+   * @param out   the output
+   * @param value the value, treated as unsigned
+   * @throws IOException if writing fails
+   */
+  static void writeVarint(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte(value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /**
+   * Writes a signed value as a zigzag varint, so small negative values take one byte.
+   *
+   * @param out   the output
+   * @param value the value
+   * @throws IOException if writing fails
+   */
+  static void writeSignedVarint(DataOutputStream out, int value) throws IOException {
+    writeVarint(out, value << 1 ^ value >> 31);
+  }
+
+  /**
+   * Flushes the buffered records.
+   *
+   * @throws IOException if writing fails
+   */
+  public synchronized void flush() throws IOException {
+    out.flush();
+  }
+
+  /**
+   * Flushes and closes the corpus.
+   *
+   * @throws IOException if writing fails
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+}
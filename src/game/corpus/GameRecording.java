@@ -0,0 +1,135 @@
+package game.corpus;
+
+import game.simulation.GameSetup;
+import game.simulation.HeadlessGame;
+import java.util.Arrays;
+
+/**
+ * Records a game being played, in the GUI or the simulator, into a CorpusGame. A shadow
+ * HeadlessGame follows the flips so the recording knows whether a turn was ended by a flip or ran
+ * out of time, which has to be recorded as an END_TURN action. The hashes and positions recorded
+ * are the ones reported by the caller, so a GUI recording captures what the GUI showed.
+ */
+public class GameRecording {
+
+  private final GameSetup setup;
+  private final long seed;
+  private final byte source;
+  private final HeadlessGame shadow;
+  private int[] actions = new int[64];
+  private int numActions;
+  private int[] hashes = new int[16];
+  private int[] positions;
+  private int numHashes;
+  private int turns;
+
+  /**
+   * Starts recording a game.
+   *
+   * @param setup  the setup the game starts from
+   * @param seed   the seed of the chit card shuffle
+   * @param source GUI or SIMULATOR
+   */
+  public GameRecording(GameSetup setup, long seed, byte source) {
+    this.setup = setup;
+    this.seed = seed;
+    this.source = source;
+    this.shadow = new HeadlessGame(setup, seed);
+    this.positions = new int[hashes.length * setup.getNumDragons()];
+  }
+
+  /**
+   * Records the flip of a chit card.
+   *
+   * @param chit the chit card index
+   */
+  public void flipped(int chit) {
+    addAction(chit);
+    // a GUI that disagrees with the rules is recorded as is and shows up when replayed
+    if (!shadow.isOver() && !shadow.isFlipped(chit)) {
+      shadow.flip(chit);
+    }
+  }
+
+  /**
+   * Records the end of a turn.
+   *
+   * @param dragonPositions the packed position of every dragon
+   * @param nextDragon      the dragon whose turn is next
+   */
+  public void turnEnded(int[] dragonPositions, int nextDragon) {
+    if (shadow.getTurns() == turns) {
+      // no flip ended the turn, so the timer did
+      addAction(CorpusGame.END_TURN);
+      shadow.endTurn();
+    }
+    turns++;
+    addHash(CorpusGame.stateHash(turns, nextDragon, -1, dragonPositions, 0,
+        dragonPositions.length), dragonPositions);
+  }
+
+  /**
+   * Records a turn end if the shadow game has ended one since the last recorded turn. The
+   * simulator calls this after every flip, as its games follow the shadow exactly.
+   */
+  public void followShadow() {
+    if (shadow.getTurns() > turns) {
+      turnEnded(CorpusGame.positionsOf(shadow), shadow.getCurrentDragon());
+    }
+  }
+
+  /**
+   * Finishes the recording.
+   *
+   * @param winner          the dragon that won, or -1 if the game was abandoned
+   * @param dragonPositions the packed position of every dragon after the winning move
+   * @return the recorded game
+   */
+  public CorpusGame finish(int winner, int[] dragonPositions) {
+    if (winner != -1) {
+      addHash(CorpusGame.stateHash(turns, winner, winner, dragonPositions, 0,
+          dragonPositions.length), dragonPositions);
+    }
+    int numDragons = setup.getNumDragons();
+    return new CorpusGame(setup, seed, source, Arrays.copyOf(actions, numActions),
+        Arrays.copyOf(hashes, numHashes), Arrays.copyOf(positions, numHashes * numDragons));
+  }
+
+  /**
+   * Returns the shadow game following the recorded flips.
+   *
+   * @return the shadow game
+   */
+  public HeadlessGame getShadow() {
+    return shadow;
+  }
+
+  /**
+   * Appends an action.
+   *
+   * @param action the chit card index or END_TURN
+   */
+  private void addAction(int action) {
+    if (numActions == actions.length) {
+      actions = Arrays.copyOf(actions, numActions * 2);
+    }
+    actions[numActions++] = action;
+  }
+
+  /**
+   * Appends a state hash and the positions it was computed from.
+   *
+   * @param hash            the hash
+   * @param dragonPositions the packed position of every dragon
+   */
+  private void addHash(int hash, int[] dragonPositions) {
+    int numDragons = dragonPositions.length;
+    if (numHashes == hashes.length) {
+      hashes = Arrays.copyOf(hashes, numHashes * 2);
+      positions = Arrays.copyOf(positions, hashes.length * numDragons);
+    }
+    hashes[numHashes] = hash;
+    System.arraycopy(dragonPositions, 0, positions, numHashes * numDragons, numDragons);
+    numHashes++;
+  }
+}
@@ -0,0 +1,293 @@
+package game.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes snapshots of a game to its save file on a background thread. The caller only captures an
+ * immutable SavedState; encoding and writing happen on the writer. Snapshots handed over while an
+ * earlier one waits to be written replace it, so a burst of saves costs one write.
+ *
+ * <p>Every write goes to a temporary file beside the save, is forced to disk and then renamed over
+ * the save, so the save file always holds a complete snapshot. A failed write leaves the previous
+ * save as it was.
+ *
+ * <p>Between snapshots every action of the game is appended to a MoveLog beside the save. Appends
+ * are forced to disk together at most fsyncMillis after the first of them (group commit), so a
+ * crash loses at most that much play; each snapshot written empties the log. Snapshots and actions
+ * carry the sequence number of the last action they include, which keeps the log consistent when
+ * snapshots are coalesced.
+ *
+ * <p>Closing the game window goes through close, which writes a last snapshot and only then exits,
+ * so nothing handed over before the window closes is lost.
+ */
+public class Autosaver {
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final Path file;
+  private final long fsyncMillis;
+  private final byte codec;
+  private final AtomicReference<Snapshot> pending = new AtomicReference<>();
+  private final ScheduledExecutorService executor;
+  // only touched on the writer thread
+  private MoveLog log;
+  private boolean forceScheduled;
+  private boolean lastWriteFailed;
+
+  /**
+   * A snapshot waiting to be written.
+   *
+   * @param savedState the game
+   * @param sequence   the sequence number of the last action it includes
+   */
+  private record Snapshot(SavedState savedState, int sequence) {
+
+  }
+
+  /**
+   * Constructs an autosaver for a save file.
+   *
+   * @param file        the save file, which is created with its directories on the first write
+   * @param fsyncMillis how long appended actions may wait to be forced to disk, 0 to force each
+   * @param codec       the BlockCodec the save and its log are compressed with
+   */
+  public Autosaver(Path file, long fsyncMillis, byte codec) {
+    this.file = file;
+    this.fsyncMillis = fsyncMillis;
+    this.codec = codec;
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable,
+        "autosaver"));
+  }
+
+  /**
+   * Returns the save file written to.
+   *
+   * @return the save file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Hands a snapshot to the writer. Returns at once; if a snapshot is already waiting, it is
+   * replaced and no further write is queued.
+   *
+   * @param savedState the snapshot, which must not be changed afterwards
+   * @param sequence   the sequence number of the last action it includes
+   */
+  public void save(SavedState savedState, int sequence) {
+    if (pending.getAndSet(new Snapshot(savedState, sequence)) == null
+        && !executor.isShutdown()) {
+      executor.execute(this::writePending);
+    }
+  }
+
+  /**
+   * Hands an action to the writer to append to the log. Returns at once.
+   *
+   * @param kind     MoveLog.FLIP or MoveLog.TURN
+   * @param sequence the sequence number of the action
+   * @param value    the chit card or dragon index
+   */
+  public void log(byte kind, int sequence, int value) {
+    if (!executor.isShutdown()) {
+      executor.execute(() -> append(kind, sequence, value));
+    }
+  }
+
+  /**
+   * Writes the last snapshot handed over and removes the log, then runs an action on the writer
+   * thread and stops the writer. Returns at once.
+   *
+   * @param savedState the last snapshot
+   * @param sequence   the sequence number of the last action it includes
+   * @param then       run once the snapshot has been written or has failed to write
+   */
+  public void close(SavedState savedState, int sequence, Runnable then) {
+    save(savedState, sequence);
+    executor.execute(() -> {
+      // a failed last write keeps the log, so the game can still be recovered
+      closeLog(!lastWriteFailed);
+      then.run();
+    });
+    executor.shutdown();
+  }
+
+  /**
+   * Stops the writer and deletes the save file and its log, once a write in progress has
+   * finished. Used when the game it saves is over. Returns at once.
+   */
+  public void discard() {
+    pending.set(null);
+    executor.execute(() -> {
+      closeLog(true);
+      try {
+        Files.deleteIfExists(file);
+        SaveCatalog.remove(file);
+      } catch (IOException e) {
+        System.out.println("Error deleting autosave: " + e.getMessage());
+      }
+    });
+    executor.shutdown();
+  }
+
+  /**
+   * Writes the snapshot waiting, if any, and empties the log. Runs on the writer thread.
+   */
+  private void writePending() {
+    Snapshot snapshot = pending.getAndSet(null);
+    if (snapshot == null) {
+      return;
+    }
+    try {
+      write(snapshot.savedState(), file, codec);
+      lastWriteFailed = false;
+    } catch (IOException | RuntimeException e) {
+      // the log still holds every action since the previous save
+      System.out.println("Error autosaving game: " + e.getMessage());
+      lastWriteFailed = true;
+      return;
+    }
+    try {
+      if (log == null) {
+        log = new MoveLog(file, snapshot.sequence(), codec);
+      } else {
+        log.reset(snapshot.sequence());
+      }
+    } catch (IOException e) {
+      System.out.println("Error resetting move log: " + e.getMessage());
+      // a log that could not be opened may be held by another game, so it is left alone
+      closeLog(log != null);
+    }
+  }
+
+  /**
+   * Appends an action to the log and makes sure it is forced to disk within fsyncMillis. Actions
+   * before the first snapshot, or after the log failed, have nothing to be replayed on and are
+   * dropped until the next snapshot. Runs on the writer thread.
+   *
+   * @param kind     MoveLog.FLIP or MoveLog.TURN
+   * @param sequence the sequence number of the action
+   * @param value    the chit card or dragon index
+   */
+  private void append(byte kind, int sequence, int value) {
+    if (log == null) {
+      return;
+    }
+    try {
+      log.append(kind, sequence, value);
+      if (fsyncMillis <= 0) {
+        log.force();
+      } else if (!forceScheduled) {
+        forceScheduled = true;
+        executor.schedule(this::forceLog, fsyncMillis, TimeUnit.MILLISECONDS);
+      }
+    } catch (IOException e) {
+      // a log with a gap would replay the wrong game, so drop it until the next snapshot
+      System.out.println("Error appending to move log: " + e.getMessage());
+      closeLog(true);
+    }
+  }
+
+  /**
+   * Forces the actions appended since the last force to disk. Runs on the writer thread.
+   */
+  private void forceLog() {
+    forceScheduled = false;
+    if (log == null) {
+      return;
+    }
+    try {
+      log.force();
+    } catch (IOException e) {
+      System.out.println("Error forcing move log: " + e.getMessage());
+      closeLog(true);
+    }
+  }
+
+  /**
+   * Closes the log, if it is open. Runs on the writer thread.
+   *
+   * @param delete whether to remove the log file as well
+   */
+  private void closeLog(boolean delete) {
+    try {
+      if (log != null) {
+        log.close();
+        log = null;
+      }
+      if (delete) {
+        MoveLog.delete(file);
+      }
+    } catch (IOException e) {
+      System.out.println("Error closing move log: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Writes a save in the binary format so that a crash at any point leaves either the old or the
+   * new save complete: the save is written to a temporary file, forced to disk, and renamed over
+   * the old one. The temporary file is removed if the write fails. A written save is then entered
+   * in the SaveCatalog of its directory.
+   *
+   * @param savedState the save
+   * @param file       the save file
+   * @param codec      the BlockCodec the save is compressed with
+   * @throws IOException if the save could not be written, in which case the old file is intact
+   */
+  public static void write(SavedState savedState, Path file, byte codec) throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path temp = dir.resolve(file.getFileName() + TEMP_SUFFIX);
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+        BinarySaveFormat.write(savedState, out, codec);
+        channel.force(true);
+      }
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    forceDirectory(dir);
+    try {
+      SaveCatalog.put(file, savedState);
+    } catch (IOException | RuntimeException e) {
+      // the save itself is written, it is only missing from the list of saves
+      System.out.println("Error updating save catalog: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Forces the directory entry of a rename to disk where the platform allows it.
+   *
+   * @param dir the directory
+   */
+  private static void forceDirectory(Path dir) {
+    try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // directories cannot be opened on every platform, the rename is still atomic there
+    }
+  }
+}
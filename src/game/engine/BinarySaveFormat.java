@@ -0,0 +1,319 @@
+package game.engine;
+
+import game.engine.SavedState.CardRecord;
+import game.engine.SavedState.CaveRecord;
+import game.engine.SavedState.ChitRecord;
+import game.engine.SavedState.DragonRecord;
+import game.engine.SavedState.TurnRecord;
+import game.simulation.GameSetup;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes saved states in a compact binary form, as an alternative to the JSON files
+ * written by Gson. A file is laid out as
+ *
+ * <pre>
+ *   int     MAGIC
+ *   byte    VERSION
+ *   byte    flags, the BlockCodec of the body in the lowest two bits
+ *   body, in BlockCodec blocks unless the codec is NONE:
+ *   varint  number of volcano cards, then for every card
+ *             varint number of squares, a type byte per square,
+ *             varint cave index + 1 (0 for no cave) and the cave's type byte if it has one
+ *   varint  number of chit cards, then a type byte and a zigzag varint of moves per chit card
+ *   varint  number of dragons, then for every dragon
+ *             a colour byte, varint volcano card, varint square index + 1, varint cave card
+ *   varint  number of flipped chit cards, then a varint index per flipped chit card
+ *   varint  current dragon + 1
+ *   int     CRC32C of everything before it, as stored
+ * </pre>
+ *
+ * <p>Type bytes are GameSetup type codes, a cave's being the code of its animal, and colour bytes
+ * index COLOUR_NAMES. The layout maps one to one onto the records of SavedState.
+ */
+public final class BinarySaveFormat {
+
+  public static final int MAGIC = 0x46445356;
+  public static final byte VERSION = 1;
+
+  private static final int CODEC_MASK = 0x03;
+
+  private static final String[] COLOUR_NAMES = {"White", "Orange", "Blue", "Green"};
+  // cave type names indexed by the GameSetup code of their animal
+  private static final String[] CAVE_NAMES = {"SalamanderCave", "BabyDragonCave", "BatCave",
+      "SpiderCave"};
+
+  /**
+   * Private constructor to prevent instantiation of the BinarySaveFormat class.
+   */
+  private BinarySaveFormat() {
+    throw new UnsupportedOperationException("Utility class should not be instantiated");
+  }
+
+  /**
+   * Returns whether the contents of a file are in the binary format, judging by its magic.
+   *
+   * @param bytes the contents of the file
+   * @return true for a binary save, false for anything else such as JSON
+   */
+  public static boolean isBinary(byte[] bytes) {
+    return bytes.length >= Integer.BYTES && ByteBuffer.wrap(bytes).getInt() == MAGIC;
+  }
+
+  /**
+   * Encodes a saved state without compression.
+   *
+   * @param savedState the saved state
+   * @return the encoded bytes
+   * @throws IllegalArgumentException if the state names an unknown card type or colour
+   */
+  public static byte[] write(SavedState savedState) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      write(savedState, bytes, BlockCodec.NONE);
+    } catch (IOException e) {
+      // a ByteArrayOutputStream does not throw
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Encodes a saved state onto a stream as it goes, so that no copy of the whole encoding is held
+   * in memory. The checksum is computed over the bytes as they pass.
+   *
+   * @param savedState the saved state
+   * @param stream     the output, which is flushed but not closed
+   * @param codec      the BlockCodec the body is compressed with
+   * @throws IOException              if writing to the stream fails
+   * @throws IllegalArgumentException if the state names an unknown card type or colour
+   */
+  public static void write(SavedState savedState, OutputStream stream, byte codec)
+      throws IOException {
+    CheckedOutputStream checked = new CheckedOutputStream(stream, new CRC32C());
+    DataOutputStream header = new DataOutputStream(checked);
+    header.writeInt(MAGIC);
+    header.writeByte(VERSION);
+    header.writeByte(codec & CODEC_MASK);
+    OutputStream body = BlockCodec.compress(checked, codec);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(body));
+
+    writeVarint(out, savedState.getVolcanoCards().size());
+    for (CardRecord card : savedState.getVolcanoCards()) {
+      writeVarint(out, card.squares().size());
+      for (String square : card.squares()) {
+        out.writeByte(GameSetup.typeOf(square));
+      }
+      CaveRecord cave = card.cave();
+      writeVarint(out, cave == null ? 0 : cave.index() + 1);
+      if (cave != null) {
+        out.writeByte(caveTypeOf(cave.type()));
+      }
+    }
+
+    writeVarint(out, savedState.getChitCards().size());
+    for (ChitRecord chit : savedState.getChitCards()) {
+      out.writeByte(GameSetup.typeOf(chit.type()));
+      writeVarint(out, chit.moves() << 1 ^ chit.moves() >> 31);
+    }
+
+    writeVarint(out, savedState.getDragons().size());
+    for (DragonRecord dragon : savedState.getDragons()) {
+      out.writeByte(colourOf(dragon.colour()));
+      writeVarint(out, dragon.card());
+      writeVarint(out, dragon.square() + 1);
+      writeVarint(out, dragon.caveCard());
+    }
+
+    writeVarint(out, savedState.getFlippedChitCards().size());
+    for (int chit : savedState.getFlippedChitCards()) {
+      writeVarint(out, chit);
+    }
+    writeVarint(out, savedState.getCurrentDragon() + 1);
+
+    out.flush();
+    if (body != checked) {
+      body.close();
+    }
+    new DataOutputStream(stream).writeInt((int) checked.getChecksum().getValue());
+    stream.flush();
+  }
+
+  /**
+   * Decodes a saved state.
+   *
+   * @param bytes the contents of a binary save
+   * @return the saved state
+   * @throws IOException if the bytes are not a binary save, are of an unknown version, fail the
+   *                     checksum or hold values no save can have
+   */
+  public static SavedState read(byte[] bytes) throws IOException {
+    if (!isBinary(bytes) || bytes.length < Integer.BYTES * 2 + 2) {
+      throw new IOException("Not a binary save");
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(bytes, 0, bytes.length - Integer.BYTES);
+    if ((int) crc.getValue() != ByteBuffer.wrap(bytes).getInt(bytes.length - Integer.BYTES)) {
+      throw new IOException("Corrupt binary save, checksum mismatch");
+    }
+    ByteBuffer in = ByteBuffer.wrap(bytes, 0, bytes.length - Integer.BYTES);
+    in.getInt();
+    byte version = in.get();
+    if (version != VERSION) {
+      throw new IOException("Unsupported binary save version " + version);
+    }
+    int flags = in.get();
+    if ((flags & ~CODEC_MASK) != 0 || !BlockCodec.isKnown(flags & CODEC_MASK)) {
+      throw new IOException("Unsupported binary save flags " + flags);
+    }
+    if ((flags & CODEC_MASK) != BlockCodec.NONE) {
+      in = ByteBuffer.wrap(BlockCodec.decompress(in));
+    }
+    try {
+      SavedState savedState = readBody(in);
+      if (in.hasRemaining()) {
+        throw new IOException("Corrupt binary save, " + in.remaining() + " bytes left over");
+      }
+      return savedState;
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+        | NegativeArraySizeException e) {
+      // cut short, or an unknown type or colour or a negative count that passed the checksum
+      throw new IOException("Corrupt binary save", e);
+    }
+  }
+
+  /**
+   * Decodes the part of a binary save between the header and the checksum.
+   *
+   * @param in the input, positioned after the header
+   * @return the saved state
+   */
+  private static SavedState readBody(ByteBuffer in) {
+    int numCards = readVarint(in);
+    List<CardRecord> volcanoCards = new ArrayList<>(numCards);
+    for (int i = 0; i < numCards; i++) {
+      String[] squares = new String[readVarint(in)];
+      for (int square = 0; square < squares.length; square++) {
+        squares[square] = GameSetup.typeName(in.get());
+      }
+      int caveIndex = readVarint(in) - 1;
+      CaveRecord cave = caveIndex == -1 ? null : new CaveRecord(CAVE_NAMES[in.get()], caveIndex);
+      volcanoCards.add(new CardRecord(Arrays.asList(squares), cave));
+    }
+
+    int numChits = readVarint(in);
+    List<ChitRecord> chitCards = new ArrayList<>(numChits);
+    for (int i = 0; i < numChits; i++) {
+      String type = GameSetup.typeName(in.get());
+      int zigzag = readVarint(in);
+      chitCards.add(new ChitRecord(type, zigzag >>> 1 ^ -(zigzag & 1)));
+    }
+
+    int numDragons = readVarint(in);
+    List<DragonRecord> dragons = new ArrayList<>(numDragons);
+    for (int i = 0; i < numDragons; i++) {
+      String colour = COLOUR_NAMES[in.get()];
+      int card = readVarint(in);
+      int square = readVarint(in) - 1;
+      dragons.add(new DragonRecord(colour, card, square, readVarint(in)));
+    }
+
+    int numFlipped = readVarint(in);
+    List<Integer> flipped = new ArrayList<>(numFlipped);
+    for (int i = 0; i < numFlipped; i++) {
+      flipped.add(readVarint(in));
+    }
+    return new SavedState(volcanoCards, chitCards, dragons,
+        new TurnRecord(readVarint(in) - 1, flipped));
+  }
+
+  /**
+   * Returns the type byte of a cave type name.
+   *
+   * @param type the cave type name, eg: SpiderCave
+   * @return the GameSetup type code of its animal
+   * @throws IllegalArgumentException if the type is unknown
+   */
+  private static byte caveTypeOf(String type) {
+    for (byte i = 0; i < CAVE_NAMES.length; i++) {
+      if (CAVE_NAMES[i].equals(type)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Unknown cave type: " + type);
+  }
+
+  /**
+   * Returns the colour byte of a dragon colour name.
+   *
+   * @param name the colour name, eg: White
+   * @return the index of the name in COLOUR_NAMES
+   * @throws IllegalArgumentException if the colour is unknown
+   */
+  static byte colourOf(String name) {
+    for (byte i = 0; i < COLOUR_NAMES.length; i++) {
+      if (COLOUR_NAMES[i].equals(name)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Unknown dragon colour: " + name);
+  }
+
+  /**
+   * Returns the dragon colour name of a colour byte.
+   *
+   * @param colour the colour byte
+   * @return the colour name, eg: White
+   * @throws IllegalArgumentException if the colour byte is unknown
+   */
+  static String colourName(int colour) {
+    if (colour < 0 || colour >= COLOUR_NAMES.length) {
+      throw new IllegalArgumentException("Unknown dragon colour byte: " + colour);
+    }
+    return COLOUR_NAMES[colour];
+  }
+
+  /**
+   * Writes an unsigned varint, seven bits per byte, low bits first.
+   *
+   * @param out   the output
+   * @param value the value, treated as unsigned
+   * @throws IOException if writing fails
+   */
+  private static void writeVarint(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte(value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /**
+   * Reads an unsigned varint written by writeVarint.
+   *
+   * @param in the input
+   * @return the value
+   */
+  private static int readVarint(ByteBuffer in) {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.get() & 0xFF;
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
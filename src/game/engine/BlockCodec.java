@@ -0,0 +1,380 @@
+package game.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses files in independent blocks with the JDK's Deflater, so that a file can be appended
+ * to by adding blocks and read from any block start without inflating what comes before it. Each
+ * block is laid out as
+ *
+ * <pre>
+ *   varint  raw length, at most BLOCK_SIZE
+ *   varint  stored length
+ *   bytes   the raw deflate stream of the block, or the raw bytes themselves when deflating did
+ *           not make them smaller, which is when the stored length equals the raw length
+ * </pre>
+ *
+ * <p>Files say which codec their blocks use in their header: NONE writes no blocks at all, FAST
+ * deflates for speed and is the default for saves and move logs, and HIGH deflates for size, for
+ * saves that are kept but rarely opened.
+ */
+public final class BlockCodec {
+
+  public static final byte NONE = 0;
+  public static final byte FAST = 1;
+  public static final byte HIGH = 2;
+  public static final int BLOCK_SIZE = 64 * 1024;
+
+  private static final String[] NAMES = {"none", "fast", "high"};
+
+  /**
+   * Private constructor to prevent instantiation of the BlockCodec class.
+   */
+  private BlockCodec() {
+    throw new UnsupportedOperationException("Utility class should not be instantiated");
+  }
+
+  /**
+   * Returns the codec of a name.
+   *
+   * @param name none, fast or high
+   * @return the codec
+   * @throws IllegalArgumentException if the name is unknown
+   */
+  public static byte parse(String name) {
+    for (byte codec = 0; codec < NAMES.length; codec++) {
+      if (NAMES[codec].equalsIgnoreCase(name)) {
+        return codec;
+      }
+    }
+    throw new IllegalArgumentException("Unknown codec: " + name);
+  }
+
+  /**
+   * Returns the name of a codec.
+   *
+   * @param codec the codec
+   * @return none, fast or high
+   */
+  public static String name(byte codec) {
+    return NAMES[codec];
+  }
+
+  /**
+   * Returns whether a codec is known.
+   *
+   * @param codec the codec, as read from a file header
+   * @return true for NONE, FAST and HIGH
+   */
+  public static boolean isKnown(int codec) {
+    return codec >= 0 && codec < NAMES.length;
+  }
+
+  /**
+   * Wraps a stream so that what is written to it is compressed in blocks. Flushing the returned
+   * stream ends the current block early, so a file flushed often holds many small blocks.
+   *
+   * @param out   the stream the blocks are written to
+   * @param codec the codec
+   * @return the compressing stream, or out itself for NONE
+   */
+  public static OutputStream compress(OutputStream out, byte codec) {
+    return codec == NONE ? out : new BlockOutputStream(out, codec);
+  }
+
+  /**
+   * Compresses bytes as one block.
+   *
+   * @param raw    the bytes, at most BLOCK_SIZE of them
+   * @param length how many of the bytes to compress
+   * @param codec  FAST or HIGH
+   * @return the framed block
+   */
+  public static byte[] block(byte[] raw, int length, byte codec) {
+    Deflater deflater = new Deflater(level(codec), true);
+    try {
+      return block(deflater, raw, length);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Inflates every block from the position of a buffer to its limit.
+   *
+   * @param in the blocks
+   * @return the bytes they hold, in order
+   * @throws IOException if a block is cut short or corrupt
+   */
+  public static byte[] decompress(ByteBuffer in) throws IOException {
+    Inflater inflater = new Inflater(true);
+    try {
+      byte[] out = new byte[Math.max(16, in.remaining() * 4)];
+      int length = 0;
+      while (in.hasRemaining()) {
+        byte[] raw = readBlock(in, inflater);
+        if (length + raw.length > out.length) {
+          out = Arrays.copyOf(out, Math.max(out.length * 2, length + raw.length));
+        }
+        System.arraycopy(raw, 0, out, length, raw.length);
+        length += raw.length;
+      }
+      return Arrays.copyOf(out, length);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Inflates the block at the position of a buffer and moves past it.
+   *
+   * @param in the buffer, positioned at the start of a block
+   * @return the bytes the block holds
+   * @throws IOException if the block is cut short or corrupt
+   */
+  public static byte[] readBlock(ByteBuffer in) throws IOException {
+    Inflater inflater = new Inflater(true);
+    try {
+      return readBlock(in, inflater);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Moves past the block at the position of a buffer without inflating it.
+   *
+   * @param in the buffer, positioned at the start of a block
+   * @throws IOException if the block is cut short
+   */
+  public static void skipBlock(ByteBuffer in) throws IOException {
+    try {
+      readVarint(in);
+      int stored = readVarint(in);
+      if (stored < 0 || stored > in.remaining()) {
+        throw new IOException("Block cut short");
+      }
+      in.position(in.position() + stored);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Block cut short", e);
+    }
+  }
+
+  /**
+   * Returns the Deflater level of a codec.
+   *
+   * @param codec FAST or HIGH
+   * @return the level
+   */
+  private static int level(byte codec) {
+    return codec == HIGH ? Deflater.BEST_COMPRESSION : Deflater.BEST_SPEED;
+  }
+
+  /**
+   * Compresses bytes as one framed block with a deflater that is reset first.
+   *
+   * @param deflater the deflater, in nowrap mode
+   * @param raw      the bytes
+   * @param length   how many of the bytes to compress
+   * @return the framed block
+   */
+  private static byte[] block(Deflater deflater, byte[] raw, int length) {
+    deflater.reset();
+    deflater.setInput(raw, 0, length);
+    deflater.finish();
+    // anything not smaller than the raw bytes is stored raw, so the output never needs more room
+    byte[] stored = new byte[Math.max(0, length - 1)];
+    int storedLength = 0;
+    while (!deflater.finished() && storedLength < stored.length) {
+      storedLength += deflater.deflate(stored, storedLength, stored.length - storedLength);
+    }
+    boolean deflated = deflater.finished();
+    byte[] body = deflated ? stored : raw;
+    int bodyLength = deflated ? storedLength : length;
+
+    byte[] block = new byte[10 + bodyLength];
+    int position = writeVarint(block, 0, length);
+    position = writeVarint(block, position, bodyLength);
+    System.arraycopy(body, 0, block, position, bodyLength);
+    return Arrays.copyOf(block, position + bodyLength);
+  }
+
+  /**
+   * Inflates the block at the position of a buffer and moves past it.
+   *
+   * @param in       the buffer, positioned at the start of a block
+   * @param inflater the inflater, in nowrap mode
+   * @return the bytes the block holds
+   * @throws IOException if the block is cut short or corrupt
+   */
+  private static byte[] readBlock(ByteBuffer in, Inflater inflater) throws IOException {
+    try {
+      int rawLength = readVarint(in);
+      int stored = readVarint(in);
+      if (rawLength < 0 || rawLength > BLOCK_SIZE || stored < 0 || stored > rawLength
+          || stored > in.remaining()) {
+        throw new IOException("Corrupt or cut short block");
+      }
+      byte[] raw = new byte[rawLength];
+      if (stored == rawLength) {
+        in.get(raw);
+        return raw;
+      }
+      byte[] body = new byte[stored];
+      in.get(body);
+      inflater.reset();
+      inflater.setInput(body);
+      int length = 0;
+      while (length < rawLength && !inflater.finished()) {
+        int inflated = inflater.inflate(raw, length, rawLength - length);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+      if (length != rawLength) {
+        throw new IOException("Corrupt block, " + length + " of " + rawLength + " bytes");
+      }
+      return raw;
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt block", e);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Block cut short", e);
+    }
+  }
+
+  /**
+   * Writes an unsigned LEB128 varint into an array.
+   *
+   * @param out      the array
+   * @param position where to write
+   * @param value    the value, not negative
+   * @return the position after the varint
+   */
+  private static int writeVarint(byte[] out, int position, int value) {
+    while ((value & ~0x7F) != 0) {
+      out[position++] = (byte) (value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    out[position++] = (byte) value;
+    return position;
+  }
+
+  /**
+   * Reads an unsigned LEB128 varint.
+   *
+   * @param in the input
+   * @return the value
+   * @throws IOException if the varint is longer than an int
+   */
+  private static int readVarint(ByteBuffer in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte b = in.get();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IOException("Varint too long");
+  }
+
+  /**
+   * A stream that compresses what is written to it in blocks of up to BLOCK_SIZE bytes.
+   */
+  private static class BlockOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final Deflater deflater;
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+    private int length;
+
+    /**
+     * Constructs a stream writing blocks to another.
+     *
+     * @param out   the stream the blocks are written to
+     * @param codec FAST or HIGH
+     */
+    BlockOutputStream(OutputStream out, byte codec) {
+      this.out = out;
+      this.deflater = new Deflater(level(codec), true);
+    }
+
+    /**
+     * Buffers a byte, writing a block when the buffer is full.
+     *
+     * @param b the byte
+     * @throws IOException if writing a block fails
+     */
+    @Override
+    public void write(int b) throws IOException {
+      if (length == buffer.length) {
+        writeBlock();
+      }
+      buffer[length++] = (byte) b;
+    }
+
+    /**
+     * Buffers bytes, writing blocks as the buffer fills.
+     *
+     * @param b   the bytes
+     * @param off the offset of the first byte
+     * @param len the number of bytes
+     * @throws IOException if writing a block fails
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (length == buffer.length) {
+          writeBlock();
+        }
+        int n = Math.min(len, buffer.length - length);
+        System.arraycopy(b, off, buffer, length, n);
+        length += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+    /**
+     * Writes what is buffered as a block and flushes the stream underneath.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+      writeBlock();
+      out.flush();
+    }
+
+    /**
+     * Writes what is buffered and releases the deflater, leaving the stream underneath open.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+      flush();
+      deflater.end();
+    }
+
+    /**
+     * Writes what is buffered as a block, if anything is.
+     *
+     * @throws IOException if writing fails
+     */
+    private void writeBlock() throws IOException {
+      if (length > 0) {
+        out.write(block(deflater, buffer, length));
+        length = 0;
+      }
+    }
+  }
+}
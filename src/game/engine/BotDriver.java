@@ -0,0 +1,320 @@
+package game.engine;
+
+import game.chitcards.ChitCard;
+import game.simulation.GameSetup;
+import game.simulation.HeadlessGame;
+import game.simulation.MctsPolicy;
+import game.simulation.Policy;
+import game.view.GameBoard;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Plays the computer controlled dragons of a game on the board. A headless copy of the game
+ * follows every flip made on the board, and when a computer's turn starts its policy decides on a
+ * dedicated thread from a snapshot of that copy, so the event dispatch thread only takes
+ * snapshots and flips chit cards and the turn timer keeps ticking.
+ *
+ * <p>Every decision has a budget: the think time, cut short so that the flip lands a margin before
+ * the turn timer runs out. When the budget is up the policy is asked to stop and return its best
+ * chit card so far; if it has not answered a little later, the search is cancelled and a face down
+ * chit card picked when the decision started is flipped instead. Results arrive on the event
+ * dispatch thread and are dropped if the turn has moved on in the meantime.
+ *
+ * <p>While no computer is deciding, the next computer to move ponders the position it expects to
+ * face: where the dragons stand now, with itself to move. The guess is renewed after every flip, so
+ * once the turn before it has ended the guess is exact and its decision starts from the statistics
+ * already gathered. Pondering runs in short slices and sits a slice out whenever other processes
+ * keep the machine busy.
+ *
+ * <p>Policies are only called on the driver's thread, flips being shown to them there too, so a
+ * flip is never seen halfway through a search or a pondering slice.
+ *
+ * <p>All methods must be called on the event dispatch thread.
+ */
+public class BotDriver {
+
+  public static final long DEFAULT_THINK_MILLIS = 1500;
+  public static final long DEFAULT_MARGIN_MILLIS = 3000;
+
+  private static final long GRACE_MILLIS = 250;
+  private static final long PONDER_SLICE_MILLIS = 200;
+  // share of the machine other processes may use before pondering pauses
+  private static final double BUSY_LOAD = 0.5;
+
+  private final List<ChitCard> chitCards;
+  private final HeadlessGame mirror;
+  private final Policy[] policies;
+  private final SplittableRandom random;
+  private final ExecutorService executor;
+  private final long thinkMillis;
+  private final long marginMillis;
+  private long turnDeadline;
+  private int decision;
+  private boolean deciding;
+  private int pondering = -1;
+  private volatile int ponderRound;
+  private volatile boolean closed;
+
+  /**
+   * Constructs a driver for the computers of a game that has just been laid out.
+   *
+   * @param board        the board the game is played on
+   * @param firstDragon  the index of the dragon that takes the first turn
+   * @param computers    which dragons the computer plays
+   * @param prototype    the policy the computers play, copied for every computer
+   * @param thinkMillis  the longest a computer thinks about one flip
+   * @param marginMillis how long before the end of the turn a computer's flip must land
+   */
+  public BotDriver(GameBoard board, int firstDragon, boolean[] computers, Policy prototype,
+      long thinkMillis, long marginMillis) {
+    GameSetup setup = GameSetup.fromSavedState(SavedState.fromBoard(board, firstDragon));
+    this.chitCards = board.getChitCards();
+    this.mirror = new HeadlessGame(setup, 0);
+    this.random = new SplittableRandom();
+    this.policies = new Policy[computers.length];
+    for (int dragon = 0; dragon < computers.length; dragon++) {
+      if (computers[dragon]) {
+        policies[dragon] = prototype.newGame(setup, random);
+      }
+    }
+    this.thinkMillis = thinkMillis;
+    this.marginMillis = marginMillis;
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "bot-driver");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Returns the policy the computers play by default: a tree search on every core but the one
+   * running the board.
+   *
+   * @param thinkMillis the longest a computer thinks about one flip
+   * @return the policy
+   */
+  public static Policy defaultPolicy(long thinkMillis) {
+    int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    return new MctsPolicy(threads, thinkMillis, 0);
+  }
+
+  /**
+   * Returns whether the computer plays a dragon.
+   *
+   * @param dragon the dragon index
+   * @return true for a computer controlled dragon
+   */
+  public boolean isComputer(int dragon) {
+    return dragon >= 0 && dragon < policies.length && policies[dragon] != null;
+  }
+
+  /**
+   * Brings the copy of the game to a new turn, ending turns the timer ran out on, and starts
+   * deciding if a computer is to move.
+   *
+   * @param dragon   the dragon whose turn it is
+   * @param deadline the System.nanoTime at which the turn timer runs out
+   */
+  public void turnStarted(int dragon, long deadline) {
+    if (closed || mirror.isOver()) {
+      return;
+    }
+    while (mirror.getCurrentDragon() != dragon) {
+      mirror.endTurn();
+    }
+    this.turnDeadline = deadline;
+    decision++;
+    deciding = false;
+    // a search still running for the last turn is of no use any more
+    for (Policy policy : policies) {
+      if (policy != null) {
+        policy.stop();
+      }
+    }
+    if (isComputer(dragon)) {
+      decide();
+    } else {
+      ponder();
+    }
+  }
+
+  /**
+   * Follows a flip made on the board and shows it to every computer.
+   *
+   * @param chit the index of the flipped chit card
+   */
+  public void flipped(int chit) {
+    if (closed || mirror.isOver() || mirror.isFlipped(chit)) {
+      return;
+    }
+    int mover = mirror.getCurrentDragon();
+    mirror.flip(chit);
+    // the policies are only touched on the driver's thread, after the pondering slice or search
+    // running there has finished, so they never change under a search
+    stopPondering();
+    HeadlessGame after = new HeadlessGame(mirror);
+    executor.submit(() -> {
+      for (Policy policy : policies) {
+        if (policy != null) {
+          policy.observe(after, chit);
+        }
+      }
+    });
+    if (!isComputer(mover) || mirror.getCurrentDragon() != mover) {
+      ponder();
+    }
+  }
+
+  /**
+   * Starts the next computer to move pondering from where the dragons stand now, replacing any
+   * pondering going on. Nothing ponders while a computer is deciding.
+   */
+  private void ponder() {
+    stopPondering();
+    if (closed || deciding || mirror.isOver()) {
+      return;
+    }
+    int current = mirror.getCurrentDragon();
+    int target = -1;
+    // the dragon to move is only a computer here in the pause before its turn starts on the board
+    for (int i = 0; i < policies.length && target == -1; i++) {
+      int dragon = (current + i) % policies.length;
+      if (isComputer(dragon)) {
+        target = dragon;
+      }
+    }
+    if (target == -1) {
+      return;
+    }
+    int[] cards = new int[policies.length];
+    int[] indices = new int[policies.length];
+    for (int dragon = 0; dragon < policies.length; dragon++) {
+      cards[dragon] = mirror.getDragonCard(dragon);
+      indices[dragon] = mirror.getDragonIndex(dragon);
+    }
+    HeadlessGame guess = new HeadlessGame(mirror);
+    guess.setPositions(cards, indices, target);
+    Policy policy = policies[target];
+    int round = ponderRound;
+    pondering = target;
+    executor.submit(() -> {
+      while (round == ponderRound && !closed) {
+        if (isBusy()) {
+          try {
+            Thread.sleep(PONDER_SLICE_MILLIS);
+          } catch (InterruptedException e) {
+            return;
+          }
+        } else {
+          policy.ponder(guess, PONDER_SLICE_MILLIS);
+        }
+      }
+    });
+  }
+
+  /**
+   * Stops the pondering going on, if any.
+   */
+  private void stopPondering() {
+    ponderRound++;
+    if (pondering != -1) {
+      policies[pondering].stop();
+      pondering = -1;
+    }
+  }
+
+  /**
+   * Returns whether other processes keep the machine busy.
+   *
+   * @return true if the machine is busy with work that is not this game's
+   */
+  private static boolean isBusy() {
+    OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+    if (!(bean instanceof com.sun.management.OperatingSystemMXBean os)) {
+      return false;
+    }
+    return os.getCpuLoad() - os.getProcessCpuLoad() > BUSY_LOAD;
+  }
+
+  /**
+   * Starts deciding the next flip of the computer to move.
+   */
+  private void decide() {
+    stopPondering();
+    deciding = true;
+    Policy policy = policies[mirror.getCurrentDragon()];
+    HeadlessGame root = new HeadlessGame(mirror);
+    SplittableRandom searchRandom = random.split();
+    int fallback = root.randomFaceDown(random);
+    int current = ++decision;
+    long left = (turnDeadline - System.nanoTime()) / 1_000_000 - marginMillis;
+    int budget = (int) Math.max(0, Math.min(thinkMillis, left));
+
+    Future<?> search = executor.submit(() -> {
+      int chit = policy.chooseChit(root, searchRandom);
+      SwingUtilities.invokeLater(() -> commit(current, chit));
+    });
+    Timer stop = new Timer(budget, e -> {
+      if (decision == current) {
+        policy.stop();
+      }
+    });
+    stop.setRepeats(false);
+    stop.start();
+    Timer cancel = new Timer(budget + (int) GRACE_MILLIS, e -> {
+      if (decision == current) {
+        policy.stop();
+        search.cancel(true);
+        commit(current, fallback);
+      }
+    });
+    cancel.setRepeats(false);
+    cancel.start();
+  }
+
+  /**
+   * Flips the chosen chit card on the board, unless the decision is out of date, and starts on the
+   * next flip if the computer's turn goes on.
+   *
+   * @param current the decision the chit card was chosen for
+   * @param chit    the index of the chit card
+   */
+  private void commit(int current, int chit) {
+    if (closed || decision != current) {
+      return;
+    }
+    decision++;
+    deciding = false;
+    int dragon = mirror.getCurrentDragon();
+    if (mirror.isOver() || mirror.isFlipped(chit)) {
+      return;
+    }
+    chitCards.get(chit).play();
+    if (!closed && !mirror.isOver() && mirror.getCurrentDragon() == dragon
+        && mirror.countFaceDown() > 0) {
+      decide();
+    }
+  }
+
+  /**
+   * Stops the computers, dropping any decision still running.
+   */
+  public void close() {
+    closed = true;
+    ponderRound++;
+    for (Policy policy : policies) {
+      if (policy != null) {
+        policy.stop();
+      }
+    }
+    executor.shutdownNow();
+  }
+}
@@ -2,18 +2,26 @@ package game.engine;
 
 import static game.utils.GameUtils.BOARD_SIZE;
 
+import game.archive.FinishedGame;
 import game.chitcards.ChitCard;
+import game.corpus.CorpusGame;
+import game.corpus.GameRecording;
 import game.entities.Dragon;
+import game.simulation.GameSetup;
 import game.tiles.Square;
 import game.tiles.VolcanoCard;
 import game.tiles.VolcanoCardIterator;
 import game.utils.GameUtils;
+import game.view.GameBoard;
 import game.view.GameFrame;
 import game.view.LoadSquareBoardStrategy;
 import game.view.SquareBoardStrategy;
 import java.awt.Color;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import javax.swing.Timer;
 
 /**
@@ -22,12 +30,25 @@ import javax.swing.Timer;
 public class GameEngine {
 
   private static GameEngine instance;
+  private final GameRecorder recorder = new GameRecorder(Paths.get(GameUtils.CORPUS_PATH),
+      Paths.get(GameUtils.FINISHED_GAMES_PATH));
   private final ArrayList<ChitCard> flippedChitCards;
   private List<Dragon> dragons;
   private GameFrame viewFacade;
   private int currentDragon;
   private Dragon winner;
   private int boardSize;
+  private long seed;
+  private long configHash;
+  private long startedAt;
+  private GameRecording recording;
+  private int computerPlayers;
+  private BotDriver botDriver;
+  private WinEstimator winEstimator;
+  private Autosaver autosaver;
+  private Timer autosaveTimer;
+  // counts the actions logged for the autosave, so snapshots and the move log line up
+  private int actions;
 
   /**
    * Constructs a new GameEngine and initializes the game interface.
@@ -72,9 +93,16 @@ public class GameEngine {
     this.dragons = generator.getDragons();
     List<ChitCard> chitCards = generator.getChitCards();
     List<VolcanoCard> volcanoCards = generator.getVolcanoCards();
-    this.viewFacade.switchScreen(chitCards, volcanoCards, new SquareBoardStrategy());
+    this.seed = new Random().nextLong();
+    this.configHash = GameSetup.fromConfig(generator.getConfig(), numPlayers).getConfigHash();
+    this.startedAt = System.currentTimeMillis();
+    this.viewFacade.switchScreen(chitCards, volcanoCards, new SquareBoardStrategy(this.seed));
     System.out.println("Game initialised with " + numPlayers + " players.");
     this.boardSize = BOARD_SIZE;
+    this.startRecording(0);
+    this.startComputers(0);
+    this.startWinEstimator(0);
+    this.startAutosave(GameUtils.getBinarySavePath());
     playGame();
   }
 
@@ -94,9 +122,19 @@ public class GameEngine {
     }
 
     List<VolcanoCard> volcanoCards = generator.getVolcanoCards();
+    // the shuffle of a saved game is not known, only the layout it was saved with
+    this.seed = 0;
+    this.configHash = GameSetup.fromSavedState(generator.getSavedState()).getConfigHash();
+    this.startedAt = System.currentTimeMillis();
     this.viewFacade.switchScreen(chitCards, volcanoCards, new LoadSquareBoardStrategy());
     System.out.println("Last game has been loaded");
     this.boardSize = BOARD_SIZE;
+    this.startRecording(this.currentDragon);
+    this.startComputers(this.currentDragon);
+    this.startWinEstimator(this.currentDragon);
+    // binary saves are continued in place, older json saves are upgraded into a new file
+    this.startAutosave(filePath.endsWith(GameUtils.BINARY_FILE_EXTENSION) ? filePath
+        : GameUtils.getBinarySavePath());
     restartGame();
   }
 
@@ -109,15 +147,120 @@ public class GameEngine {
     javax.swing.Timer timer = new Timer(2000, evt -> {
       ChitCard.toggleAllowFlippingTrue();
       this.viewFacade.startTurn(this.getCurrentDragon().getColourObject());
+      this.startComputerTurn();
     });
     timer.setRepeats(false);
     timer.start();
   }
 
+  /**
+   * Sets how many dragons the computer plays in the next game started or loaded. The computer
+   * takes the last seats.
+   *
+   * @param computerPlayers The number of computer controlled dragons.
+   */
+  public void setComputerPlayers(int computerPlayers) {
+    this.computerPlayers = computerPlayers;
+  }
+
+  /**
+   * Starts the computer players of a game that has just been laid out, if there are any.
+   *
+   * @param firstDragon The index of the dragon that takes the first turn.
+   */
+  private void startComputers(int firstDragon) {
+    if (this.botDriver != null) {
+      this.botDriver.close();
+      this.botDriver = null;
+    }
+    if (this.computerPlayers <= 0) {
+      return;
+    }
+    boolean[] computers = new boolean[this.dragons.size()];
+    for (int i = Math.max(0, computers.length - this.computerPlayers); i < computers.length; i++) {
+      computers[i] = true;
+    }
+    this.botDriver = new BotDriver(this.viewFacade.getGameBoard(), firstDragon, computers,
+        BotDriver.defaultPolicy(BotDriver.DEFAULT_THINK_MILLIS), BotDriver.DEFAULT_THINK_MILLIS,
+        BotDriver.DEFAULT_MARGIN_MILLIS);
+  }
+
+  /**
+   * Lets the computer move if it plays the dragon whose turn just started, and brings the win
+   * estimate to the new turn.
+   */
+  private void startComputerTurn() {
+    if (this.winEstimator != null) {
+      this.winEstimator.turnStarted(this.currentDragon);
+    }
+    if (this.botDriver != null) {
+      this.botDriver.turnStarted(this.currentDragon, this.viewFacade.getTurnDeadline());
+    }
+  }
+
+  /**
+   * Starts estimating the win chances shown on the board of a game that has just been laid out.
+   *
+   * @param firstDragon The index of the dragon that takes the first turn.
+   */
+  private void startWinEstimator(int firstDragon) {
+    if (this.winEstimator != null) {
+      this.winEstimator.close();
+    }
+    GameBoard board = this.viewFacade.getGameBoard();
+    List<Color> colours = new ArrayList<>();
+    for (Dragon dragon : this.dragons) {
+      colours.add(dragon.getColourObject());
+    }
+    this.winEstimator = new WinEstimator(board, firstDragon,
+        chances -> board.showWinChances(colours, chances));
+  }
+
+  /**
+   * Returns whether the computer plays the dragon whose turn it is, so clicks are ignored.
+   *
+   * @return true during a computer's turn.
+   */
+  public boolean isComputerTurn() {
+    return this.botDriver != null && this.botDriver.isComputer(this.currentDragon);
+  }
+
+  /**
+   * Starts recording the game for the game corpus, from the board as laid out on screen.
+   *
+   * @param firstDragon The index of the dragon that takes the first turn.
+   */
+  private void startRecording(int firstDragon) {
+    GameBoard board = this.viewFacade.getGameBoard();
+    this.recording = new GameRecording(
+        GameSetup.fromSavedState(SavedState.fromBoard(board, firstDragon)), this.seed,
+        CorpusGame.GUI);
+  }
+
+  /**
+   * Returns the packed position of every dragon, as recorded in the game corpus.
+   *
+   * @return The position of each dragon, card in the upper 16 bits and index in the lower 16.
+   */
+  private int[] dragonPositions() {
+    List<VolcanoCard> volcanoCards = this.viewFacade.getGameBoard().getVolcanoCards();
+    int[] positions = new int[this.dragons.size()];
+    for (int i = 0; i < positions.length; i++) {
+      VolcanoCardIterator iterator = this.dragons.get(i).getVolcanoCardIterator();
+      positions[i] = CorpusGame.pack(volcanoCards.indexOf(iterator.getCurrentCard()),
+          iterator.getCurrentIndex());
+    }
+    return positions;
+  }
+
   /**
    * Starts and manages the game loop.
    */
   public void playGame() {
+    if (this.recording != null && this.currentDragon != -1) {
+      this.recording.turnEnded(this.dragonPositions(),
+          (this.currentDragon + 1) % this.dragons.size());
+    }
     this.viewFacade.pauseFrame();
     ChitCard.toggleAllowFlippingFalse();
     javax.swing.Timer timer = new Timer(2000, evt -> {
@@ -125,11 +268,90 @@ public class GameEngine {
       ChitCard.toggleAllowFlippingTrue();
       this.currentDragon = (this.currentDragon + 1) % this.dragons.size();
       this.viewFacade.startTurn(this.getCurrentDragon().getColourObject());
+      this.startComputerTurn();
+      this.logAction(MoveLog.TURN, this.currentDragon);
+      this.autosave();
     });
     timer.setRepeats(false);
     timer.start();
   }
 
+  /**
+   * Starts saving the game that has just been laid out in the background, every AUTOSAVE_MILLIS
+   * and at the start of every turn, with every flip and turn in between kept in a move log.
+   *
+   * @param path The save file to keep up to date.
+   */
+  private void startAutosave(String path) {
+    this.stopAutosave();
+    this.actions = 0;
+    this.autosaver = new Autosaver(Paths.get(path), GameUtils.MOVE_LOG_FSYNC_MILLIS,
+        GameUtils.SAVE_CODEC);
+    this.autosaveTimer = new Timer(GameUtils.AUTOSAVE_MILLIS, evt -> this.autosave());
+    this.autosaveTimer.start();
+    // a loaded game is saved at once, so the move log has a snapshot to start from
+    this.autosave();
+  }
+
+  /**
+   * Appends an action to the move log kept beside the autosave.
+   *
+   * @param kind  MoveLog.FLIP or MoveLog.TURN
+   * @param value The chit card or dragon index.
+   */
+  private void logAction(byte kind, int value) {
+    if (this.autosaver != null) {
+      this.autosaver.log(kind, ++this.actions, value);
+    }
+  }
+
+  /**
+   * Hands a snapshot of the game to the autosaver. Only the snapshot is taken here, the writing
+   * happens on the autosaver's thread.
+   */
+  private void autosave() {
+    if (this.autosaver != null && this.winner == null && this.currentDragon != -1) {
+      this.autosaver.save(this.snapshot(), this.actions);
+    }
+  }
+
+  /**
+   * Captures the game as it stands.
+   *
+   * @return The snapshot.
+   */
+  private SavedState snapshot() {
+    return SavedState.fromBoard(this.viewFacade.getGameBoard(), this.currentDragon);
+  }
+
+  /**
+   * Stops the autosave timer, leaving the autosaver to the caller.
+   */
+  private void stopAutosave() {
+    if (this.autosaveTimer != null) {
+      this.autosaveTimer.stop();
+      this.autosaveTimer = null;
+    }
+  }
+
+  /**
+   * Saves the game and exits once the save and any finished game still being recorded are on
+   * disk. Both are written on their own threads, so the window closes without waiting for them.
+   */
+  public void saveAndExit() {
+    this.stopAutosave();
+    if (this.autosaver == null) {
+      this.recorder.close(() -> System.exit(0));
+      return;
+    }
+    Path file = this.autosaver.getFile();
+    this.autosaver.close(this.snapshot(), this.actions, () -> {
+      System.out.println("Game saved to " + file);
+      this.recorder.close(() -> System.exit(0));
+    });
+    this.autosaver = null;
+  }
+
   /**
    * flips back all chitcards
    */
@@ -149,6 +371,27 @@ public class GameEngine {
    */
   public void addChitCard(ChitCard chitCard) {
     this.flippedChitCards.add(chitCard);
+    int index = this.viewFacade.getGameBoard().getChitCards().indexOf(chitCard);
+    this.logAction(MoveLog.FLIP, index);
+    if (this.winEstimator != null) {
+      this.winEstimator.flipped(index);
+    }
+    if (this.botDriver != null) {
+      this.botDriver.flipped(index);
+    }
+    if (this.recording != null) {
+      this.recording.flipped(index);
+    }
+  }
+
+  /**
+   * Brings the move previews up to date after a chit card has been played, unless the game is
+   * over and the board gone.
+   */
+  public void chitCardPlayed() {
+    if (this.currentDragon != -1) {
+      this.viewFacade.updateMovePreview();
+    }
   }
 
   /**
@@ -160,16 +403,75 @@ public class GameEngine {
   private void checkWin(VolcanoCardIterator iterator, Color colour, int spaces) {
     if (iterator.onCave(colour, spaces)) {
       this.winner = this.getCurrentDragon();
+      this.recordCorpusGame(iterator, spaces);
       this.winner.moveToCave();
       this.viewFacade.winScreen(GameUtils.colorToString(colour));
+      this.recordFinishedGame(colour);
       this.resetGame();
     }
   }
 
+  /**
+   * Appends the game that just finished to the store of finished games, which would otherwise be
+   * lost when the game is reset. The store is written on the recorder's thread.
+   *
+   * @param colour The colour of the winner.
+   */
+  private void recordFinishedGame(Color colour) {
+    byte[] animals = new byte[this.dragons.size()];
+    for (int i = 0; i < animals.length; i++) {
+      animals[i] = (byte) FinishedGame.animalOf(this.dragons.get(i).getColourObject());
+    }
+    long now = System.currentTimeMillis();
+    long gameSeed = this.seed;
+    long gameConfigHash = this.configHash;
+    int winnerAnimal = FinishedGame.animalOf(colour);
+    long duration = now - this.startedAt;
+    this.recorder.recordFinishedGame(gameId -> new FinishedGame(gameId, gameSeed, gameConfigHash,
+        animals, winnerAnimal, now, duration, -1));
+  }
+
+  /**
+   * Appends the game that just finished to the game corpus. The winning move has not been made
+   * yet, so the winner is recorded where the move will take it. The corpus is written on the
+   * recorder's thread.
+   *
+   * @param iterator The iterator of the winning dragon.
+   * @param spaces   The number of spaces of the winning move.
+   */
+  private void recordCorpusGame(VolcanoCardIterator iterator, int spaces) {
+    if (this.recording == null) {
+      return;
+    }
+    int[] positions = this.dragonPositions();
+    VolcanoCardIterator landing = new VolcanoCardIterator(iterator.getCurrentCard(),
+        iterator.getCurrentIndex());
+    landing.iterate(spaces);
+    positions[this.currentDragon] = CorpusGame.pack(
+        this.viewFacade.getGameBoard().getVolcanoCards().indexOf(landing.getCurrentCard()),
+        landing.getCurrentIndex());
+    this.recorder.recordCorpusGame(this.recording.finish(this.currentDragon, positions));
+    this.recording = null;
+  }
+
   /**
    * Resets the game to its initial state, clearing all game components and showing the setup menu.
    */
   private void resetGame() {
+    if (this.botDriver != null) {
+      this.botDriver.close();
+      this.botDriver = null;
+    }
+    if (this.winEstimator != null) {
+      this.winEstimator.close();
+      this.winEstimator = null;
+    }
+    // a finished game is not worth resuming
+    this.stopAutosave();
+    if (this.autosaver != null) {
+      this.autosaver.discard();
+      this.autosaver = null;
+    }
     this.viewFacade.reset();
     this.dragons = new ArrayList<>();
     this.viewFacade = new GameFrame();
@@ -223,6 +525,15 @@ public class GameEngine {
     return dragons;
   }
 
+  /**
+   * Returns the config hash of the board being played, which names its heatmap.
+   *
+   * @return The config hash.
+   */
+  public long getConfigHash() {
+    return configHash;
+  }
+
   /**
    * Returns the size of the board.
    *
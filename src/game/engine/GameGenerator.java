@@ -68,6 +68,15 @@ public class GameGenerator extends AbstractGameGenerator {
     return volcanoCards;
   }
 
+  /**
+   * Retrieves the configuration the game was generated from.
+   *
+   * @return The configuration.
+   */
+  public Config getConfig() {
+    return config;
+  }
+
   /**
    * Retrieves the list of chit cards generated for the game.
    *
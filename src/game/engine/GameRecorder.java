@@ -0,0 +1,117 @@
+package game.engine;
+
+import game.archive.FinishedGame;
+import game.archive.FinishedGameStore;
+import game.corpus.CorpusGame;
+import game.corpus.CorpusWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * Appends finished games to the game corpus and the store of finished games on a background
+ * thread. Both are opened on the first game recorded and then kept open for the rest of the
+ * session, so the corpus is scanned and the store opened once rather than on every win, and the
+ * EDT never waits on either.
+ *
+ * <p>The corpus is flushed and the store forces each game to disk as it is recorded. The thread is
+ * not a daemon, so games handed over are written even if the last window has gone, but it stops
+ * after IDLE_SECONDS without work so it never keeps the program alive on its own. The game exits
+ * through close, which runs once every game handed over is written.
+ */
+public class GameRecorder {
+
+  public static final long IDLE_SECONDS = 5;
+
+  private final Path corpusPath;
+  private final Path storePath;
+  private final ExecutorService executor;
+  // only touched on the recorder thread
+  private CorpusWriter corpus;
+  private FinishedGameStore store;
+
+  /**
+   * Constructs a recorder for a corpus file and a store directory.
+   *
+   * @param corpusPath the corpus file games are appended to
+   * @param storePath  the directory of the store of finished games
+   */
+  public GameRecorder(Path corpusPath, Path storePath) {
+    this.corpusPath = corpusPath;
+    this.storePath = storePath;
+    // at most one thread, so games are written in the order they were handed over
+    this.executor = new ThreadPoolExecutor(0, 1, IDLE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "game-recorder"));
+  }
+
+  /**
+   * Hands a game to the recorder to append to the corpus. Returns at once.
+   *
+   * @param game the game
+   */
+  public void recordCorpusGame(CorpusGame game) {
+    if (executor.isShutdown()) {
+      return;
+    }
+    executor.execute(() -> {
+      try {
+        if (corpus == null) {
+          corpus = new CorpusWriter(corpusPath, true);
+        }
+        corpus.write(game);
+        corpus.flush();
+      } catch (IOException e) {
+        System.out.println("Error recording game corpus: " + e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Hands a game to the recorder to append to the store of finished games. Returns at once.
+   *
+   * @param game makes the game from the id the store hands out for it
+   */
+  public void recordFinishedGame(LongFunction<FinishedGame> game) {
+    if (executor.isShutdown()) {
+      return;
+    }
+    executor.execute(() -> {
+      try {
+        if (store == null) {
+          store = new FinishedGameStore(storePath);
+        }
+        store.put(game.apply(store.nextGameId()));
+      } catch (IOException e) {
+        System.out.println("Error recording finished game: " + e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Closes the corpus once the games handed over have been written, then runs an action on the
+   * recorder thread and stops the recorder. Returns at once, and does nothing if the recorder is
+   * already closed.
+   *
+   * @param then run once every game handed over has been written or has failed to write
+   */
+  public void close(Runnable then) {
+    if (executor.isShutdown()) {
+      return;
+    }
+    executor.execute(() -> {
+      try {
+        if (corpus != null) {
+          corpus.close();
+        }
+      } catch (IOException e) {
+        System.out.println("Error closing game corpus: " + e.getMessage());
+      }
+      then.run();
+    });
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,163 @@
+package game.engine;
+
+import com.google.gson.stream.JsonReader;
+import game.engine.SavedState.CardRecord;
+import game.engine.SavedState.CaveRecord;
+import game.engine.SavedState.ChitRecord;
+import game.engine.SavedState.DragonRecord;
+import game.engine.SavedState.TurnRecord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upgrades version 1 saves, which have no version field and store every card and dragon as an
+ * underscore separated string: a volcano card as its square types, its cave type if it has one,
+ * the cave index and the square count, eg: Spider_Salamander_BabyDragon_Bat_BabyDragonCave_2_4, a
+ * chit card as its type and moves, eg: Bat_3, and a dragon as its colour, card and square, eg:
+ * White_7_-1, with the card of each colour's cave in a separate dragonCaves object. This is the
+ * only place such strings are taken apart.
+ */
+public class LegacySaveMigrator implements SaveMigrator {
+
+  /**
+   * Returns the schema version this migrator reads.
+   *
+   * @return 1
+   */
+  @Override
+  public int getVersion() {
+    return 1;
+  }
+
+  /**
+   * Reads the rest of a version 1 save object.
+   *
+   * @param in        the reader, positioned just after the name of the first field
+   * @param firstName the name of the first field, or null if the object is empty
+   * @return the save in the current schema
+   * @throws IOException if the save is malformed
+   */
+  @Override
+  public SavedState read(JsonReader in, String firstName) throws IOException {
+    List<CardRecord> volcanoCards = new ArrayList<>();
+    List<ChitRecord> chitCards = new ArrayList<>();
+    List<String> dragons = new ArrayList<>();
+    List<Integer> flipped = new ArrayList<>();
+    Map<String, Integer> dragonCaves = new HashMap<>();
+    int currentDragon = 0;
+    for (String name = firstName; name != null; name = in.hasNext() ? in.nextName() : null) {
+      switch (name) {
+        case "volcanoCards" -> {
+          in.beginArray();
+          while (in.hasNext()) {
+            volcanoCards.add(cardRecord(in.nextString()));
+          }
+          in.endArray();
+        }
+        case "chitCards" -> {
+          in.beginArray();
+          while (in.hasNext()) {
+            chitCards.add(chitRecord(in.nextString()));
+          }
+          in.endArray();
+        }
+        case "dragons" -> {
+          in.beginArray();
+          while (in.hasNext()) {
+            dragons.add(in.nextString());
+          }
+          in.endArray();
+        }
+        case "flippedChitCards" -> {
+          in.beginArray();
+          while (in.hasNext()) {
+            flipped.add(in.nextInt());
+          }
+          in.endArray();
+        }
+        case "currentDragon" -> currentDragon = in.nextInt();
+        case "dragonCaves" -> {
+          in.beginObject();
+          while (in.hasNext()) {
+            dragonCaves.put(in.nextName(), in.nextInt());
+          }
+          in.endObject();
+        }
+        default -> in.skipValue();
+      }
+    }
+
+    // the caves may come after the dragons, so dragons are only decoded once both are in
+    List<DragonRecord> dragonRecords = new ArrayList<>(dragons.size());
+    for (String dragon : dragons) {
+      String[] tokens = dragon.split("_");
+      Integer caveCard = dragonCaves.get(tokens[0]);
+      if (tokens.length != 3 || caveCard == null) {
+        throw new IOException("Malformed version 1 dragon: " + dragon);
+      }
+      dragonRecords.add(new DragonRecord(tokens[0], parse(tokens[1], dragon),
+          parse(tokens[2], dragon), caveCard));
+    }
+    return new SavedState(volcanoCards, chitCards, dragonRecords,
+        new TurnRecord(currentDragon, flipped));
+  }
+
+  /**
+   * Decodes a version 1 volcano card string. The last two tokens are the cave index and the
+   * square count, and the token after the squares is the cave type when the card has a cave.
+   *
+   * @param card the volcano card string
+   * @return the volcano card record
+   * @throws IOException if the string is malformed
+   */
+  public static CardRecord cardRecord(String card) throws IOException {
+    String[] tokens = card.split("_");
+    if (tokens.length < 2) {
+      throw new IOException("Malformed version 1 volcano card: " + card);
+    }
+    int numSquares = parse(tokens[tokens.length - 1], card);
+    int caveIndex = parse(tokens[tokens.length - 2], card);
+    int expected = numSquares + (caveIndex == -1 ? 2 : 3);
+    if (numSquares < 0 || tokens.length != expected) {
+      throw new IOException("Malformed version 1 volcano card: " + card);
+    }
+    List<String> squares = Arrays.asList(Arrays.copyOf(tokens, numSquares));
+    CaveRecord cave = caveIndex == -1 ? null : new CaveRecord(tokens[numSquares], caveIndex);
+    return new CardRecord(squares, cave);
+  }
+
+  /**
+   * Decodes a version 1 chit card string.
+   *
+   * @param chit the chit card string
+   * @return the chit card record
+   * @throws IOException if the string is malformed
+   */
+  private static ChitRecord chitRecord(String chit) throws IOException {
+    String[] tokens = chit.split("_");
+    if (tokens.length != 2) {
+      throw new IOException("Malformed version 1 chit card: " + chit);
+    }
+    return new ChitRecord(tokens[0], parse(tokens[1], chit));
+  }
+
+  /**
+   * Parses a number token of a version 1 string.
+   *
+   * @param token  the token
+   * @param source the whole string, for the error message
+   * @return the number
+   * @throws IOException if the token is not a number
+   */
+  private static int parse(String token, String source) throws IOException {
+    try {
+      return Integer.parseInt(token);
+    } catch (NumberFormatException e) {
+      throw new IOException("Malformed version 1 value: " + source, e);
+    }
+  }
+}
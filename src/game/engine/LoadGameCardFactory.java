@@ -18,7 +18,7 @@ import game.tiles.SpiderCave;
 import game.tiles.SpiderSquare;
 import game.tiles.Square;
 import game.tiles.VolcanoCard;
-import java.util.List;
+import java.io.IOException;
 
 public class LoadGameCardFactory implements AbstractCardFactory {
 
@@ -54,28 +54,41 @@ public class LoadGameCardFactory implements AbstractCardFactory {
   /**
    * Creates a VolcanoCard based on the specified card description, number of rows, and columns.
    *
-   * @param card the description of the volcano card, specifying square types separated by
-   *             underscores
+   * @param card the description of the volcano card in the version 1 save format, eg:
+   *             Spider_Salamander_BabyDragon_Bat_BabyDragonCave_2_4
    * @param rows the number of rows in the volcano card
    * @param cols the number of columns in the volcano card
    * @return the created VolcanoCard
    */
   @Override
   public VolcanoCard createVolcanoCard(String card, int rows, int cols) {
-    List<String> strings = List.of(card.split("_"));
-    int numSquares = Integer.parseInt(strings.get(strings.size() - 1));
-    int caveIndex = Integer.parseInt(strings.get(strings.size() - 2));
+    try {
+      return createVolcanoCard(LegacySaveMigrator.cardRecord(card), rows, cols);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Creates a VolcanoCard from its saved record, number of rows, and columns.
+   *
+   * @param card the saved volcano card, with its squares and cave
+   * @param rows the number of rows in the volcano card
+   * @param cols the number of columns in the volcano card
+   * @return the created VolcanoCard
+   */
+  public VolcanoCard createVolcanoCard(SavedState.CardRecord card, int rows, int cols) {
     VolcanoCard volCard;
 
-    for (int i = 0; i < numSquares; i++) {
-      builder.setSquare(this.createSquare(strings.get(i)));
+    for (String square : card.squares()) {
+      builder.setSquare(this.createSquare(square));
     }
 
-    if (caveIndex == -1) {
+    if (card.cave() == null) {
       volCard = builder.getVolcanoCard(rows, cols);
     } else {
-      volCard = builder.getVolcanoCard(caveIndex, rows, cols);
-      volCard.setCave(this.createCave(strings.get(numSquares)));
+      volCard = builder.getVolcanoCard(card.cave().index(), rows, cols);
+      volCard.setCave(this.createCave(card.cave().type()));
     }
 
     return volCard;
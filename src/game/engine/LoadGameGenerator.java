@@ -5,7 +5,6 @@ import game.tiles.Cave;
 import game.tiles.VolcanoCard;
 import game.utils.GameUtils;
 import java.util.List;
-import java.util.Map;
 
 /**
  * LoadGameGenerator is responsible for generating the game state from a saved file. It initializes
@@ -14,6 +13,7 @@ import java.util.Map;
 public class LoadGameGenerator extends AbstractGameGenerator {
 
   private final SavedState savedState;
+  private final LoadGameCardFactory loadCardFactory;
 
   /**
    * Constructs a LoadGameGenerator with the specified path to the saved state.
@@ -22,7 +22,8 @@ public class LoadGameGenerator extends AbstractGameGenerator {
    */
   public LoadGameGenerator(String path) {
     this.savedState = GameUtils.initialiseSavedState(path);
-    this.cardFactory = new LoadGameCardFactory();
+    this.loadCardFactory = new LoadGameCardFactory();
+    this.cardFactory = loadCardFactory;
     createDragons(4);
     createChitCards();
   }
@@ -35,30 +36,19 @@ public class LoadGameGenerator extends AbstractGameGenerator {
    */
   @Override
   void createDragons(int count) {
-    // get strings of caves from config file
-    Map<String, Integer> dragonCaveStr = this.savedState.getDragonCaves();
-    List<String> dragonStr = savedState.getDragons();
-
     createVolcanoCards();
 
     // assign dragons to volcano card
     int tmpVolIndex, tmpSquareIndex;
-    String dragonColour;
     Dragon newDragon;
     Cave newCave;
 
-    List<String> dragonInfo;
-    for (String dragon : dragonStr) {
-
-      // eg: White_1_2, which means the white dragon is at the 2nd square of the 1st volcano card
-      dragonInfo = List.of(dragon.split("_"));
-
-      dragonColour = dragonInfo.get(0);
-      tmpVolIndex = Integer.parseInt(dragonInfo.get(1));
-      tmpSquareIndex = Integer.parseInt(dragonInfo.get(2));
+    for (SavedState.DragonRecord dragon : savedState.getDragons()) {
+      tmpVolIndex = dragon.card();
+      tmpSquareIndex = dragon.square();
 
       // cave is created with volcano cards
-      newCave = volcanoCards.get(dragonCaveStr.get(dragonColour)).getCave();
+      newCave = volcanoCards.get(dragon.caveCard()).getCave();
 
       // create dragon
       newDragon = new Dragon(volcanoCards.get(tmpVolIndex), newCave);
@@ -86,8 +76,8 @@ public class LoadGameGenerator extends AbstractGameGenerator {
    */
   @Override
   protected void createVolcanoCards() {
-    // get strings of volcanoes from config file
-    List<String> volcanoStrings = this.savedState.getVolcanoCards();
+    // get volcano cards from the saved state
+    List<SavedState.CardRecord> volcanoRecords = this.savedState.getVolcanoCards();
 
     // initialisation local variable to control creation of volcano card
     int j = 1;
@@ -96,16 +86,16 @@ public class LoadGameGenerator extends AbstractGameGenerator {
     boolean reverse;
     VolcanoCard tempCard;
 
-    for (int i = 0; i < volcanoStrings.size(); i++) {
+    for (int i = 0; i < volcanoRecords.size(); i++) {
       // exchange row and column every two card
       if (j <= 2) {
-        tempCard = cardFactory.createVolcanoCard(volcanoStrings.get(i), rows, cols);
+        tempCard = loadCardFactory.createVolcanoCard(volcanoRecords.get(i), rows, cols);
       } else {
         j = 1;
         int temp = rows;
         rows = cols;
         cols = temp;
-        tempCard = cardFactory.createVolcanoCard(volcanoStrings.get(i), rows, cols);
+        tempCard = loadCardFactory.createVolcanoCard(volcanoRecords.get(i), rows, cols);
       }
       j += 1;
 
@@ -134,14 +124,9 @@ public class LoadGameGenerator extends AbstractGameGenerator {
    */
   @Override
   void createChitCards() {
-    // the list of all the chit cards
-    List<String> chitStrings = this.savedState.getChitCards();
-
-    List<String> eachChit;
-    // the list of move count of each chit card
-    for (String chitStr : chitStrings) {
-      eachChit = List.of(chitStr.split("_"));
-      chitCards.add(cardFactory.createChitCard(eachChit.get(0), Integer.parseInt(eachChit.get(1))));
+    // the type and move count of each chit card
+    for (SavedState.ChitRecord chit : this.savedState.getChitCards()) {
+      chitCards.add(cardFactory.createChitCard(chit.type(), chit.moves()));
     }
   }
 
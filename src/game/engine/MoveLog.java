@@ -0,0 +1,389 @@
+package game.engine;
+
+import game.engine.SavedState.DragonRecord;
+import game.engine.SavedState.TurnRecord;
+import game.simulation.GameSetup;
+import game.simulation.HeadlessGame;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * A write-ahead log of the actions taken since a save file was last written, kept beside it as
+ * &lt;save&gt;.wal. Every action carries a sequence number that counts the actions of the game;
+ * the log starts with the number of the last action the save already contains, and replaying the
+ * later ones on the save rebuilds the game as it was when the last record reached the disk.
+ *
+ * <p>The log only exists while a game is being played, so one found on startup belongs to a game
+ * that never finished or saved normally, unless another game running side by side holds its lock.
+ * An open log is locked for as long as it is open.
+ *
+ * <p>Layout: the magic as a big-endian int, a flags byte holding the BlockCodec of the records in
+ * its lowest two bits and the base sequence number as a big-endian int, then records of a kind
+ * byte, the sequence number, the value and a CRC32C of the nine bytes before it. A record cut short
+ * or failing its checksum ends the log. With a codec other than NONE the records are held until
+ * they are forced and written as one BlockCodec block, so each group commit appends a block and
+ * the log can be read block by block.
+ */
+public class MoveLog implements AutoCloseable {
+
+  public static final String EXTENSION = ".wal";
+  public static final int MAGIC = 0x4644574C;
+
+  // a chit card was flipped, the value is its index
+  public static final byte FLIP = 1;
+  // a turn started, the value is the index of the dragon whose turn it is
+  public static final byte TURN = 2;
+
+  private static final int HEADER_BYTES = Integer.BYTES * 2 + 1;
+  private static final int RECORD_BYTES = 1 + Integer.BYTES * 3;
+  private static final int CODEC_MASK = 0x03;
+
+  /**
+   * Thrown when a log can never be replayed, as it is not a log or its game has ended, as opposed
+   * to when it cannot be read for now.
+   */
+  public static class UnrecoverableLogException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message what is wrong with the log
+     */
+    public UnrecoverableLogException(String message) {
+      super(message);
+    }
+  }
+
+  private final FileChannel channel;
+  private final byte codec;
+  private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+  private final CRC32C crc = new CRC32C();
+  // records waiting to be compressed into a block when the log is next forced
+  private final byte[] unforced = new byte[BlockCodec.BLOCK_SIZE / RECORD_BYTES * RECORD_BYTES];
+  private int unforcedLength;
+  private int base;
+
+  /**
+   * Creates an empty log for a save, replacing any log already there, and locks it.
+   *
+   * @param save  the save file the log belongs to
+   * @param base  the sequence number of the last action the save contains
+   * @param codec the BlockCodec the records are compressed with
+   * @throws IOException if the log cannot be created or another game holds it
+   */
+  public MoveLog(Path save, int base, byte codec) throws IOException {
+    this.channel = FileChannel.open(pathFor(save), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+    // released when the channel is closed
+    if (!tryLock(channel)) {
+      channel.close();
+      throw new IOException("The move log of " + save.getFileName() + " is in use");
+    }
+    this.codec = codec;
+    reset(base);
+  }
+
+  /**
+   * Returns the log file of a save file.
+   *
+   * @param save the save file
+   * @return the log file beside it
+   */
+  public static Path pathFor(Path save) {
+    return save.resolveSibling(save.getFileName() + EXTENSION);
+  }
+
+  /**
+   * Returns the save file of a log file.
+   *
+   * @param log the log file
+   * @return the save file beside it
+   */
+  public static Path saveFor(Path log) {
+    String name = log.getFileName().toString();
+    return log.resolveSibling(name.substring(0, name.length() - EXTENSION.length()));
+  }
+
+  /**
+   * Empties the log after the save has been written, and forces it to disk.
+   *
+   * @param base the sequence number of the last action the save now contains
+   * @throws IOException if the log cannot be written
+   */
+  public void reset(int base) throws IOException {
+    this.base = base;
+    unforcedLength = 0;
+    channel.truncate(0);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC)
+        .put((byte) (codec & CODEC_MASK)).putInt(base).flip();
+    while (header.hasRemaining()) {
+      channel.write(header, HEADER_BYTES - header.remaining());
+    }
+    channel.position(HEADER_BYTES);
+    channel.force(false);
+  }
+
+  /**
+   * Appends an action without forcing it to disk. Actions the save already contains are skipped.
+   *
+   * @param kind     FLIP or TURN
+   * @param sequence the sequence number of the action
+   * @param value    the chit card or dragon index
+   * @throws IOException if the log cannot be written
+   */
+  public void append(byte kind, int sequence, int value) throws IOException {
+    if (sequence <= base) {
+      return;
+    }
+    record.clear();
+    record.put(kind).putInt(sequence).putInt(value);
+    crc.reset();
+    crc.update(record.array(), 0, RECORD_BYTES - Integer.BYTES);
+    record.putInt((int) crc.getValue()).flip();
+    if (codec == BlockCodec.NONE) {
+      write(record);
+      return;
+    }
+    if (unforcedLength == unforced.length) {
+      writeBlock();
+    }
+    record.get(unforced, unforcedLength, RECORD_BYTES);
+    unforcedLength += RECORD_BYTES;
+  }
+
+  /**
+   * Forces the records appended so far to disk, compressing them into a block first if the log
+   * is compressed.
+   *
+   * @throws IOException if the log cannot be written or forced
+   */
+  public void force() throws IOException {
+    writeBlock();
+    channel.force(false);
+  }
+
+  /**
+   * Writes the records held for compression as one block, if there are any.
+   *
+   * @throws IOException if the log cannot be written
+   */
+  private void writeBlock() throws IOException {
+    if (unforcedLength > 0) {
+      write(ByteBuffer.wrap(BlockCodec.block(unforced, unforcedLength, codec)));
+      unforcedLength = 0;
+    }
+  }
+
+  /**
+   * Writes bytes at the end of the log.
+   *
+   * @param bytes the bytes
+   * @throws IOException if the log cannot be written
+   */
+  private void write(ByteBuffer bytes) throws IOException {
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+
+  /**
+   * Closes the log file.
+   *
+   * @throws IOException if closing fails
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Finds the logs in a directory, which belong to games that did not end normally, newest first.
+   * Logs locked by a game still running, in this program or another, are left out.
+   *
+   * @param dir the save directory
+   * @return the log files
+   */
+  public static List<Path> findUnfinished(Path dir) {
+    List<Path> logs = new ArrayList<>();
+    if (!Files.isDirectory(dir)) {
+      return logs;
+    }
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+      for (Path log : stream) {
+        if (!isInUse(log)) {
+          logs.add(log);
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("Error looking for unfinished games: " + e.getMessage());
+    }
+    logs.sort((a, b) -> Long.compare(b.toFile().lastModified(), a.toFile().lastModified()));
+    return logs;
+  }
+
+  /**
+   * Returns whether a running game holds the lock of a log.
+   *
+   * @param log the log file
+   * @return true if the log is locked, false if it is free or cannot be opened
+   */
+  private static boolean isInUse(Path log) {
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+      return !tryLock(channel);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Tries to lock the whole of a log without waiting.
+   *
+   * @param channel the log, open for writing
+   * @return true if it is now locked, false if another game holds it
+   * @throws IOException if locking fails
+   */
+  private static boolean tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock() != null;
+    } catch (OverlappingFileLockException e) {
+      // held by a game in this program
+      return false;
+    }
+  }
+
+  /**
+   * Rebuilds an unfinished game from its save and log, writes it to the save file and removes the
+   * log.
+   *
+   * @param log the log file
+   * @return the save file, which now holds the recovered game
+   * @throws UnrecoverableLogException if the log is not a log or the game ended in it
+   * @throws IOException               if the save or log cannot be read or the save written
+   */
+  public static Path recover(Path log) throws IOException {
+    Path save = saveFor(log);
+    SavedState snapshot = BinarySaveFormat.read(Files.readAllBytes(save));
+    byte[] bytes = Files.readAllBytes(log);
+    SavedState recovered = replay(snapshot, bytes);
+    // the recovered save is compressed like its log
+    Autosaver.write(recovered, save, (byte) (bytes[Integer.BYTES] & CODEC_MASK));
+    Files.delete(log);
+    return save;
+  }
+
+  /**
+   * Replays the actions of a log on the game of its save. The board is followed on a headless
+   * copy of the game in the same way WinEstimator follows it.
+   *
+   * @param snapshot the game in the save
+   * @param bytes    the contents of the log
+   * @return the game after the actions of the log
+   * @throws UnrecoverableLogException if the log is not a log or the game ended in it
+   */
+  public static SavedState replay(SavedState snapshot, byte[] bytes)
+      throws UnrecoverableLogException {
+    ByteBuffer header = ByteBuffer.wrap(bytes);
+    if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+      throw new UnrecoverableLogException("Not a move log");
+    }
+    int flags = header.get();
+    if ((flags & ~CODEC_MASK) != 0 || !BlockCodec.isKnown(flags & CODEC_MASK)) {
+      throw new UnrecoverableLogException("Unsupported move log flags " + flags);
+    }
+    int last = header.getInt();
+    byte[] records = bytes;
+    int start = HEADER_BYTES;
+    if ((flags & CODEC_MASK) != BlockCodec.NONE) {
+      records = readBlocks(header);
+      start = 0;
+    }
+    ByteBuffer in = ByteBuffer.wrap(records, start, records.length - start);
+    HeadlessGame game = new HeadlessGame(GameSetup.fromSavedState(snapshot), 0);
+    CRC32C check = new CRC32C();
+    while (in.remaining() >= RECORD_BYTES) {
+      check.reset();
+      check.update(records, in.position(), RECORD_BYTES - Integer.BYTES);
+      byte kind = in.get();
+      int sequence = in.getInt();
+      int value = in.getInt();
+      if (in.getInt() != (int) check.getValue()) {
+        // torn by a crash while it was written
+        break;
+      }
+      if (sequence <= last) {
+        continue;
+      }
+      last = sequence;
+      int limit = kind == FLIP ? game.getNumChits() : game.getNumDragons();
+      if (value < 0 || value >= limit || (kind != FLIP && kind != TURN)) {
+        throw new UnrecoverableLogException("Malformed move log record " + sequence);
+      }
+      if (kind == FLIP && !game.isFlipped(value)) {
+        game.flip(value);
+      } else if (kind == TURN) {
+        while (game.getCurrentDragon() != value) {
+          game.endTurn();
+        }
+      }
+      if (game.isOver()) {
+        throw new UnrecoverableLogException("The game in the log has ended");
+      }
+    }
+
+    List<DragonRecord> dragons = new ArrayList<>();
+    for (int i = 0; i < snapshot.getDragons().size(); i++) {
+      DragonRecord dragon = snapshot.getDragons().get(i);
+      dragons.add(new DragonRecord(dragon.colour(), game.getDragonCard(i),
+          game.getDragonIndex(i), dragon.caveCard()));
+    }
+    List<Integer> flipped = new ArrayList<>();
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      if (game.isFlipped(chit)) {
+        flipped.add(chit);
+      }
+    }
+    return new SavedState(snapshot.getVolcanoCards(), snapshot.getChitCards(), dragons,
+        new TurnRecord(game.getCurrentDragon(), flipped));
+  }
+
+  /**
+   * Inflates the blocks of a compressed log up to the first one cut short by a crash.
+   *
+   * @param in the log, positioned after the header
+   * @return the records of the complete blocks
+   */
+  private static byte[] readBlocks(ByteBuffer in) {
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    while (in.hasRemaining()) {
+      try {
+        records.writeBytes(BlockCodec.readBlock(in));
+      } catch (IOException e) {
+        // torn by a crash while it was written
+        break;
+      }
+    }
+    return records.toByteArray();
+  }
+
+  /**
+   * Removes the log of a save, if there is one.
+   *
+   * @param save the save file
+   * @throws IOException if the log exists but cannot be removed
+   */
+  public static void delete(Path save) throws IOException {
+    Files.deleteIfExists(pathFor(save));
+  }
+}
@@ -0,0 +1,67 @@
+package game.engine;
+
+import game.utils.GameUtils;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites the binary saves of a directory with another BlockCodec, by default HIGH, to shrink an
+ * archive of saves that are kept but rarely opened. Each save is rewritten in place with the same
+ * atomic write as autosaves, so an interrupted run leaves every save readable. Saves with a move
+ * log beside them belong to a game in progress or awaiting recovery and are left alone.
+ */
+public final class SaveArchiver {
+
+  /**
+   * Private constructor to prevent instantiation of the SaveArchiver class.
+   */
+  private SaveArchiver() {
+    throw new UnsupportedOperationException("Utility class should not be instantiated");
+  }
+
+  /**
+   * Runs the archiver. Arguments are optionally the codec (none, fast or high, default high) and
+   * the directory (default the save directory).
+   *
+   * @param args command line arguments
+   * @throws IOException if the directory cannot be listed
+   */
+  public static void main(String[] args) throws IOException {
+    byte codec = BlockCodec.parse(args.length > 0 ? args[0] : "high");
+    Path dir = Paths.get(args.length > 1 ? args[1] : GameUtils.SAVE_DIRECTORY);
+
+    // listed first, as rewriting renames files into the directory
+    List<Path> saves = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir,
+        "*" + GameUtils.BINARY_FILE_EXTENSION)) {
+      stream.forEach(saves::add);
+    }
+
+    long before = 0;
+    long after = 0;
+    int files = 0;
+    for (Path save : saves) {
+      if (Files.exists(MoveLog.pathFor(save))) {
+        System.out.println("Skipping " + save.getFileName() + ", it has a move log");
+        continue;
+      }
+      try {
+        byte[] bytes = Files.readAllBytes(save);
+        Autosaver.write(BinarySaveFormat.read(bytes), save, codec);
+        before += bytes.length;
+        after += Files.size(save);
+        files++;
+      } catch (IOException | RuntimeException e) {
+        // one bad save does not stop the others from being rewritten
+        System.out.println("Skipping " + save.getFileName() + ": " + e.getMessage());
+      }
+    }
+    System.out.printf("%d saves rewritten as %s: %d bytes to %d bytes%n", files,
+        BlockCodec.name(codec), before, after);
+  }
+}
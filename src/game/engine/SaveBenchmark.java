@@ -0,0 +1,191 @@
+package game.engine;
+
+import game.chitcards.BabyDragonCard;
+import game.chitcards.BatCard;
+import game.chitcards.ChitCard;
+import game.chitcards.PirateDragonCard;
+import game.chitcards.SalamanderCard;
+import game.chitcards.SpiderCard;
+import game.chitcards.SwapCard;
+import game.entities.Dragon;
+import game.tiles.BabyDragonCave;
+import game.tiles.BabyDragonSquare;
+import game.tiles.BatCave;
+import game.tiles.BatSquare;
+import game.tiles.Cave;
+import game.tiles.SalamanderCave;
+import game.tiles.SalamanderSquare;
+import game.tiles.SpiderCave;
+import game.tiles.SpiderSquare;
+import game.tiles.Square;
+import game.tiles.VolcanoCard;
+import game.tiles.VolcanoCardIterator;
+import game.utils.GameUtils;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times saving boards of growing size, from capturing the state with SavedState.capture to
+ * streaming it through BinarySaveFormat with the codec saves are written with, and prints the time
+ * per volcano card for each size. The time per card stays flat as the board grows when saving is
+ * linear.
+ *
+ * <p>Squares and chit cards load icons when constructed, so the squares are shared between cards
+ * and the board keeps the 18 chit cards of the default config; only the volcano cards grow. The
+ * caves sit a quarter of the board apart and the dragons stand on the last cards, where looking
+ * them up by position costs the most.
+ */
+public class SaveBenchmark {
+
+  private static final int[] DEFAULT_SIZES = {1_000, 10_000, 100_000};
+  private static final int ROUNDS = 5;
+  private static final int SQUARES_PER_CARD = 3;
+
+  /**
+   * Runs the benchmark. Arguments are optionally the board sizes to time, in volcano cards.
+   *
+   * @param args command line arguments
+   * @throws IOException if encoding fails
+   */
+  public static void main(String[] args) throws IOException {
+    // squares, chit cards and dragons are Swing components, which need no display here
+    System.setProperty("java.awt.headless", "true");
+    int[] sizes = DEFAULT_SIZES;
+    if (args.length > 0) {
+      sizes = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        sizes[i] = Integer.parseInt(args[i]);
+      }
+    }
+
+    Square[] squares = {new SalamanderSquare(), new BabyDragonSquare(), new BatSquare(),
+        new SpiderSquare()};
+    Cave[] caves = {new SalamanderCave(), new BabyDragonCave(), new BatCave(), new SpiderCave()};
+    List<ChitCard> chitCards = createChitCards();
+    List<ChitCard> flipped = chitCards.subList(chitCards.size() / 2, chitCards.size());
+
+    System.out.printf("%10s %12s %12s %12s %10s%n", "cards", "capture ms", "write ms",
+        "ns/card", "bytes");
+    for (int size : sizes) {
+      List<VolcanoCard> volcanoCards = createVolcanoCards(size, squares, caves);
+      List<Dragon> dragons = createDragons(volcanoCards, caves);
+
+      // the first round warms up the code for this size and is not counted
+      long captureNanos = 0;
+      long writeNanos = 0;
+      long bytes = 0;
+      for (int round = 0; round <= ROUNDS; round++) {
+        long start = System.nanoTime();
+        SavedState savedState = SavedState.capture(volcanoCards, chitCards, dragons, flipped, 0);
+        long captured = System.nanoTime();
+        CountingStream out = new CountingStream();
+        BinarySaveFormat.write(savedState, out, GameUtils.SAVE_CODEC);
+        long written = System.nanoTime();
+        if (round > 0) {
+          captureNanos += captured - start;
+          writeNanos += written - captured;
+          bytes = out.count;
+        }
+      }
+      System.out.printf("%10d %12.2f %12.2f %12.1f %10d%n", size, captureNanos / 1e6 / ROUNDS,
+          writeNanos / 1e6 / ROUNDS, (double) (captureNanos + writeNanos) / ROUNDS / size, bytes);
+    }
+  }
+
+  /**
+   * Creates the chit cards of the default config.
+   *
+   * @return the chit cards
+   */
+  private static List<ChitCard> createChitCards() {
+    List<ChitCard> chitCards = new ArrayList<>();
+    for (int moves = 1; moves <= 3; moves++) {
+      chitCards.add(new SalamanderCard(moves));
+      chitCards.add(new BabyDragonCard(moves));
+      chitCards.add(new BatCard(moves));
+      chitCards.add(new SpiderCard(moves));
+    }
+    for (int moves = -1; moves >= -2; moves--) {
+      chitCards.add(new PirateDragonCard(moves));
+      chitCards.add(new PirateDragonCard(moves));
+    }
+    chitCards.add(new SwapCard());
+    chitCards.add(new SwapCard());
+    return chitCards;
+  }
+
+  /**
+   * Creates a ring of volcano cards with a cave every quarter of the ring.
+   *
+   * @param size    the number of volcano cards
+   * @param squares one shared square of each animal
+   * @param caves   one cave of each animal
+   * @return the volcano cards
+   */
+  private static List<VolcanoCard> createVolcanoCards(int size, Square[] squares, Cave[] caves) {
+    List<VolcanoCard> volcanoCards = new ArrayList<>(size);
+    int spacing = Math.max(1, size / caves.length);
+    for (int i = 0; i < size; i++) {
+      List<Square> cardSquares = new ArrayList<>(SQUARES_PER_CARD);
+      for (int j = 0; j < SQUARES_PER_CARD; j++) {
+        cardSquares.add(squares[(i + j) % squares.length]);
+      }
+      VolcanoCard card = new VolcanoCard(cardSquares, 1, 1, SQUARES_PER_CARD);
+      if (i % spacing == 0 && i / spacing < caves.length) {
+        card.setCave(caves[i / spacing]);
+      }
+      volcanoCards.add(card);
+    }
+    return volcanoCards;
+  }
+
+  /**
+   * Creates a dragon for each cave and stands them on the last volcano cards.
+   *
+   * @param volcanoCards the volcano cards
+   * @param caves        the caves
+   * @return the dragons
+   */
+  private static List<Dragon> createDragons(List<VolcanoCard> volcanoCards, Cave[] caves) {
+    List<Dragon> dragons = new ArrayList<>();
+    for (int i = 0; i < caves.length; i++) {
+      VolcanoCard card = volcanoCards.get(volcanoCards.size() - 1 - i % volcanoCards.size());
+      Dragon dragon = new Dragon(card, caves[i]);
+      dragon.setVolcanoCardIterator(new VolcanoCardIterator(card, i % SQUARES_PER_CARD));
+      dragons.add(dragon);
+    }
+    return dragons;
+  }
+
+  /**
+   * An output stream that only counts what is written to it.
+   */
+  private static class CountingStream extends OutputStream {
+
+    private long count;
+
+    /**
+     * Counts one byte.
+     *
+     * @param b the byte
+     */
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    /**
+     * Counts a run of bytes.
+     *
+     * @param b   the bytes
+     * @param off the offset of the run
+     * @param len the length of the run
+     */
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+}
@@ -0,0 +1,441 @@
+package game.engine;
+
+import game.engine.SavedState.DragonRecord;
+import game.simulation.GameSetup;
+import game.utils.GameUtils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * An index of the saves in a directory, kept beside them as catalog.idx, so that the saves can be
+ * listed without opening any of them. Every save written updates its own entry in place and a
+ * removed save frees it, so keeping the catalog costs one entry per save however many there are.
+ *
+ * <p>Layout: the magic and the version as big-endian ints, then entries of ENTRY_BYTES each:
+ *
+ * <pre>
+ *   byte      1 for an entry in use, 0 for a free one
+ *   byte      length of the file name
+ *   128 bytes the UTF-8 file name of the save, relative to the directory, zero padded
+ *   long      when the save was written, in epoch milliseconds
+ *   4 bytes   the BinarySaveFormat colour byte of each dragon in turn order, -1 past the last
+ *   int       the index of the dragon whose turn it is
+ *   long      the GameSetup config hash of the board
+ *   int       CRC32C of the bytes before it
+ *   2 bytes   padding
+ * </pre>
+ *
+ * <p>Entries are written whole at fixed offsets, so a reader never needs a lock: an entry torn by
+ * a crash or caught mid-write fails its checksum, is skipped and is reused by the next save.
+ * Writers lock LOCK_FILE_NAME beside the catalog so that games running side by side do not
+ * overwrite each other's entries. The lock file is never replaced, unlike the catalog, which a
+ * rebuild swaps for a new file while holding the same lock.
+ */
+public final class SaveCatalog {
+
+  public static final String FILE_NAME = "catalog.idx";
+  public static final String LOCK_FILE_NAME = FILE_NAME + ".lock";
+  public static final int MAGIC = 0x46444349;
+  public static final int VERSION = 1;
+  public static final int MAX_DRAGONS = 4;
+
+  private static final int HEADER_BYTES = Integer.BYTES * 2;
+  private static final int NAME_BYTES = 128;
+  private static final int ENTRY_BYTES = 160;
+  private static final int CHECKED_BYTES = 2 + NAME_BYTES + Long.BYTES + MAX_DRAGONS
+      + Integer.BYTES + Long.BYTES;
+  private static final String SAVE_GLOB = "*.{fds,json}";
+
+  /**
+   * A save as the catalog knows it.
+   *
+   * @param fileName   the file name of the save, relative to its directory
+   * @param timestamp  when the save was written, in epoch milliseconds
+   * @param colours    the colour names of the dragons in turn order
+   * @param turn       the index of the dragon whose turn it is
+   * @param configHash the GameSetup config hash of the board
+   */
+  public record Entry(String fileName, long timestamp, List<String> colours, int turn,
+                      long configHash) {
+
+  }
+
+  /**
+   * Private constructor to prevent instantiation of the SaveCatalog class.
+   */
+  private SaveCatalog() {
+    throw new UnsupportedOperationException("Utility class should not be instantiated");
+  }
+
+  /**
+   * Returns the catalog file of a save directory.
+   *
+   * @param dir the save directory
+   * @return the catalog file in it
+   */
+  public static Path pathFor(Path dir) {
+    return dir.resolve(FILE_NAME);
+  }
+
+  /**
+   * Describes a save that has just been written.
+   *
+   * @param save       the save file
+   * @param savedState the game it holds
+   * @return the entry of the save
+   * @throws IOException if the save file cannot be found
+   */
+  public static Entry entryOf(Path save, SavedState savedState) throws IOException {
+    List<String> colours = new ArrayList<>();
+    for (DragonRecord dragon : savedState.getDragons()) {
+      colours.add(dragon.colour());
+    }
+    return new Entry(save.getFileName().toString(), Files.getLastModifiedTime(save).toMillis(),
+        colours, savedState.getCurrentDragon(),
+        GameSetup.fromSavedState(savedState).getConfigHash());
+  }
+
+  /**
+   * Adds a save that has just been written to the catalog of its directory, or updates its entry
+   * if it has one.
+   *
+   * @param save       the save file
+   * @param savedState the game it holds
+   * @throws IOException if the catalog cannot be written
+   */
+  public static void put(Path save, SavedState savedState) throws IOException {
+    Entry entry = entryOf(save, savedState);
+    byte[] encoded = encode(entry);
+    if (encoded == null) {
+      System.out.println("Not cataloguing " + entry.fileName() + ", its name is too long");
+      return;
+    }
+    update(save.toAbsolutePath().getParent(), entry.fileName(), encoded);
+  }
+
+  /**
+   * Removes a save from the catalog of its directory, if it is there.
+   *
+   * @param save the save file, which has been or is about to be deleted
+   * @throws IOException if the catalog cannot be written
+   */
+  public static void remove(Path save) throws IOException {
+    Path dir = save.toAbsolutePath().getParent();
+    if (Files.exists(pathFor(dir))) {
+      update(dir, save.getFileName().toString(), new byte[ENTRY_BYTES]);
+    }
+  }
+
+  /**
+   * Reads the saves of a directory from its catalog, newest first. A directory without a valid
+   * catalog, such as one of saves written before catalogs existed, is catalogued first.
+   *
+   * @param dir the save directory
+   * @return the saves
+   * @throws IOException if the catalog cannot be read or built
+   */
+  public static List<Entry> read(Path dir) throws IOException {
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(pathFor(dir));
+    } catch (NoSuchFileException e) {
+      return rebuild(dir);
+    }
+    ByteBuffer in = ByteBuffer.wrap(bytes);
+    if (bytes.length < HEADER_BYTES || in.getInt() != MAGIC || in.getInt() != VERSION) {
+      return rebuild(dir);
+    }
+    List<Entry> entries = new ArrayList<>();
+    for (int offset = HEADER_BYTES; offset + ENTRY_BYTES <= bytes.length;
+        offset += ENTRY_BYTES) {
+      Entry entry = decode(bytes, offset);
+      if (entry != null) {
+        entries.add(entry);
+      }
+    }
+    entries.sort((a, b) -> Long.compare(b.timestamp(), a.timestamp()));
+    return entries;
+  }
+
+  /**
+   * Catalogues a directory from scratch by opening every save in it, and replaces its catalog.
+   * Only needed when the catalog is missing or unreadable. The catalog is locked throughout, so an
+   * entry written meanwhile by another game is not lost in the swap.
+   *
+   * @param dir the save directory
+   * @return the saves, newest first
+   * @throws IOException if the directory cannot be listed or the catalog written
+   */
+  public static synchronized List<Entry> rebuild(Path dir) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    if (!Files.isDirectory(dir)) {
+      return entries;
+    }
+    FileChannel lock = lockCatalog(dir);
+    try {
+      replace(dir, catalogue(dir, entries));
+    } finally {
+      lock.close();
+    }
+    entries.sort((a, b) -> Long.compare(b.timestamp(), a.timestamp()));
+    return entries;
+  }
+
+  /**
+   * Opens every save in a directory and encodes its entry.
+   *
+   * @param dir     the save directory
+   * @param entries the list the entries are added to
+   * @return the encoded entries, in the same order
+   * @throws IOException if the directory cannot be listed
+   */
+  private static List<byte[]> catalogue(Path dir, List<Entry> entries) throws IOException {
+    List<byte[]> encoded = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SAVE_GLOB)) {
+      for (Path save : stream) {
+        SavedState savedState = GameUtils.initialiseSavedState(save.toString());
+        if (savedState == null) {
+          continue;
+        }
+        try {
+          Entry entry = entryOf(save, savedState);
+          byte[] bytes = encode(entry);
+          if (bytes != null) {
+            entries.add(entry);
+            encoded.add(bytes);
+          }
+        } catch (RuntimeException e) {
+          System.out.println("Not cataloguing " + save.getFileName() + ": " + e.getMessage());
+        }
+      }
+    }
+    return encoded;
+  }
+
+  /**
+   * Replaces the catalog of a directory with one holding the given entries. Called with the
+   * catalog locked.
+   *
+   * @param dir     the save directory
+   * @param encoded the encoded entries
+   * @throws IOException if the catalog cannot be written
+   */
+  private static void replace(Path dir, List<byte[]> encoded) throws IOException {
+    ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+    Path catalog = pathFor(dir);
+    Path temp = dir.resolve(FILE_NAME + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      write(channel, out.flip(), 0);
+      for (int i = 0; i < encoded.size(); i++) {
+        write(channel, ByteBuffer.wrap(encoded.get(i)), HEADER_BYTES + (long) i * ENTRY_BYTES);
+      }
+      channel.force(false);
+    }
+    try {
+      Files.move(temp, catalog, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, catalog, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Opens and locks the lock file of a catalog. Closing the channel returned releases the lock.
+   * The lock file is never replaced, so every game locks the same file however often the catalog
+   * is rebuilt.
+   *
+   * @param dir the save directory, which must exist
+   * @return the locked channel
+   * @throws IOException if the lock file cannot be opened or locked
+   */
+  private static FileChannel lockCatalog(Path dir) throws IOException {
+    FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE_NAME),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      channel.lock();
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    return channel;
+  }
+
+  /**
+   * Writes an entry over the entry of the same save, or else into the first free slot, or else at
+   * the end of the catalog. A directory without a valid catalog, such as one of saves written
+   * before catalogs existed, is catalogued first, so those saves are not left out.
+   *
+   * @param dir      the save directory
+   * @param fileName the file name of the save
+   * @param encoded  the encoded entry, all zeros to free the save's entry
+   * @throws IOException if the catalog cannot be written
+   */
+  private static synchronized void update(Path dir, String fileName, byte[] encoded)
+      throws IOException {
+    Files.createDirectories(dir);
+    FileChannel lock = lockCatalog(dir);
+    try {
+      if (!hasValidHeader(pathFor(dir))) {
+        // missing or unreadable, so the saves already in the directory are catalogued first
+        replace(dir, catalogue(dir, new ArrayList<>()));
+      }
+      writeEntry(dir, fileName, encoded);
+    } finally {
+      lock.close();
+    }
+  }
+
+  /**
+   * Returns whether a catalog file exists and starts with the header of this version.
+   *
+   * @param catalog the catalog file
+   * @return true if the catalog can be updated in place
+   * @throws IOException if the catalog exists but cannot be read
+   */
+  private static boolean hasValidHeader(Path catalog) throws IOException {
+    if (!Files.exists(catalog)) {
+      return false;
+    }
+    try (FileChannel channel = FileChannel.open(catalog, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // read until the header is full or the file ends
+      }
+      header.flip();
+      return header.remaining() == HEADER_BYTES && header.getInt() == MAGIC
+          && header.getInt() == VERSION;
+    }
+  }
+
+  /**
+   * Writes an entry into a catalog with a valid header. Called with the catalog locked.
+   *
+   * @param dir      the save directory
+   * @param fileName the file name of the save
+   * @param encoded  the encoded entry, all zeros to free the save's entry
+   * @throws IOException if the catalog cannot be written
+   */
+  private static void writeEntry(Path dir, String fileName, byte[] encoded) throws IOException {
+    // opened once locked, so it is the catalog a rebuild may just have swapped in
+    try (FileChannel channel = FileChannel.open(pathFor(dir), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+      // the whole catalog is read to find the slot, a few hundred entries at most
+      while (bytes.hasRemaining()) {
+        if (channel.read(bytes, bytes.position()) < 0) {
+          break;
+        }
+      }
+
+      long slot = -1;
+      long free = -1;
+      int end = bytes.capacity() - (bytes.capacity() - HEADER_BYTES) % ENTRY_BYTES;
+      for (int offset = HEADER_BYTES; offset < end; offset += ENTRY_BYTES) {
+        Entry entry = decode(bytes.array(), offset);
+        if (entry == null) {
+          free = free < 0 ? offset : free;
+        } else if (entry.fileName().equals(fileName)) {
+          slot = offset;
+          break;
+        }
+      }
+      boolean removing = encoded[0] == 0;
+      if (slot < 0) {
+        if (removing) {
+          return;
+        }
+        slot = free >= 0 ? free : end;
+      }
+      write(channel, ByteBuffer.wrap(encoded), slot);
+      channel.force(false);
+    }
+  }
+
+  /**
+   * Encodes an entry.
+   *
+   * @param entry the entry
+   * @return the encoded entry, or null if the file name does not fit
+   */
+  private static byte[] encode(Entry entry) {
+    byte[] name = entry.fileName().getBytes(StandardCharsets.UTF_8);
+    if (name.length > NAME_BYTES) {
+      return null;
+    }
+    byte[] colours = new byte[MAX_DRAGONS];
+    Arrays.fill(colours, (byte) -1);
+    for (int i = 0; i < Math.min(MAX_DRAGONS, entry.colours().size()); i++) {
+      colours[i] = BinarySaveFormat.colourOf(entry.colours().get(i));
+    }
+    ByteBuffer out = ByteBuffer.allocate(ENTRY_BYTES);
+    out.put((byte) 1).put((byte) name.length).put(name).position(2 + NAME_BYTES);
+    out.putLong(entry.timestamp()).put(colours).putInt(entry.turn()).putLong(entry.configHash());
+    CRC32C crc = new CRC32C();
+    crc.update(out.array(), 0, CHECKED_BYTES);
+    out.putInt((int) crc.getValue());
+    return out.array();
+  }
+
+  /**
+   * Decodes the entry at an offset of the catalog.
+   *
+   * @param bytes  the catalog
+   * @param offset the offset of the entry
+   * @return the entry, or null if it is free or fails its checksum
+   */
+  private static Entry decode(byte[] bytes, int offset) {
+    ByteBuffer in = ByteBuffer.wrap(bytes, offset, ENTRY_BYTES);
+    if (in.get() != 1) {
+      return null;
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(bytes, offset, CHECKED_BYTES);
+    if (in.getInt(offset + CHECKED_BYTES) != (int) crc.getValue()) {
+      return null;
+    }
+    int nameLength = in.get() & 0xFF;
+    if (nameLength > NAME_BYTES) {
+      return null;
+    }
+    String name = new String(bytes, in.position(), nameLength, StandardCharsets.UTF_8);
+    in.position(in.position() + NAME_BYTES);
+    long timestamp = in.getLong();
+    List<String> colours = new ArrayList<>();
+    for (int i = 0; i < MAX_DRAGONS; i++) {
+      byte colour = in.get();
+      if (colour >= 0) {
+        colours.add(BinarySaveFormat.colourName(colour));
+      }
+    }
+    return new Entry(name, timestamp, colours, in.getInt(), in.getLong());
+  }
+
+  /**
+   * Writes bytes at a position of a file.
+   *
+   * @param channel  the file
+   * @param bytes    the bytes
+   * @param position where to write them
+   * @throws IOException if the file cannot be written
+   */
+  private static void write(FileChannel channel, ByteBuffer bytes, long position)
+      throws IOException {
+    while (bytes.hasRemaining()) {
+      channel.write(bytes, position + bytes.position());
+    }
+  }
+}
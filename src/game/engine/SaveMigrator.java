@@ -0,0 +1,31 @@
+package game.engine;
+
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+
+/**
+ * Upgrades JSON saves of one older schema version to the current SavedState while they are read.
+ * A migrator streams the fields of its version's layout, so that an old save costs no more to load
+ * than a current one, and the save is written back in the current version the next time the game
+ * is saved.
+ */
+public interface SaveMigrator {
+
+  /**
+   * Returns the schema version this migrator reads.
+   *
+   * @return the version
+   */
+  int getVersion();
+
+  /**
+   * Reads the rest of a save object of this version.
+   *
+   * @param in        the reader, positioned just after the name of the first field of the object
+   *                  other than the version
+   * @param firstName the name of that field, or null if the object has no other field
+   * @return the save in the current schema
+   * @throws IOException if the save is malformed
+   */
+  SavedState read(JsonReader in, String firstName) throws IOException;
+}
@@ -0,0 +1,250 @@
+package game.engine;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import game.engine.SavedState.CardRecord;
+import game.engine.SavedState.CaveRecord;
+import game.engine.SavedState.ChitRecord;
+import game.engine.SavedState.DragonRecord;
+import game.engine.SavedState.TurnRecord;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads JSON saves of any schema version with a streaming reader, so the cost of a load grows
+ * linearly with the board and no tree of the whole file is built. A save of the current version
+ * starts with its version field; a save of an older version is handed to the SaveMigrator of that
+ * version, and one without a version field is version 1.
+ */
+public final class SaveReader {
+
+  private static final Map<Integer, SaveMigrator> MIGRATORS = Map.of(1, new LegacySaveMigrator());
+
+  /**
+   * Private constructor to prevent instantiation of the SaveReader class.
+   */
+  private SaveReader() {
+    throw new UnsupportedOperationException("Utility class should not be instantiated");
+  }
+
+  /**
+   * Reads a JSON save.
+   *
+   * @param reader the JSON text, which is not closed
+   * @return the save in the current schema
+   * @throws IOException if the save is malformed or of an unknown version
+   */
+  public static SavedState read(Reader reader) throws IOException {
+    JsonReader in = new JsonReader(reader);
+    try {
+      in.beginObject();
+      String name = in.hasNext() ? in.nextName() : null;
+      int version = 1;
+      if ("version".equals(name)) {
+        version = in.nextInt();
+        name = in.hasNext() ? in.nextName() : null;
+      }
+      SavedState savedState;
+      if (version == SavedState.VERSION) {
+        savedState = readCurrent(in, name);
+      } else if (MIGRATORS.containsKey(version)) {
+        savedState = MIGRATORS.get(version).read(in, name);
+      } else {
+        throw new IOException("Unsupported save version " + version);
+      }
+      in.endObject();
+      return savedState;
+    } catch (IllegalStateException | NumberFormatException e) {
+      // thrown by JsonReader for unexpected tokens
+      throw new IOException("Malformed save: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reads the rest of a save object of the current version.
+   *
+   * @param in        the reader, positioned just after the name of the first field after the
+   *                  version
+   * @param firstName the name of that field, or null if there is none
+   * @return the save
+   * @throws IOException if the save is malformed
+   */
+  private static SavedState readCurrent(JsonReader in, String firstName) throws IOException {
+    List<CardRecord> volcanoCards = new ArrayList<>();
+    List<ChitRecord> chitCards = new ArrayList<>();
+    List<DragonRecord> dragons = new ArrayList<>();
+    TurnRecord turn = new TurnRecord(0, new ArrayList<>());
+    for (String name = firstName; name != null; name = in.hasNext() ? in.nextName() : null) {
+      switch (name) {
+        case "volcanoCards" -> {
+          in.beginArray();
+          while (in.hasNext()) {
+            volcanoCards.add(readCard(in));
+          }
+          in.endArray();
+        }
+        case "chitCards" -> {
+          in.beginArray();
+          while (in.hasNext()) {
+            chitCards.add(readChit(in));
+          }
+          in.endArray();
+        }
+        case "dragons" -> {
+          in.beginArray();
+          while (in.hasNext()) {
+            dragons.add(readDragon(in));
+          }
+          in.endArray();
+        }
+        case "turn" -> turn = readTurn(in);
+        default -> in.skipValue();
+      }
+    }
+    return new SavedState(volcanoCards, chitCards, dragons, turn);
+  }
+
+  /**
+   * Reads a volcano card object.
+   *
+   * @param in the reader, positioned at the object
+   * @return the volcano card
+   * @throws IOException if the object is malformed
+   */
+  private static CardRecord readCard(JsonReader in) throws IOException {
+    List<String> squares = new ArrayList<>();
+    CaveRecord cave = null;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "squares" -> {
+          in.beginArray();
+          while (in.hasNext()) {
+            squares.add(in.nextString());
+          }
+          in.endArray();
+        }
+        case "cave" -> {
+          if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+          } else {
+            cave = readCave(in);
+          }
+        }
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+    return new CardRecord(squares, cave);
+  }
+
+  /**
+   * Reads a cave object.
+   *
+   * @param in the reader, positioned at the object
+   * @return the cave
+   * @throws IOException if the object is malformed
+   */
+  private static CaveRecord readCave(JsonReader in) throws IOException {
+    String type = null;
+    int index = -1;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "type" -> type = in.nextString();
+        case "index" -> index = in.nextInt();
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+    if (type == null || index < 0) {
+      throw new IOException("Malformed save: cave without a type or index");
+    }
+    return new CaveRecord(type, index);
+  }
+
+  /**
+   * Reads a chit card object.
+   *
+   * @param in the reader, positioned at the object
+   * @return the chit card
+   * @throws IOException if the object is malformed
+   */
+  private static ChitRecord readChit(JsonReader in) throws IOException {
+    String type = null;
+    int moves = 0;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "type" -> type = in.nextString();
+        case "moves" -> moves = in.nextInt();
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+    if (type == null) {
+      throw new IOException("Malformed save: chit card without a type");
+    }
+    return new ChitRecord(type, moves);
+  }
+
+  /**
+   * Reads a dragon object.
+   *
+   * @param in the reader, positioned at the object
+   * @return the dragon
+   * @throws IOException if the object is malformed
+   */
+  private static DragonRecord readDragon(JsonReader in) throws IOException {
+    String colour = null;
+    int card = -1;
+    int square = -1;
+    int caveCard = -1;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "colour" -> colour = in.nextString();
+        case "card" -> card = in.nextInt();
+        case "square" -> square = in.nextInt();
+        case "caveCard" -> caveCard = in.nextInt();
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+    if (colour == null || card < 0 || caveCard < 0) {
+      throw new IOException("Malformed save: dragon without a colour, card or cave");
+    }
+    return new DragonRecord(colour, card, square, caveCard);
+  }
+
+  /**
+   * Reads the turn object.
+   *
+   * @param in the reader, positioned at the object
+   * @return the turn
+   * @throws IOException if the object is malformed
+   */
+  private static TurnRecord readTurn(JsonReader in) throws IOException {
+    int currentDragon = 0;
+    List<Integer> flipped = new ArrayList<>();
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "currentDragon" -> currentDragon = in.nextInt();
+        case "flippedChitCards" -> {
+          in.beginArray();
+          while (in.hasNext()) {
+            flipped.add(in.nextInt());
+          }
+          in.endArray();
+        }
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+    return new TurnRecord(currentDragon, flipped);
+  }
+}
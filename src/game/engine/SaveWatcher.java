@@ -0,0 +1,266 @@
+package game.engine;
+
+import game.utils.GameUtils;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an in-memory list of the saves in a directory up to date as saves are written and removed
+ * by this game, other games or other programs such as sync tools. The directory is watched with a
+ * WatchService on a daemon thread; events are gathered until the directory has been quiet for
+ * DEBOUNCE_MILLIS, and only the saves they name are looked at. The list starts from the
+ * SaveCatalog, and a save written by something that does not keep the catalog is opened once and
+ * entered in it.
+ *
+ * <p>Changes are handed to the listener on the watcher thread, so it must not touch Swing
+ * components directly.
+ */
+public class SaveWatcher {
+
+  public static final long DEBOUNCE_MILLIS = 250;
+
+  private final Path dir;
+  private final Map<String, SaveCatalog.Entry> saves = new ConcurrentHashMap<>();
+  private volatile Listener listener;
+
+  /**
+   * Receives the changes to the saves of a directory.
+   */
+  public interface Listener {
+
+    /**
+     * Called when saves have been added, rewritten or removed.
+     *
+     * @param changed the saves added or rewritten
+     * @param removed the file names of the saves removed
+     */
+    void savesChanged(List<SaveCatalog.Entry> changed, List<String> removed);
+  }
+
+  /**
+   * Constructs a watcher for a save directory.
+   *
+   * @param dir the save directory, which is created if it does not exist
+   */
+  public SaveWatcher(Path dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * Starts watching on a daemon thread, which first reads the catalog and hands every save in it
+   * to the listener.
+   */
+  public void start() {
+    Thread thread = new Thread(this::run, "save-watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Makes a listener the one changes are handed to, replacing the previous one, and returns the
+   * saves known so far. Changes the listener is handed afterwards may repeat some of them.
+   *
+   * @param listener the listener
+   * @return the saves known so far, in no particular order
+   */
+  public List<SaveCatalog.Entry> subscribe(Listener listener) {
+    // set first, so a change missed by the listener is already in the saves returned
+    this.listener = listener;
+    return new ArrayList<>(saves.values());
+  }
+
+  /**
+   * Watches the directory until the watch service fails. A burst whose saves cannot be read is
+   * logged and the whole list read again on the next one. Runs on the watcher thread.
+   */
+  private void run() {
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      Files.createDirectories(dir);
+      // registered before the catalog is read, so no save written in between is missed
+      dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+      boolean stale = !update(null);
+      while (true) {
+        Set<String> names = new HashSet<>();
+        boolean overflow = drain(watchService.take(), names);
+        WatchKey key;
+        while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          overflow |= drain(key, names);
+        }
+        stale = !update(overflow || stale ? null : names);
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // stopped
+    } catch (IOException e) {
+      System.out.println("Error watching save directory: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Brings the list up to date, logging rather than throwing if the catalog cannot be read.
+   *
+   * @param names the file names of the saves named by a burst of events, or null to read the
+   *              whole list again
+   * @return true if the list is up to date, false if it has to be read again whole
+   */
+  private boolean update(Set<String> names) {
+    try {
+      if (names == null) {
+        reload();
+      } else {
+        apply(names);
+      }
+      return true;
+    } catch (IOException e) {
+      System.out.println("Error reading save directory: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Takes the events of a watch key, keeping the names of saves, and re-arms the key.
+   *
+   * @param key   the signalled key
+   * @param names the set the file names of the saves named are added to
+   * @return true if events were lost and the list has to be read again
+   */
+  private boolean drain(WatchKey key, Set<String> names) {
+    boolean overflow = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        overflow = true;
+      } else if (isSave(event.context().toString())) {
+        names.add(event.context().toString());
+      }
+    }
+    key.reset();
+    return overflow;
+  }
+
+  /**
+   * Returns whether a file name is that of a save, as opposed to a move log, a temporary file or
+   * the catalog.
+   *
+   * @param name the file name
+   * @return true for binary and JSON saves
+   */
+  private static boolean isSave(String name) {
+    return name.endsWith(GameUtils.BINARY_FILE_EXTENSION) || name.endsWith(".json");
+  }
+
+  /**
+   * Replaces the list with the saves of the catalog and hands the difference to the listener.
+   * Used at the start and when the watch service lost events.
+   *
+   * @throws IOException if the catalog cannot be read
+   */
+  private void reload() throws IOException {
+    Map<String, SaveCatalog.Entry> catalog = new HashMap<>();
+    for (SaveCatalog.Entry entry : SaveCatalog.read(dir)) {
+      catalog.put(entry.fileName(), entry);
+    }
+    List<String> removed = new ArrayList<>();
+    for (String name : saves.keySet()) {
+      if (!catalog.containsKey(name)) {
+        saves.remove(name);
+        removed.add(name);
+      }
+    }
+    List<SaveCatalog.Entry> changed = new ArrayList<>();
+    for (SaveCatalog.Entry entry : catalog.values()) {
+      if (!entry.equals(saves.put(entry.fileName(), entry))) {
+        changed.add(entry);
+      }
+    }
+    publish(changed, removed);
+  }
+
+  /**
+   * Brings the list up to date for the saves named by a burst of events and hands what changed
+   * to the listener.
+   *
+   * @param names the file names of the saves
+   * @throws IOException if the catalog cannot be read
+   */
+  private void apply(Set<String> names) throws IOException {
+    if (names.isEmpty()) {
+      return;
+    }
+    Map<String, SaveCatalog.Entry> catalog = new HashMap<>();
+    for (SaveCatalog.Entry entry : SaveCatalog.read(dir)) {
+      catalog.put(entry.fileName(), entry);
+    }
+    List<SaveCatalog.Entry> changed = new ArrayList<>();
+    List<String> removed = new ArrayList<>();
+    for (String name : names) {
+      Path save = dir.resolve(name);
+      SaveCatalog.Entry entry = Files.exists(save) ? catalogued(save, catalog.get(name)) : null;
+      if (entry == null) {
+        if (saves.remove(name) != null) {
+          removed.add(name);
+        }
+        if (catalog.containsKey(name) && !Files.exists(save)) {
+          // removed by something that does not keep the catalog
+          SaveCatalog.remove(save);
+        }
+      } else if (!entry.equals(saves.put(name, entry))) {
+        changed.add(entry);
+      }
+    }
+    publish(changed, removed);
+  }
+
+  /**
+   * Returns the catalog entry of a save that exists, entering the save in the catalog first if it
+   * was written by something that does not keep the catalog.
+   *
+   * @param save  the save file
+   * @param entry its entry in the catalog, or null if it has none
+   * @return the entry, or null if the save cannot be read, such as while it is still being copied
+   */
+  private static SaveCatalog.Entry catalogued(Path save, SaveCatalog.Entry entry) {
+    try {
+      if (entry != null
+          && entry.timestamp() == Files.getLastModifiedTime(save).toMillis()) {
+        return entry;
+      }
+      SavedState savedState = GameUtils.initialiseSavedState(save.toString());
+      if (savedState == null) {
+        return null;
+      }
+      SaveCatalog.put(save, savedState);
+      return SaveCatalog.entryOf(save, savedState);
+    } catch (IOException | RuntimeException e) {
+      System.out.println("Error cataloguing " + save.getFileName() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Hands changes to the listener, if there are any and there is a listener.
+   *
+   * @param changed the saves added or rewritten
+   * @param removed the file names of the saves removed
+   */
+  private void publish(List<SaveCatalog.Entry> changed, List<String> removed) {
+    Listener current = listener;
+    if (current != null && (!changed.isEmpty() || !removed.isEmpty())) {
+      current.savesChanged(changed, removed);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package game.engine;
+
+import com.google.gson.stream.JsonWriter;
+import game.engine.SavedState.CardRecord;
+import game.engine.SavedState.ChitRecord;
+import game.engine.SavedState.DragonRecord;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes saves as JSON in the current schema with a streaming writer. The version is always the
+ * first field, which is how SaveReader tells the current schema from older ones.
+ */
+public final class SaveWriter {
+
+  /**
+   * Private constructor to prevent instantiation of the SaveWriter class.
+   */
+  private SaveWriter() {
+    throw new UnsupportedOperationException("Utility class should not be instantiated");
+  }
+
+  /**
+   * Writes a save as indented JSON.
+   *
+   * @param savedState the save
+   * @param writer     the output, which is flushed but not closed
+   * @throws IOException if writing fails
+   */
+  public static void write(SavedState savedState, Writer writer) throws IOException {
+    JsonWriter out = new JsonWriter(writer);
+    out.setIndent("  ");
+    out.beginObject();
+    out.name("version").value(SavedState.VERSION);
+
+    out.name("volcanoCards").beginArray();
+    for (CardRecord card : savedState.getVolcanoCards()) {
+      out.beginObject();
+      out.name("squares").beginArray();
+      for (String square : card.squares()) {
+        out.value(square);
+      }
+      out.endArray();
+      if (card.cave() != null) {
+        out.name("cave").beginObject();
+        out.name("type").value(card.cave().type());
+        out.name("index").value(card.cave().index());
+        out.endObject();
+      }
+      out.endObject();
+    }
+    out.endArray();
+
+    out.name("chitCards").beginArray();
+    for (ChitRecord chit : savedState.getChitCards()) {
+      out.beginObject();
+      out.name("type").value(chit.type());
+      out.name("moves").value(chit.moves());
+      out.endObject();
+    }
+    out.endArray();
+
+    out.name("dragons").beginArray();
+    for (DragonRecord dragon : savedState.getDragons()) {
+      out.beginObject();
+      out.name("colour").value(dragon.colour());
+      out.name("card").value(dragon.card());
+      out.name("square").value(dragon.square());
+      out.name("caveCard").value(dragon.caveCard());
+      out.endObject();
+    }
+    out.endArray();
+
+    out.name("turn").beginObject();
+    out.name("currentDragon").value(savedState.getCurrentDragon());
+    out.name("flippedChitCards").beginArray();
+    for (int chit : savedState.getFlippedChitCards()) {
+      out.value(chit);
+    }
+    out.endArray();
+    out.endObject();
+
+    out.endObject();
+    out.flush();
+  }
+}
@@ -2,196 +2,223 @@ package game.engine;
 
 import game.chitcards.ChitCard;
 import game.entities.Dragon;
+import game.tiles.Square;
 import game.tiles.VolcanoCard;
-import game.utils.GameUtils;
 import game.view.GameBoard;
 import java.awt.Color;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Configuration class representing the structure of the configuration JSON file. This class is used
- * for deserialisation with Gson.
+ * A saved game in the current save schema, made of typed records for the volcano cards with their
+ * caves, the chit cards, the dragons and the turn in progress. Saves of older schema versions are
+ * upgraded by a SaveMigrator as they are read by SaveReader, so only this version is ever seen
+ * by the rest of the game; SaveWriter and BinarySaveFormat always write it.
  */
 public class SavedState {
 
-  private List<String> chitCards;
-  private List<String> volcanoCards;
-  private List<String> dragons;
-  private List<Integer> flippedChitCards;
-  private int currentDragon;
-  private Map<String, Integer> dragonCaves;
+  public static final int VERSION = 2;
 
   /**
-   * Default constructor initializing empty lists and map for chit cards, volcano cards, dragons,
-   * flipped chit cards, and dragon caves.
+   * A volcano card.
+   *
+   * @param squares the type names of its squares in order, eg: Spider
+   * @param cave    its cave, or null if it has none
    */
-  public SavedState() {
-    this.chitCards = new ArrayList<>();
-    this.volcanoCards = new ArrayList<>();
-    this.dragons = new ArrayList<>();
-    this.flippedChitCards = new ArrayList<>();
-    this.dragonCaves = new HashMap<>();
+  public record CardRecord(List<String> squares, CaveRecord cave) {
+
   }
 
   /**
-   * Saves the current game state to a file.
+   * The cave of a volcano card.
    *
-   * @param board The game board containing the current state of the game.
+   * @param type  the type name of the cave, eg: SpiderCave
+   * @param index the index of the square the cave hangs off
    */
-  public static void saveState(GameBoard board) {
-    // initialisation
-    SavedState savedState = new SavedState();
-    GameEngine engine = GameEngine.getInstance();
-
-    // save chitcards
-    for (ChitCard card : board.getChitCards()) {
-      savedState.chitCards.add(card.saveState());
-    }
-
-    // save index of flipped cards
-    for (ChitCard card : engine.getFlippedChitCards()) {
-      savedState.flippedChitCards.add(board.getChitCards().indexOf(card));
-    }
-
-    // save volcano cards and caves with dragon in it
-    for (VolcanoCard card : board.getVolcanoCards()) {
-      savedState.volcanoCards.add(card.saveState());
-
-      if (card.getCave() != null) {
-        Color color = card.getCave().getColour();
-        for (Dragon dragon : engine.getDragons()) {
-          if (color == dragon.getColourObject()) {
-            // save dragon's cave
-            savedState.dragonCaves.put(dragon.saveState(), board.getVolcanoCards().indexOf(card));
-
-          }
-        }
-      }
-    }
-
-    for (Dragon dragon : engine.getDragons()) {
-      // save dragon's position
-      int tmpVolIndex = board.getVolcanoCards()
-          .indexOf(dragon.getVolcanoCardIterator().getCurrentCard());
-      int tmpSquareIndex = dragon.getVolcanoCardIterator().getCurrentIndex();
-      savedState.dragons.add(dragon.saveState() + "_" + tmpVolIndex + "_" + tmpSquareIndex);
-    }
+  public record CaveRecord(String type, int index) {
 
-    //save current dragon
-    savedState.currentDragon = engine.getDragons().indexOf(engine.getCurrentDragon());
-
-    // Create a Gson instance and save it as json file
-    GameUtils.writeJsonFile(savedState, GameUtils.getSavePath());
   }
 
   /**
-   * Returns the list of chit cards.
+   * A chit card.
    *
-   * @return The list of chit cards.
+   * @param type  the type name of the chit card, eg: BabyDragon
+   * @param moves the number of moves on it
    */
-  public List<String> getChitCards() {
-    return chitCards;
+  public record ChitRecord(String type, int moves) {
+
   }
 
   /**
-   * Sets the list of chit cards.
+   * A dragon and where it stands.
    *
-   * @param chitCards The list of chit cards.
+   * @param colour   the colour name of the dragon, eg: White
+   * @param card     the index of the volcano card it stands on
+   * @param square   the index of the square it stands on, -1 for the cave of the card
+   * @param caveCard the index of the volcano card holding its cave
    */
-  public void setChitCards(List<String> chitCards) {
-    this.chitCards = chitCards;
+  public record DragonRecord(String colour, int card, int square, int caveCard) {
+
   }
 
   /**
-   * Returns the list of volcano cards.
+   * The turn in progress.
    *
-   * @return The list of volcano cards.
+   * @param currentDragon    the index of the dragon whose turn it is
+   * @param flippedChitCards the indices of the chit cards flipped in the turn so far
    */
-  public List<String> getVolcanoCards() {
-    return volcanoCards;
+  public record TurnRecord(int currentDragon, List<Integer> flippedChitCards) {
+
   }
 
+  private final List<CardRecord> volcanoCards;
+  private final List<ChitRecord> chitCards;
+  private final List<DragonRecord> dragons;
+  private final TurnRecord turn;
+
   /**
-   * Sets the list of volcano cards.
+   * Constructs a saved state from its records.
    *
-   * @param volcanoCards The list of volcano cards.
+   * @param volcanoCards the volcano cards in board order
+   * @param chitCards    the chit cards in board order
+   * @param dragons      the dragons in turn order
+   * @param turn         the turn in progress
    */
-  public void setVolcanoCards(List<String> volcanoCards) {
+  public SavedState(List<CardRecord> volcanoCards, List<ChitRecord> chitCards,
+      List<DragonRecord> dragons, TurnRecord turn) {
     this.volcanoCards = volcanoCards;
+    this.chitCards = chitCards;
+    this.dragons = dragons;
+    this.turn = turn;
   }
 
   /**
-   * Returns the list of dragons.
+   * Captures the current game state without writing it anywhere.
    *
-   * @return The list of dragons.
+   * @param board         The game board containing the current state of the game.
+   * @param currentDragon The index of the dragon whose turn it is.
+   * @return The captured state.
    */
-  public List<String> getDragons() {
-    return dragons;
+  public static SavedState fromBoard(GameBoard board, int currentDragon) {
+    GameEngine engine = GameEngine.getInstance();
+    return capture(board.getVolcanoCards(), board.getChitCards(), engine.getDragons(),
+        engine.getFlippedChitCards(), currentDragon);
   }
 
   /**
-   * Sets the list of dragons.
+   * Captures a game state from its pieces. Cards are looked up by identity in maps built once, so
+   * the cost grows linearly with the size of the board.
    *
-   * @param dragons The list of dragons.
+   * @param volcanoCards  The volcano cards in board order.
+   * @param chitCards     The chit cards in board order.
+   * @param dragons       The dragons in turn order.
+   * @param flipped       The chit cards flipped in the turn so far.
+   * @param currentDragon The index of the dragon whose turn it is.
+   * @return The captured state.
    */
-  public void setDragons(List<String> dragons) {
-    this.dragons = dragons;
+  public static SavedState capture(List<VolcanoCard> volcanoCards, List<ChitCard> chitCards,
+      List<Dragon> dragons, List<ChitCard> flipped, int currentDragon) {
+    // save chitcards and remember where each one is
+    List<ChitRecord> chitRecords = new ArrayList<>(chitCards.size());
+    Map<ChitCard, Integer> chitIndex = new IdentityHashMap<>(chitCards.size());
+    for (ChitCard card : chitCards) {
+      chitIndex.putIfAbsent(card, chitRecords.size());
+      chitRecords.add(new ChitRecord(card.getTypeName(), card.getNumMoves()));
+    }
+
+    // save index of flipped cards
+    List<Integer> flippedChitCards = new ArrayList<>(flipped.size());
+    for (ChitCard card : flipped) {
+      flippedChitCards.add(chitIndex.getOrDefault(card, -1));
+    }
+
+    // save volcano cards with their caves, and remember where each card and cave colour is
+    List<CardRecord> cardRecords = new ArrayList<>(volcanoCards.size());
+    Map<VolcanoCard, Integer> cardIndex = new IdentityHashMap<>(volcanoCards.size());
+    Map<Color, Integer> caveCards = new IdentityHashMap<>();
+    for (VolcanoCard card : volcanoCards) {
+      cardIndex.putIfAbsent(card, cardRecords.size());
+      List<String> squares = new ArrayList<>(card.getSquares().size());
+      for (Square square : card.getSquares()) {
+        squares.add(square.saveState());
+      }
+      CaveRecord cave = null;
+      if (card.getCave() != null) {
+        cave = new CaveRecord(card.getCave().saveState(), card.getCaveIndex());
+        // the last card with a cave of a colour holds that colour's cave
+        caveCards.put(card.getCave().getColour(), cardRecords.size());
+      }
+      cardRecords.add(new CardRecord(squares, cave));
+    }
+
+    // save each dragon's position and the card of its cave
+    List<DragonRecord> dragonRecords = new ArrayList<>(dragons.size());
+    for (Dragon dragon : dragons) {
+      int tmpVolIndex = cardIndex.getOrDefault(
+          dragon.getVolcanoCardIterator().getCurrentCard(), -1);
+      int tmpSquareIndex = dragon.getVolcanoCardIterator().getCurrentIndex();
+      int caveCard = caveCards.getOrDefault(dragon.getColourObject(), -1);
+      dragonRecords.add(new DragonRecord(dragon.getColour(), tmpVolIndex, tmpSquareIndex,
+          caveCard));
+    }
+
+    return new SavedState(cardRecords, chitRecords, dragonRecords,
+        new TurnRecord(currentDragon, flippedChitCards));
   }
 
   /**
-   * Returns the list of flipped chit cards.
+   * Returns the volcano cards.
    *
-   * @return The list of flipped chit cards.
+   * @return The volcano cards in board order.
    */
-  public List<Integer> getFlippedChitCards() {
-    return flippedChitCards;
+  public List<CardRecord> getVolcanoCards() {
+    return volcanoCards;
   }
 
   /**
-   * Sets the list of flipped chit cards.
+   * Returns the chit cards.
    *
-   * @param flippedChitCards The list of flipped chit cards.
+   * @return The chit cards in board order.
    */
-  public void setFlippedChitCards(List<Integer> flippedChitCards) {
-    this.flippedChitCards = flippedChitCards;
+  public List<ChitRecord> getChitCards() {
+    return chitCards;
   }
 
   /**
-   * Returns the index of the current dragon.
+   * Returns the dragons.
    *
-   * @return The index of the current dragon.
+   * @return The dragons in turn order.
    */
-  public int getCurrentDragon() {
-    return currentDragon;
+  public List<DragonRecord> getDragons() {
+    return dragons;
   }
 
   /**
-   * Sets the current dragon index.
+   * Returns the turn in progress.
    *
-   * @param currentDragon The index of the current dragon.
+   * @return The turn record.
    */
-  public void setCurrentDragon(int currentDragon) {
-    this.currentDragon = currentDragon;
+  public TurnRecord getTurn() {
+    return turn;
   }
 
   /**
-   * Returns the map of dragon caves.
+   * Returns the list of flipped chit cards.
    *
-   * @return The map of dragon caves.
+   * @return The indices of the chit cards flipped in the turn so far.
    */
-  public Map<String, Integer> getDragonCaves() {
-    return dragonCaves;
+  public List<Integer> getFlippedChitCards() {
+    return turn.flippedChitCards();
   }
 
   /**
-   * Sets the map of dragon caves.
+   * Returns the index of the current dragon.
    *
-   * @param dragonCaves The map of dragon caves.
+   * @return The index of the current dragon.
    */
-  public void setDragonCaves(Map<String, Integer> dragonCaves) {
-    this.dragonCaves = dragonCaves;
+  public int getCurrentDragon() {
+    return turn.currentDragon();
   }
 }
@@ -0,0 +1,167 @@
+package game.engine;
+
+import game.simulation.GameSetup;
+import game.simulation.HeadlessGame;
+import game.view.GameBoard;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * Estimates every dragon's chance of winning a game on the board by playing it out from where it
+ * stands with random flips, over and over, on a background thread. A headless copy of the game
+ * follows every flip made on the board; each flip or new turn drops the playouts of the old
+ * position and starts counting afresh, while an unchanged position keeps being refined until
+ * MAX_ROLLOUTS playouts.
+ *
+ * <p>Estimates are handed to the listener on the event dispatch thread at most once every
+ * PUBLISH_MILLIS, and never for a position that has since changed.
+ *
+ * <p>All methods must be called on the event dispatch thread.
+ */
+public class WinEstimator {
+
+  public static final int MAX_ROLLOUTS = 100_000;
+  public static final long PUBLISH_MILLIS = 250;
+
+  // playouts between looks at whether the position changed
+  private static final int BATCH = 64;
+  // a playout this long is abandoned and counted as a win for nobody
+  private static final int MAX_TURNS = 2_000;
+
+  private final HeadlessGame mirror;
+  private final Consumer<double[]> listener;
+  private final SplittableRandom random;
+  private final ExecutorService executor;
+  private volatile int position;
+  private volatile boolean closed;
+
+  /**
+   * Constructs an estimator for a game that has just been laid out and starts estimating.
+   *
+   * @param board       the board the game is played on
+   * @param firstDragon the index of the dragon that takes the first turn
+   * @param listener    receives the win chance of every dragon, by dragon index
+   */
+  public WinEstimator(GameBoard board, int firstDragon, Consumer<double[]> listener) {
+    GameSetup setup = GameSetup.fromSavedState(SavedState.fromBoard(board, firstDragon));
+    this.mirror = new HeadlessGame(setup, 0);
+    this.listener = listener;
+    this.random = new SplittableRandom();
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "win-estimator");
+      thread.setDaemon(true);
+      // the board and the computer players come first
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+    restart();
+  }
+
+  /**
+   * Brings the copy of the game to a new turn, ending turns the timer ran out on.
+   *
+   * @param dragon the dragon whose turn it is
+   */
+  public void turnStarted(int dragon) {
+    if (closed || mirror.isOver() || mirror.getCurrentDragon() == dragon) {
+      return;
+    }
+    while (mirror.getCurrentDragon() != dragon) {
+      mirror.endTurn();
+    }
+    restart();
+  }
+
+  /**
+   * Follows a flip made on the board.
+   *
+   * @param chit the index of the flipped chit card
+   */
+  public void flipped(int chit) {
+    if (closed || mirror.isOver() || mirror.isFlipped(chit)) {
+      return;
+    }
+    mirror.flip(chit);
+    restart();
+  }
+
+  /**
+   * Drops the playouts of the old position and starts on the current one.
+   */
+  private void restart() {
+    int current = ++position;
+    if (mirror.isOver()) {
+      double[] chances = new double[mirror.getNumDragons()];
+      chances[mirror.getWinner()] = 1;
+      listener.accept(chances);
+      return;
+    }
+    HeadlessGame root = new HeadlessGame(mirror);
+    SplittableRandom rolloutRandom = random.split();
+    executor.submit(() -> estimate(current, root, rolloutRandom));
+  }
+
+  /**
+   * Plays out a position until it changes or MAX_ROLLOUTS is reached, publishing the running
+   * estimate as it goes.
+   *
+   * @param current the position counter the playouts belong to
+   * @param root    the position
+   * @param random  the source of randomness of the playouts
+   */
+  private void estimate(int current, HeadlessGame root, SplittableRandom random) {
+    long[] wins = new long[root.getNumDragons()];
+    HeadlessGame game = new HeadlessGame(root);
+    long lastPublished = 0;
+    int rollouts = 0;
+    while (rollouts < MAX_ROLLOUTS && current == position && !closed) {
+      for (int i = 0; i < BATCH; i++) {
+        game.copyFrom(root);
+        int limit = root.getTurns() + MAX_TURNS;
+        while (!game.isOver() && game.getTurns() < limit) {
+          game.flip(game.randomFaceDown(random));
+        }
+        if (game.isOver()) {
+          wins[game.getWinner()]++;
+        }
+      }
+      rollouts += BATCH;
+      long now = System.nanoTime();
+      if (rollouts >= MAX_ROLLOUTS || now - lastPublished >= PUBLISH_MILLIS * 1_000_000) {
+        lastPublished = now;
+        publish(current, wins, rollouts);
+      }
+    }
+  }
+
+  /**
+   * Hands an estimate to the listener on the event dispatch thread, unless the position has
+   * changed by the time it gets there.
+   *
+   * @param current  the position counter the estimate belongs to
+   * @param wins     the wins of every dragon so far
+   * @param rollouts the number of playouts so far
+   */
+  private void publish(int current, long[] wins, int rollouts) {
+    double[] chances = new double[wins.length];
+    for (int dragon = 0; dragon < wins.length; dragon++) {
+      chances[dragon] = (double) wins[dragon] / rollouts;
+    }
+    SwingUtilities.invokeLater(() -> {
+      if (current == position && !closed) {
+        listener.accept(chances);
+      }
+    });
+  }
+
+  /**
+   * Stops estimating, dropping any estimate on its way to the listener.
+   */
+  public void close() {
+    closed = true;
+    executor.shutdownNow();
+  }
+}
@@ -125,7 +125,7 @@ public class Dragon implements Visitor, Savable {
   /**
    * Swaps the position of the dragon with the closest Dragon
    */
-  private void swapClosest() {
+  public void swapClosest() {
     // look for closest dragon
     Dragon closest = null;
     Square forward = this.volcanoCardIterator.peek(1);
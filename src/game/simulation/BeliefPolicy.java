@@ -0,0 +1,321 @@
+package game.simulation;
+
+import game.utils.GameUtils;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * A policy with a fading memory that plays by sampling what it cannot remember. Its knowledge is
+ * a ChitBeliefs: flips are remembered with some probability, a remembered chit card first loses
+ * its number of moves and later its animal too. To choose a flip it draws deals consistent with
+ * its beliefs and, in every deal, tries each face down chit card followed by a few more flips
+ * chosen from its beliefs alone. The chit card with the best average progress is flipped.
+ *
+ * <p>Deals are evaluated in parallel in batches of SAMPLES_PER_TASK. The difficulty levels trade
+ * memory and search effort; even the expert level decides in a few milliseconds.
+ */
+public class BeliefPolicy implements Policy {
+
+  private static final int SAMPLES_PER_TASK = 16;
+
+  /**
+   * Difficulty levels, from a forgetful player that only looks at the next flip to one with
+   * perfect memory that plans the rest of its turn.
+   */
+  public enum Level {
+    EASY(0.5, 1, 3, 16, 0),
+    MEDIUM(0.75, 3, 8, 64, 1),
+    HARD(0.9, 8, 20, 128, 3),
+    EXPERT(1.0, Integer.MAX_VALUE, Integer.MAX_VALUE, 256, 8);
+
+    private final double recall;
+    private final int blurTurns;
+    private final int forgetTurns;
+    private final int samples;
+    private final int lookahead;
+
+    /**
+     * Constructs a level.
+     *
+     * @param recall      the probability of remembering a flip
+     * @param blurTurns   the number of turns after which the number of moves is forgotten
+     * @param forgetTurns the number of turns after which a chit card is forgotten
+     * @param samples     the number of deals drawn per decision
+     * @param lookahead   the number of flips tried after the first in each deal
+     */
+    Level(double recall, int blurTurns, int forgetTurns, int samples, int lookahead) {
+      this.recall = recall;
+      this.blurTurns = blurTurns;
+      this.forgetTurns = forgetTurns;
+      this.samples = samples;
+      this.lookahead = lookahead;
+    }
+  }
+
+  private final Level level;
+  private final ChitBeliefs beliefs;
+  private final SplittableRandom random;
+
+  /**
+   * Constructs a BeliefPolicy to hand to a Simulator. Each game gets its own copy.
+   *
+   * @param level the difficulty level
+   */
+  public BeliefPolicy(Level level) {
+    this.level = level;
+    this.beliefs = null;
+    this.random = null;
+  }
+
+  /**
+   * Constructs the copy of a BeliefPolicy that plays one game.
+   *
+   * @param setup  the setup of the game
+   * @param level  the difficulty level
+   * @param random the source of randomness deciding what is remembered and which deals are drawn
+   */
+  private BeliefPolicy(GameSetup setup, Level level, SplittableRandom random) {
+    this.level = level;
+    this.beliefs = new ChitBeliefs(setup);
+    this.random = random;
+  }
+
+  /**
+   * Returns a copy with empty beliefs.
+   *
+   * @param setup  the setup of the game
+   * @param random the source of randomness for this game
+   * @return the policy for the game
+   */
+  @Override
+  public Policy newGame(GameSetup setup, SplittableRandom random) {
+    return new BeliefPolicy(setup, level, random.split());
+  }
+
+  /**
+   * Remembers a flipped chit card with the probability of the level.
+   *
+   * @param game the game after the flip
+   * @param chit the index of the flipped chit card
+   */
+  @Override
+  public void observe(HeadlessGame game, int chit) {
+    if (level.recall >= 1 || random.nextDouble() < level.recall) {
+      beliefs.see(chit, game.getChitType(chit), game.getChitMoves(chit), game.getTurns());
+    }
+  }
+
+  /**
+   * Lets old memories fade, then flips the chit card with the best average over sampled deals.
+   *
+   * @param game   the game being played
+   * @param random the source of randomness for this game
+   * @return the index of a face down chit card
+   */
+  @Override
+  public int chooseChit(HeadlessGame game, SplittableRandom random) {
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      int age = game.getTurns() - beliefs.getSeenTurn(chit);
+      if (age > level.forgetTurns) {
+        beliefs.forget(chit);
+      } else if (age > level.blurTurns) {
+        beliefs.blur(chit);
+      }
+    }
+    if (game.countFaceDown() == 1) {
+      return game.randomFaceDown(random);
+    }
+
+    int[] order = beliefs.dealOrder();
+    int tasks = (level.samples + SAMPLES_PER_TASK - 1) / SAMPLES_PER_TASK;
+    long[] seeds = new long[tasks];
+    for (int task = 0; task < tasks; task++) {
+      seeds[task] = this.random.nextLong();
+    }
+    IntStream range = IntStream.range(0, tasks);
+    double[][] results = (tasks > 1 ? range.parallel() : range)
+        .mapToObj(task -> evaluate(game, order, new SplittableRandom(seeds[task]),
+            Math.min(SAMPLES_PER_TASK, level.samples - task * SAMPLES_PER_TASK)))
+        .toArray(double[][]::new);
+
+    int best = -1;
+    double bestValue = Double.NEGATIVE_INFINITY;
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      if (game.isFlipped(chit)) {
+        continue;
+      }
+      double value = 0;
+      for (double[] result : results) {
+        value += result[chit];
+      }
+      if (value > bestValue) {
+        best = chit;
+        bestValue = value;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Draws deals and adds up the value of flipping each face down chit card in them.
+   *
+   * @param root    the game being played
+   * @param order   the deal order of the beliefs
+   * @param random  the source of randomness of this batch
+   * @param samples the number of deals to draw
+   * @return the summed value of every chit card
+   */
+  private double[] evaluate(HeadlessGame root, int[] order, SplittableRandom random,
+      int samples) {
+    int numChits = root.getNumChits();
+    int dragon = root.getCurrentDragon();
+    int startDistance = root.distanceHome(dragon);
+    HeadlessGame game = new HeadlessGame(root);
+    int[] faces = new int[numChits];
+    int[] left = new int[beliefs.getNumFaces()];
+    double[] values = new double[numChits];
+    for (int sample = 0; sample < samples; sample++) {
+      beliefs.deal(order, faces, left, random);
+      for (int chit = 0; chit < numChits; chit++) {
+        if (root.isFlipped(chit)) {
+          continue;
+        }
+        game.copyFrom(root);
+        int outcome = flip(game, chit, faces);
+        for (int i = 0; i < level.lookahead && outcome == HeadlessGame.MOVED
+            && game.getCurrentDragon() == dragon; i++) {
+          outcome = flip(game, nextFlip(game, dragon, random), faces);
+        }
+        if (game.getWinner() == dragon) {
+          values[chit] += GreedyPolicy.WIN_SCORE;
+        } else {
+          values[chit] += startDistance - game.distanceHome(dragon)
+              + (game.getCurrentDragon() == dragon ? 0 : GreedyPolicy.TURN_END_SCORE);
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Chooses a later flip of the turn from the beliefs alone: a chit card whose every possible
+   * face moves the dragon forwards, the one moving it furthest if known exactly, otherwise one
+   * it remembers nothing about, otherwise any.
+   *
+   * @param game   the game after the flips so far
+   * @param dragon the dragon to move
+   * @param random the source of randomness
+   * @return the index of a face down chit card
+   */
+  private int nextFlip(HeadlessGame game, int dragon, SplittableRandom random) {
+    byte animal = game.animalAt(dragon);
+    int best = -1;
+    int bestMoves = 0;
+    int unknown = 0;
+    int pick = -1;
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      if (game.isFlipped(chit)) {
+        continue;
+      }
+      if (!beliefs.isRemembered(chit)) {
+        unknown++;
+        if (random.nextInt(unknown) == 0) {
+          pick = chit;
+        }
+        continue;
+      }
+      int fewest = Integer.MAX_VALUE;
+      for (long bits = beliefs.getPossible(chit); bits != 0; bits &= bits - 1) {
+        int face = beliefs.getFace(Long.numberOfTrailingZeros(bits));
+        boolean forwards = ChitMemory.faceType(face) == animal && ChitMemory.faceMoves(face) > 0;
+        fewest = Math.min(fewest, forwards ? ChitMemory.faceMoves(face) : 0);
+      }
+      if (fewest > bestMoves && game.checkMove(dragon, fewest) != HeadlessGame.BLOCKED) {
+        best = chit;
+        bestMoves = fewest;
+      }
+    }
+    if (best != -1) {
+      return best;
+    }
+    return pick != -1 ? pick : game.randomFaceDown(random);
+  }
+
+  /**
+   * Flips a chit card as its dealt face.
+   *
+   * @param game  the game
+   * @param chit  the chit card
+   * @param faces the dealt faces
+   * @return the outcome of the flip
+   */
+  private static int flip(HeadlessGame game, int chit, int[] faces) {
+    return game.flipAs(chit, ChitMemory.faceType(faces[chit]),
+        ChitMemory.faceMoves(faces[chit]));
+  }
+
+  /**
+   * Returns the level of a policy name such as belief-hard.
+   *
+   * @param name the policy name
+   * @return the level, MEDIUM for plain belief
+   */
+  static Level levelOf(String name) {
+    int dash = name.indexOf('-');
+    return dash == -1 ? Level.MEDIUM
+        : Level.valueOf(name.substring(dash + 1).toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Returns the name of the policy as used on the command line.
+   *
+   * @return the name of the policy
+   */
+  @Override
+  public String getName() {
+    return "belief-" + level.name().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Measures how long each level takes per decision, with every dragon played by that level.
+   * Arguments are optionally the number of games per level, the config path and the number of
+   * players.
+   *
+   * @param args command line arguments
+   * @throws Exception if the config cannot be read
+   */
+  public static void main(String[] args) throws Exception {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    String configPath = args.length > 1 ? args[1] : GameUtils.CONFIG_PATH;
+    int numPlayers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+    GameSetup setup = GameSetup.load(configPath, numPlayers);
+    for (Level level : Level.values()) {
+      long decisions = 0;
+      long nanos = 0;
+      long slowest = 0;
+      for (long seed = 0; seed < games; seed++) {
+        HeadlessGame game = new HeadlessGame(setup, seed);
+        SplittableRandom random = new SplittableRandom(seed);
+        Policy[] players = new Policy[setup.getNumDragons()];
+        for (int dragon = 0; dragon < players.length; dragon++) {
+          players[dragon] = new BeliefPolicy(level).newGame(setup, random);
+        }
+        while (!game.isOver() && game.getTurns() < Simulator.DEFAULT_MAX_TURNS) {
+          long start = System.nanoTime();
+          int chit = players[game.getCurrentDragon()].chooseChit(game, random);
+          long elapsed = System.nanoTime() - start;
+          nanos += elapsed;
+          slowest = Math.max(slowest, elapsed);
+          decisions++;
+          game.flip(chit);
+          for (Policy player : players) {
+            player.observe(game, chit);
+          }
+        }
+      }
+      System.out.printf("%-7s %8d decisions %8.3f ms mean %8.3f ms max%n", level, decisions,
+          nanos / 1e6 / decisions, slowest / 1e6);
+    }
+  }
+}
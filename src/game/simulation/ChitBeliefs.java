@@ -0,0 +1,243 @@
+package game.simulation;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * What a player believes about the faces of the chit cards in one game, as a bitset per chit card
+ * of the faces it could still have. Bit i stands for the i-th distinct face of the deck. A chit
+ * card just seen has a single bit; as the memory fades it first keeps every face of the same
+ * animal, then every face of the deck.
+ *
+ * <p>Deals consistent with the beliefs are drawn by giving every chit card, fewest possibilities
+ * first, one of its possible faces still left in the deck, weighted by how many are left.
+ */
+public class ChitBeliefs {
+
+  private static final int MAX_TRIES = 32;
+
+  private final int[] faceOf;
+  private final int[] deckCount;
+  private final long allFaces;
+  private final long[] sameType;
+  private final long[] possible;
+  private final int[] seenTurn;
+
+  /**
+   * Constructs beliefs that allow every face for every chit card.
+   *
+   * @param setup the setup of the game
+   * @throws IllegalArgumentException if the deck has more than 64 distinct faces
+   */
+  public ChitBeliefs(GameSetup setup) {
+    int numChits = setup.getNumChits();
+    int[] faces = new int[numChits];
+    int[] counts = new int[numChits];
+    int distinct = 0;
+    for (int chit = 0; chit < numChits; chit++) {
+      int face = ChitMemory.packFace(setup.getChitType(chit), setup.getChitMoves(chit));
+      int bit = 0;
+      while (bit < distinct && faces[bit] != face) {
+        bit++;
+      }
+      if (bit == distinct) {
+        faces[distinct++] = face;
+      }
+      counts[bit]++;
+    }
+    if (distinct > Long.SIZE) {
+      throw new IllegalArgumentException("Deck has more than 64 distinct faces: " + distinct);
+    }
+    this.faceOf = Arrays.copyOf(faces, distinct);
+    this.deckCount = Arrays.copyOf(counts, distinct);
+    this.allFaces = distinct == Long.SIZE ? -1L : (1L << distinct) - 1;
+    this.sameType = new long[distinct];
+    for (int i = 0; i < distinct; i++) {
+      for (int j = 0; j < distinct; j++) {
+        if (ChitMemory.faceType(faceOf[i]) == ChitMemory.faceType(faceOf[j])) {
+          sameType[i] |= 1L << j;
+        }
+      }
+    }
+    this.possible = new long[numChits];
+    Arrays.fill(possible, allFaces);
+    this.seenTurn = new int[numChits];
+  }
+
+  /**
+   * Believes a chit card has exactly the face it was just seen with.
+   *
+   * @param chit  the chit card index
+   * @param type  the type code shown
+   * @param moves the number of moves shown
+   * @param turn  the turn the chit card was seen on
+   */
+  public void see(int chit, byte type, int moves, int turn) {
+    int face = ChitMemory.packFace(type, moves);
+    for (int bit = 0; bit < faceOf.length; bit++) {
+      if (faceOf[bit] == face) {
+        possible[chit] = 1L << bit;
+        seenTurn[chit] = turn;
+        return;
+      }
+    }
+    throw new IllegalArgumentException("Face not in the deck: " + type + "/" + moves);
+  }
+
+  /**
+   * Forgets the number of moves of a chit card whose face is known, keeping its animal.
+   *
+   * @param chit the chit card index
+   */
+  public void blur(int chit) {
+    if (Long.bitCount(possible[chit]) == 1) {
+      possible[chit] = sameType[Long.numberOfTrailingZeros(possible[chit])];
+    }
+  }
+
+  /**
+   * Forgets everything about a chit card.
+   *
+   * @param chit the chit card index
+   */
+  public void forget(int chit) {
+    possible[chit] = allFaces;
+  }
+
+  /**
+   * Returns whether the face of a chit card is known exactly.
+   *
+   * @param chit the chit card index
+   * @return true if only one face is possible
+   */
+  public boolean isExact(int chit) {
+    return Long.bitCount(possible[chit]) == 1;
+  }
+
+  /**
+   * Returns whether anything is remembered about a chit card.
+   *
+   * @param chit the chit card index
+   * @return true if not every face is possible
+   */
+  public boolean isRemembered(int chit) {
+    return possible[chit] != allFaces;
+  }
+
+  /**
+   * Returns the faces a chit card could have.
+   *
+   * @param chit the chit card index
+   * @return the bitset of possible faces
+   */
+  public long getPossible(int chit) {
+    return possible[chit];
+  }
+
+  /**
+   * Returns the packed face a bit stands for.
+   *
+   * @param bit the bit
+   * @return the face, packed like ChitMemory.packFace
+   */
+  public int getFace(int bit) {
+    return faceOf[bit];
+  }
+
+  /**
+   * Returns the turn a chit card was last seen on.
+   *
+   * @param chit the chit card index
+   * @return the turn
+   */
+  public int getSeenTurn(int chit) {
+    return seenTurn[chit];
+  }
+
+  /**
+   * Returns the chit cards ordered by how few faces they could have, the order deal fills them in.
+   * The order only changes when the beliefs do, so callers compute it once per decision.
+   *
+   * @return the chit card indices
+   */
+  public int[] dealOrder() {
+    Integer[] order = new Integer[possible.length];
+    for (int chit = 0; chit < order.length; chit++) {
+      order[chit] = chit;
+    }
+    Arrays.sort(order, (a, b) -> Long.bitCount(possible[a]) - Long.bitCount(possible[b]));
+    int[] result = new int[order.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = order[i];
+    }
+    return result;
+  }
+
+  /**
+   * Draws a deal consistent with the beliefs. If no consistent deal is found in a few tries, the
+   * chit cards that cannot be filled get any face left in the deck.
+   *
+   * @param order  the order from dealOrder
+   * @param faces  receives the packed face of every chit card
+   * @param left   scratch space, at least as long as the number of distinct faces
+   * @param random the source of randomness
+   */
+  public void deal(int[] order, int[] faces, int[] left, SplittableRandom random) {
+    for (int tries = 0; tries < MAX_TRIES; tries++) {
+      if (tryDeal(order, faces, left, random, true)) {
+        return;
+      }
+    }
+    tryDeal(order, faces, left, random, false);
+  }
+
+  /**
+   * Makes one attempt at a deal.
+   *
+   * @param order      the order to fill the chit cards in
+   * @param faces      receives the packed face of every chit card
+   * @param left       scratch space for the faces left in the deck
+   * @param random     the source of randomness
+   * @param consistent whether to give up rather than break a belief
+   * @return true if every chit card got a face it could have
+   */
+  private boolean tryDeal(int[] order, int[] faces, int[] left, SplittableRandom random,
+      boolean consistent) {
+    System.arraycopy(deckCount, 0, left, 0, deckCount.length);
+    long available = allFaces;
+    for (int chit : order) {
+      long candidates = possible[chit] & available;
+      if (candidates == 0) {
+        if (consistent) {
+          return false;
+        }
+        candidates = available;
+      }
+      int total = 0;
+      for (long bits = candidates; bits != 0; bits &= bits - 1) {
+        total += left[Long.numberOfTrailingZeros(bits)];
+      }
+      int pick = random.nextInt(total);
+      long bits = candidates;
+      int bit = Long.numberOfTrailingZeros(bits);
+      while ((pick -= left[bit]) >= 0) {
+        bits &= bits - 1;
+        bit = Long.numberOfTrailingZeros(bits);
+      }
+      faces[chit] = faceOf[bit];
+      if (--left[bit] == 0) {
+        available &= ~(1L << bit);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of distinct faces in the deck.
+   *
+   * @return the number of faces
+   */
+  public int getNumFaces() {
+    return faceOf.length;
+  }
+}
@@ -0,0 +1,197 @@
+package game.simulation;
+
+import java.util.Arrays;
+
+/**
+ * What a player remembers about the faces of the chit cards in one game. The make up of the deck
+ * is public, so the faces of the chit cards a player does not remember follow from the deck minus
+ * the faces it does remember.
+ */
+public class ChitMemory {
+
+  private final GameSetup setup;
+  private final byte[] type;
+  private final int[] moves;
+  private final int[] seenTurn;
+  private int known;
+
+  /**
+   * Constructs an empty memory for a game.
+   *
+   * @param setup the setup of the game
+   */
+  public ChitMemory(GameSetup setup) {
+    this.setup = setup;
+    int numChits = setup.getNumChits();
+    this.type = new byte[numChits];
+    this.moves = new int[numChits];
+    this.seenTurn = new int[numChits];
+    Arrays.fill(type, (byte) -1);
+  }
+
+  /**
+   * Copy constructor used by search based players to assume faces for unseen chit cards.
+   *
+   * @param other the memory to copy
+   */
+  public ChitMemory(ChitMemory other) {
+    this.setup = other.setup;
+    this.type = other.type.clone();
+    this.moves = other.moves.clone();
+    this.seenTurn = other.seenTurn.clone();
+    this.known = other.known;
+  }
+
+  /**
+   * Remembers the face of a chit card.
+   *
+   * @param chit      the chit card index
+   * @param chitType  the type code shown
+   * @param chitMoves the number of moves shown
+   * @param turn      the turn the chit card was seen on
+   */
+  public void remember(int chit, byte chitType, int chitMoves, int turn) {
+    if (type[chit] == -1) {
+      known++;
+    }
+    type[chit] = chitType;
+    moves[chit] = chitMoves;
+    seenTurn[chit] = turn;
+  }
+
+  /**
+   * Forgets the face of a chit card.
+   *
+   * @param chit the chit card index
+   */
+  public void forget(int chit) {
+    if (type[chit] != -1) {
+      known--;
+      type[chit] = -1;
+    }
+  }
+
+  /**
+   * Returns whether the face of a chit card is remembered.
+   *
+   * @param chit the chit card index
+   * @return true if the face is known
+   */
+  public boolean isKnown(int chit) {
+    return type[chit] != -1;
+  }
+
+  /**
+   * Returns the remembered type of a chit card.
+   *
+   * @param chit the chit card index
+   * @return the type code, or -1 if unknown
+   */
+  public byte getType(int chit) {
+    return type[chit];
+  }
+
+  /**
+   * Returns the remembered number of moves of a chit card.
+   *
+   * @param chit the chit card index
+   * @return the number of moves, meaningless if the chit card is unknown
+   */
+  public int getMoves(int chit) {
+    return moves[chit];
+  }
+
+  /**
+   * Returns the turn a chit card was last seen on.
+   *
+   * @param chit the chit card index
+   * @return the turn
+   */
+  public int getSeenTurn(int chit) {
+    return seenTurn[chit];
+  }
+
+  /**
+   * Returns the number of chit cards whose face is remembered.
+   *
+   * @return the number of known chit cards
+   */
+  public int getKnownCount() {
+    return known;
+  }
+
+  /**
+   * Counts the faces the unknown chit cards can have. Faces are packed as the type code in the
+   * upper bits and the number of moves in the low byte, like packFace.
+   *
+   * @param faces  receives the distinct faces, at least as long as the deck
+   * @param counts receives how many unknown chit cards have each face
+   * @return the number of distinct faces
+   */
+  public int unknownFaces(int[] faces, int[] counts) {
+    int distinct = 0;
+    for (int chit = 0; chit < type.length; chit++) {
+      distinct = addFace(faces, counts, distinct,
+          packFace(setup.getChitType(chit), setup.getChitMoves(chit)), 1);
+    }
+    for (int chit = 0; chit < type.length; chit++) {
+      if (type[chit] != -1) {
+        distinct = addFace(faces, counts, distinct, packFace(type[chit], moves[chit]), -1);
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * Adds to the count of a face, appending the face if it is new.
+   *
+   * @param faces    the distinct faces
+   * @param counts   the count of each face
+   * @param distinct the number of faces so far
+   * @param face     the packed face
+   * @param delta    the amount to add
+   * @return the new number of faces
+   */
+  private static int addFace(int[] faces, int[] counts, int distinct, int face, int delta) {
+    for (int i = 0; i < distinct; i++) {
+      if (faces[i] == face) {
+        counts[i] += delta;
+        return distinct;
+      }
+    }
+    faces[distinct] = face;
+    counts[distinct] = delta;
+    return distinct + 1;
+  }
+
+  /**
+   * Packs a chit card face into an int.
+   *
+   * @param chitType  the type code
+   * @param chitMoves the number of moves
+   * @return the packed face
+   */
+  public static int packFace(byte chitType, int chitMoves) {
+    return chitType << 8 | (chitMoves & 0xFF);
+  }
+
+  /**
+   * Returns the type code of a packed face.
+   *
+   * @param face the packed face
+   * @return the type code
+   */
+  public static byte faceType(int face) {
+    return (byte) (face >> 8);
+  }
+
+  /**
+   * Returns the number of moves of a packed face.
+   *
+   * @param face the packed face
+   * @return the number of moves
+   */
+  public static int faceMoves(int face) {
+    return (byte) face;
+  }
+}
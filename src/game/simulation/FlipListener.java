@@ -0,0 +1,22 @@
+package game.simulation;
+
+/**
+ * Receives every chit card flip of a headless game, eg: to record trajectories or statistics.
+ * Implementations shared between simulator threads must be thread safe.
+ */
+public interface FlipListener {
+
+  /**
+   * Called after a chit card has been flipped and its effect applied.
+   *
+   * @param gameId     the id (seed) of the game
+   * @param turn       the turn the flip happened in
+   * @param dragon     the dragon that flipped the card
+   * @param chit       the index of the flipped chit card
+   * @param fromSquare the square id the dragon stood on before the flip
+   * @param toSquare   the square id the dragon stands on after the flip
+   * @param outcome    the outcome code returned by HeadlessGame.flip
+   */
+  void flipped(long gameId, int turn, int dragon, int chit, int fromSquare, int toSquare,
+      int outcome);
+}
@@ -0,0 +1,237 @@
+package game.simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * A random board, dragon placement and sequence of chit card faces played by RuleFuzzer. Each
+ * action plays one face for one dragon, regardless of whose turn it would be.
+ */
+public class FuzzCase {
+
+  private static final int MAX_CARDS = 10;
+  private static final int MAX_SQUARES = 5;
+  private static final int MAX_ACTIONS = 200;
+  private static final int NUM_ANIMALS = 4;
+
+  private final GameSetup setup;
+  private final int[] actionDragon;
+  private final byte[] actionType;
+  private final int[] actionMoves;
+
+  /**
+   * Constructs a FuzzCase.
+   *
+   * @param setup        the board and dragon placement
+   * @param actionDragon the dragon of each action
+   * @param actionType   the type code of each action's face
+   * @param actionMoves  the number of moves of each action's face
+   */
+  private FuzzCase(GameSetup setup, int[] actionDragon, byte[] actionType, int[] actionMoves) {
+    this.setup = setup;
+    this.actionDragon = actionDragon;
+    this.actionType = actionType;
+    this.actionMoves = actionMoves;
+  }
+
+  /**
+   * Generates a random case: 3 to 10 volcano cards of 2 to 5 squares with a random cave index,
+   * caves for 2 to 4 animals on random cards, each dragon either in its cave or on a random free
+   * square, and up to 200 actions.
+   *
+   * @param random the source of randomness
+   * @return the case
+   */
+  public static FuzzCase generate(SplittableRandom random) {
+    int numCards = 3 + random.nextInt(MAX_CARDS - 2);
+    int[] numSquares = new int[numCards];
+    int[] caveIndex = new int[numCards];
+    byte[] caveAnimal = new byte[numCards];
+    int totalSquares = 0;
+    for (int card = 0; card < numCards; card++) {
+      numSquares[card] = 2 + random.nextInt(MAX_SQUARES - 1);
+      caveIndex[card] = random.nextInt(numSquares[card]);
+      caveAnimal[card] = -1;
+      totalSquares += numSquares[card];
+    }
+    byte[] squareAnimal = new byte[totalSquares];
+    for (int square = 0; square < totalSquares; square++) {
+      squareAnimal[square] = (byte) random.nextInt(NUM_ANIMALS);
+    }
+
+    int numDragons = 2 + random.nextInt(Math.min(NUM_ANIMALS, numCards) - 1);
+    int[] animals = shuffled(NUM_ANIMALS, random);
+    int[] cards = shuffled(numCards, random);
+    byte[] dragonAnimal = new byte[numDragons];
+    int[] dragonCard = new int[numDragons];
+    int[] dragonIndex = new int[numDragons];
+    boolean[] taken = new boolean[totalSquares];
+    for (int dragon = 0; dragon < numDragons; dragon++) {
+      dragonAnimal[dragon] = (byte) animals[dragon];
+      caveAnimal[cards[dragon]] = dragonAnimal[dragon];
+      if (random.nextInt(3) == 0) {
+        dragonCard[dragon] = cards[dragon];
+        dragonIndex[dragon] = -1;
+        continue;
+      }
+      int square;
+      do {
+        square = random.nextInt(totalSquares);
+      } while (taken[square]);
+      taken[square] = true;
+      int card = 0;
+      int offset = 0;
+      while (square >= offset + numSquares[card]) {
+        offset += numSquares[card];
+        card++;
+      }
+      dragonCard[dragon] = card;
+      dragonIndex[dragon] = square - offset;
+    }
+
+    int numActions = 1 + random.nextInt(MAX_ACTIONS);
+    int[] actionDragon = new int[numActions];
+    byte[] actionType = new byte[numActions];
+    int[] actionMoves = new int[numActions];
+    for (int i = 0; i < numActions; i++) {
+      actionDragon[i] = random.nextInt(numDragons);
+      actionType[i] = (byte) random.nextInt(GameSetup.SWAP + 1);
+      actionMoves[i] = switch (actionType[i]) {
+        case GameSetup.SWAP -> 0;
+        case GameSetup.PIRATE_DRAGON -> -1 - random.nextInt(2);
+        default -> 1 + random.nextInt(3);
+      };
+    }
+    GameSetup setup = new GameSetup(numSquares, caveIndex, caveAnimal, squareAnimal, new byte[0],
+        new int[0], dragonAnimal, dragonCard, dragonIndex, new boolean[0], 0, false);
+    return new FuzzCase(setup, actionDragon, actionType, actionMoves);
+  }
+
+  /**
+   * Returns a random permutation of 0 to n - 1.
+   *
+   * @param n      the number of values
+   * @param random the source of randomness
+   * @return the permutation
+   */
+  private static int[] shuffled(int n, SplittableRandom random) {
+    int[] values = new int[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = i;
+    }
+    for (int i = n - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int tmp = values[i];
+      values[i] = values[j];
+      values[j] = tmp;
+    }
+    return values;
+  }
+
+  /**
+   * Returns a copy of this case with only some of its actions, on the same board.
+   *
+   * @param keep which actions to keep
+   * @return the smaller case
+   */
+  public FuzzCase withActions(boolean[] keep) {
+    int count = 0;
+    for (boolean kept : keep) {
+      count += kept ? 1 : 0;
+    }
+    int[] dragons = new int[count];
+    byte[] types = new byte[count];
+    int[] moves = new int[count];
+    int next = 0;
+    for (int i = 0; i < keep.length; i++) {
+      if (keep[i]) {
+        dragons[next] = actionDragon[i];
+        types[next] = actionType[i];
+        moves[next] = actionMoves[i];
+        next++;
+      }
+    }
+    return new FuzzCase(setup, dragons, types, moves);
+  }
+
+  /**
+   * Returns the board and dragon placement.
+   *
+   * @return the setup
+   */
+  public GameSetup getSetup() {
+    return setup;
+  }
+
+  /**
+   * Returns the number of actions.
+   *
+   * @return the number of actions
+   */
+  public int getNumActions() {
+    return actionDragon.length;
+  }
+
+  /**
+   * Returns the dragon of an action.
+   *
+   * @param action the action
+   * @return the dragon
+   */
+  public int getActionDragon(int action) {
+    return actionDragon[action];
+  }
+
+  /**
+   * Returns the type code of an action's face.
+   *
+   * @param action the action
+   * @return the type code
+   */
+  public byte getActionType(int action) {
+    return actionType[action];
+  }
+
+  /**
+   * Returns the number of moves of an action's face.
+   *
+   * @param action the action
+   * @return the number of moves
+   */
+  public int getActionMoves(int action) {
+    return actionMoves[action];
+  }
+
+  /**
+   * Describes the board, placement and actions in a form that can be rebuilt by hand.
+   *
+   * @return the description
+   */
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    for (int card = 0; card < setup.getNumCards(); card++) {
+      text.append("card ").append(card).append(':');
+      for (int index = 0; index < setup.getNumSquares(card); index++) {
+        text.append(' ').append(GameSetup.typeName(
+            setup.getSquareAnimal(setup.getCardOffset(card) + index)));
+      }
+      text.append(" caveIndex=").append(setup.getCaveIndex(card));
+      if (setup.getCaveAnimal(card) != -1) {
+        text.append(" cave=").append(GameSetup.typeName(setup.getCaveAnimal(card)));
+      }
+      text.append('\n');
+    }
+    for (int dragon = 0; dragon < setup.getNumDragons(); dragon++) {
+      text.append("dragon ").append(dragon).append(' ')
+          .append(GameSetup.typeName(setup.getDragonAnimal(dragon))).append(" at ")
+          .append(setup.getDragonCard(dragon)).append('/').append(setup.getDragonIndex(dragon))
+          .append('\n');
+    }
+    for (int i = 0; i < actionDragon.length; i++) {
+      text.append("action ").append(i).append(": dragon ").append(actionDragon[i]).append(' ')
+          .append(GameSetup.typeName(actionType[i])).append(' ').append(actionMoves[i])
+          .append('\n');
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,134 @@
+package game.simulation;
+
+import game.utils.GameUtils;
+
+/**
+ * The outcome of a single headless game.
+ */
+public class GameResult {
+
+  private final long seed;
+  private final int winner;
+  private final String winnerColour;
+  private final int turns;
+  private final int flips;
+  private final int swaps;
+  private final long configHash;
+  private final byte[] seatAnimals;
+  private final int winnerSeat;
+
+  /**
+   * Constructs a GameResult from a finished (or abandoned) game.
+   *
+   * @param seed the seed the game was played with
+   * @param game the game after its last flip
+   */
+  public GameResult(long seed, HeadlessGame game) {
+    this.seed = seed;
+    this.winner = game.getWinner();
+    this.winnerColour = winner == -1 ? null
+        : GameUtils.colorToString(game.getSetup().getDragonColour(winner));
+    this.turns = game.getTurns();
+    this.flips = game.getFlips();
+    this.swaps = game.getSwaps();
+    GameSetup setup = game.getSetup();
+    this.configHash = setup.getConfigHash();
+    int numDragons = setup.getNumDragons();
+    this.seatAnimals = new byte[numDragons];
+    for (int seat = 0; seat < numDragons; seat++) {
+      this.seatAnimals[seat] = setup.getDragonAnimal((setup.getFirstDragon() + seat) % numDragons);
+    }
+    this.winnerSeat = winner == -1 ? -1
+        : (winner - setup.getFirstDragon() + numDragons) % numDragons;
+  }
+
+  /**
+   * Returns the seed the game was played with.
+   *
+   * @return the seed
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Returns the index of the winning dragon.
+   *
+   * @return the dragon index, or -1 if the game hit the turn limit
+   */
+  public int getWinner() {
+    return winner;
+  }
+
+  /**
+   * Returns the colour name of the winning dragon.
+   *
+   * @return the colour name, or null if the game hit the turn limit
+   */
+  public String getWinnerColour() {
+    return winnerColour;
+  }
+
+  /**
+   * Returns the number of turns played.
+   *
+   * @return the number of turns
+   */
+  public int getTurns() {
+    return turns;
+  }
+
+  /**
+   * Returns the number of chit cards flipped.
+   *
+   * @return the number of flips
+   */
+  public int getFlips() {
+    return flips;
+  }
+
+  /**
+   * Returns the number of swap cards played.
+   *
+   * @return the number of swaps
+   */
+  public int getSwaps() {
+    return swaps;
+  }
+
+  /**
+   * Returns the hash of the setup the game was played on.
+   *
+   * @return the config hash
+   */
+  public long getConfigHash() {
+    return configHash;
+  }
+
+  /**
+   * Returns the cave animal (and so colour) of the dragon in each seat, seat 0 moving first.
+   *
+   * @return the animal codes by seat
+   */
+  public byte[] getSeatAnimals() {
+    return seatAnimals.clone();
+  }
+
+  /**
+   * Returns the seat of the winning dragon, 0 being the dragon that moved first.
+   *
+   * @return the winner's seat, or -1 if the game hit the turn limit
+   */
+  public int getWinnerSeat() {
+    return winnerSeat;
+  }
+
+  /**
+   * Returns the cave animal of the winning dragon, which identifies its colour.
+   *
+   * @return the animal code, or -1 if the game hit the turn limit
+   */
+  public int getWinnerAnimal() {
+    return winnerSeat == -1 ? -1 : seatAnimals[winnerSeat];
+  }
+}
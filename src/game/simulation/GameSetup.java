@@ -0,0 +1,683 @@
+package game.simulation;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import game.engine.Config;
+import game.engine.SaveReader;
+import game.engine.SavedState;
+import game.engine.SavedState.CardRecord;
+import game.engine.SavedState.ChitRecord;
+import game.engine.SavedState.DragonRecord;
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, Swing free description of a board and its starting position. The layout mirrors the
+ * one built by GameGenerator (new games) and LoadGameGenerator (saved games) so that the headless
+ * engine plays on exactly the same volcano as the user interface.
+ */
+public class GameSetup {
+
+  /**
+   * Chit card type codes. The four animals share their codes with the square animals.
+   */
+  public static final byte SALAMANDER = 0;
+  public static final byte BABY_DRAGON = 1;
+  public static final byte BAT = 2;
+  public static final byte SPIDER = 3;
+  public static final byte PIRATE_DRAGON = 4;
+  public static final byte SWAP = 5;
+
+  /**
+   * Cave colours indexed by animal code, matching the colours of the cave tiles.
+   */
+  public static final Color[] CAVE_COLOURS = {Color.WHITE, Color.GREEN, Color.BLUE, Color.ORANGE};
+
+  private static final String[] TYPE_NAMES = {"Salamander", "BabyDragon", "Bat", "Spider",
+      "PirateDragon", "SwapCard"};
+  private static final int DEFAULT_CAVE_INDEX = 1;
+
+  private final int[] numSquares;
+  private final int[] cardOffset;
+  private final int[] caveIndex;
+  private final byte[] caveAnimal;
+  private final byte[] squareAnimal;
+  private final byte[] chitType;
+  private final int[] chitMoves;
+  private final byte[] dragonAnimal;
+  private final int[] dragonCard;
+  private final int[] dragonIndex;
+  private final boolean[] flipped;
+  private final int firstDragon;
+  private final boolean shuffleChits;
+  private final long configHash;
+
+  /**
+   * Constructs a GameSetup from raw arrays. Callers should prefer the static factory methods.
+   *
+   * @param numSquares   number of squares on each volcano card
+   * @param caveIndex    cave index of each volcano card
+   * @param caveAnimal   animal code of the cave on each card, or -1 if the card has no cave
+   * @param squareAnimal animal code of every square, card by card
+   * @param chitType     type code of every chit card
+   * @param chitMoves    number of moves of every chit card
+   * @param dragonAnimal animal code of the cave each dragon belongs to
+   * @param dragonCard   starting volcano card of each dragon
+   * @param dragonIndex  starting square index of each dragon, -1 when in a cave
+   * @param flipped      chit cards that start face up
+   * @param firstDragon  the dragon that takes the first turn
+   * @param shuffleChits whether the chit cards are shuffled for every game
+   */
+  GameSetup(int[] numSquares, int[] caveIndex, byte[] caveAnimal, byte[] squareAnimal,
+      byte[] chitType, int[] chitMoves, byte[] dragonAnimal, int[] dragonCard, int[] dragonIndex,
+      boolean[] flipped, int firstDragon, boolean shuffleChits) {
+    this.numSquares = numSquares;
+    this.caveIndex = caveIndex;
+    this.caveAnimal = caveAnimal;
+    this.squareAnimal = squareAnimal;
+    this.chitType = chitType;
+    this.chitMoves = chitMoves;
+    this.dragonAnimal = dragonAnimal;
+    this.dragonCard = dragonCard;
+    this.dragonIndex = dragonIndex;
+    this.flipped = flipped;
+    this.firstDragon = firstDragon;
+    this.shuffleChits = shuffleChits;
+    this.cardOffset = new int[numSquares.length + 1];
+    for (int i = 0; i < numSquares.length; i++) {
+      this.cardOffset[i + 1] = this.cardOffset[i] + numSquares[i];
+    }
+    this.configHash = computeHash();
+  }
+
+  /**
+   * Computes a 64 bit FNV-1a hash over the board, chit cards and dragon placement. The turn order
+   * is left out so games with different seatings on the same board share a hash.
+   *
+   * @return the hash
+   */
+  private long computeHash() {
+    long hash = 0xcbf29ce484222325L;
+    int[][] ints = {numSquares, caveIndex, chitMoves, dragonCard, dragonIndex,
+        {shuffleChits ? 1 : 0}};
+    byte[][] bytes = {caveAnimal, squareAnimal, chitType, dragonAnimal};
+    for (int[] array : ints) {
+      for (int value : array) {
+        hash = (hash ^ value) * 0x100000001b3L;
+      }
+      hash = (hash ^ 0xFF) * 0x100000001b3L;
+    }
+    for (byte[] array : bytes) {
+      for (byte value : array) {
+        hash = (hash ^ value) * 0x100000001b3L;
+      }
+      hash = (hash ^ 0xFF) * 0x100000001b3L;
+    }
+    for (boolean value : flipped) {
+      hash = (hash ^ (value ? 1 : 0)) * 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * Loads a setup from a classpath resource or a file. Config files describe a new game for the
+   * given number of players, saved state files (such as TestDifferentBoardConfig.json) describe a
+   * game in progress and ignore the player count.
+   *
+   * @param path       classpath resource or file path of the JSON file
+   * @param numPlayers number of players for config files
+   * @return the loaded setup
+   * @throws IOException if the file cannot be read
+   */
+  public static GameSetup load(String path, int numPlayers) throws IOException {
+    InputStream inputStream = GameSetup.class.getResourceAsStream(path);
+    if (inputStream == null) {
+      inputStream = new FileInputStream(path);
+    }
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+      JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
+      Gson gson = new Gson();
+      if (json.has("caves")) {
+        return fromConfig(gson.fromJson(json, Config.class), numPlayers);
+      }
+      return fromSavedState(SaveReader.read(new StringReader(json.toString())));
+    } catch (RuntimeException e) {
+      throw new IOException("Error reading JSON file: " + path, e);
+    }
+  }
+
+  /**
+   * Creates the setup of a new game in the same way as GameGenerator.
+   *
+   * @param config     the board configuration
+   * @param numPlayers the number of players, between 2 and 4
+   * @return the setup
+   */
+  public static GameSetup fromConfig(Config config, int numPlayers) {
+    List<String> volcanoStrings = config.getVolcanoCards();
+    int numCards = volcanoStrings.size();
+    int[] numSquares = new int[numCards];
+    int[] caveIndex = new int[numCards];
+    byte[] caveAnimal = new byte[numCards];
+    List<Byte> squares = new ArrayList<>();
+
+    // caves of the players, in the order GameGenerator creates them
+    byte[] caves = new byte[numPlayers];
+    for (int i = 0; i < numPlayers; i++) {
+      caves[i] = typeOf(config.getCaves().get(i).replace("Cave", ""));
+    }
+
+    for (int i = 0; i < numCards; i++) {
+      String[] names = volcanoStrings.get(i).split("_");
+      numSquares[i] = names.length;
+      caveIndex[i] = DEFAULT_CAVE_INDEX;
+      for (String name : names) {
+        squares.add(typeOf(name));
+      }
+      caveAnimal[i] = switch (i) {
+        case 0 -> caves[0];
+        case 2 -> numPlayers > 2 ? caves[2] : -1;
+        case 4 -> caves[1];
+        case 6 -> numPlayers > 3 ? caves[3] : -1;
+        default -> -1;
+      };
+    }
+
+    // dragons are seated on cards 0, 2, 4 and 6 like GameGenerator.createDragons
+    List<Integer> startCards = new ArrayList<>();
+    startCards.add(0);
+    if (numPlayers >= 3) {
+      startCards.add(2);
+    }
+    startCards.add(4);
+    if (numPlayers == 4) {
+      startCards.add(6);
+    }
+    byte[] dragonAnimal = new byte[numPlayers];
+    int[] dragonCard = new int[numPlayers];
+    int[] dragonIndex = new int[numPlayers];
+    for (int i = 0; i < numPlayers; i++) {
+      dragonCard[i] = startCards.get(i);
+      dragonAnimal[i] = caveAnimal[dragonCard[i]];
+      dragonIndex[i] = -1;
+    }
+
+    List<Byte> types = new ArrayList<>();
+    List<Integer> moves = new ArrayList<>();
+    Map<String, List<Integer>> chitCardMoves = config.getChitCardMoves();
+    for (String chit : config.getChitCards()) {
+      for (Integer numMoves : chitCardMoves.get(chit)) {
+        types.add(typeOf(chit));
+        moves.add(numMoves);
+      }
+    }
+
+    return new GameSetup(numSquares, caveIndex, caveAnimal, toBytes(squares), toBytes(types),
+        moves.stream().mapToInt(Integer::intValue).toArray(), dragonAnimal, dragonCard,
+        dragonIndex, new boolean[types.size()], 0, true);
+  }
+
+  /**
+   * Creates the setup of a saved game in the same way as LoadGameGenerator.
+   *
+   * @param savedState the saved state
+   * @return the setup
+   */
+  public static GameSetup fromSavedState(SavedState savedState) {
+    List<CardRecord> cards = savedState.getVolcanoCards();
+    int numCards = cards.size();
+    int[] numSquares = new int[numCards];
+    int[] caveIndex = new int[numCards];
+    byte[] caveAnimal = new byte[numCards];
+    List<Byte> squares = new ArrayList<>();
+
+    for (int i = 0; i < numCards; i++) {
+      CardRecord card = cards.get(i);
+      numSquares[i] = card.squares().size();
+      for (String square : card.squares()) {
+        squares.add(typeOf(square));
+      }
+      caveIndex[i] = card.cave() == null ? DEFAULT_CAVE_INDEX : card.cave().index();
+      caveAnimal[i] = card.cave() == null ? -1 : typeOf(card.cave().type().replace("Cave", ""));
+    }
+
+    List<DragonRecord> dragons = savedState.getDragons();
+    byte[] dragonAnimal = new byte[dragons.size()];
+    int[] dragonCard = new int[dragons.size()];
+    int[] dragonIndex = new int[dragons.size()];
+    for (int i = 0; i < dragons.size(); i++) {
+      DragonRecord dragon = dragons.get(i);
+      dragonAnimal[i] = caveAnimal[dragon.caveCard()];
+      dragonCard[i] = dragon.card();
+      dragonIndex[i] = dragon.square();
+    }
+
+    List<ChitRecord> chits = savedState.getChitCards();
+    byte[] chitType = new byte[chits.size()];
+    int[] chitMoves = new int[chits.size()];
+    for (int i = 0; i < chits.size(); i++) {
+      chitType[i] = typeOf(chits.get(i).type());
+      chitMoves[i] = chits.get(i).moves();
+    }
+    boolean[] flipped = new boolean[chits.size()];
+    for (Integer index : savedState.getFlippedChitCards()) {
+      flipped[index] = true;
+    }
+
+    return new GameSetup(numSquares, caveIndex, caveAnimal, toBytes(squares), chitType, chitMoves,
+        dragonAnimal, dragonCard, dragonIndex, flipped, savedState.getCurrentDragon(), false);
+  }
+
+  /**
+   * Returns the type code of a chit card or square name.
+   *
+   * @param name the name used in config and save files, eg: BabyDragon
+   * @return the type code
+   */
+  public static byte typeOf(String name) {
+    for (byte i = 0; i < TYPE_NAMES.length; i++) {
+      if (TYPE_NAMES[i].equals(name)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Unknown card type: " + name);
+  }
+
+  /**
+   * Returns the name of a type code as used in config and save files.
+   *
+   * @param type the type code
+   * @return the name
+   */
+  public static String typeName(int type) {
+    return TYPE_NAMES[type];
+  }
+
+  /**
+   * Converts a list of boxed bytes to an array.
+   *
+   * @param list the list to convert
+   * @return the array
+   */
+  private static byte[] toBytes(List<Byte> list) {
+    byte[] result = new byte[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = list.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of volcano cards.
+   *
+   * @return the number of volcano cards
+   */
+  public int getNumCards() {
+    return numSquares.length;
+  }
+
+  /**
+   * Returns the number of squares on a volcano card.
+   *
+   * @param card the volcano card
+   * @return the number of squares
+   */
+  public int getNumSquares(int card) {
+    return numSquares[card];
+  }
+
+  /**
+   * Returns the total number of squares on the volcano, excluding caves.
+   *
+   * @return the total number of squares
+   */
+  public int getTotalSquares() {
+    return cardOffset[numSquares.length];
+  }
+
+  /**
+   * Returns the id of the first square of a volcano card. Square ids run from 0 to
+   * getTotalSquares() - 1, the cave of card c has id getTotalSquares() + c.
+   *
+   * @param card the volcano card
+   * @return the id of the first square
+   */
+  public int getCardOffset(int card) {
+    return cardOffset[card];
+  }
+
+  /**
+   * Returns the cave index of a volcano card.
+   *
+   * @param card the volcano card
+   * @return the cave index
+   */
+  public int getCaveIndex(int card) {
+    return caveIndex[card];
+  }
+
+  /**
+   * Returns the animal of the cave on a volcano card.
+   *
+   * @param card the volcano card
+   * @return the animal code, or -1 if the card has no cave
+   */
+  public byte getCaveAnimal(int card) {
+    return caveAnimal[card];
+  }
+
+  /**
+   * Returns the animal of a square.
+   *
+   * @param square the square id
+   * @return the animal code
+   */
+  public byte getSquareAnimal(int square) {
+    return squareAnimal[square];
+  }
+
+  /**
+   * Returns the number of chit cards.
+   *
+   * @return the number of chit cards
+   */
+  public int getNumChits() {
+    return chitType.length;
+  }
+
+  /**
+   * Returns the type of a chit card before shuffling.
+   *
+   * @param chit the chit card index
+   * @return the type code
+   */
+  public byte getChitType(int chit) {
+    return chitType[chit];
+  }
+
+  /**
+   * Returns the number of moves of a chit card before shuffling.
+   *
+   * @param chit the chit card index
+   * @return the number of moves
+   */
+  public int getChitMoves(int chit) {
+    return chitMoves[chit];
+  }
+
+  /**
+   * Returns whether a chit card starts face up.
+   *
+   * @param chit the chit card index
+   * @return true if the chit card starts face up
+   */
+  public boolean isFlipped(int chit) {
+    return flipped[chit];
+  }
+
+  /**
+   * Returns the number of dragons.
+   *
+   * @return the number of dragons
+   */
+  public int getNumDragons() {
+    return dragonAnimal.length;
+  }
+
+  /**
+   * Returns the animal of the cave a dragon belongs to, which also identifies its colour.
+   *
+   * @param dragon the dragon index
+   * @return the animal code of the dragon's cave
+   */
+  public byte getDragonAnimal(int dragon) {
+    return dragonAnimal[dragon];
+  }
+
+  /**
+   * Returns the colour of a dragon.
+   *
+   * @param dragon the dragon index
+   * @return the colour of the dragon
+   */
+  public Color getDragonColour(int dragon) {
+    return CAVE_COLOURS[dragonAnimal[dragon]];
+  }
+
+  /**
+   * Returns the starting volcano card of a dragon.
+   *
+   * @param dragon the dragon index
+   * @return the starting volcano card
+   */
+  public int getDragonCard(int dragon) {
+    return dragonCard[dragon];
+  }
+
+  /**
+   * Returns the starting square index of a dragon.
+   *
+   * @param dragon the dragon index
+   * @return the starting square index, -1 when in a cave
+   */
+  public int getDragonIndex(int dragon) {
+    return dragonIndex[dragon];
+  }
+
+  /**
+   * Returns the dragon that takes the first turn.
+   *
+   * @return the dragon index
+   */
+  public int getFirstDragon() {
+    return firstDragon;
+  }
+
+  /**
+   * Returns a hash identifying this setup, used to group archived games by board.
+   *
+   * @return the config hash
+   */
+  public long getConfigHash() {
+    return configHash;
+  }
+
+  /**
+   * Returns whether the chit cards are shuffled for every game.
+   *
+   * @return true if the chit cards are shuffled
+   */
+  public boolean isShuffleChits() {
+    return shuffleChits;
+  }
+
+  /**
+   * Writes the setup in a compact binary form that read turns back into an equal setup. Counts,
+   * card and square indices and moves are varints, so boards of any size fit.
+   *
+   * @param out the output
+   * @throws IOException if writing fails
+   */
+  public void write(DataOutput out) throws IOException {
+    writeVarint(out, numSquares.length);
+    for (int card = 0; card < numSquares.length; card++) {
+      writeVarint(out, numSquares[card]);
+      writeSignedVarint(out, caveIndex[card]);
+      out.writeByte(caveAnimal[card]);
+    }
+    out.write(squareAnimal);
+    writeVarint(out, chitType.length);
+    for (int chit = 0; chit < chitType.length; chit++) {
+      out.writeByte(chitType[chit]);
+      writeSignedVarint(out, chitMoves[chit]);
+      out.writeBoolean(flipped[chit]);
+    }
+    writeVarint(out, dragonAnimal.length);
+    for (int dragon = 0; dragon < dragonAnimal.length; dragon++) {
+      out.writeByte(dragonAnimal[dragon]);
+      writeVarint(out, dragonCard[dragon]);
+      writeSignedVarint(out, dragonIndex[dragon]);
+    }
+    writeVarint(out, firstDragon);
+    out.writeBoolean(shuffleChits);
+  }
+
+  /**
+   * Reads a setup written by write.
+   *
+   * @param in the input
+   * @return the setup
+   * @throws IOException if reading fails
+   */
+  public static GameSetup read(DataInput in) throws IOException {
+    int numCards = readVarint(in);
+    int[] numSquares = new int[numCards];
+    int[] caveIndex = new int[numCards];
+    byte[] caveAnimal = new byte[numCards];
+    int totalSquares = 0;
+    for (int card = 0; card < numCards; card++) {
+      numSquares[card] = readVarint(in);
+      caveIndex[card] = readSignedVarint(in);
+      caveAnimal[card] = in.readByte();
+      totalSquares += numSquares[card];
+    }
+    byte[] squareAnimal = new byte[totalSquares];
+    in.readFully(squareAnimal);
+    int numChits = readVarint(in);
+    byte[] chitType = new byte[numChits];
+    int[] chitMoves = new int[numChits];
+    boolean[] flipped = new boolean[numChits];
+    for (int chit = 0; chit < numChits; chit++) {
+      chitType[chit] = in.readByte();
+      chitMoves[chit] = readSignedVarint(in);
+      flipped[chit] = in.readBoolean();
+    }
+    int numDragons = readVarint(in);
+    byte[] dragonAnimal = new byte[numDragons];
+    int[] dragonCard = new int[numDragons];
+    int[] dragonIndex = new int[numDragons];
+    for (int dragon = 0; dragon < numDragons; dragon++) {
+      dragonAnimal[dragon] = in.readByte();
+      dragonCard[dragon] = readVarint(in);
+      dragonIndex[dragon] = readSignedVarint(in);
+    }
+    int firstDragon = readVarint(in);
+    boolean shuffleChits = in.readBoolean();
+    return new GameSetup(numSquares, caveIndex, caveAnimal, squareAnimal, chitType, chitMoves,
+        dragonAnimal, dragonCard, dragonIndex, flipped, firstDragon, shuffleChits);
+  }
+
+  /**
+   * Reads a setup written in the byte sized form of version 1 corpora, which only held boards of
+   * up to 255 cards.
+   *
+   * @param in the input
+   * @return the setup
+   * @throws IOException if reading fails
+   */
+  public static GameSetup readVersion1(DataInput in) throws IOException {
+    int numCards = in.readUnsignedByte();
+    int[] numSquares = new int[numCards];
+    int[] caveIndex = new int[numCards];
+    byte[] caveAnimal = new byte[numCards];
+    int totalSquares = 0;
+    for (int card = 0; card < numCards; card++) {
+      numSquares[card] = in.readUnsignedByte();
+      caveIndex[card] = in.readByte();
+      caveAnimal[card] = in.readByte();
+      totalSquares += numSquares[card];
+    }
+    byte[] squareAnimal = new byte[totalSquares];
+    in.readFully(squareAnimal);
+    int numChits = in.readUnsignedShort();
+    byte[] chitType = new byte[numChits];
+    int[] chitMoves = new int[numChits];
+    boolean[] flipped = new boolean[numChits];
+    for (int chit = 0; chit < numChits; chit++) {
+      chitType[chit] = in.readByte();
+      chitMoves[chit] = in.readByte();
+      flipped[chit] = in.readBoolean();
+    }
+    int numDragons = in.readUnsignedByte();
+    byte[] dragonAnimal = new byte[numDragons];
+    int[] dragonCard = new int[numDragons];
+    int[] dragonIndex = new int[numDragons];
+    for (int dragon = 0; dragon < numDragons; dragon++) {
+      dragonAnimal[dragon] = in.readByte();
+      dragonCard[dragon] = in.readUnsignedByte();
+      dragonIndex[dragon] = in.readByte();
+    }
+    int firstDragon = in.readUnsignedByte();
+    boolean shuffleChits = in.readBoolean();
+    return new GameSetup(numSquares, caveIndex, caveAnimal, squareAnimal, chitType, chitMoves,
+        dragonAnimal, dragonCard, dragonIndex, flipped, firstDragon, shuffleChits);
+  }
+
+  /**
+   * Writes an unsigned varint, seven bits per byte, low bits first.
+   *
+   * @param out   the output
+   * @param value the value, treated as unsigned
+   * @throws IOException if writing fails
+   */
+  private static void writeVarint(DataOutput out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte(value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /**
+   * Writes a signed value as a zigzag varint, so small negative values take one byte.
+   *
+   * @param out   the output
+   * @param value the value
+   * @throws IOException if writing fails
+   */
+  private static void writeSignedVarint(DataOutput out, int value) throws IOException {
+    writeVarint(out, value << 1 ^ value >> 31);
+  }
+
+  /**
+   * Reads an unsigned varint written by writeVarint.
+   *
+   * @param in the input
+   * @return the value
+   * @throws IOException if reading fails or the varint is longer than an int
+   */
+  private static int readVarint(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Varint too long");
+  }
+
+  /**
+   * Reads a zigzag varint written by writeSignedVarint.
+   *
+   * @param in the input
+   * @return the value
+   * @throws IOException if reading fails
+   */
+  private static int readSignedVarint(DataInput in) throws IOException {
+    int zigzag = readVarint(in);
+    return zigzag >>> 1 ^ -(zigzag & 1);
+  }
+}
@@ -0,0 +1,166 @@
+package game.simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * A policy with perfect memory that looks one flip ahead. Every chit card it remembers is scored
+ * by the progress its face would give right now, a chit card it has not seen is scored by the
+ * average over the faces it could have, and the best score is flipped.
+ */
+public class GreedyPolicy implements Policy {
+
+  static final double WIN_SCORE = 1000;
+  static final double TURN_END_SCORE = -0.5;
+
+  protected final ChitMemory memory;
+  private final int[] faces;
+  private final int[] counts;
+
+  /**
+   * Constructs a GreedyPolicy to hand to a Simulator. Each game gets its own copy.
+   */
+  public GreedyPolicy() {
+    this.memory = null;
+    this.faces = null;
+    this.counts = null;
+  }
+
+  /**
+   * Constructs the copy of a GreedyPolicy that plays one game.
+   *
+   * @param setup the setup of the game
+   */
+  protected GreedyPolicy(GameSetup setup) {
+    this.memory = new ChitMemory(setup);
+    this.faces = new int[setup.getNumChits()];
+    this.counts = new int[setup.getNumChits()];
+  }
+
+  /**
+   * Returns a copy with an empty memory.
+   *
+   * @param setup  the setup of the game
+   * @param random the source of randomness for this game
+   * @return the policy for the game
+   */
+  @Override
+  public Policy newGame(GameSetup setup, SplittableRandom random) {
+    return new GreedyPolicy(setup);
+  }
+
+  /**
+   * Remembers every flipped chit card.
+   *
+   * @param game the game after the flip
+   * @param chit the index of the flipped chit card
+   */
+  @Override
+  public void observe(HeadlessGame game, int chit) {
+    memory.remember(chit, game.getChitType(chit), game.getChitMoves(chit), game.getTurns());
+  }
+
+  /**
+   * Flips the remembered chit card with the best score, or an unseen one if that scores higher.
+   *
+   * @param game   the game being played
+   * @param random the source of randomness for this game
+   * @return the index of a face down chit card
+   */
+  @Override
+  public int chooseChit(HeadlessGame game, SplittableRandom random) {
+    int dragon = game.getCurrentDragon();
+    int unknown = 0;
+    int best = -1;
+    double bestScore = Double.NEGATIVE_INFINITY;
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      if (game.isFlipped(chit)) {
+        continue;
+      }
+      if (!memory.isKnown(chit)) {
+        unknown++;
+        continue;
+      }
+      double score = score(game, dragon, memory.getType(chit), memory.getMoves(chit));
+      if (score > bestScore) {
+        best = chit;
+        bestScore = score;
+      }
+    }
+    if (unknown > 0 && (best == -1 || unknownScore(game, dragon) > bestScore)) {
+      int pick = random.nextInt(unknown);
+      for (int chit = 0; chit < game.getNumChits(); chit++) {
+        if (!game.isFlipped(chit) && !memory.isKnown(chit) && pick-- == 0) {
+          return chit;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Scores a chit card that has not been seen by the average score of the faces it could have.
+   *
+   * @param game   the game being played
+   * @param dragon the dragon to move
+   * @return the expected score
+   */
+  private double unknownScore(HeadlessGame game, int dragon) {
+    int distinct = memory.unknownFaces(faces, counts);
+    double total = 0;
+    int cards = 0;
+    for (int i = 0; i < distinct; i++) {
+      if (counts[i] > 0) {
+        total += counts[i] * score(game, dragon, ChitMemory.faceType(faces[i]),
+            ChitMemory.faceMoves(faces[i]));
+        cards += counts[i];
+      }
+    }
+    return cards == 0 ? TURN_END_SCORE : total / cards;
+  }
+
+  /**
+   * Scores flipping a chit card with a given face, by trying it on a copy of the game: the number
+   * of spaces it brings the dragon closer to its cave, a large bonus for winning, and a small
+   * penalty for ending the turn.
+   *
+   * @param game   the game being played
+   * @param dragon the dragon to move
+   * @param type   the type code of the face
+   * @param moves  the number of moves of the face
+   * @return the score
+   */
+  static double score(HeadlessGame game, int dragon, byte type, int moves) {
+    HeadlessGame copy = new HeadlessGame(game);
+    int outcome = copy.flipAs(firstFaceDown(copy), type, moves);
+    if (outcome == HeadlessGame.WON) {
+      return WIN_SCORE;
+    }
+    double progress = game.distanceHome(dragon) - copy.distanceHome(dragon);
+    return outcome == HeadlessGame.MOVED ? progress : progress + TURN_END_SCORE;
+  }
+
+  /**
+   * Returns the first face down chit card of a game.
+   *
+   * @param game the game
+   * @return the chit card index
+   */
+  static int firstFaceDown(HeadlessGame game) {
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      if (!game.isFlipped(chit)) {
+        return chit;
+      }
+    }
+    throw new IllegalStateException("No face down chit cards");
+  }
+
+  /**
+   * Returns the name of the policy as used on the command line.
+   *
+   * @return the name of the policy
+   */
+  @Override
+  public String getName() {
+    return "greedy";
+  }
+}
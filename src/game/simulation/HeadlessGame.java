@@ -0,0 +1,654 @@
+package game.simulation;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A Swing free copy of the game rules operating on primitive arrays. Movement follows
+ * VolcanoCardIterator exactly, including entering the volcano from a cave at the square after the
+ * cave index, so that games played here match games played on the GameBoard.
+ */
+public class HeadlessGame {
+
+  /**
+   * Outcomes of flipping a chit card.
+   */
+  public static final int MOVED = 0;
+  public static final int NO_MATCH = 1;
+  public static final int BLOCKED = 2;
+  public static final int SWAPPED = 3;
+  public static final int WON = 4;
+
+  private final GameSetup setup;
+  private final byte[] chitType;
+  private final int[] chitMoves;
+  private final boolean[] flipped;
+  private final int[] occupant;
+  private final int[] dragonCard;
+  private final int[] dragonIndex;
+  private int currentDragon;
+  private int winner;
+  private int turns;
+  private int flips;
+  private int swaps;
+
+  /**
+   * Constructs a new game from a setup, shuffling the chit cards with the given seed when the setup
+   * asks for it.
+   *
+   * @param setup the board and starting position
+   * @param seed  the seed used to shuffle the chit cards
+   */
+  public HeadlessGame(GameSetup setup, long seed) {
+    this.setup = setup;
+    int numChits = setup.getNumChits();
+    this.chitType = new byte[numChits];
+    this.chitMoves = new int[numChits];
+    this.flipped = new boolean[numChits];
+    for (int i = 0; i < numChits; i++) {
+      this.chitType[i] = setup.getChitType(i);
+      this.chitMoves[i] = setup.getChitMoves(i);
+      this.flipped[i] = setup.isFlipped(i);
+    }
+    if (setup.isShuffleChits()) {
+      shuffleChits(new SplittableRandom(seed));
+    }
+
+    this.occupant = new int[setup.getTotalSquares() + setup.getNumCards()];
+    Arrays.fill(this.occupant, -1);
+    int numDragons = setup.getNumDragons();
+    this.dragonCard = new int[numDragons];
+    this.dragonIndex = new int[numDragons];
+    for (int i = 0; i < numDragons; i++) {
+      this.dragonCard[i] = setup.getDragonCard(i);
+      this.dragonIndex[i] = setup.getDragonIndex(i);
+      this.occupant[squareAt(this.dragonCard[i], this.dragonIndex[i])] = i;
+    }
+    this.currentDragon = setup.getFirstDragon();
+    this.winner = -1;
+  }
+
+  /**
+   * Copy constructor used by search based players.
+   *
+   * @param other the game to copy
+   */
+  public HeadlessGame(HeadlessGame other) {
+    this.setup = other.setup;
+    this.chitType = other.chitType;
+    this.chitMoves = other.chitMoves;
+    this.flipped = other.flipped.clone();
+    this.occupant = other.occupant.clone();
+    this.dragonCard = other.dragonCard.clone();
+    this.dragonIndex = other.dragonIndex.clone();
+    this.currentDragon = other.currentDragon;
+    this.winner = other.winner;
+    this.turns = other.turns;
+    this.flips = other.flips;
+    this.swaps = other.swaps;
+  }
+
+  /**
+   * Overwrites this game with the state of another game on the same setup, so that searches can
+   * reset a scratch game without allocating.
+   *
+   * @param other the game to copy
+   */
+  public void copyFrom(HeadlessGame other) {
+    if (other.setup != setup) {
+      throw new IllegalArgumentException("Games are played on different setups");
+    }
+    System.arraycopy(other.flipped, 0, flipped, 0, flipped.length);
+    System.arraycopy(other.occupant, 0, occupant, 0, occupant.length);
+    System.arraycopy(other.dragonCard, 0, dragonCard, 0, dragonCard.length);
+    System.arraycopy(other.dragonIndex, 0, dragonIndex, 0, dragonIndex.length);
+    this.currentDragon = other.currentDragon;
+    this.winner = other.winner;
+    this.turns = other.turns;
+    this.flips = other.flips;
+    this.swaps = other.swaps;
+  }
+
+  /**
+   * Puts every dragon on the given position without applying any rules, turning all chit cards
+   * face down. Used by solvers that visit positions no game has reached.
+   *
+   * @param cards         the volcano card of every dragon
+   * @param indices       the square index of every dragon, -1 for the cave of the card
+   * @param currentDragon the dragon whose turn it is
+   */
+  public void setPositions(int[] cards, int[] indices, int currentDragon) {
+    Arrays.fill(flipped, false);
+    Arrays.fill(occupant, -1);
+    for (int i = 0; i < dragonCard.length; i++) {
+      dragonCard[i] = cards[i];
+      dragonIndex[i] = indices[i];
+      occupant[squareAt(cards[i], indices[i])] = i;
+    }
+    this.currentDragon = currentDragon;
+    this.winner = -1;
+  }
+
+  /**
+   * Shuffles the chit cards like Collections.shuffle does when the board is set up.
+   *
+   * @param random the source of randomness
+   */
+  private void shuffleChits(SplittableRandom random) {
+    for (int i = chitType.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      byte type = chitType[i];
+      chitType[i] = chitType[j];
+      chitType[j] = type;
+      int moves = chitMoves[i];
+      chitMoves[i] = chitMoves[j];
+      chitMoves[j] = moves;
+    }
+  }
+
+  /**
+   * Flips a face down chit card for the current dragon and applies its effect. The turn passes to
+   * the next dragon unless the dragon moved successfully.
+   *
+   * @param chit the index of the chit card to flip
+   * @return the outcome of the flip
+   */
+  public int flip(int chit) {
+    return flipAs(chit, chitType[chit], chitMoves[chit]);
+  }
+
+  /**
+   * Flips a face down chit card as if it showed the given face. Search based players use this on
+   * copies of the game to try out the faces a chit card they have not seen might have.
+   *
+   * @param chit  the index of the chit card to flip
+   * @param type  the type code the chit card is assumed to have
+   * @param moves the number of moves the chit card is assumed to have
+   * @return the outcome of the flip
+   */
+  public int flipAs(int chit, byte type, int moves) {
+    if (flipped[chit] || winner != -1) {
+      throw new IllegalStateException("Chit card " + chit + " cannot be flipped");
+    }
+    flipped[chit] = true;
+    flips++;
+    int outcome = apply(currentDragon, type, moves);
+    if (outcome != MOVED && outcome != WON) {
+      endTurn();
+    } else if (outcome == MOVED && countFaceDown() == 0) {
+      // nothing left to flip, the turn timer would run out
+      endTurn();
+    }
+    return outcome;
+  }
+
+  /**
+   * Applies the effect of a chit card face to any dragon, leaving the chit cards and the turn
+   * alone. Used by flipAs and by tools that drive the movement rules directly.
+   *
+   * @param dragon the dragon the face is played for
+   * @param type   the type code of the face
+   * @param moves  the number of moves of the face
+   * @return the outcome
+   */
+  public int apply(int dragon, byte type, int moves) {
+    if (type == GameSetup.SWAP) {
+      swapClosest(dragon);
+      swaps++;
+      return SWAPPED;
+    }
+    if (type == GameSetup.PIRATE_DRAGON || type == animalAt(dragon)) {
+      return move(dragon, moves);
+    }
+    return NO_MATCH;
+  }
+
+  /**
+   * Ends the turn of the current dragon, flipping back all chit cards.
+   */
+  public void endTurn() {
+    Arrays.fill(flipped, false);
+    currentDragon = (currentDragon + 1) % dragonCard.length;
+    turns++;
+  }
+
+  /**
+   * Returns the outcome a move would have without applying it, like GameEngine.checkValidMove.
+   *
+   * @param dragon the dragon to move
+   * @param spaces the number of spaces to move
+   * @return MOVED, WON or BLOCKED
+   */
+  public int checkMove(int dragon, int spaces) {
+    int card = dragonCard[dragon];
+    int index = dragonIndex[dragon];
+    byte animal = setup.getDragonAnimal(dragon);
+    // check the square to move to is empty
+    if (occupant[peek(card, index, spaces)] != -1) {
+      return BLOCKED;
+    }
+    // check if dragon is passing cave
+    if (passesCave(card, index, animal, spaces)) {
+      return BLOCKED;
+    }
+    // check if dragon is moving back when on cave
+    if (index == -1 && spaces < 0) {
+      return BLOCKED;
+    }
+    return onCave(card, index, animal, spaces) ? WON : MOVED;
+  }
+
+  /**
+   * Moves a dragon if the move is valid.
+   *
+   * @param dragon the dragon to move
+   * @param spaces the number of spaces to move
+   * @return the outcome of the move
+   */
+  private int move(int dragon, int spaces) {
+    int outcome = checkMove(dragon, spaces);
+    if (outcome == BLOCKED) {
+      return BLOCKED;
+    }
+    int card = dragonCard[dragon];
+    int index = dragonIndex[dragon];
+    occupant[squareAt(card, index)] = -1;
+    int packed = walk(card, index, spaces);
+    dragonCard[dragon] = packed >>> 16;
+    dragonIndex[dragon] = (short) packed;
+    occupant[squareAt(dragonCard[dragon], dragonIndex[dragon])] = dragon;
+    if (outcome == WON) {
+      winner = dragon;
+    }
+    return outcome;
+  }
+
+  /**
+   * Swaps the position of a dragon with the closest dragon, searching forwards before backwards
+   * like Dragon.swapClosest.
+   *
+   * @param dragon the dragon playing the swap card
+   */
+  private void swapClosest(int dragon) {
+    int card = dragonCard[dragon];
+    int index = dragonIndex[dragon];
+    int forward = peek(card, index, 1);
+    int backward = peek(card, index, -1);
+    int i = 1;
+    while (forward != backward) {
+      if (occupant[forward] != -1 || occupant[backward] != -1) {
+        break;
+      }
+      forward = peek(card, index, 1 + i);
+      if (forward == backward) {
+        break;
+      }
+      backward = peek(card, index, -1 - i);
+      i++;
+    }
+    int closest = -1;
+    if (occupant[forward] != -1) {
+      closest = occupant[forward];
+    } else if (occupant[backward] != -1) {
+      closest = occupant[backward];
+    }
+    if (closest != -1 && closest != dragon) {
+      int otherCard = dragonCard[closest];
+      int otherIndex = dragonIndex[closest];
+      occupant[squareAt(otherCard, otherIndex)] = dragon;
+      occupant[squareAt(card, index)] = closest;
+      dragonCard[closest] = card;
+      dragonIndex[closest] = index;
+      dragonCard[dragon] = otherCard;
+      dragonIndex[dragon] = otherIndex;
+    }
+  }
+
+  /**
+   * Returns the square id of a position.
+   *
+   * @param card  the volcano card
+   * @param index the square index, -1 for the cave of the card
+   * @return the square id
+   */
+  public int squareAt(int card, int index) {
+    return index > -1 ? setup.getCardOffset(card) + index : setup.getTotalSquares() + card;
+  }
+
+  /**
+   * Walks a number of spaces from a position like VolcanoCardIterator.iterate.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param spaces the number of spaces to walk
+   * @return the resulting card in the upper 16 bits and index in the lower 16 bits
+   */
+  public int walk(int card, int index, int spaces) {
+    int numCards = setup.getNumCards();
+    int i = 0;
+    while (i > spaces) {
+      index--;
+      if (index < 0) {
+        card = card == 0 ? numCards - 1 : card - 1;
+        index = setup.getNumSquares(card) - 1;
+      }
+      i--;
+    }
+    while (i < spaces) {
+      if (index == -1) {
+        index = setup.getCaveIndex(card);
+      }
+      index++;
+      if (index > setup.getNumSquares(card) - 1) {
+        card = card == numCards - 1 ? 0 : card + 1;
+        index = 0;
+      }
+      i++;
+    }
+    return card << 16 | (index & 0xFFFF);
+  }
+
+  /**
+   * Returns the square a number of spaces away from a position like VolcanoCardIterator.peek.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param spaces the number of spaces to walk
+   * @return the square id
+   */
+  public int peek(int card, int index, int spaces) {
+    int packed = walk(card, index, spaces);
+    return squareAt(packed >>> 16, (short) packed);
+  }
+
+  /**
+   * Checks if a dragon passes its cave given the number of spaces moved, like
+   * VolcanoCardIterator.passesCave.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param animal the animal of the dragon's cave
+   * @param spaces number of spaces moved, either +ve or -ve
+   * @return boolean value if the cave has been passed or not
+   */
+  public boolean passesCave(int card, int index, byte animal, int spaces) {
+    if (index == -1) {
+      return false;
+    }
+    int numCards = setup.getNumCards();
+    boolean passes = false;
+    int i = 0;
+    while (i > spaces) {
+      index--;
+      if (index < 0) {
+        card = card == 0 ? numCards - 1 : card - 1;
+        index = setup.getNumSquares(card) - 1;
+      }
+      if (setup.getCaveAnimal(card) == animal && index == setup.getCaveIndex(card)) {
+        passes = true;
+      }
+      i--;
+    }
+    while (i < spaces) {
+      index++;
+      if (index > setup.getNumSquares(card) - 1) {
+        card = card == numCards - 1 ? 0 : card + 1;
+        index = 0;
+      }
+      if (setup.getCaveAnimal(card) == animal && (index > setup.getCaveIndex(card)
+          || index == setup.getCaveIndex(card) && i < spaces - 1)) {
+        passes = true;
+      }
+      i++;
+    }
+    return passes;
+  }
+
+  /**
+   * Checks if a dragon lands on its cave given the number of spaces moved, like
+   * VolcanoCardIterator.onCave.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param animal the animal of the dragon's cave
+   * @param spaces number of spaces moved, either +ve or -ve
+   * @return boolean denoting if the dragon is on its cave or not
+   */
+  public boolean onCave(int card, int index, byte animal, int spaces) {
+    int packed = walk(card, index, spaces);
+    card = packed >>> 16;
+    return setup.getCaveAnimal(card) == animal && (short) packed == setup.getCaveIndex(card);
+  }
+
+  /**
+   * Returns how many spaces a dragon still has to move forwards to land on its cave, ignoring
+   * other dragons. Walks the board once, tracking passes of the cave like passesCave.
+   *
+   * @param dragon the dragon index
+   * @return the number of spaces, or the number of squares on the board if the dragon cannot get
+   *     home by moving forwards
+   */
+  public int distanceHome(int dragon) {
+    int card = dragonCard[dragon];
+    int index = dragonIndex[dragon];
+    byte animal = setup.getDragonAnimal(dragon);
+    int numCards = setup.getNumCards();
+    int limit = setup.getTotalSquares();
+    // leaving a cave never counts as passing one
+    boolean passes = false;
+    boolean fromCave = index == -1;
+    for (int spaces = 1; spaces <= limit; spaces++) {
+      if (index == -1) {
+        index = setup.getCaveIndex(card);
+      }
+      index++;
+      if (index > setup.getNumSquares(card) - 1) {
+        card = card == numCards - 1 ? 0 : card + 1;
+        index = 0;
+      }
+      boolean ownCard = setup.getCaveAnimal(card) == animal;
+      if (ownCard && index == setup.getCaveIndex(card) && (fromCave || !passes)) {
+        return spaces;
+      }
+      if (ownCard && index >= setup.getCaveIndex(card)) {
+        passes = true;
+      }
+    }
+    return limit;
+  }
+
+  /**
+   * Returns the animal of the square or cave the dragon is standing on.
+   *
+   * @param dragon the dragon index
+   * @return the animal code
+   */
+  public byte animalAt(int dragon) {
+    int card = dragonCard[dragon];
+    int index = dragonIndex[dragon];
+    return index > -1 ? setup.getSquareAnimal(setup.getCardOffset(card) + index)
+        : setup.getCaveAnimal(card);
+  }
+
+  /**
+   * Counts the chit cards that are still face down.
+   *
+   * @return the number of face down chit cards
+   */
+  public int countFaceDown() {
+    int count = 0;
+    for (boolean isFlipped : flipped) {
+      if (!isFlipped) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns a random face down chit card.
+   *
+   * @param random the source of randomness
+   * @return the index of a face down chit card
+   */
+  public int randomFaceDown(SplittableRandom random) {
+    int pick = random.nextInt(countFaceDown());
+    for (int i = 0; i < flipped.length; i++) {
+      if (!flipped[i] && pick-- == 0) {
+        return i;
+      }
+    }
+    throw new IllegalStateException("No face down chit cards");
+  }
+
+  /**
+   * Returns the setup this game was created from.
+   *
+   * @return the setup
+   */
+  public GameSetup getSetup() {
+    return setup;
+  }
+
+  /**
+   * Returns the type of a chit card in this game's (shuffled) order.
+   *
+   * @param chit the chit card index
+   * @return the type code
+   */
+  public byte getChitType(int chit) {
+    return chitType[chit];
+  }
+
+  /**
+   * Returns the number of moves of a chit card in this game's (shuffled) order.
+   *
+   * @param chit the chit card index
+   * @return the number of moves
+   */
+  public int getChitMoves(int chit) {
+    return chitMoves[chit];
+  }
+
+  /**
+   * Returns whether a chit card is face up.
+   *
+   * @param chit the chit card index
+   * @return true if the chit card is face up
+   */
+  public boolean isFlipped(int chit) {
+    return flipped[chit];
+  }
+
+  /**
+   * Returns the number of chit cards.
+   *
+   * @return the number of chit cards
+   */
+  public int getNumChits() {
+    return flipped.length;
+  }
+
+  /**
+   * Returns the number of dragons.
+   *
+   * @return the number of dragons
+   */
+  public int getNumDragons() {
+    return dragonCard.length;
+  }
+
+  /**
+   * Returns the volcano card a dragon is on.
+   *
+   * @param dragon the dragon index
+   * @return the volcano card
+   */
+  public int getDragonCard(int dragon) {
+    return dragonCard[dragon];
+  }
+
+  /**
+   * Returns the square index a dragon is on.
+   *
+   * @param dragon the dragon index
+   * @return the square index, -1 when in a cave
+   */
+  public int getDragonIndex(int dragon) {
+    return dragonIndex[dragon];
+  }
+
+  /**
+   * Returns the square id a dragon is on.
+   *
+   * @param dragon the dragon index
+   * @return the square id
+   */
+  public int getDragonSquare(int dragon) {
+    return squareAt(dragonCard[dragon], dragonIndex[dragon]);
+  }
+
+  /**
+   * Returns the dragon on a square.
+   *
+   * @param square the square id
+   * @return the dragon index, or -1 if the square is empty
+   */
+  public int getOccupant(int square) {
+    return occupant[square];
+  }
+
+  /**
+   * Returns the dragon whose turn it is.
+   *
+   * @return the dragon index
+   */
+  public int getCurrentDragon() {
+    return currentDragon;
+  }
+
+  /**
+   * Returns the winner of the game.
+   *
+   * @return the dragon index of the winner, or -1 if nobody has won yet
+   */
+  public int getWinner() {
+    return winner;
+  }
+
+  /**
+   * Returns whether the game has been won.
+   *
+   * @return true if the game is over
+   */
+  public boolean isOver() {
+    return winner != -1;
+  }
+
+  /**
+   * Returns the number of completed turns.
+   *
+   * @return the number of turns
+   */
+  public int getTurns() {
+    return turns;
+  }
+
+  /**
+   * Returns the number of chit cards flipped so far.
+   *
+   * @return the number of flips
+   */
+  public int getFlips() {
+    return flips;
+  }
+
+  /**
+   * Returns the number of swap cards played so far.
+   *
+   * @return the number of swaps
+   */
+  public int getSwaps() {
+    return swaps;
+  }
+}
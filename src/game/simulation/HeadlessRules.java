@@ -0,0 +1,94 @@
+package game.simulation;
+
+/**
+ * The movement rules of HeadlessGame, run against the Swing rules by RuleFuzzer.
+ */
+public class HeadlessRules implements MoveRules {
+
+  private HeadlessGame game;
+
+  /**
+   * Starts a new HeadlessGame on the board of a case.
+   *
+   * @param fuzzCase the case
+   */
+  @Override
+  public void reset(FuzzCase fuzzCase) {
+    this.game = new HeadlessGame(fuzzCase.getSetup(), 0);
+  }
+
+  /**
+   * Plays a face with HeadlessGame.apply.
+   *
+   * @param dragon the dragon
+   * @param type   the type code of the face
+   * @param moves  the number of moves of the face
+   * @return a HeadlessGame outcome code
+   */
+  @Override
+  public int apply(int dragon, byte type, int moves) {
+    return game.apply(dragon, type, moves);
+  }
+
+  /**
+   * Returns the position of a dragon.
+   *
+   * @param dragon the dragon
+   * @return the packed position
+   */
+  @Override
+  public int position(int dragon) {
+    return game.getDragonCard(dragon) << 16 | (game.getDragonIndex(dragon) & 0xFFFF);
+  }
+
+  /**
+   * Walks with HeadlessGame.walk.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param spaces the number of spaces
+   * @return the packed position reached
+   */
+  @Override
+  public int walk(int card, int index, int spaces) {
+    return game.walk(card, index, spaces);
+  }
+
+  /**
+   * Checks with HeadlessGame.passesCave.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param animal the animal of the dragon's cave
+   * @param spaces the number of spaces
+   * @return true if the cave is passed
+   */
+  @Override
+  public boolean passesCave(int card, int index, byte animal, int spaces) {
+    return game.passesCave(card, index, animal, spaces);
+  }
+
+  /**
+   * Checks with HeadlessGame.onCave.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param animal the animal of the dragon's cave
+   * @param spaces the number of spaces
+   * @return true if the dragon lands on its cave
+   */
+  @Override
+  public boolean onCave(int card, int index, byte animal, int spaces) {
+    return game.onCave(card, index, animal, spaces);
+  }
+
+  /**
+   * Returns the name shown in reports.
+   *
+   * @return the name
+   */
+  @Override
+  public String getName() {
+    return "headless";
+  }
+}
@@ -0,0 +1,252 @@
+package game.simulation;
+
+import game.entities.Dragon;
+import game.tiles.BabyDragonCave;
+import game.tiles.BabyDragonSquare;
+import game.tiles.BatCave;
+import game.tiles.BatSquare;
+import game.tiles.Cave;
+import game.tiles.SalamanderCave;
+import game.tiles.SalamanderSquare;
+import game.tiles.SpiderCave;
+import game.tiles.SpiderSquare;
+import game.tiles.Square;
+import game.tiles.VolcanoCard;
+import game.tiles.VolcanoCardIterator;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The movement rules of the Swing game, run on real VolcanoCards, Squares and Dragons. Moves are
+ * checked like GameEngine.checkValidMove and made like Dragon.move, and swaps call
+ * Dragon.swapClosest. Squares, caves and dragons load icons when constructed, so they are kept in
+ * pools and reused from case to case; only the volcano cards are built for every case.
+ */
+public class IteratorRules implements MoveRules {
+
+  private static final int NUM_ANIMALS = 4;
+
+  private final List<List<Square>> squarePool = new ArrayList<>();
+  private final Cave[] cavePool = new Cave[NUM_ANIMALS];
+  private final Dragon[] dragonPool = new Dragon[NUM_ANIMALS];
+  private VolcanoCard[] cards;
+  private Dragon[] dragons;
+
+  /**
+   * Constructs an IteratorRules with empty pools.
+   */
+  public IteratorRules() {
+    for (int animal = 0; animal < NUM_ANIMALS; animal++) {
+      squarePool.add(new ArrayList<>());
+    }
+  }
+
+  /**
+   * Builds the volcano cards of a case from pooled squares and caves, and places pooled dragons.
+   *
+   * @param fuzzCase the case
+   */
+  @Override
+  public void reset(FuzzCase fuzzCase) {
+    GameSetup setup = fuzzCase.getSetup();
+    int[] used = new int[NUM_ANIMALS];
+    cards = new VolcanoCard[setup.getNumCards()];
+    for (int card = 0; card < cards.length; card++) {
+      List<Square> squares = new ArrayList<>();
+      for (int index = 0; index < setup.getNumSquares(card); index++) {
+        byte animal = setup.getSquareAnimal(setup.getCardOffset(card) + index);
+        Square square = pooledSquare(animal, used[animal]++);
+        square.clearOccupied();
+        squares.add(square);
+      }
+      cards[card] = new VolcanoCard(squares, setup.getCaveIndex(card), 1, squares.size());
+      if (setup.getCaveAnimal(card) != -1) {
+        Cave cave = pooledCave(setup.getCaveAnimal(card));
+        cave.clearOccupied();
+        cards[card].setCave(cave);
+      }
+    }
+    for (int card = 0; card < cards.length; card++) {
+      cards[card].setRightNeighbour(cards[card == cards.length - 1 ? 0 : card + 1]);
+      cards[card].setLeftNeighbour(cards[card == 0 ? cards.length - 1 : card - 1]);
+    }
+    dragons = new Dragon[setup.getNumDragons()];
+    for (int dragon = 0; dragon < dragons.length; dragon++) {
+      byte animal = setup.getDragonAnimal(dragon);
+      if (dragonPool[animal] == null) {
+        dragonPool[animal] = new Dragon(cards[0], pooledCave(animal));
+      }
+      dragons[dragon] = dragonPool[animal];
+      VolcanoCardIterator iterator = new VolcanoCardIterator(cards[setup.getDragonCard(dragon)],
+          setup.getDragonIndex(dragon));
+      dragons[dragon].setVolcanoCardIterator(iterator);
+      iterator.getSquare().setOccupied(dragons[dragon]);
+    }
+  }
+
+  /**
+   * Returns a pooled square, creating it on first use.
+   *
+   * @param animal the animal code of the square
+   * @param number which square of that animal on the board
+   * @return the square
+   */
+  private Square pooledSquare(byte animal, int number) {
+    List<Square> pool = squarePool.get(animal);
+    while (pool.size() <= number) {
+      pool.add(switch (animal) {
+        case GameSetup.SALAMANDER -> new SalamanderSquare();
+        case GameSetup.BABY_DRAGON -> new BabyDragonSquare();
+        case GameSetup.BAT -> new BatSquare();
+        default -> new SpiderSquare();
+      });
+    }
+    return pool.get(number);
+  }
+
+  /**
+   * Returns the pooled cave of an animal, creating it on first use.
+   *
+   * @param animal the animal code of the cave
+   * @return the cave
+   */
+  private Cave pooledCave(byte animal) {
+    if (cavePool[animal] == null) {
+      cavePool[animal] = switch (animal) {
+        case GameSetup.SALAMANDER -> new SalamanderCave();
+        case GameSetup.BABY_DRAGON -> new BabyDragonCave();
+        case GameSetup.BAT -> new BatCave();
+        default -> new SpiderCave();
+      };
+    }
+    return cavePool[animal];
+  }
+
+  /**
+   * Plays a face the way a Square's interact and Dragon.move would, without ending turns.
+   *
+   * @param dragon the dragon
+   * @param type   the type code of the face
+   * @param moves  the number of moves of the face
+   * @return a HeadlessGame outcome code
+   */
+  @Override
+  public int apply(int dragon, byte type, int moves) {
+    Dragon piece = dragons[dragon];
+    VolcanoCardIterator iterator = piece.getVolcanoCardIterator();
+    if (type == GameSetup.SWAP) {
+      piece.swapClosest();
+      return HeadlessGame.SWAPPED;
+    }
+    if (type != GameSetup.PIRATE_DRAGON && type != animalOf(iterator.getSquare())) {
+      return HeadlessGame.NO_MATCH;
+    }
+    Color colour = piece.getColourObject();
+    // GameEngine.checkValidMove
+    if (iterator.peek(moves).isOccupied()) {
+      return HeadlessGame.BLOCKED;
+    }
+    if (iterator.passesCave(colour, moves)) {
+      return HeadlessGame.BLOCKED;
+    }
+    if (iterator.getCurrentIndex() == -1 && moves < 0) {
+      return HeadlessGame.BLOCKED;
+    }
+    boolean won = iterator.onCave(colour, moves);
+    // Dragon.move
+    iterator.getSquare().clearOccupied();
+    iterator.iterate(moves).setOccupied(piece);
+    return won ? HeadlessGame.WON : HeadlessGame.MOVED;
+  }
+
+  /**
+   * Returns the animal code of a square or cave from the name it is saved under.
+   *
+   * @param square the square or cave
+   * @return the animal code
+   */
+  private static byte animalOf(Square square) {
+    return GameSetup.typeOf(square.saveState().replace("Cave", ""));
+  }
+
+  /**
+   * Returns the position of a dragon's iterator.
+   *
+   * @param dragon the dragon
+   * @return the packed position
+   */
+  @Override
+  public int position(int dragon) {
+    return pack(dragons[dragon].getVolcanoCardIterator());
+  }
+
+  /**
+   * Walks with VolcanoCardIterator.iterate.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param spaces the number of spaces
+   * @return the packed position reached
+   */
+  @Override
+  public int walk(int card, int index, int spaces) {
+    VolcanoCardIterator iterator = new VolcanoCardIterator(cards[card], index);
+    iterator.iterate(spaces);
+    return pack(iterator);
+  }
+
+  /**
+   * Checks with VolcanoCardIterator.passesCave.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param animal the animal of the dragon's cave
+   * @param spaces the number of spaces
+   * @return true if the cave is passed
+   */
+  @Override
+  public boolean passesCave(int card, int index, byte animal, int spaces) {
+    return new VolcanoCardIterator(cards[card], index)
+        .passesCave(GameSetup.CAVE_COLOURS[animal], spaces);
+  }
+
+  /**
+   * Checks with VolcanoCardIterator.onCave.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param animal the animal of the dragon's cave
+   * @param spaces the number of spaces
+   * @return true if the dragon lands on its cave
+   */
+  @Override
+  public boolean onCave(int card, int index, byte animal, int spaces) {
+    return new VolcanoCardIterator(cards[card], index)
+        .onCave(GameSetup.CAVE_COLOURS[animal], spaces);
+  }
+
+  /**
+   * Packs the position of an iterator.
+   *
+   * @param iterator the iterator
+   * @return the packed position
+   */
+  private int pack(VolcanoCardIterator iterator) {
+    int card = 0;
+    while (cards[card] != iterator.getCurrentCard()) {
+      card++;
+    }
+    return card << 16 | (iterator.getCurrentIndex() & 0xFFFF);
+  }
+
+  /**
+   * Returns the name shown in reports.
+   *
+   * @return the name
+   */
+  @Override
+  public String getName() {
+    return "iterator";
+  }
+}
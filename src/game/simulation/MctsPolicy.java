@@ -0,0 +1,629 @@
+package game.simulation;
+
+import game.utils.GameUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A policy with perfect memory that picks chit cards by Monte Carlo tree search. Every playout
+ * first deals the faces of the chit cards it has not seen at random from what is left of the
+ * deck, then walks down the tree of its own flips by UCT, adds one flip to the tree and plays
+ * the rest of its turn the way a player with its memory would. The playout scores 1 for a win
+ * and otherwise compares the distance home with the closest opponent's.
+ *
+ * <p>Searches run on several threads sharing one TranspositionTable (tree parallelism): the
+ * calling thread and helper threads kept in a pool between searches. Tree positions are keyed by
+ * a Zobrist hash of the dragon positions, the flipped chit cards and the dragon to move, and the
+ * statistics of flipping a chit card are kept under the position key mixed with the chit card. A
+ * search stops when it has used its time or its playout budget.
+ *
+ * <p>The table is kept from one search to the next and only cleared once half full, so the
+ * position reached by the flip just made, or a position searched ahead of time by ponder while
+ * other dragons move, starts with the statistics already gathered for it. A search only runs the
+ * playouts, or the time at the measured playout rate, that its budget has left over after those.
+ */
+public class MctsPolicy implements Policy {
+
+  public static final long DEFAULT_PLAYOUTS = 2_000;
+  public static final int DEFAULT_TABLE_BITS = 20;
+  private static final double EXPLORATION = 0.7;
+  private static final int MAX_TREE_FLIPS = 8;
+  private static final double DISTANCE_SCALE = 4;
+  // playouts between looks at the clock and the shared playout count
+  private static final int CHECK_INTERVAL = 64;
+  private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+  private static final int CLEAR_FILL = 2;
+  private static final long WORKER_KEEP_ALIVE_SECONDS = 5;
+
+  private final int threads;
+  // helper threads shared by every game of the policy, kept between searches
+  private final ExecutorService workers;
+  private final long millis;
+  private final long playouts;
+  private final GameSetup setup;
+  private final ChitMemory memory;
+  private final SplittableRandom random;
+  private final long[] squareKeys;
+  private final long[] chitKeys;
+  private final long[] turnKeys;
+  private TranspositionTable table;
+  private long lastPlayouts;
+  private long lastNanos;
+  private double playoutsPerMilli;
+  private volatile boolean stopped;
+
+  /**
+   * Constructs an MctsPolicy to hand to a Simulator. Each game gets its own copy.
+   *
+   * @param threads  the number of threads searching each move
+   * @param millis   the time budget of each move in milliseconds, 0 for none
+   * @param playouts the playout budget of each move, 0 for none
+   */
+  public MctsPolicy(int threads, long millis, long playouts) {
+    if (millis <= 0 && playouts <= 0) {
+      throw new IllegalArgumentException("An MCTS search needs a time or playout budget");
+    }
+    this.threads = threads;
+    this.workers = threads > 1 ? createWorkers(threads - 1) : null;
+    this.millis = millis;
+    this.playouts = playouts;
+    this.setup = null;
+    this.memory = null;
+    this.random = null;
+    this.squareKeys = null;
+    this.chitKeys = null;
+    this.turnKeys = null;
+  }
+
+  /**
+   * Constructs the copy of an MctsPolicy that plays one game.
+   *
+   * @param other  the policy handed to the Simulator
+   * @param setup  the setup of the game
+   * @param random the source of randomness for the search threads
+   */
+  private MctsPolicy(MctsPolicy other, GameSetup setup, SplittableRandom random) {
+    this.threads = other.threads;
+    this.workers = other.workers;
+    this.millis = other.millis;
+    this.playouts = other.playouts;
+    this.setup = setup;
+    this.memory = new ChitMemory(setup);
+    this.random = random;
+    int numIds = setup.getTotalSquares() + setup.getNumCards();
+    // the keys only need to be fixed for the game, so derive them from the board
+    SplittableRandom keys = new SplittableRandom(setup.getConfigHash());
+    this.squareKeys = new long[setup.getNumDragons() * numIds];
+    for (int i = 0; i < squareKeys.length; i++) {
+      squareKeys[i] = keys.nextLong();
+    }
+    this.chitKeys = new long[setup.getNumChits()];
+    for (int i = 0; i < chitKeys.length; i++) {
+      chitKeys[i] = keys.nextLong();
+    }
+    this.turnKeys = new long[setup.getNumDragons()];
+    for (int i = 0; i < turnKeys.length; i++) {
+      turnKeys[i] = keys.nextLong();
+    }
+  }
+
+  /**
+   * Creates the pool of helper threads. The threads are daemons and end after a while unused, so a
+   * policy that is dropped leaves none behind.
+   *
+   * @param size the number of helper threads
+   * @return the pool
+   */
+  private static ExecutorService createWorkers(int size) {
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, WORKER_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+          Thread thread = new Thread(runnable, "mcts-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Returns a copy with an empty memory.
+   *
+   * @param setup  the setup of the game
+   * @param random the source of randomness for this game
+   * @return the policy for the game
+   */
+  @Override
+  public Policy newGame(GameSetup setup, SplittableRandom random) {
+    return new MctsPolicy(this, setup, random.split());
+  }
+
+  /**
+   * Remembers every flipped chit card.
+   *
+   * @param game the game after the flip
+   * @param chit the index of the flipped chit card
+   */
+  @Override
+  public void observe(HeadlessGame game, int chit) {
+    memory.remember(chit, game.getChitType(chit), game.getChitMoves(chit), game.getTurns());
+  }
+
+  /**
+   * Searches the position and flips the chit card whose flip was tried most often.
+   *
+   * @param game   the game being played
+   * @param random the source of randomness for this game
+   * @return the index of a face down chit card
+   */
+  @Override
+  public int chooseChit(HeadlessGame game, SplittableRandom random) {
+    if (game.countFaceDown() == 1) {
+      return game.randomFaceDown(random);
+    }
+    stopped = false;
+    long reused = rootVisits(game);
+    long budget = playouts > 0 ? playouts - reused : Long.MAX_VALUE;
+    long time = millis > 0 && playoutsPerMilli > 0
+        ? millis - (long) (reused / playoutsPerMilli) : millis;
+    if (budget > 0 && (millis <= 0 || time > 0)) {
+      search(game, time, budget);
+    }
+    long rootKey = hash(game);
+    int best = -1;
+    long bestVisits = 0;
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      if (game.isFlipped(chit)) {
+        continue;
+      }
+      int edge = table.find(edgeKey(rootKey, chit));
+      long visits = edge == -1 ? 0 : table.getVisits(edge);
+      if (visits > bestVisits) {
+        best = chit;
+        bestVisits = visits;
+      }
+    }
+    return best == -1 ? game.randomFaceDown(random) : best;
+  }
+
+  /**
+   * Searches a position ahead of time, keeping the statistics for a later chooseChit from it.
+   *
+   * @param game   the position the policy expects to choose from, with its dragon to move
+   * @param millis the longest to search for
+   */
+  @Override
+  public void ponder(HeadlessGame game, long millis) {
+    stopped = false;
+    if (game.countFaceDown() > 1) {
+      search(game, millis, Long.MAX_VALUE);
+    }
+  }
+
+  /**
+   * Returns how often the root of a position has already been visited.
+   *
+   * @param game the position
+   * @return the number of visits kept in the table
+   */
+  private long rootVisits(HeadlessGame game) {
+    if (table == null) {
+      return 0;
+    }
+    int node = table.find(hash(game));
+    return node == -1 ? 0 : table.getVisits(node);
+  }
+
+  /**
+   * Ends the search of the running chooseChit after the batch of playouts each thread is on, so
+   * it returns the chit card tried most often so far.
+   */
+  @Override
+  public void stop() {
+    stopped = true;
+  }
+
+  /**
+   * Runs one search from a position on the configured number of threads, the calling thread
+   * being one of them.
+   *
+   * @param root   the position, with the searching dragon to move
+   * @param time   the time budget in milliseconds, 0 for none
+   * @param budget the playout budget
+   */
+  private void search(HeadlessGame root, long time, long budget) {
+    if (table == null) {
+      table = new TranspositionTable(tableBits());
+    } else if (table.size() * CLEAR_FILL > table.capacity()) {
+      table.clear();
+    }
+    int me = root.getCurrentDragon();
+    int[] pool = unknownPool();
+    long start = System.nanoTime();
+    long deadline = time > 0 ? start + time * 1_000_000 : Long.MAX_VALUE;
+    AtomicLong claimed = new AtomicLong();
+    LongAdder done = new LongAdder();
+    List<Future<?>> helpers = new ArrayList<>();
+    for (int i = 1; i < threads; i++) {
+      SplittableRandom workerRandom = random.split();
+      helpers.add(workers.submit(
+          () -> work(root, me, pool, workerRandom, claimed, done, budget, deadline)));
+    }
+    work(root, me, pool, random, claimed, done, budget, deadline);
+    awaitHelpers(helpers);
+    lastPlayouts = done.sum();
+    lastNanos = System.nanoTime() - start;
+    if (lastPlayouts > 0) {
+      playoutsPerMilli = lastPlayouts * 1e6 / lastNanos;
+    }
+  }
+
+  /**
+   * Waits for the helper threads of a search to finish, even when interrupted, as the table and
+   * memory must not be touched by them once the search has returned. An interrupt stops them and
+   * is passed on afterwards.
+   *
+   * @param helpers the searches running on the helper threads
+   */
+  private void awaitHelpers(List<Future<?>> helpers) {
+    boolean interrupted = false;
+    for (Future<?> helper : helpers) {
+      while (true) {
+        try {
+          helper.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+          stopped = true;
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("MCTS search thread failed", e.getCause());
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Sizes the table to the playout budget, which adds at most a few entries per playout.
+   *
+   * @return the log2 of the number of entries
+   */
+  private int tableBits() {
+    if (millis > 0 || playouts <= 0) {
+      return DEFAULT_TABLE_BITS;
+    }
+    int bits = 64 - Long.numberOfLeadingZeros(playouts * 4);
+    return Math.max(10, Math.min(DEFAULT_TABLE_BITS, bits));
+  }
+
+  /**
+   * Lists the faces of the chit cards not remembered, one entry per chit card.
+   *
+   * @return the faces, packed like ChitMemory.packFace
+   */
+  private int[] unknownPool() {
+    int[] faces = new int[setup.getNumChits()];
+    int[] counts = new int[setup.getNumChits()];
+    int distinct = memory.unknownFaces(faces, counts);
+    int[] pool = new int[setup.getNumChits() - memory.getKnownCount()];
+    int size = 0;
+    for (int i = 0; i < distinct; i++) {
+      for (int j = 0; j < counts[i] && size < pool.length; j++) {
+        pool[size++] = faces[i];
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * Runs playouts until the shared budget or the deadline is used up, or the search is stopped.
+   *
+   * @param root     the position searched
+   * @param me       the searching dragon
+   * @param pool     the faces of the chit cards not remembered
+   * @param random   the source of randomness of this thread
+   * @param claimed  the number of playouts claimed by all threads, a batch at a time
+   * @param done     counts the playouts run
+   * @param budget   the playout budget
+   * @param deadline the System.nanoTime at which to stop
+   */
+  private void work(HeadlessGame root, int me, int[] pool, SplittableRandom random,
+      AtomicLong claimed, LongAdder done, long budget, long deadline) {
+    HeadlessGame game = new HeadlessGame(root);
+    int[] faces = new int[root.getNumChits()];
+    int[] deck = pool.clone();
+    int[] path = new int[MAX_TREE_FLIPS];
+    // the other dragons' random turns cost more than they tell, so stop at the end of this one
+    int horizon = root.getTurns() + 1;
+    while (System.nanoTime() < deadline && !stopped) {
+      long first = claimed.getAndAdd(CHECK_INTERVAL);
+      if (first >= budget) {
+        break;
+      }
+      long batch = Math.min(CHECK_INTERVAL, budget - first);
+      for (int i = 0; i < batch; i++) {
+        game.copyFrom(root);
+        deal(faces, deck, random);
+        int depth = select(game, me, faces, path, random);
+        double value = rollout(game, me, faces, horizon, random);
+        for (int j = 0; j < depth; j++) {
+          table.addValue(path[j], value);
+        }
+      }
+      done.add(batch);
+    }
+  }
+
+  /**
+   * Deals a face to every chit card: the remembered face, or one of the faces left in the deck.
+   *
+   * @param faces  receives the face of every chit card
+   * @param deck   the faces of the chit cards not remembered, shuffled in place
+   * @param random the source of randomness
+   */
+  private void deal(int[] faces, int[] deck, SplittableRandom random) {
+    int next = 0;
+    for (int chit = 0; chit < faces.length; chit++) {
+      if (memory.isKnown(chit)) {
+        faces[chit] = ChitMemory.packFace(memory.getType(chit), memory.getMoves(chit));
+      } else {
+        int pick = next + random.nextInt(deck.length - next);
+        int face = deck[pick];
+        deck[pick] = deck[next];
+        deck[next++] = face;
+        faces[chit] = face;
+      }
+    }
+  }
+
+  /**
+   * Walks down the tree from the root by UCT while it is the searching dragon's turn, flipping
+   * the chosen chit cards, and adds the first flip not tried yet to the tree. Visits are counted
+   * on the way down.
+   *
+   * @param game   the dealt game, played along
+   * @param me     the searching dragon
+   * @param faces  the dealt faces
+   * @param path   receives the slot of every flip taken
+   * @param random the source of randomness
+   * @return the number of flips taken
+   */
+  private int select(HeadlessGame game, int me, int[] faces, int[] path,
+      SplittableRandom random) {
+    int depth = 0;
+    while (depth < MAX_TREE_FLIPS && !game.isOver() && game.getCurrentDragon() == me) {
+      long nodeKey = hash(game);
+      int node = table.insert(nodeKey);
+      if (node == -1) {
+        break;
+      }
+      double logVisits = Math.log(table.getVisits(node) + 1);
+      int chosen = -1;
+      int chosenEdge = -1;
+      int untried = 0;
+      double bestScore = Double.NEGATIVE_INFINITY;
+      for (int chit = 0; chit < faces.length; chit++) {
+        if (game.isFlipped(chit)) {
+          continue;
+        }
+        int edge = table.find(edgeKey(nodeKey, chit));
+        long visits = edge == -1 ? 0 : table.getVisits(edge);
+        if (visits == 0) {
+          // pick one of the untried flips uniformly
+          untried++;
+          if (random.nextInt(untried) == 0) {
+            chosen = chit;
+          }
+        } else if (untried == 0) {
+          double score = table.getValue(edge) / visits
+              + EXPLORATION * Math.sqrt(logVisits / visits);
+          if (score > bestScore) {
+            bestScore = score;
+            chosen = chit;
+            chosenEdge = edge;
+          }
+        }
+      }
+      if (untried > 0) {
+        chosenEdge = table.insert(edgeKey(nodeKey, chosen));
+        if (chosenEdge == -1) {
+          break;
+        }
+      }
+      table.addVisit(node);
+      table.addVisit(chosenEdge);
+      path[depth++] = chosenEdge;
+      flip(game, chosen, faces);
+      if (untried > 0) {
+        break;
+      }
+    }
+    return depth;
+  }
+
+  /**
+   * Plays out the rest of the searching dragon's turn the way it would play it, and random flips
+   * for any other dragon before the horizon turn, and scores the result.
+   *
+   * @param game    the dealt game
+   * @param me      the searching dragon
+   * @param faces   the dealt faces
+   * @param horizon the turn to stop at
+   * @param random  the source of randomness
+   * @return the value for the searching dragon, between 0 and 1
+   */
+  private double rollout(HeadlessGame game, int me, int[] faces, int horizon,
+      SplittableRandom random) {
+    while (!game.isOver() && game.getTurns() < horizon) {
+      int chit = game.getCurrentDragon() == me ? ownFlip(game, me, random)
+          : game.randomFaceDown(random);
+      flip(game, chit, faces);
+    }
+    if (game.isOver()) {
+      return game.getWinner() == me ? 1 : 0;
+    }
+    int closest = Integer.MAX_VALUE;
+    for (int dragon = 0; dragon < game.getNumDragons(); dragon++) {
+      if (dragon != me) {
+        closest = Math.min(closest, game.distanceHome(dragon));
+      }
+    }
+    return 1 / (1 + Math.exp((game.distanceHome(me) - closest) / DISTANCE_SCALE));
+  }
+
+  /**
+   * Chooses a flip for the searching dragon in a playout using only what it remembers: the
+   * remembered chit card moving it furthest forwards, otherwise a chit card it has not seen,
+   * otherwise any chit card.
+   *
+   * @param game   the dealt game
+   * @param me     the searching dragon
+   * @param random the source of randomness
+   * @return the index of a face down chit card
+   */
+  private int ownFlip(HeadlessGame game, int me, SplittableRandom random) {
+    int best = -1;
+    int bestMoves = 0;
+    int unknown = 0;
+    int pick = -1;
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      if (game.isFlipped(chit)) {
+        continue;
+      }
+      if (!memory.isKnown(chit)) {
+        unknown++;
+        if (random.nextInt(unknown) == 0) {
+          pick = chit;
+        }
+        continue;
+      }
+      byte type = memory.getType(chit);
+      int moves = memory.getMoves(chit);
+      if (moves > bestMoves && (type == game.animalAt(me) || type == GameSetup.PIRATE_DRAGON)
+          && game.checkMove(me, moves) != HeadlessGame.BLOCKED) {
+        best = chit;
+        bestMoves = moves;
+      }
+    }
+    if (best != -1) {
+      return best;
+    }
+    return pick != -1 ? pick : game.randomFaceDown(random);
+  }
+
+  /**
+   * Flips a chit card as its dealt face.
+   *
+   * @param game  the game
+   * @param chit  the chit card
+   * @param faces the dealt faces
+   */
+  private static void flip(HeadlessGame game, int chit, int[] faces) {
+    game.flipAs(chit, ChitMemory.faceType(faces[chit]), ChitMemory.faceMoves(faces[chit]));
+  }
+
+  /**
+   * Returns the Zobrist hash of a position as the searching dragon sees it.
+   *
+   * @param game the position
+   * @return the hash, never 0
+   */
+  private long hash(HeadlessGame game) {
+    int numIds = setup.getTotalSquares() + setup.getNumCards();
+    long hash = turnKeys[game.getCurrentDragon()];
+    for (int dragon = 0; dragon < game.getNumDragons(); dragon++) {
+      hash ^= squareKeys[dragon * numIds + game.getDragonSquare(dragon)];
+    }
+    for (int chit = 0; chit < chitKeys.length; chit++) {
+      if (game.isFlipped(chit)) {
+        hash ^= chitKeys[chit];
+      }
+    }
+    return hash == 0 ? 1 : hash;
+  }
+
+  /**
+   * Returns the key of the statistics of flipping a chit card in a position.
+   *
+   * @param nodeKey the hash of the position
+   * @param chit    the chit card
+   * @return the key, never 0
+   */
+  private static long edgeKey(long nodeKey, int chit) {
+    long key = nodeKey ^ (chit + 1) * GOLDEN;
+    key = (key ^ key >>> 33) * 0xFF51AFD7ED558CCDL;
+    key ^= key >>> 33;
+    return key == 0 ? 1 : key;
+  }
+
+  /**
+   * Returns the number of playouts of the last search.
+   *
+   * @return the number of playouts
+   */
+  public long getLastPlayouts() {
+    return lastPlayouts;
+  }
+
+  /**
+   * Returns how long the last search took.
+   *
+   * @return the duration in nanoseconds
+   */
+  public long getLastNanos() {
+    return lastNanos;
+  }
+
+  /**
+   * Returns the name of the policy as used on the command line.
+   *
+   * @return the name of the policy
+   */
+  @Override
+  public String getName() {
+    return "mcts";
+  }
+
+  /**
+   * Measures search speed on the opening positions of seeded games. Arguments are optionally the
+   * number of threads, the time budget per move in milliseconds, the number of moves, the config
+   * path and the number of players.
+   *
+   * @param args command line arguments
+   * @throws Exception if the config cannot be read
+   */
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0])
+        : Runtime.getRuntime().availableProcessors();
+    long millis = args.length > 1 ? Long.parseLong(args[1]) : 200;
+    int moves = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+    String configPath = args.length > 3 ? args[3] : GameUtils.CONFIG_PATH;
+    int numPlayers = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+
+    GameSetup setup = GameSetup.load(configPath, numPlayers);
+    MctsPolicy prototype = new MctsPolicy(threads, millis, 0);
+    long totalPlayouts = 0;
+    long totalNanos = 0;
+    for (int move = 0; move < moves; move++) {
+      HeadlessGame game = new HeadlessGame(setup, move);
+      MctsPolicy policy = (MctsPolicy) prototype.newGame(setup, new SplittableRandom(move));
+      policy.chooseChit(game, new SplittableRandom(move));
+      totalPlayouts += policy.getLastPlayouts();
+      totalNanos += policy.getLastNanos();
+    }
+    System.out.printf("%d threads, %d ms per move: %.0f playouts per move, %.0f playouts/s%n",
+        threads, millis, (double) totalPlayouts / moves, totalPlayouts / (totalNanos / 1e9));
+  }
+}
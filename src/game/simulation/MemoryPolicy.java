@@ -0,0 +1,96 @@
+package game.simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * A greedy policy with a human like memory. Each flip is only remembered with some probability,
+ * and chit cards that have not been seen for a number of turns are forgotten again.
+ */
+public class MemoryPolicy extends GreedyPolicy {
+
+  public static final double DEFAULT_RECALL = 0.7;
+  public static final int DEFAULT_SPAN = 8;
+
+  private final double recall;
+  private final int span;
+  private final SplittableRandom random;
+
+  /**
+   * Constructs a MemoryPolicy to hand to a Simulator. Each game gets its own copy.
+   *
+   * @param recall the probability of remembering a flip
+   * @param span   the number of turns a chit card is remembered for
+   */
+  public MemoryPolicy(double recall, int span) {
+    this.recall = recall;
+    this.span = span;
+    this.random = null;
+  }
+
+  /**
+   * Constructs the copy of a MemoryPolicy that plays one game.
+   *
+   * @param setup  the setup of the game
+   * @param recall the probability of remembering a flip
+   * @param span   the number of turns a chit card is remembered for
+   * @param random the source of randomness deciding what is remembered
+   */
+  private MemoryPolicy(GameSetup setup, double recall, int span, SplittableRandom random) {
+    super(setup);
+    this.recall = recall;
+    this.span = span;
+    this.random = random;
+  }
+
+  /**
+   * Returns a copy with an empty memory.
+   *
+   * @param setup  the setup of the game
+   * @param random the source of randomness for this game
+   * @return the policy for the game
+   */
+  @Override
+  public Policy newGame(GameSetup setup, SplittableRandom random) {
+    return new MemoryPolicy(setup, recall, span, random.split());
+  }
+
+  /**
+   * Remembers a flipped chit card with probability recall.
+   *
+   * @param game the game after the flip
+   * @param chit the index of the flipped chit card
+   */
+  @Override
+  public void observe(HeadlessGame game, int chit) {
+    if (random.nextDouble() < recall) {
+      super.observe(game, chit);
+    }
+  }
+
+  /**
+   * Forgets chit cards seen too long ago, then chooses like GreedyPolicy.
+   *
+   * @param game   the game being played
+   * @param random the source of randomness for this game
+   * @return the index of a face down chit card
+   */
+  @Override
+  public int chooseChit(HeadlessGame game, SplittableRandom random) {
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      if (memory.isKnown(chit) && game.getTurns() - memory.getSeenTurn(chit) > span) {
+        memory.forget(chit);
+      }
+    }
+    return super.chooseChit(game, random);
+  }
+
+  /**
+   * Returns the name of the policy as used on the command line.
+   *
+   * @return the name of the policy
+   */
+  @Override
+  public String getName() {
+    return "memory";
+  }
+}
@@ -0,0 +1,73 @@
+package game.simulation;
+
+/**
+ * An implementation of the movement and swap rules that RuleFuzzer can check against the others.
+ * Positions are a volcano card and a square index, -1 meaning the cave of the card, and walks
+ * return them packed as card in the upper 16 bits and index in the lower 16 bits.
+ */
+public interface MoveRules {
+
+  /**
+   * Sets up the board and dragon placement of a case.
+   *
+   * @param fuzzCase the case
+   */
+  void reset(FuzzCase fuzzCase);
+
+  /**
+   * Plays a chit card face for a dragon.
+   *
+   * @param dragon the dragon
+   * @param type   the type code of the face
+   * @param moves  the number of moves of the face
+   * @return a HeadlessGame outcome code
+   */
+  int apply(int dragon, byte type, int moves);
+
+  /**
+   * Returns the position of a dragon.
+   *
+   * @param dragon the dragon
+   * @return the packed position
+   */
+  int position(int dragon);
+
+  /**
+   * Walks a number of spaces from a position.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param spaces the number of spaces
+   * @return the packed position reached
+   */
+  int walk(int card, int index, int spaces);
+
+  /**
+   * Checks if a dragon of an animal passes its cave.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param animal the animal of the dragon's cave
+   * @param spaces the number of spaces
+   * @return true if the cave is passed
+   */
+  boolean passesCave(int card, int index, byte animal, int spaces);
+
+  /**
+   * Checks if a dragon of an animal lands on its cave.
+   *
+   * @param card   the volcano card
+   * @param index  the square index, -1 for a cave
+   * @param animal the animal of the dragon's cave
+   * @param spaces the number of spaces
+   * @return true if the dragon lands on its cave
+   */
+  boolean onCave(int card, int index, byte animal, int spaces);
+
+  /**
+   * Returns the name shown in reports.
+   *
+   * @return the name
+   */
+  String getName();
+}
@@ -0,0 +1,85 @@
+package game.simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * A strategy that decides which chit card a computer controlled dragon flips next.
+ */
+public interface Policy {
+
+  /**
+   * Chooses a face down chit card for the current dragon.
+   *
+   * @param game   the game being played
+   * @param random the source of randomness for this game
+   * @return the index of a face down chit card
+   */
+  int chooseChit(HeadlessGame game, SplittableRandom random);
+
+  /**
+   * Returns the name of the policy as used on the command line.
+   *
+   * @return the name of the policy
+   */
+  String getName();
+
+  /**
+   * Returns the policy to use for one game. Policies that remember earlier flips return a fresh
+   * copy with its own memory; stateless policies return themselves.
+   *
+   * @param setup  the setup of the game
+   * @param random the source of randomness for this game
+   * @return the policy for the game
+   */
+  default Policy newGame(GameSetup setup, SplittableRandom random) {
+    return this;
+  }
+
+  /**
+   * Called after any dragon flips a chit card, while every player can see it. Policies must only
+   * look at the faces of chit cards they have been shown this way.
+   *
+   * @param game the game after the flip
+   * @param chit the index of the flipped chit card
+   */
+  default void observe(HeadlessGame game, int chit) {
+  }
+
+  /**
+   * Thinks ahead about a position the policy expects to choose from next, while another dragon
+   * is to move, so that a later chooseChit from it can reuse the work. Returns after millis or
+   * when stopped. Policies without anything to reuse ignore it.
+   *
+   * @param game   the expected position, with this policy's dragon to move
+   * @param millis the longest to think for
+   */
+  default void ponder(HeadlessGame game, long millis) {
+  }
+
+  /**
+   * Asks a chooseChit or ponder running on another thread to return as soon as it can, chooseChit
+   * with its best choice so far. Policies that decide quickly ignore it.
+   */
+  default void stop() {
+  }
+
+  /**
+   * Creates a policy from its command line name.
+   *
+   * @param name random, greedy, memory, search, mcts, or belief with an optional level such as
+   *             belief-hard
+   * @return the policy
+   */
+  static Policy forName(String name) {
+    return switch (name) {
+      case "random" -> new RandomPolicy();
+      case "greedy" -> new GreedyPolicy();
+      case "memory" -> new MemoryPolicy(MemoryPolicy.DEFAULT_RECALL, MemoryPolicy.DEFAULT_SPAN);
+      case "search" -> new SearchPolicy(SearchPolicy.DEFAULT_DEPTH);
+      case "mcts" -> new MctsPolicy(1, 0, MctsPolicy.DEFAULT_PLAYOUTS);
+      case "belief", "belief-easy", "belief-medium", "belief-hard", "belief-expert" ->
+          new BeliefPolicy(BeliefPolicy.levelOf(name));
+      default -> throw new IllegalArgumentException("Unknown policy: " + name);
+    };
+  }
+}
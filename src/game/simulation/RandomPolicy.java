@@ -0,0 +1,31 @@
+package game.simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * A policy that flips a uniformly random face down chit card, like a player with no memory.
+ */
+public class RandomPolicy implements Policy {
+
+  /**
+   * Chooses a random face down chit card.
+   *
+   * @param game   the game being played
+   * @param random the source of randomness for this game
+   * @return the index of a face down chit card
+   */
+  @Override
+  public int chooseChit(HeadlessGame game, SplittableRandom random) {
+    return game.randomFaceDown(random);
+  }
+
+  /**
+   * Returns the name of the policy as used on the command line.
+   *
+   * @return the name of the policy
+   */
+  @Override
+  public String getName() {
+    return "random";
+  }
+}
@@ -0,0 +1,314 @@
+package game.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks the movement and swap rules of HeadlessGame against the Swing rules on random boards.
+ * Every case first compares walk, passesCave and onCave from random positions, caves included,
+ * then plays a random list of chit card faces on both implementations. After every action it
+ * compares the outcome and every dragon's position, and checks that no two dragons share a
+ * square, that no dragon moved past its own cave and that swaps left the same squares occupied.
+ *
+ * <p>Cases are generated from their number, so a failure is reported with the seed that rebuilds
+ * it, after the actions that do not matter to the failure have been removed.
+ */
+public class RuleFuzzer {
+
+  private static final int QUERIES_PER_CASE = 400;
+  private static final int MAX_QUERY_SPACES = 3;
+
+  /**
+   * Runs the fuzzer. Arguments are optionally the number of seconds to run for, the number of
+   * threads, the first case seed and a comma separated list of the implementations to run
+   * (default headless,iterator; headless alone checks only the invariants, much faster). Exits
+   * with status 1 if a case fails.
+   *
+   * @param args command line arguments
+   * @throws InterruptedException if interrupted while waiting for the threads
+   */
+  public static void main(String[] args) throws InterruptedException {
+    // squares and dragons are Swing components, which need no display here
+    System.setProperty("java.awt.headless", "true");
+    long seconds = args.length > 0 ? Long.parseLong(args[0]) : 10;
+    int threads = args.length > 1 ? Integer.parseInt(args[1])
+        : Runtime.getRuntime().availableProcessors();
+    long firstSeed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+    String[] names = (args.length > 3 ? args[3] : "headless,iterator").split(",");
+
+    long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+    AtomicLong nextSeed = new AtomicLong(firstSeed);
+    AtomicReference<Long> failedSeed = new AtomicReference<>();
+    LongAdder cases = new LongAdder();
+    LongAdder checks = new LongAdder();
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      Thread thread = new Thread(() -> {
+        MoveRules[] rules = createRules(names);
+        long[] checked = new long[1];
+        while (System.nanoTime() < deadline && failedSeed.get() == null) {
+          long seed = nextSeed.getAndIncrement();
+          checked[0] = 0;
+          String failure = check(FuzzCase.generate(new SplittableRandom(seed)), seed, rules,
+              checked);
+          cases.increment();
+          checks.add(checked[0]);
+          if (failure != null) {
+            failedSeed.compareAndSet(null, seed);
+          }
+        }
+      }, "rule-fuzzer-" + i);
+      thread.start();
+      workers.add(thread);
+    }
+    long start = System.nanoTime();
+    for (Thread thread : workers) {
+      thread.join();
+    }
+    double elapsed = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%d cases, %d checks in %.1f s (%.0f checks/s) from seed %d%n",
+        cases.sum(), checks.sum(), elapsed, checks.sum() / elapsed, firstSeed);
+
+    Long seed = failedSeed.get();
+    if (seed != null) {
+      MoveRules[] rules = createRules(names);
+      FuzzCase shrunk = shrink(FuzzCase.generate(new SplittableRandom(seed)), seed, rules);
+      System.out.println("Case " + seed + " failed: " + check(shrunk, seed, rules, new long[1]));
+      System.out.print(shrunk);
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Creates one instance of each named implementation.
+   *
+   * @param names the names, headless or iterator
+   * @return the implementations
+   */
+  private static MoveRules[] createRules(String[] names) {
+    MoveRules[] rules = new MoveRules[names.length];
+    for (int i = 0; i < names.length; i++) {
+      rules[i] = switch (names[i]) {
+        case "headless" -> new HeadlessRules();
+        case "iterator" -> new IteratorRules();
+        default -> throw new IllegalArgumentException("Unknown rules: " + names[i]);
+      };
+    }
+    return rules;
+  }
+
+  /**
+   * Plays a case on every implementation and checks them against each other and the invariants.
+   * The first implementation is the one the invariants are checked on.
+   *
+   * @param fuzzCase the case
+   * @param seed     the seed of the random queries
+   * @param rules    the implementations
+   * @param checked  receives the number of actions and queries checked
+   * @return a description of the first failure, or null if the case passed
+   */
+  static String check(FuzzCase fuzzCase, long seed, MoveRules[] rules, long[] checked) {
+    GameSetup setup = fuzzCase.getSetup();
+    SplittableRandom random = new SplittableRandom(seed);
+    int numDragons = setup.getNumDragons();
+    int[] before = new int[numDragons];
+    int[] outcomes = new int[rules.length];
+    for (MoveRules rule : rules) {
+      rule.reset(fuzzCase);
+    }
+    String failure = null;
+    // queries depend only on the board, so a failing one shrinks to a case without actions
+    for (int query = 0; failure == null && query < QUERIES_PER_CASE; query++) {
+      failure = checkQuery(setup, rules, random);
+      checked[0]++;
+    }
+    if (failure == null) {
+      failure = comparePositions(rules, numDragons, -1);
+    }
+    for (int action = 0; failure == null && action < fuzzCase.getNumActions(); action++) {
+      int dragon = fuzzCase.getActionDragon(action);
+      byte type = fuzzCase.getActionType(action);
+      int moves = fuzzCase.getActionMoves(action);
+      for (int i = 0; i < numDragons; i++) {
+        before[i] = rules[0].position(i);
+      }
+      for (int i = 0; i < rules.length; i++) {
+        outcomes[i] = rules[i].apply(dragon, type, moves);
+        if (outcomes[i] != outcomes[0]) {
+          return "action " + action + ": " + rules[0].getName() + " gave outcome " + outcomes[0]
+              + " but " + rules[i].getName() + " gave " + outcomes[i];
+        }
+      }
+      checked[0]++;
+      failure = comparePositions(rules, numDragons, action);
+      if (failure == null) {
+        failure = checkInvariants(setup, rules[0], before, action, dragon, moves, outcomes[0]);
+      }
+    }
+    return failure;
+  }
+
+  /**
+   * Compares the position of every dragon across the implementations.
+   *
+   * @param rules      the implementations
+   * @param numDragons the number of dragons
+   * @param action     the action just played, -1 for the starting positions
+   * @return a description of the first difference, or null
+   */
+  private static String comparePositions(MoveRules[] rules, int numDragons, int action) {
+    for (int dragon = 0; dragon < numDragons; dragon++) {
+      int expected = rules[0].position(dragon);
+      for (int i = 1; i < rules.length; i++) {
+        int actual = rules[i].position(dragon);
+        if (actual != expected) {
+          return "action " + action + ": dragon " + dragon + " is at " + format(expected)
+              + " in " + rules[0].getName() + " but " + format(actual) + " in "
+              + rules[i].getName();
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks the invariants after an action: dragons are on distinct squares, a dragon that moved
+   * did not step on or past its own cave square before its last step, and a swap left the same
+   * squares occupied.
+   *
+   * @param setup   the board
+   * @param rules   the implementation to check
+   * @param before  the packed position of every dragon before the action
+   * @param action  the action
+   * @param dragon  the dragon the action was played for
+   * @param moves   the number of moves of the face
+   * @param outcome the outcome of the action
+   * @return a description of the broken invariant, or null
+   */
+  private static String checkInvariants(GameSetup setup, MoveRules rules, int[] before,
+      int action, int dragon, int moves, int outcome) {
+    int numDragons = before.length;
+    int[] squaresBefore = new int[numDragons];
+    int[] squaresAfter = new int[numDragons];
+    for (int i = 0; i < numDragons; i++) {
+      squaresBefore[i] = squareOf(setup, before[i]);
+      squaresAfter[i] = squareOf(setup, rules.position(i));
+    }
+    Arrays.sort(squaresBefore);
+    Arrays.sort(squaresAfter);
+    for (int i = 1; i < numDragons; i++) {
+      if (squaresAfter[i] == squaresAfter[i - 1]) {
+        return "action " + action + ": two dragons on square " + squaresAfter[i];
+      }
+    }
+    if (outcome == HeadlessGame.SWAPPED && !Arrays.equals(squaresBefore, squaresAfter)) {
+      return "action " + action + ": swap changed the occupied squares from "
+          + Arrays.toString(squaresBefore) + " to " + Arrays.toString(squaresAfter);
+    }
+    if (outcome == HeadlessGame.MOVED || outcome == HeadlessGame.WON) {
+      int card = before[dragon] >>> 16;
+      int index = (short) before[dragon];
+      if (index == -1 && moves < 0) {
+        return "action " + action + ": dragon " + dragon + " moved backwards out of its cave";
+      }
+      byte animal = setup.getDragonAnimal(dragon);
+      int steps = Math.abs(moves);
+      // the last forward step may land on the cave square, which wins
+      int checkedSteps = moves > 0 ? steps - 1 : steps;
+      for (int step = 1; index != -1 && step <= checkedSteps; step++) {
+        int packed = rules.walk(card, index, moves > 0 ? step : -step);
+        int stepCard = packed >>> 16;
+        if (setup.getCaveAnimal(stepCard) == animal
+            && (short) packed == setup.getCaveIndex(stepCard)) {
+          return "action " + action + ": dragon " + dragon + " passed its cave moving "
+              + moves + " from " + format(before[dragon]);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compares walk, passesCave and onCave across the implementations from a random position,
+   * which is a cave one time in four when the card has one.
+   *
+   * @param setup  the board
+   * @param rules  the implementations
+   * @param random the source of randomness
+   * @return a description of the first difference, or null
+   */
+  private static String checkQuery(GameSetup setup, MoveRules[] rules,
+      SplittableRandom random) {
+    int card = random.nextInt(setup.getNumCards());
+    int index = setup.getCaveAnimal(card) != -1 && random.nextInt(4) == 0 ? -1
+        : random.nextInt(setup.getNumSquares(card));
+    byte animal = setup.getDragonAnimal(random.nextInt(setup.getNumDragons()));
+    int spaces = random.nextInt(-MAX_QUERY_SPACES, MAX_QUERY_SPACES + 1);
+    int walk = rules[0].walk(card, index, spaces);
+    boolean passes = rules[0].passesCave(card, index, animal, spaces);
+    boolean onCave = rules[0].onCave(card, index, animal, spaces);
+    for (int i = 1; i < rules.length; i++) {
+      String differs = rules[i].walk(card, index, spaces) != walk ? "walk"
+          : rules[i].passesCave(card, index, animal, spaces) != passes ? "passesCave"
+          : rules[i].onCave(card, index, animal, spaces) != onCave ? "onCave" : null;
+      if (differs != null) {
+        return "from " + format(card << 16 | (index & 0xFFFF)) + " with "
+            + spaces + " spaces for " + GameSetup.typeName(animal) + ", " + differs
+            + " differs in " + rules[i].getName();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Removes actions from a failing case while it keeps failing, first in large chunks and then
+   * one at a time.
+   *
+   * @param fuzzCase the failing case
+   * @param seed     the seed of the random queries
+   * @param rules    the implementations
+   * @return the smallest failing case found
+   */
+  static FuzzCase shrink(FuzzCase fuzzCase, long seed, MoveRules[] rules) {
+    boolean[] keep = new boolean[fuzzCase.getNumActions()];
+    Arrays.fill(keep, true);
+    for (int chunk = keep.length / 2; chunk >= 1; chunk /= 2) {
+      for (int start = 0; start < keep.length; start += chunk) {
+        boolean[] candidate = keep.clone();
+        Arrays.fill(candidate, start, Math.min(start + chunk, keep.length), false);
+        if (check(fuzzCase.withActions(candidate), seed, rules, new long[1]) != null) {
+          keep = candidate;
+        }
+      }
+    }
+    return fuzzCase.withActions(keep);
+  }
+
+  /**
+   * Returns the square id of a packed position, caves numbered after the squares.
+   *
+   * @param setup  the board
+   * @param packed the packed position
+   * @return the square id
+   */
+  private static int squareOf(GameSetup setup, int packed) {
+    int card = packed >>> 16;
+    int index = (short) packed;
+    return index > -1 ? setup.getCardOffset(card) + index : setup.getTotalSquares() + card;
+  }
+
+  /**
+   * Formats a packed position as card/index.
+   *
+   * @param packed the packed position
+   * @return the position
+   */
+  private static String format(int packed) {
+    return (packed >>> 16) + "/" + (short) packed;
+  }
+}
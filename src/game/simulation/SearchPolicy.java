@@ -0,0 +1,192 @@
+package game.simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * A policy with perfect memory that searches the rest of its turn. Flipping a remembered chit
+ * card leads to one position, flipping an unseen one to each face it could have, weighted by how
+ * many unseen chit cards have that face. Positions are searched depth flips deep and scored by
+ * the distance of the dragon to its cave.
+ */
+public class SearchPolicy implements Policy {
+
+  public static final int DEFAULT_DEPTH = 2;
+
+  private final int depth;
+  private final ChitMemory memory;
+
+  /**
+   * Constructs a SearchPolicy to hand to a Simulator. Each game gets its own copy.
+   *
+   * @param depth the number of flips to look ahead
+   */
+  public SearchPolicy(int depth) {
+    this.depth = depth;
+    this.memory = null;
+  }
+
+  /**
+   * Constructs the copy of a SearchPolicy that plays one game.
+   *
+   * @param setup the setup of the game
+   * @param depth the number of flips to look ahead
+   */
+  private SearchPolicy(GameSetup setup, int depth) {
+    this.depth = depth;
+    this.memory = new ChitMemory(setup);
+  }
+
+  /**
+   * Returns a copy with an empty memory.
+   *
+   * @param setup  the setup of the game
+   * @param random the source of randomness for this game
+   * @return the policy for the game
+   */
+  @Override
+  public Policy newGame(GameSetup setup, SplittableRandom random) {
+    return new SearchPolicy(setup, depth);
+  }
+
+  /**
+   * Remembers every flipped chit card.
+   *
+   * @param game the game after the flip
+   * @param chit the index of the flipped chit card
+   */
+  @Override
+  public void observe(HeadlessGame game, int chit) {
+    memory.remember(chit, game.getChitType(chit), game.getChitMoves(chit), game.getTurns());
+  }
+
+  /**
+   * Flips the chit card with the best searched value.
+   *
+   * @param game   the game being played
+   * @param random the source of randomness for this game
+   * @return the index of a face down chit card
+   */
+  @Override
+  public int chooseChit(HeadlessGame game, SplittableRandom random) {
+    int dragon = game.getCurrentDragon();
+    int best = -1;
+    double bestValue = Double.NEGATIVE_INFINITY;
+    int unknown = 0;
+    int firstUnknown = -1;
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      if (game.isFlipped(chit)) {
+        continue;
+      }
+      if (!memory.isKnown(chit)) {
+        unknown++;
+        firstUnknown = firstUnknown == -1 ? chit : firstUnknown;
+        continue;
+      }
+      double value = flipValue(game, memory, dragon, chit, depth);
+      if (value > bestValue) {
+        best = chit;
+        bestValue = value;
+      }
+    }
+    if (unknown > 0 && (best == -1
+        || flipValue(game, memory, dragon, firstUnknown, depth) > bestValue)) {
+      // unseen chit cards are all alike, so pick any of them
+      int pick = random.nextInt(unknown);
+      for (int chit = 0; chit < game.getNumChits(); chit++) {
+        if (!game.isFlipped(chit) && !memory.isKnown(chit) && pick-- == 0) {
+          return chit;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Returns the expected value of flipping a chit card: the value of the position its remembered
+   * face leads to, or the average over the faces an unseen chit card could have.
+   *
+   * @param game      the position
+   * @param knowledge what is remembered in this position
+   * @param dragon    the dragon searching
+   * @param chit      the chit card to flip
+   * @param remaining the number of flips left to search, including this one
+   * @return the expected value
+   */
+  private double flipValue(HeadlessGame game, ChitMemory knowledge, int dragon, int chit,
+      int remaining) {
+    if (knowledge.isKnown(chit)) {
+      HeadlessGame child = new HeadlessGame(game);
+      child.flipAs(chit, knowledge.getType(chit), knowledge.getMoves(chit));
+      return value(child, knowledge, dragon, remaining - 1);
+    }
+    int[] faces = new int[game.getNumChits()];
+    int[] counts = new int[game.getNumChits()];
+    int distinct = knowledge.unknownFaces(faces, counts);
+    double total = 0;
+    int cards = 0;
+    for (int i = 0; i < distinct; i++) {
+      if (counts[i] <= 0) {
+        continue;
+      }
+      byte type = ChitMemory.faceType(faces[i]);
+      int moves = ChitMemory.faceMoves(faces[i]);
+      HeadlessGame child = new HeadlessGame(game);
+      child.flipAs(chit, type, moves);
+      ChitMemory assumed = knowledge;
+      if (remaining > 1) {
+        assumed = new ChitMemory(knowledge);
+        assumed.remember(chit, type, moves, game.getTurns());
+      }
+      total += counts[i] * value(child, assumed, dragon, remaining - 1);
+      cards += counts[i];
+    }
+    return cards == 0 ? Double.NEGATIVE_INFINITY : total / cards;
+  }
+
+  /**
+   * Returns the value of a position for a dragon, searching further while it is still the
+   * dragon's turn.
+   *
+   * @param game      the position
+   * @param knowledge what is remembered in this position
+   * @param dragon    the dragon searching
+   * @param remaining the number of flips left to search
+   * @return the value
+   */
+  private double value(HeadlessGame game, ChitMemory knowledge, int dragon, int remaining) {
+    if (game.getWinner() == dragon) {
+      return GreedyPolicy.WIN_SCORE;
+    }
+    boolean ownTurn = game.getCurrentDragon() == dragon && game.countFaceDown() > 0;
+    double stop = -game.distanceHome(dragon) + (ownTurn ? 0 : GreedyPolicy.TURN_END_SCORE);
+    if (!ownTurn || remaining == 0) {
+      return stop;
+    }
+    double best = Double.NEGATIVE_INFINITY;
+    int firstUnknown = -1;
+    for (int chit = 0; chit < game.getNumChits(); chit++) {
+      if (game.isFlipped(chit)) {
+        continue;
+      }
+      if (knowledge.isKnown(chit)) {
+        best = Math.max(best, flipValue(game, knowledge, dragon, chit, remaining));
+      } else if (firstUnknown == -1) {
+        firstUnknown = chit;
+      }
+    }
+    if (firstUnknown != -1) {
+      best = Math.max(best, flipValue(game, knowledge, dragon, firstUnknown, remaining));
+    }
+    return best;
+  }
+
+  /**
+   * Returns the name of the policy as used on the command line.
+   *
+   * @return the name of the policy
+   */
+  @Override
+  public String getName() {
+    return "search";
+  }
+}
@@ -0,0 +1,368 @@
+package game.simulation;
+
+import game.utils.GameUtils;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits a seed range into chunks and farms them out to worker processes running
+ * SimulationWorker. Workers pull one chunk at a time, chunks still running on a slow worker are
+ * handed to idle workers once the queue is empty (whichever copy finishes first counts), and
+ * workers that die are restarted with their chunk put back in the queue.
+ *
+ * <p>All bookkeeping happens on the thread calling run; one reader thread per worker only turns
+ * the worker's stdout into events. The worker command is configurable, so prefixing it with a
+ * remote shell runs the same protocol on another host.
+ */
+public class SimulationCoordinator {
+
+  private static final long POLL_INTERVAL_MS = 100;
+  private static final double STEAL_FACTOR = 2.0;
+  private static final int MAX_RESTARTS = 3;
+
+  private final List<String> workerCommand;
+  private final int numWorkers;
+  private final int chunkSize;
+  private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+  private final List<Worker> workers = new ArrayList<>();
+  private final Deque<Chunk> pending = new ArrayDeque<>();
+  private final List<Chunk> chunks = new ArrayList<>();
+  private long totalChunkMillis;
+  private int completedChunks;
+  private boolean stopping;
+
+  /**
+   * Constructs a SimulationCoordinator.
+   *
+   * @param workerCommand the command starting one worker process
+   * @param numWorkers    the number of worker processes to keep running
+   * @param chunkSize     the number of seeds handed to a worker at a time
+   */
+  public SimulationCoordinator(List<String> workerCommand, int numWorkers, int chunkSize) {
+    this.workerCommand = List.copyOf(workerCommand);
+    this.numWorkers = numWorkers;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Runs a simulation across local worker processes. Arguments are the number of workers, the
+   * first seed, the number of games, and optionally the config path and number of players.
+   *
+   * @param args command line arguments
+   * @throws Exception if the simulation fails
+   */
+  public static void main(String[] args) throws Exception {
+    int numWorkers = args.length > 0 ? Integer.parseInt(args[0])
+        : Runtime.getRuntime().availableProcessors();
+    long firstSeed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+    long count = args.length > 2 ? Long.parseLong(args[2]) : 100_000;
+    String configPath = args.length > 3 ? args[3] : GameUtils.CONFIG_PATH;
+    String numPlayers = args.length > 4 ? args[4] : "4";
+
+    SimulationCoordinator coordinator = new SimulationCoordinator(
+        localWorkerCommand(configPath, numPlayers), numWorkers, 10_000);
+    long start = System.nanoTime();
+    SimulationSummary summary = coordinator.run(firstSeed, count);
+    System.out.println(summary);
+    System.out.printf("%d games in %.1f s%n", summary.getGames(),
+        (System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * Builds the command starting a worker in a new JVM with the current classpath.
+   *
+   * @param configPath the config path passed to the worker
+   * @param numPlayers the number of players passed to the worker
+   * @return the worker command
+   */
+  public static List<String> localWorkerCommand(String configPath, String numPlayers) {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator
+        + "java";
+    return List.of(java, "-cp", System.getProperty("java.class.path"),
+        SimulationWorker.class.getName(), configPath, numPlayers);
+  }
+
+  /**
+   * Plays every seed in [firstSeed, firstSeed + count) and merges the results.
+   *
+   * @param firstSeed the first seed
+   * @param count     the number of games
+   * @return the merged summary
+   * @throws IOException          if no worker can be started
+   * @throws InterruptedException if interrupted while waiting for workers
+   */
+  public SimulationSummary run(long firstSeed, long count)
+      throws IOException, InterruptedException {
+    for (long seed = firstSeed; seed < firstSeed + count; seed += chunkSize) {
+      Chunk chunk = new Chunk(chunks.size(), seed, Math.min(chunkSize, firstSeed + count - seed));
+      chunks.add(chunk);
+      pending.add(chunk);
+    }
+    SimulationSummary total = new SimulationSummary();
+    try {
+      for (int i = 0; i < numWorkers; i++) {
+        workers.add(startWorker(i, 0));
+      }
+      while (completedChunks < chunks.size()) {
+        Event event = events.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (event != null) {
+          handle(event, total);
+        }
+        for (Worker worker : workers) {
+          if (worker.ready && worker.chunk == null) {
+            assign(worker);
+          }
+        }
+        if (workers.stream().noneMatch(worker -> worker.alive)) {
+          throw new IllegalStateException("All simulation workers have failed");
+        }
+      }
+    } finally {
+      shutdown();
+    }
+    return total;
+  }
+
+  /**
+   * Applies one event from a worker's reader thread.
+   *
+   * @param event the event
+   * @param total the summary results are merged into
+   * @throws IOException if a replacement worker cannot be started
+   */
+  private void handle(Event event, SimulationSummary total) throws IOException {
+    Worker worker = event.worker;
+    if (event.line == null) {
+      workerDied(worker);
+      return;
+    }
+    String[] tokens = event.line.split(" ", 3);
+    switch (tokens[0]) {
+      case SimulationWorker.READY -> worker.ready = true;
+      case SimulationWorker.DONE -> {
+        Chunk chunk = chunks.get(Integer.parseInt(tokens[1]));
+        chunk.running--;
+        if (!chunk.done) {
+          chunk.done = true;
+          completedChunks++;
+          totalChunkMillis += System.currentTimeMillis() - worker.startedAt;
+          total.merge(SimulationSummary.decode(tokens[2]));
+        }
+        worker.chunk = null;
+      }
+      case SimulationWorker.ERROR -> {
+        Chunk chunk = chunks.get(Integer.parseInt(tokens[1]));
+        if (++chunk.failures > MAX_RESTARTS) {
+          throw new IllegalStateException("Chunk " + chunk.id + " keeps failing: "
+              + (tokens.length > 2 ? tokens[2] : ""));
+        }
+        release(worker);
+      }
+      default -> System.err.println("Worker " + worker.id + ": " + event.line);
+    }
+  }
+
+  /**
+   * Gives an idle worker the next queued chunk, or a copy of the oldest chunk that has been
+   * running for much longer than chunks usually take.
+   *
+   * @param worker the idle worker
+   */
+  private void assign(Worker worker) {
+    Chunk chunk = pending.poll();
+    if (chunk == null) {
+      chunk = findStraggler();
+    }
+    if (chunk == null) {
+      return;
+    }
+    chunk.running++;
+    worker.chunk = chunk;
+    worker.startedAt = System.currentTimeMillis();
+    try {
+      worker.stdin.write(SimulationWorker.RUN + " " + chunk.id + " " + chunk.firstSeed + " "
+          + chunk.count);
+      worker.stdin.newLine();
+      worker.stdin.flush();
+    } catch (IOException e) {
+      // the reader thread will report the worker's exit
+      release(worker);
+    }
+  }
+
+  /**
+   * Finds a chunk worth running a second copy of.
+   *
+   * @return the chunk, or null if no chunk is late enough
+   */
+  private Chunk findStraggler() {
+    if (completedChunks == 0) {
+      return null;
+    }
+    long limit = (long) (STEAL_FACTOR * totalChunkMillis / completedChunks);
+    long now = System.currentTimeMillis();
+    Worker slowest = null;
+    for (Worker other : workers) {
+      if (other.chunk != null && !other.chunk.done && other.chunk.running == 1
+          && now - other.startedAt > limit
+          && (slowest == null || other.startedAt < slowest.startedAt)) {
+        slowest = other;
+      }
+    }
+    return slowest == null ? null : slowest.chunk;
+  }
+
+  /**
+   * Takes a worker's chunk away, queueing it again if nobody else is running it.
+   *
+   * @param worker the worker
+   */
+  private void release(Worker worker) {
+    Chunk chunk = worker.chunk;
+    worker.chunk = null;
+    if (chunk != null) {
+      chunk.running--;
+      if (!chunk.done && chunk.running == 0) {
+        pending.addFirst(chunk);
+      }
+    }
+  }
+
+  /**
+   * Handles a worker process exiting, restarting it unless it has failed too often.
+   *
+   * @param worker the worker that exited
+   * @throws IOException if the replacement cannot be started
+   */
+  private void workerDied(Worker worker) throws IOException {
+    worker.alive = false;
+    worker.ready = false;
+    release(worker);
+    if (stopping) {
+      return;
+    }
+    System.err.println("Worker " + worker.id + " exited");
+    if (worker.restarts < MAX_RESTARTS) {
+      workers.set(workers.indexOf(worker), startWorker(worker.id, worker.restarts + 1));
+    }
+  }
+
+  /**
+   * Starts a worker process and its reader thread.
+   *
+   * @param id       the worker id
+   * @param restarts how often this worker has been restarted
+   * @return the worker
+   * @throws IOException if the process cannot be started
+   */
+  private Worker startWorker(int id, int restarts) throws IOException {
+    Process process = new ProcessBuilder(workerCommand)
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+    Worker worker = new Worker(id, restarts, process);
+    Thread reader = new Thread(() -> {
+      try (BufferedReader stdout = new BufferedReader(
+          new InputStreamReader(process.getInputStream()))) {
+        String line;
+        while ((line = stdout.readLine()) != null) {
+          events.add(new Event(worker, line));
+        }
+      } catch (IOException e) {
+        // treated as the worker exiting
+      }
+      events.add(new Event(worker, null));
+    }, "simulation-worker-" + id);
+    reader.setDaemon(true);
+    reader.start();
+    return worker;
+  }
+
+  /**
+   * Asks every worker to stop and waits briefly for them before killing them.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private void shutdown() throws InterruptedException {
+    stopping = true;
+    for (Worker worker : workers) {
+      try {
+        worker.stdin.write(SimulationWorker.STOP);
+        worker.stdin.newLine();
+        worker.stdin.close();
+      } catch (IOException e) {
+        // already gone
+      }
+    }
+    for (Worker worker : workers) {
+      if (!worker.process.waitFor(1, TimeUnit.SECONDS)) {
+        worker.process.destroyForcibly();
+      }
+    }
+  }
+
+  /**
+   * A contiguous range of seeds.
+   */
+  private static class Chunk {
+
+    private final int id;
+    private final long firstSeed;
+    private final long count;
+    private int running;
+    private int failures;
+    private boolean done;
+
+    private Chunk(int id, long firstSeed, long count) {
+      this.id = id;
+      this.firstSeed = firstSeed;
+      this.count = count;
+    }
+  }
+
+  /**
+   * A worker process as seen by the coordinator.
+   */
+  private static class Worker {
+
+    private final int id;
+    private final int restarts;
+    private final Process process;
+    private final BufferedWriter stdin;
+    private boolean alive = true;
+    private boolean ready;
+    private Chunk chunk;
+    private long startedAt;
+
+    private Worker(int id, int restarts, Process process) {
+      this.id = id;
+      this.restarts = restarts;
+      this.process = process;
+      this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+    }
+  }
+
+  /**
+   * A line read from a worker, or null when the worker exited.
+   */
+  private static class Event {
+
+    private final Worker worker;
+    private final String line;
+
+    private Event(Worker worker, String line) {
+      this.worker = worker;
+      this.line = line;
+    }
+  }
+}
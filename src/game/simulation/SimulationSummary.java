@@ -0,0 +1,131 @@
+package game.simulation;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregated results of many headless games. Summaries of disjoint seed ranges can be merged, and
+ * are encoded as a single line of key=value pairs so worker processes can report them.
+ */
+public class SimulationSummary {
+
+  private final Map<String, Long> wins = new TreeMap<>();
+  private long games;
+  private long draws;
+  private long turns;
+  private long swaps;
+
+  /**
+   * Adds the result of one game to the summary.
+   *
+   * @param result the result to add
+   */
+  public void add(GameResult result) {
+    games++;
+    turns += result.getTurns();
+    swaps += result.getSwaps();
+    if (result.getWinnerColour() == null) {
+      draws++;
+    } else {
+      wins.merge(result.getWinnerColour(), 1L, Long::sum);
+    }
+  }
+
+  /**
+   * Merges another summary into this one.
+   *
+   * @param other the summary to merge
+   */
+  public void merge(SimulationSummary other) {
+    games += other.games;
+    draws += other.draws;
+    turns += other.turns;
+    swaps += other.swaps;
+    other.wins.forEach((colour, count) -> wins.merge(colour, count, Long::sum));
+  }
+
+  /**
+   * Encodes the summary as one line, eg: games=100 draws=0 turns=2512 swaps=301 Blue=51 Green=49
+   *
+   * @return the encoded summary
+   */
+  public String encode() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("games=").append(games).append(" draws=").append(draws)
+        .append(" turns=").append(turns).append(" swaps=").append(swaps);
+    wins.forEach((colour, count) -> builder.append(' ').append(colour).append('=').append(count));
+    return builder.toString();
+  }
+
+  /**
+   * Decodes a summary produced by encode.
+   *
+   * @param line the encoded summary
+   * @return the decoded summary
+   */
+  public static SimulationSummary decode(String line) {
+    SimulationSummary summary = new SimulationSummary();
+    for (String token : line.trim().split(" ")) {
+      String[] pair = token.split("=");
+      long value = Long.parseLong(pair[1]);
+      switch (pair[0]) {
+        case "games" -> summary.games = value;
+        case "draws" -> summary.draws = value;
+        case "turns" -> summary.turns = value;
+        case "swaps" -> summary.swaps = value;
+        default -> summary.wins.put(pair[0], value);
+      }
+    }
+    return summary;
+  }
+
+  /**
+   * Returns the number of games played.
+   *
+   * @return the number of games
+   */
+  public long getGames() {
+    return games;
+  }
+
+  /**
+   * Returns the number of games abandoned without a winner.
+   *
+   * @return the number of draws
+   */
+  public long getDraws() {
+    return draws;
+  }
+
+  /**
+   * Returns the number of wins of each colour.
+   *
+   * @return a map from colour name to number of wins
+   */
+  public Map<String, Long> getWins() {
+    return wins;
+  }
+
+  /**
+   * Returns the average number of turns per game.
+   *
+   * @return the average number of turns
+   */
+  public double getAverageTurns() {
+    return games == 0 ? 0 : (double) turns / games;
+  }
+
+  /**
+   * Returns the average number of swap cards played per game.
+   *
+   * @return the average number of swaps
+   */
+  public double getAverageSwaps() {
+    return games == 0 ? 0 : (double) swaps / games;
+  }
+
+  @Override
+  public String toString() {
+    return encode();
+  }
+}
@@ -0,0 +1,98 @@
+package game.simulation;
+
+import game.utils.GameUtils;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+
+/**
+ * Entry point of a worker process started by the SimulationCoordinator. The worker speaks a line
+ * based protocol on stdin and stdout, so it can run locally or behind a remote shell:
+ *
+ * <pre>
+ *   worker      -> coordinator   READY
+ *   coordinator -> worker        RUN chunkId firstSeed count
+ *   worker      -> coordinator   DONE chunkId games=.. draws=.. turns=.. swaps=.. Blue=..
+ *   worker      -> coordinator   ERROR chunkId message
+ *   coordinator -> worker        STOP
+ * </pre>
+ * Anything else a worker wants to report must go to stderr.
+ */
+public class SimulationWorker {
+
+  public static final String READY = "READY";
+  public static final String RUN = "RUN";
+  public static final String DONE = "DONE";
+  public static final String ERROR = "ERROR";
+  public static final String STOP = "STOP";
+
+  private final Simulator simulator;
+
+  /**
+   * Constructs a SimulationWorker playing games with the given simulator.
+   *
+   * @param simulator the simulator used for every chunk
+   */
+  public SimulationWorker(Simulator simulator) {
+    this.simulator = simulator;
+  }
+
+  /**
+   * Starts a worker. Arguments are the config path and the number of players, both optional.
+   *
+   * @param args command line arguments
+   * @throws IOException if the config cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    String configPath = args.length > 0 ? args[0] : GameUtils.CONFIG_PATH;
+    int numPlayers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    GameSetup setup = GameSetup.load(configPath, numPlayers);
+    new SimulationWorker(new Simulator(setup, new RandomPolicy())).serve(
+        new BufferedReader(new InputStreamReader(System.in)), System.out);
+  }
+
+  /**
+   * Answers RUN requests until STOP is received or the input is closed.
+   *
+   * @param in  the requests from the coordinator
+   * @param out the replies to the coordinator
+   * @throws IOException if reading a request fails
+   */
+  public void serve(BufferedReader in, PrintStream out) throws IOException {
+    out.println(READY);
+    out.flush();
+    String line;
+    while ((line = in.readLine()) != null && !line.equals(STOP)) {
+      String[] tokens = line.split(" ");
+      if (!tokens[0].equals(RUN) || tokens.length != 4) {
+        System.err.println("Unknown request: " + line);
+        continue;
+      }
+      String chunkId = tokens[1];
+      try {
+        SimulationSummary summary = runChunk(Long.parseLong(tokens[2]),
+            Long.parseLong(tokens[3]));
+        out.println(DONE + " " + chunkId + " " + summary.encode());
+      } catch (RuntimeException e) {
+        out.println(ERROR + " " + chunkId + " " + e);
+      }
+      out.flush();
+    }
+  }
+
+  /**
+   * Plays a contiguous range of seeds.
+   *
+   * @param firstSeed the first seed of the range
+   * @param count     the number of seeds
+   * @return the summary of the played games
+   */
+  public SimulationSummary runChunk(long firstSeed, long count) {
+    SimulationSummary summary = new SimulationSummary();
+    for (long seed = firstSeed; seed < firstSeed + count; seed++) {
+      summary.add(simulator.play(seed));
+    }
+    return summary;
+  }
+}
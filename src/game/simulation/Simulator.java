@@ -0,0 +1,106 @@
+package game.simulation;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Plays complete headless games between policies. A Simulator holds no per game state, so one
+ * instance can be shared by many threads.
+ */
+public class Simulator {
+
+  public static final int DEFAULT_MAX_TURNS = 10_000;
+
+  private final GameSetup setup;
+  private final Policy[] policies;
+  private final int maxTurns;
+
+  /**
+   * Constructs a Simulator where every dragon uses the same policy.
+   *
+   * @param setup  the board and starting position
+   * @param policy the policy used by every dragon
+   */
+  public Simulator(GameSetup setup, Policy policy) {
+    this(setup, fill(policy, setup.getNumDragons()), DEFAULT_MAX_TURNS);
+  }
+
+  /**
+   * Constructs a Simulator with one policy per dragon.
+   *
+   * @param setup    the board and starting position
+   * @param policies the policy of each dragon
+   * @param maxTurns the number of turns after which a game is abandoned without a winner
+   */
+  public Simulator(GameSetup setup, Policy[] policies, int maxTurns) {
+    if (policies.length != setup.getNumDragons()) {
+      throw new IllegalArgumentException("Expected " + setup.getNumDragons() + " policies");
+    }
+    this.setup = setup;
+    this.policies = policies.clone();
+    this.maxTurns = maxTurns;
+  }
+
+  /**
+   * Creates an array holding the same policy for every dragon.
+   *
+   * @param policy     the policy
+   * @param numDragons the number of dragons
+   * @return the array of policies
+   */
+  private static Policy[] fill(Policy policy, int numDragons) {
+    Policy[] policies = new Policy[numDragons];
+    Arrays.fill(policies, policy);
+    return policies;
+  }
+
+  /**
+   * Plays a game to the end. The seed determines both the chit card layout and every random choice
+   * made by the policies, so replaying a seed replays the same game.
+   *
+   * @param seed the seed of the game
+   * @return the result of the game
+   */
+  public GameResult play(long seed) {
+    return play(seed, null);
+  }
+
+  /**
+   * Plays a game to the end, reporting every flip to a listener.
+   *
+   * @param seed     the seed of the game
+   * @param listener the listener notified after every flip, or null
+   * @return the result of the game
+   */
+  public GameResult play(long seed, FlipListener listener) {
+    HeadlessGame game = new HeadlessGame(setup, seed);
+    SplittableRandom random = new SplittableRandom(seed ^ 0x9E3779B97F4A7C15L);
+    Policy[] players = new Policy[policies.length];
+    for (int dragon = 0; dragon < players.length; dragon++) {
+      players[dragon] = policies[dragon].newGame(setup, random);
+    }
+    while (!game.isOver() && game.getTurns() < maxTurns) {
+      int dragon = game.getCurrentDragon();
+      int turn = game.getTurns();
+      int from = game.getDragonSquare(dragon);
+      int chit = players[dragon].chooseChit(game, random);
+      int outcome = game.flip(chit);
+      for (Policy player : players) {
+        player.observe(game, chit);
+      }
+      if (listener != null) {
+        listener.flipped(seed, turn, dragon, chit, from, game.getDragonSquare(dragon), outcome);
+      }
+    }
+    return new GameResult(seed, game);
+  }
+
+  /**
+   * Returns the setup games are played on.
+   *
+   * @return the setup
+   */
+  public GameSetup getSetup() {
+    return setup;
+  }
+}
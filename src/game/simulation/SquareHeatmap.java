@@ -0,0 +1,284 @@
+package game.simulation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts, for every square and cave of a board, how often a dragon landed on it, was blocked
+ * standing on it and was swapped off or onto it. Simulator threads share one heatmap as a
+ * FlipListener.
+ *
+ * <p>The counters are striped like a LongAdder: every thread adds to its own row of cells, picked
+ * by its thread id, and the rows are padded apart so threads never write to the same cache line.
+ * Two threads that pick the same row still count correctly, they only contend. Reading sums the
+ * rows, so it is meant for the end of a run.
+ */
+public class SquareHeatmap implements FlipListener {
+
+  public static final int VISITS = 0;
+  public static final int BLOCKED = 1;
+  public static final int SWAPS = 2;
+  private static final int KINDS = 3;
+  // one cache line of longs between rows
+  private static final int PADDING = 8;
+  private static final String CSV_HEADER = "square,card,index,animal,visits,blocked,swaps";
+
+  private final int numSquares;
+  private final int rowLength;
+  private final int stripeMask;
+  private final AtomicLongArray cells;
+  private int[] homeCaves = new int[0];
+
+  /**
+   * Constructs an empty heatmap with a row of cells for every two cores.
+   *
+   * @param numSquares the number of square ids, squares and caves
+   */
+  public SquareHeatmap(int numSquares) {
+    this(numSquares, Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  /**
+   * Constructs an empty heatmap.
+   *
+   * @param numSquares the number of square ids, squares and caves
+   * @param stripes    the number of rows of cells, rounded up to a power of two
+   */
+  public SquareHeatmap(int numSquares, int stripes) {
+    this.numSquares = numSquares;
+    this.rowLength = (numSquares * KINDS + PADDING - 1) / PADDING * PADDING + PADDING;
+    int rows = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    this.stripeMask = rows - 1;
+    this.cells = new AtomicLongArray(rows * rowLength);
+  }
+
+  /**
+   * Constructs an empty heatmap for every square and cave of a board.
+   *
+   * @param setup the board
+   * @return the heatmap
+   */
+  public static SquareHeatmap forSetup(GameSetup setup) {
+    SquareHeatmap heatmap = new SquareHeatmap(setup.getTotalSquares() + setup.getNumCards());
+    heatmap.homeCaves = new int[setup.getNumDragons()];
+    for (int dragon = 0; dragon < setup.getNumDragons(); dragon++) {
+      for (int card = 0; card < setup.getNumCards(); card++) {
+        if (setup.getCaveAnimal(card) == setup.getDragonAnimal(dragon)) {
+          heatmap.homeCaves[dragon] = setup.getTotalSquares() + card;
+        }
+      }
+    }
+    return heatmap;
+  }
+
+  /**
+   * Counts a flip. A move counts a visit to the square landed on, a blocked move counts against
+   * the square the dragon is stuck on, and a swap counts on both squares involved. A winning move
+   * counts a visit to the winner's cave, where the GUI puts the dragon, when the heatmap was made
+   * by forSetup.
+   *
+   * @param gameId     the id (seed) of the game
+   * @param turn       the turn the flip happened in
+   * @param dragon     the dragon that flipped the card
+   * @param chit       the index of the flipped chit card
+   * @param fromSquare the square id the dragon stood on before the flip
+   * @param toSquare   the square id the dragon stands on after the flip
+   * @param outcome    the outcome code returned by HeadlessGame.flip
+   */
+  @Override
+  public void flipped(long gameId, int turn, int dragon, int chit, int fromSquare, int toSquare,
+      int outcome) {
+    switch (outcome) {
+      case HeadlessGame.MOVED -> add(toSquare, VISITS, 1);
+      case HeadlessGame.WON -> add(dragon < homeCaves.length ? homeCaves[dragon] : toSquare,
+          VISITS, 1);
+      case HeadlessGame.BLOCKED -> add(fromSquare, BLOCKED, 1);
+      case HeadlessGame.SWAPPED -> {
+        add(fromSquare, SWAPS, 1);
+        if (toSquare != fromSquare) {
+          add(toSquare, SWAPS, 1);
+        }
+      }
+      default -> {
+        // the dragon did not move
+      }
+    }
+  }
+
+  /**
+   * Adds to a counter in the calling thread's row.
+   *
+   * @param square the square id
+   * @param kind   VISITS, BLOCKED or SWAPS
+   * @param delta  the amount to add
+   */
+  public void add(int square, int kind, long delta) {
+    int stripe = mix(Thread.currentThread().getId()) & stripeMask;
+    cells.getAndAdd(stripe * rowLength + square * KINDS + kind, delta);
+  }
+
+  /**
+   * Spreads thread ids, which are usually consecutive, over the rows.
+   *
+   * @param id the thread id
+   * @return the mixed id
+   */
+  private static int mix(long id) {
+    long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 32);
+  }
+
+  /**
+   * Returns a counter summed over every row.
+   *
+   * @param square the square id
+   * @param kind   VISITS, BLOCKED or SWAPS
+   * @return the count
+   */
+  public long get(int square, int kind) {
+    long sum = 0;
+    for (int row = 0; row <= stripeMask; row++) {
+      sum += cells.get(row * rowLength + square * KINDS + kind);
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the largest counter of a kind over every square and cave.
+   *
+   * @param kind VISITS, BLOCKED or SWAPS
+   * @return the largest count
+   */
+  public long max(int kind) {
+    long max = 0;
+    for (int square = 0; square < numSquares; square++) {
+      max = Math.max(max, get(square, kind));
+    }
+    return max;
+  }
+
+  /**
+   * Returns the number of square ids.
+   *
+   * @return the number of squares and caves
+   */
+  public int getNumSquares() {
+    return numSquares;
+  }
+
+  /**
+   * Returns the file the heatmap of a config is exported to.
+   *
+   * @param directory  the heatmap directory
+   * @param configHash the config hash of the board
+   * @return the file
+   */
+  public static Path fileFor(Path directory, long configHash) {
+    return directory.resolve(String.format("heatmap-%016x.csv", configHash));
+  }
+
+  /**
+   * Adds the counts to the heatmap file of the board's config, so several runs on the same config
+   * add up. Caves are written with index -1.
+   *
+   * @param directory the heatmap directory
+   * @param setup     the board the games were played on
+   * @return the file written
+   * @throws IOException if the file cannot be read or written
+   */
+  public Path export(Path directory, GameSetup setup) throws IOException {
+    Path file = fileFor(directory, setup.getConfigHash());
+    SquareHeatmap previous = Files.exists(file) ? read(file) : null;
+    Files.createDirectories(directory);
+    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writer.write(CSV_HEADER);
+      writer.write('\n');
+      int totalSquares = setup.getTotalSquares();
+      for (int card = 0; card < setup.getNumCards(); card++) {
+        if (setup.getCaveAnimal(card) != -1) {
+          writeRow(writer, previous, totalSquares + card, card, -1, setup.getCaveAnimal(card));
+        }
+        for (int index = 0; index < setup.getNumSquares(card); index++) {
+          int square = setup.getCardOffset(card) + index;
+          writeRow(writer, previous, square, card, index, setup.getSquareAnimal(square));
+        }
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Writes one CSV row.
+   *
+   * @param writer   the output
+   * @param previous the counts already in the file, or null
+   * @param square   the square id
+   * @param card     the volcano card
+   * @param index    the square index, -1 for the cave
+   * @param animal   the animal of the square
+   * @throws IOException if writing fails
+   */
+  private void writeRow(BufferedWriter writer, SquareHeatmap previous, int square, int card,
+      int index, byte animal) throws IOException {
+    StringBuilder row = new StringBuilder();
+    row.append(square).append(',').append(card).append(',').append(index).append(',')
+        .append(GameSetup.typeName(animal));
+    for (int kind = 0; kind < KINDS; kind++) {
+      long count = get(square, kind);
+      if (previous != null && square < previous.numSquares) {
+        count += previous.get(square, kind);
+      }
+      row.append(',').append(count);
+    }
+    writer.write(row.toString());
+    writer.write('\n');
+  }
+
+  /**
+   * Reads an exported heatmap into a single row of cells.
+   *
+   * @param file the heatmap file
+   * @return the heatmap
+   * @throws IOException if the file cannot be read or is malformed
+   */
+  public static SquareHeatmap read(Path file) throws IOException {
+    int maxSquare = -1;
+    long[] counts = new long[0];
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      if (!CSV_HEADER.equals(line)) {
+        throw new IOException("Not a heatmap: " + file);
+      }
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        String[] tokens = line.split(",");
+        int square = Integer.parseInt(tokens[0]);
+        if (square * KINDS + KINDS > counts.length) {
+          counts = Arrays.copyOf(counts, Math.max(counts.length * 2,
+              square * KINDS + KINDS));
+        }
+        for (int kind = 0; kind < KINDS; kind++) {
+          counts[square * KINDS + kind] = Long.parseLong(tokens[4 + kind]);
+        }
+        maxSquare = Math.max(maxSquare, square);
+      }
+    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Malformed heatmap " + file + ": " + e.getMessage(), e);
+    }
+    SquareHeatmap heatmap = new SquareHeatmap(maxSquare + 1, 1);
+    for (int square = 0; square <= maxSquare; square++) {
+      for (int kind = 0; kind < KINDS; kind++) {
+        heatmap.add(square, kind, counts[square * KINDS + kind]);
+      }
+    }
+    return heatmap;
+  }
+}
@@ -0,0 +1,280 @@
+package game.simulation;
+
+import game.utils.GameUtils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores every flip of many headless games as fixed width records outside the Java heap.
+ * Simulator threads append to a shared direct ByteBuffer arena by reserving space with an atomic
+ * add; the thread that reserves the first slot past the end swaps in a fresh arena and hands the
+ * full one to a spiller thread, which copies it into a memory-mapped file and recycles it.
+ *
+ * <p>Record layout (little endian, RECORD_SIZE bytes):
+ * <pre>
+ *   0  long  game id (seed)
+ *   8  int   turn
+ *   12 int   from square id
+ *   16 int   to square id
+ *   20 short chit card index
+ *   22 byte  dragon
+ *   23 byte  outcome code
+ * </pre>
+ */
+public class TrajectoryStore implements FlipListener, AutoCloseable {
+
+  public static final int RECORD_SIZE = 24;
+  public static final String FILE_NAME = "trajectories.bin";
+  private static final int DEFAULT_ARENA_RECORDS = 1 << 20;
+  private static final int MAX_ARENAS = 4;
+
+  private final FileChannel channel;
+  private final int arenaBytes;
+  private final AtomicReference<Arena> current;
+  private final ConcurrentLinkedQueue<Arena> free = new ConcurrentLinkedQueue<>();
+  private final BlockingQueue<Arena> full = new LinkedBlockingQueue<>();
+  private final AtomicInteger allocated = new AtomicInteger(1);
+  private final AtomicLong spilledBytes = new AtomicLong();
+  private final Thread spiller;
+  private volatile IOException spillError;
+
+  /**
+   * Opens a store in a directory, appending to any trajectories already there.
+   *
+   * @param directory   the directory holding the trajectory file
+   * @param arenaRecords the number of records each off-heap arena holds
+   * @throws IOException if the file cannot be opened
+   */
+  public TrajectoryStore(Path directory, int arenaRecords) throws IOException {
+    Files.createDirectories(directory);
+    this.channel = FileChannel.open(directory.resolve(FILE_NAME), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.spilledBytes.set(channel.size() - channel.size() % RECORD_SIZE);
+    this.arenaBytes = arenaRecords * RECORD_SIZE;
+    this.current = new AtomicReference<>(new Arena(arenaBytes));
+    this.spiller = new Thread(this::spillLoop, "trajectory-spiller");
+    this.spiller.setDaemon(true);
+    this.spiller.start();
+  }
+
+  /**
+   * Records games played on several threads into a store and prints the throughput. Arguments are
+   * the directory, the number of games, the number of threads and optionally the config path.
+   *
+   * @param args command line arguments
+   * @throws Exception if the simulation fails
+   */
+  public static void main(String[] args) throws Exception {
+    Path directory = Paths.get(args.length > 0 ? args[0] : "trajectories");
+    long games = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+    int threads = args.length > 2 ? Integer.parseInt(args[2])
+        : Runtime.getRuntime().availableProcessors();
+    String configPath = args.length > 3 ? args[3] : GameUtils.CONFIG_PATH;
+    Simulator simulator = new Simulator(GameSetup.load(configPath, 4), new RandomPolicy());
+
+    long start = System.nanoTime();
+    AtomicLong nextSeed = new AtomicLong();
+    try (TrajectoryStore store = new TrajectoryStore(directory, DEFAULT_ARENA_RECORDS)) {
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      for (int i = 0; i < threads; i++) {
+        pool.execute(() -> {
+          long seed;
+          while ((seed = nextSeed.getAndIncrement()) < games) {
+            simulator.play(seed, store);
+          }
+        });
+      }
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+    System.out.printf("%d games, %d records in %.1f s%n", games,
+        count(directory), (System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * Appends one record. Safe to call from many threads at once without locking.
+   */
+  @Override
+  public void flipped(long gameId, int turn, int dragon, int chit, int fromSquare, int toSquare,
+      int outcome) {
+    while (true) {
+      Arena arena = current.get();
+      int offset = arena.reserved.getAndAdd(RECORD_SIZE);
+      if (offset < arenaBytes) {
+        ByteBuffer buffer = arena.buffer;
+        buffer.putLong(offset, gameId);
+        buffer.putInt(offset + 8, turn);
+        buffer.putInt(offset + 12, fromSquare);
+        buffer.putInt(offset + 16, toSquare);
+        buffer.putShort(offset + 20, (short) chit);
+        buffer.put(offset + 22, (byte) dragon);
+        buffer.put(offset + 23, (byte) outcome);
+        arena.committed.addAndGet(RECORD_SIZE);
+        return;
+      }
+      if (offset == arenaBytes) {
+        // exactly one thread reserves the first slot past the end and rolls the arena over
+        current.set(nextArena());
+        full.add(arena);
+      } else {
+        while (current.get() == arena) {
+          Thread.onSpinWait();
+        }
+      }
+    }
+  }
+
+  /**
+   * Takes a recycled arena, allocating a new one while under the limit and otherwise waiting for
+   * the spiller to free one.
+   *
+   * @return an empty arena
+   */
+  private Arena nextArena() {
+    while (true) {
+      Arena arena = free.poll();
+      if (arena != null) {
+        return arena;
+      }
+      if (allocated.get() < MAX_ARENAS) {
+        allocated.incrementAndGet();
+        return new Arena(arenaBytes);
+      }
+      if (spillError != null) {
+        throw new IllegalStateException("Spilling trajectories failed", spillError);
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Copies full arenas into the mapped file until the store is closed.
+   */
+  private void spillLoop() {
+    try {
+      while (true) {
+        Arena arena = full.take();
+        if (arena.buffer == null) {
+          return;
+        }
+        spill(arena, arenaBytes);
+        free.add(arena);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for all writers of an arena to finish and copies its records to the end of the file.
+   *
+   * @param arena the arena to spill
+   * @param bytes the number of bytes reserved in the arena
+   */
+  private void spill(Arena arena, int bytes) {
+    while (arena.committed.get() < bytes) {
+      Thread.onSpinWait();
+    }
+    try {
+      if (bytes > 0) {
+        MappedByteBuffer target = channel.map(FileChannel.MapMode.READ_WRITE,
+            spilledBytes.get(), bytes);
+        target.put(arena.buffer.duplicate().position(0).limit(bytes));
+        spilledBytes.addAndGet(bytes);
+      }
+    } catch (IOException e) {
+      spillError = e;
+    }
+    arena.committed.set(0);
+    arena.reserved.set(0);
+  }
+
+  /**
+   * Spills the partly filled arena and forces the file to disk. No thread may append while or
+   * after the store is closed.
+   *
+   * @throws IOException if spilling or forcing fails
+   */
+  @Override
+  public void close() throws IOException {
+    full.add(new Arena(0));
+    try {
+      spiller.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    Arena arena = current.get();
+    spill(arena, Math.min(arena.reserved.get(), arenaBytes));
+    if (spillError != null) {
+      throw spillError;
+    }
+    channel.force(true);
+    channel.close();
+  }
+
+  /**
+   * Returns the number of records stored in a directory.
+   *
+   * @param directory the directory of the store
+   * @return the number of records
+   * @throws IOException if the file cannot be read
+   */
+  public static long count(Path directory) throws IOException {
+    return Files.size(directory.resolve(FILE_NAME)) / RECORD_SIZE;
+  }
+
+  /**
+   * Reads every stored record through memory-mapped windows of the file.
+   *
+   * @param directory the directory of the store
+   * @param visitor   receives each record in file order
+   * @throws IOException if the file cannot be read
+   */
+  public static void scan(Path directory, FlipListener visitor) throws IOException {
+    long window = (long) (Integer.MAX_VALUE / RECORD_SIZE) * RECORD_SIZE;
+    try (FileChannel in = FileChannel.open(directory.resolve(FILE_NAME),
+        StandardOpenOption.READ)) {
+      long size = in.size() - in.size() % RECORD_SIZE;
+      for (long start = 0; start < size; start += window) {
+        ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, start,
+            Math.min(window, size - start)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int offset = 0; offset < buffer.limit(); offset += RECORD_SIZE) {
+          visitor.flipped(buffer.getLong(offset), buffer.getInt(offset + 8),
+              buffer.get(offset + 22), buffer.getShort(offset + 20), buffer.getInt(offset + 12),
+              buffer.getInt(offset + 16), buffer.get(offset + 23));
+        }
+      }
+    }
+  }
+
+  /**
+   * An off-heap buffer with counters for reserved and fully written bytes.
+   */
+  private static class Arena {
+
+    private final ByteBuffer buffer;
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger committed = new AtomicInteger();
+
+    private Arena(int bytes) {
+      this.buffer = bytes == 0 ? null
+          : ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+}
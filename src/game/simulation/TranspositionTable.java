@@ -0,0 +1,153 @@
+package game.simulation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Search statistics shared by the threads of a tree search, in one preallocated long[] so that
+ * searching allocates nothing. Entries are found by open addressing with linear probing on a 64
+ * bit key; a thread claims an empty slot by compare-and-set on its key, and visit counts and value
+ * sums are updated with atomic adds, so no thread ever takes a lock. Entries are never removed
+ * while a search runs; clear empties the table, and size tells when it is time to.
+ *
+ * <p>Each slot is SLOT_LONGS longs: the key, the visit count and the value sum, scaled by
+ * VALUE_SCALE so that values between 0 and 1 can be added atomically as longs.
+ */
+public class TranspositionTable {
+
+  private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+  private static final int SLOT_LONGS = 4;
+  private static final int MAX_PROBES = 16;
+  private static final double VALUE_SCALE = 1 << 20;
+
+  private final long[] slots;
+  private final int mask;
+  private final LongAdder used = new LongAdder();
+
+  /**
+   * Constructs an empty table.
+   *
+   * @param bits the log2 of the number of entries
+   */
+  public TranspositionTable(int bits) {
+    this.slots = new long[SLOT_LONGS << bits];
+    this.mask = (1 << bits) - 1;
+  }
+
+  /**
+   * Empties the table. Must not run while a search is using it.
+   */
+  public void clear() {
+    Arrays.fill(slots, 0);
+    used.reset();
+  }
+
+  /**
+   * Returns the number of entries claimed since the table was last cleared.
+   *
+   * @return the number of entries
+   */
+  public long size() {
+    return used.sum();
+  }
+
+  /**
+   * Returns the number of entries the table holds.
+   *
+   * @return the capacity
+   */
+  public int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Finds the entry of a key, claiming an empty slot for it if it has none.
+   *
+   * @param key the key, any value but 0 which marks empty slots
+   * @return the slot, or -1 if the probed slots are all taken by other keys
+   */
+  public int insert(long key) {
+    int index = (int) (key ^ key >>> 29) & mask;
+    for (int probe = 0; probe < MAX_PROBES; probe++) {
+      int slot = (index + probe & mask) * SLOT_LONGS;
+      long current = (long) LONGS.getAcquire(slots, slot);
+      if (current == key) {
+        return slot;
+      }
+      if (current == 0) {
+        long witness = (long) LONGS.compareAndExchange(slots, slot, 0L, key);
+        if (witness == 0) {
+          used.increment();
+          return slot;
+        }
+        if (witness == key) {
+          return slot;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the entry of a key without claiming a slot.
+   *
+   * @param key the key
+   * @return the slot, or -1 if the key has no entry
+   */
+  public int find(long key) {
+    int index = (int) (key ^ key >>> 29) & mask;
+    for (int probe = 0; probe < MAX_PROBES; probe++) {
+      int slot = (index + probe & mask) * SLOT_LONGS;
+      long current = (long) LONGS.getAcquire(slots, slot);
+      if (current == key) {
+        return slot;
+      }
+      if (current == 0) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Counts a visit to an entry. Searches count the visit on the way down, before the value is
+   * known, which steers other threads away from the same path until the value arrives.
+   *
+   * @param slot the slot returned by insert
+   */
+  public void addVisit(int slot) {
+    LONGS.getAndAdd(slots, slot + 1, 1L);
+  }
+
+  /**
+   * Adds a value to an entry.
+   *
+   * @param slot  the slot returned by insert
+   * @param value the value, between 0 and 1
+   */
+  public void addValue(int slot, double value) {
+    LONGS.getAndAdd(slots, slot + 2, (long) (value * VALUE_SCALE));
+  }
+
+  /**
+   * Returns the visit count of an entry.
+   *
+   * @param slot the slot
+   * @return the number of visits
+   */
+  public long getVisits(int slot) {
+    return (long) LONGS.getOpaque(slots, slot + 1);
+  }
+
+  /**
+   * Returns the sum of the values added to an entry.
+   *
+   * @param slot the slot
+   * @return the value sum
+   */
+  public double getValue(int slot) {
+    return (long) LONGS.getOpaque(slots, slot + 2) / VALUE_SCALE;
+  }
+}
@@ -0,0 +1,193 @@
+package game.tablebase;
+
+import game.simulation.GameSetup;
+import game.simulation.HeadlessGame;
+import java.util.Arrays;
+
+/**
+ * Numbers the positions of a board densely, so that a table of one byte per position needs no
+ * keys. A position is where every dragon stands plus whose turn it is. Only squares and the caves
+ * of the board are numbered, and since no two dragons share a square the dragons are ranked as a
+ * permutation of those places rather than as independent digits, which leaves out every position
+ * with two dragons on one square.
+ */
+public class StateIndex {
+
+  private final int numDragons;
+  private final int[] placeOf;
+  private final int[] idOf;
+  private final int numPlacements;
+
+  /**
+   * Constructs the numbering of a board.
+   *
+   * @param setup the board
+   * @throws IllegalArgumentException if the board has too many positions for an int index
+   */
+  public StateIndex(GameSetup setup) {
+    this(setup.getNumDragons(), placeIds(setup), setup.getTotalSquares() + setup.getNumCards());
+  }
+
+  /**
+   * Constructs a numbering from the square ids of the places.
+   *
+   * @param numDragons the number of dragons
+   * @param ids        the square id of every place, in place order
+   * @param numIds     one more than the largest square id of the board
+   * @throws IllegalArgumentException if the board has too many positions for an int index
+   */
+  StateIndex(int numDragons, int[] ids, int numIds) {
+    this.numDragons = numDragons;
+    this.idOf = ids;
+    this.placeOf = new int[numIds];
+    Arrays.fill(placeOf, -1);
+    for (int place = 0; place < ids.length; place++) {
+      placeOf[ids[place]] = place;
+    }
+    long placements = 1;
+    for (int i = 0; i < numDragons; i++) {
+      placements *= ids.length - i;
+    }
+    if (placements * numDragons > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many positions for a tablebase: "
+          + placements * numDragons);
+    }
+    this.numPlacements = (int) placements;
+  }
+
+  /**
+   * Returns the square ids a dragon can stand on: every square and the caves of the board.
+   *
+   * @param setup the board
+   * @return the square ids in place order
+   */
+  private static int[] placeIds(GameSetup setup) {
+    int total = setup.getTotalSquares();
+    int[] ids = new int[total + setup.getNumCards()];
+    int count = 0;
+    for (int square = 0; square < total; square++) {
+      ids[count++] = square;
+    }
+    for (int card = 0; card < setup.getNumCards(); card++) {
+      if (setup.getCaveAnimal(card) != -1) {
+        ids[count++] = total + card;
+      }
+    }
+    return Arrays.copyOf(ids, count);
+  }
+
+  /**
+   * Returns the index of a position.
+   *
+   * @param places the place of every dragon
+   * @param mover  the dragon whose turn it is
+   * @return the state index
+   */
+  public int rank(int[] places, int mover) {
+    int rank = 0;
+    for (int i = 0; i < numDragons; i++) {
+      int digit = places[i];
+      for (int j = 0; j < i; j++) {
+        if (places[j] < places[i]) {
+          digit--;
+        }
+      }
+      rank = rank * (idOf.length - i) + digit;
+    }
+    return rank * numDragons + mover;
+  }
+
+  /**
+   * Returns the index of the position of a game.
+   *
+   * @param game   the game
+   * @param places scratch space for the place of every dragon
+   * @return the state index
+   */
+  public int rank(HeadlessGame game, int[] places) {
+    for (int dragon = 0; dragon < numDragons; dragon++) {
+      places[dragon] = placeOf[game.getDragonSquare(dragon)];
+    }
+    return rank(places, game.getCurrentDragon());
+  }
+
+  /**
+   * Finds the places of the dragons of a state index.
+   *
+   * @param state  the state index
+   * @param places receives the place of every dragon
+   * @return the dragon whose turn it is
+   */
+  public int unrank(int state, int[] places) {
+    int mover = state % numDragons;
+    int rank = state / numDragons;
+    for (int i = numDragons - 1; i >= 0; i--) {
+      places[i] = rank % (idOf.length - i);
+      rank /= idOf.length - i;
+    }
+    // a digit counts the free places below it, skip the taken ones until it stops moving
+    for (int i = 1; i < numDragons; i++) {
+      int digit = places[i];
+      int place = digit;
+      int previous;
+      do {
+        previous = place;
+        place = digit;
+        for (int j = 0; j < i; j++) {
+          if (places[j] <= previous) {
+            place++;
+          }
+        }
+      } while (place != previous);
+      places[i] = place;
+    }
+    return mover;
+  }
+
+  /**
+   * Returns the square id of a place.
+   *
+   * @param place the place
+   * @return the square id
+   */
+  public int idOf(int place) {
+    return idOf[place];
+  }
+
+  /**
+   * Returns the place of a square id.
+   *
+   * @param id the square id
+   * @return the place, or -1 if no dragon can stand there
+   */
+  public int placeOf(int id) {
+    return placeOf[id];
+  }
+
+  /**
+   * Returns the number of places a dragon can stand on.
+   *
+   * @return the number of places
+   */
+  public int getNumPlaces() {
+    return idOf.length;
+  }
+
+  /**
+   * Returns the number of dragons.
+   *
+   * @return the number of dragons
+   */
+  public int getNumDragons() {
+    return numDragons;
+  }
+
+  /**
+   * Returns the number of state indices.
+   *
+   * @return the number of states
+   */
+  public int getNumStates() {
+    return numPlacements * numDragons;
+  }
+}
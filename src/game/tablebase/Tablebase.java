@@ -0,0 +1,270 @@
+package game.tablebase;
+
+import game.simulation.GameSetup;
+import game.simulation.HeadlessGame;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A solved board, memory mapped from the file written by TablebaseSolver. For every dragon, the
+ * hero, it holds the value of every position under perfect play with perfect memory, the other
+ * dragons playing together against the hero: the number of the hero's turns, this one included,
+ * within which the hero wins, the same number negated within which one of the others wins, or 0 if
+ * neither side can force a win.
+ *
+ * <p>The file starts with a header naming the board, the places a dragon can stand on and where
+ * the table of each hero starts. Each table has one value per StateIndex, so a probe is a rank and
+ * a single read. A value is stored in a byte as its distance, with the top bit set for losses, or
+ * two to a byte when every distance of the file fits in three bits.
+ */
+public class Tablebase {
+
+  public static final int MAX_DISTANCE = 127;
+
+  static final int LOSS = 0x80;
+  static final int DISTANCE = 0x7F;
+
+  private static final int MAGIC = 0x46445442;
+  private static final int VERSION = 1;
+  private static final int NIBBLE_LOSS = 0x8;
+  private static final int NIBBLE_MAX = 0x7;
+
+  private final long boardHash;
+  private final StateIndex index;
+  private final int bitsPerValue;
+  private final MappedByteBuffer[] tables;
+
+  /**
+   * Constructs a tablebase over mapped tables.
+   *
+   * @param boardHash    the board hash of the file
+   * @param index        the numbering of the positions
+   * @param bitsPerValue 4 or 8
+   * @param tables       the table of every hero
+   */
+  private Tablebase(long boardHash, StateIndex index, int bitsPerValue,
+      MappedByteBuffer[] tables) {
+    this.boardHash = boardHash;
+    this.index = index;
+    this.bitsPerValue = bitsPerValue;
+    this.tables = tables;
+  }
+
+  /**
+   * Maps a tablebase file. The mapping stays valid after the file is closed.
+   *
+   * @param file the file written by write
+   * @return the tablebase
+   * @throws IOException if the file cannot be read or is not a tablebase
+   */
+  public static Tablebase open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a tablebase: " + file);
+      }
+      long boardHash = in.readLong();
+      int numDragons = in.readInt();
+      int numIds = in.readInt();
+      int[] ids = new int[in.readInt()];
+      for (int place = 0; place < ids.length; place++) {
+        ids[place] = in.readInt();
+      }
+      int bitsPerValue = in.readInt();
+      StateIndex index = new StateIndex(numDragons, ids, numIds);
+      long length = tableLength(index.getNumStates(), bitsPerValue);
+      MappedByteBuffer[] tables = new MappedByteBuffer[numDragons];
+      for (int hero = 0; hero < numDragons; hero++) {
+        long offset = in.readLong();
+        if (offset + length > channel.size()) {
+          throw new IOException("Truncated tablebase: " + file);
+        }
+        tables[hero] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+      }
+      return new Tablebase(boardHash, index, bitsPerValue, tables);
+    }
+  }
+
+  /**
+   * Writes solved tables to a file, replacing it once complete.
+   *
+   * @param file   the file to write
+   * @param setup  the board that was solved
+   * @param index  the numbering the tables use
+   * @param tables the values of every hero, indexed by state
+   * @throws IOException if the file cannot be written
+   */
+  static void write(Path file, GameSetup setup, StateIndex index, byte[][] tables)
+      throws IOException {
+    int bitsPerValue = 4;
+    for (byte[] table : tables) {
+      for (byte value : table) {
+        if ((value & DISTANCE) > NIBBLE_MAX) {
+          bitsPerValue = 8;
+        }
+      }
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream header = new DataOutputStream(bytes);
+    header.writeInt(MAGIC);
+    header.writeInt(VERSION);
+    header.writeLong(boardHash(setup));
+    header.writeInt(index.getNumDragons());
+    header.writeInt(setup.getTotalSquares() + setup.getNumCards());
+    header.writeInt(index.getNumPlaces());
+    for (int place = 0; place < index.getNumPlaces(); place++) {
+      header.writeInt(index.idOf(place));
+    }
+    header.writeInt(bitsPerValue);
+    long length = tableLength(index.getNumStates(), bitsPerValue);
+    long offset = bytes.size() + (long) Long.BYTES * tables.length;
+    for (int hero = 0; hero < tables.length; hero++) {
+      header.writeLong(offset + hero * length);
+    }
+
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(bytes.toByteArray()));
+      for (byte[] table : tables) {
+        ByteBuffer buffer = ByteBuffer.wrap(bitsPerValue == 8 ? table : packNibbles(table));
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      channel.force(true);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Packs values two to a byte, the even state in the low four bits and the loss flag in the
+   * top bit of each half.
+   *
+   * @param table the values
+   * @return the packed values
+   */
+  private static byte[] packNibbles(byte[] table) {
+    byte[] packed = new byte[(table.length + 1) / 2];
+    for (int state = 0; state < table.length; state++) {
+      int value = table[state] & NIBBLE_MAX | (table[state] < 0 ? NIBBLE_LOSS : 0);
+      packed[state >> 1] |= (byte) (value << ((state & 1) << 2));
+    }
+    return packed;
+  }
+
+  /**
+   * Returns the number of bytes of one table.
+   *
+   * @param numStates    the number of states
+   * @param bitsPerValue 4 or 8
+   * @return the length in bytes
+   */
+  private static long tableLength(int numStates, int bitsPerValue) {
+    return bitsPerValue == 8 ? numStates : (numStates + 1L) / 2;
+  }
+
+  /**
+   * Returns the value of a state for a hero.
+   *
+   * @param hero  the dragon the value is for
+   * @param state the state index
+   * @return the number of hero turns to a win, its negation for a loss, or 0 for neither
+   */
+  public int probe(int hero, int state) {
+    if (bitsPerValue == 8) {
+      int value = tables[hero].get(state);
+      return value < 0 ? -(value & DISTANCE) : value;
+    }
+    int value = tables[hero].get(state >> 1) >> ((state & 1) << 2);
+    return (value & NIBBLE_LOSS) != 0 ? -(value & NIBBLE_MAX) : value & NIBBLE_MAX;
+  }
+
+  /**
+   * Returns the value of the position of a game for a hero, with the turn starting afresh. Chit
+   * cards already flipped in the turn are not taken into account.
+   *
+   * @param game the game, on a board this tablebase is for
+   * @param hero the dragon the value is for
+   * @return the number of hero turns to a win, its negation for a loss, or 0 for neither
+   */
+  public int probe(HeadlessGame game, int hero) {
+    return probe(hero, index.rank(game, new int[index.getNumDragons()]));
+  }
+
+  /**
+   * Returns whether this tablebase was solved for a board.
+   *
+   * @param setup the board
+   * @return true if the board and the number of dragons match
+   */
+  public boolean isFor(GameSetup setup) {
+    return boardHash == boardHash(setup) && index.getNumDragons() == setup.getNumDragons();
+  }
+
+  /**
+   * Returns the numbering of the positions.
+   *
+   * @return the state index
+   */
+  public StateIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the file of a board in a tablebase directory.
+   *
+   * @param directory the tablebase directory
+   * @param setup     the board
+   * @return the file
+   */
+  public static Path fileFor(Path directory, GameSetup setup) {
+    return directory.resolve(String.format("tablebase-%016x-%d.fdt", boardHash(setup),
+        setup.getNumDragons()));
+  }
+
+  /**
+   * Hashes what a tablebase depends on: the board, the animals of the dragons and the faces of the
+   * deck. Unlike the config hash, where the dragons stand and the order of the chit cards do not
+   * matter, so saved games share the tablebase of their board.
+   *
+   * @param setup the board
+   * @return a 64 bit FNV-1a hash
+   */
+  public static long boardHash(GameSetup setup) {
+    long hash = 0xcbf29ce484222325L;
+    for (int card = 0; card < setup.getNumCards(); card++) {
+      hash = (hash ^ setup.getNumSquares(card)) * 0x100000001b3L;
+      hash = (hash ^ setup.getCaveIndex(card)) * 0x100000001b3L;
+      hash = (hash ^ setup.getCaveAnimal(card)) * 0x100000001b3L;
+    }
+    for (int square = 0; square < setup.getTotalSquares(); square++) {
+      hash = (hash ^ setup.getSquareAnimal(square)) * 0x100000001b3L;
+    }
+    for (int dragon = 0; dragon < setup.getNumDragons(); dragon++) {
+      hash = (hash ^ setup.getDragonAnimal(dragon)) * 0x100000001b3L;
+    }
+    int[] faces = new int[setup.getNumChits()];
+    for (int chit = 0; chit < faces.length; chit++) {
+      faces[chit] = setup.getChitType(chit) << 16 | (setup.getChitMoves(chit) & 0xFFFF);
+    }
+    Arrays.sort(faces);
+    for (int face : faces) {
+      hash = (hash ^ face) * 0x100000001b3L;
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,495 @@
+package game.tablebase;
+
+import game.simulation.GameSetup;
+import game.simulation.HeadlessGame;
+import game.utils.GameUtils;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Solves a board backwards from its won positions and writes a Tablebase. Players are assumed to
+ * remember every chit card, so a turn is any sequence of faces of the deck, each used at most
+ * once, that keeps moving the dragon; the dragon may stop after any move by letting the timer run
+ * out, a swap ends the turn and landing on the cave wins. For every dragon in turn, the hero, the
+ * solver finds the positions from which the hero wins however the other dragons play together.
+ *
+ * <p>The turns of every position are generated once, in parallel, into successor lists. Then the
+ * positions are solved in layers: layer L adds the positions where the hero is to move and can
+ * reach a position won within L - 1 turns, then the positions of the other dragons, last to first,
+ * whose every successor is already won. Every layer is a parallel pass over the positions of one
+ * dragon, reading only values of the dragon after it, so the passes need no locks.
+ */
+public class TablebaseSolver {
+
+  private static final int CHUNK = 1 << 12;
+  private static final int VISITED_BITS = 12;
+  private static final long REACHED = 1L << 63;
+  private static final long WINS = 1L << 62;
+
+  private final GameSetup setup;
+  private final StateIndex index;
+  private final ForkJoinPool pool;
+  private final byte[] faceType;
+  private final int[] faceMoves;
+  private final int[] faceCount;
+  private final long[] faceRadix;
+  private final long usedStates;
+  private final boolean hasSwap;
+  private final int[] placeCard;
+  private final int[] placeIndex;
+  private final int[][] binomial;
+  private final int combinations;
+  private final long[] reach;
+  private int[] offsets;
+  private int[] successors;
+  private boolean[] canWin;
+
+  /**
+   * Constructs a solver for a board.
+   *
+   * @param setup   the board
+   * @param threads the number of threads to solve with
+   */
+  public TablebaseSolver(GameSetup setup, int threads) {
+    this.setup = setup;
+    this.index = new StateIndex(setup);
+    this.pool = new ForkJoinPool(threads);
+    int numChits = setup.getNumChits();
+    byte[] types = new byte[numChits];
+    int[] moves = new int[numChits];
+    int[] counts = new int[numChits];
+    int distinct = 0;
+    for (int chit = 0; chit < numChits; chit++) {
+      int face = 0;
+      while (face < distinct && (types[face] != setup.getChitType(chit)
+          || moves[face] != setup.getChitMoves(chit))) {
+        face++;
+      }
+      if (face == distinct) {
+        types[distinct] = setup.getChitType(chit);
+        moves[distinct++] = setup.getChitMoves(chit);
+      }
+      counts[face]++;
+    }
+    this.faceType = Arrays.copyOf(types, distinct);
+    this.faceMoves = Arrays.copyOf(moves, distinct);
+    this.faceCount = Arrays.copyOf(counts, distinct);
+    // the faces used so far in a turn, as a number with one digit per distinct face
+    this.faceRadix = new long[distinct];
+    long radix = 1;
+    boolean swap = false;
+    for (int face = 0; face < distinct; face++) {
+      faceRadix[face] = radix;
+      radix *= faceCount[face] + 1;
+      swap |= faceType[face] == GameSetup.SWAP;
+    }
+    this.usedStates = radix;
+    this.hasSwap = swap;
+
+    int numPlaces = index.getNumPlaces();
+    if (numPlaces > Long.SIZE - 2) {
+      throw new IllegalArgumentException("Too many places for the solver: " + numPlaces);
+    }
+    this.placeCard = new int[numPlaces];
+    this.placeIndex = new int[numPlaces];
+    for (int place = 0; place < numPlaces; place++) {
+      int id = index.idOf(place);
+      int card = 0;
+      while (card + 1 < setup.getNumCards() && setup.getCardOffset(card + 1) <= id) {
+        card++;
+      }
+      boolean cave = id >= setup.getTotalSquares();
+      placeCard[place] = cave ? id - setup.getTotalSquares() : card;
+      placeIndex[place] = cave ? -1 : id - setup.getCardOffset(card);
+    }
+    int numDragons = index.getNumDragons();
+    this.binomial = new int[numPlaces + 1][numDragons + 1];
+    for (int n = 0; n <= numPlaces; n++) {
+      binomial[n][0] = 1;
+      for (int k = 1; k <= Math.min(n, numDragons); k++) {
+        binomial[n][k] = binomial[n - 1][k - 1] + (k <= n - 1 ? binomial[n - 1][k] : 0);
+      }
+    }
+    this.combinations = binomial[numPlaces][numDragons - 1];
+    this.reach = new long[numDragons * numPlaces * combinations];
+  }
+
+  /**
+   * Generates the successors of every position: where the dragons stand after each turn the
+   * dragon to move can play, and whether it can win in this turn.
+   */
+  public void generate() {
+    int numStates = index.getNumStates();
+    int chunks = (numStates + CHUNK - 1) / CHUNK;
+    int[][] lists = new int[chunks][];
+    int[][] counts = new int[chunks][];
+    boolean[] wins = new boolean[numStates];
+    pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+      Expander expander = new Expander();
+      int first = chunk * CHUNK;
+      int last = Math.min(numStates, first + CHUNK);
+      int[] chunkCounts = new int[last - first];
+      for (int state = first; state < last; state++) {
+        int before = expander.size;
+        wins[state] = expander.expand(state);
+        chunkCounts[state - first] = expander.size - before;
+      }
+      lists[chunk] = Arrays.copyOf(expander.out, expander.size);
+      counts[chunk] = chunkCounts;
+    })).join();
+
+    long total = 0;
+    for (int[] list : lists) {
+      total += list.length;
+    }
+    if (total > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("Too many successors: " + total);
+    }
+    this.offsets = new int[numStates + 1];
+    this.successors = new int[(int) total];
+    int position = 0;
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      System.arraycopy(lists[chunk], 0, successors, position, lists[chunk].length);
+      for (int i = 0; i < counts[chunk].length; i++) {
+        offsets[chunk * CHUNK + i] = position;
+        position += counts[chunk][i];
+      }
+      lists[chunk] = null;
+    }
+    offsets[numStates] = position;
+    this.canWin = wins;
+  }
+
+  /**
+   * Solves the board for one hero. Must be called after generate.
+   *
+   * @param hero the dragon to solve for
+   * @return the value of every state index, as stored by Tablebase
+   */
+  public byte[] solve(int hero) {
+    int numDragons = index.getNumDragons();
+    byte[] values = new byte[index.getNumStates()];
+    for (int state = 0; state < values.length; state++) {
+      if (canWin[state] && state % numDragons != hero) {
+        values[state] = (byte) (Tablebase.LOSS | 1);
+      }
+    }
+    for (int layer = 1; layer <= Tablebase.MAX_DISTANCE; layer++) {
+      int added = pass(values, hero, hero, layer);
+      for (int back = 1; back < numDragons; back++) {
+        added += pass(values, (hero - back + numDragons) % numDragons, hero, layer);
+      }
+      if (added == 0) {
+        break;
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Decides the states of one dragon to move that are won or lost within a layer.
+   *
+   * @param values the values so far
+   * @param mover  the dragon to move in the states to look at
+   * @param hero   the dragon solved for
+   * @param layer  the number of hero turns the states are decided in
+   * @return the number of states decided
+   */
+  private int pass(byte[] values, int mover, int hero, int layer) {
+    int numDragons = index.getNumDragons();
+    int numPlacements = index.getNumStates() / numDragons;
+    int chunks = (numPlacements + CHUNK - 1) / CHUNK;
+    return pool.submit(() -> IntStream.range(0, chunks).parallel().map(chunk -> {
+      int added = 0;
+      int last = Math.min(numPlacements, (chunk + 1) * CHUNK);
+      for (int placement = chunk * CHUNK; placement < last; placement++) {
+        int state = placement * numDragons + mover;
+        if (values[state] != 0) {
+          continue;
+        }
+        int value = mover == hero ? heroValue(values, state, layer)
+            : otherValue(values, state, layer);
+        if (value != 0) {
+          values[state] = (byte) value;
+          added++;
+        }
+      }
+      return added;
+    }).sum()).join();
+  }
+
+  /**
+   * Returns the value of a state with the hero to move: won if some turn reaches a state won in
+   * an earlier layer, lost if every turn reaches a lost state.
+   *
+   * @param values the values so far
+   * @param state  the state index
+   * @param layer  the layer
+   * @return the value, or 0 if the state is not decided in this layer
+   */
+  private int heroValue(byte[] values, int state, int layer) {
+    if (canWin[state]) {
+      return 1;
+    }
+    boolean lost = true;
+    for (int i = offsets[state]; i < offsets[state + 1]; i++) {
+      int value = values[successors[i]];
+      if (value > 0) {
+        return layer;
+      }
+      lost &= value != 0;
+    }
+    return lost ? Tablebase.LOSS | layer : 0;
+  }
+
+  /**
+   * Returns the value of a state with another dragon to move, who plays for the hero to lose: lost
+   * if some turn reaches a lost state, won if every turn reaches a won state.
+   *
+   * @param values the values so far
+   * @param state  the state index
+   * @param layer  the layer
+   * @return the value, or 0 if the state is not decided in this layer
+   */
+  private int otherValue(byte[] values, int state, int layer) {
+    int worst = 0;
+    for (int i = offsets[state]; i < offsets[state + 1]; i++) {
+      int value = values[successors[i]];
+      if (value < 0) {
+        return Tablebase.LOSS | layer;
+      }
+      worst = value == 0 || worst == -1 ? -1 : Math.max(worst, value);
+    }
+    return Math.max(worst, 0);
+  }
+
+  /**
+   * Returns the number of successors generated, for reporting.
+   *
+   * @return the number of successors
+   */
+  public int getNumSuccessors() {
+    return successors.length;
+  }
+
+  /**
+   * Walks the turns of one state at a time. Each thread has its own, holding a scratch game per
+   * flip of the turn and the set of (dragon position, faces used) pairs already walked.
+   */
+  private class Expander {
+
+    private final HeadlessGame[] games = new HeadlessGame[setup.getNumChits() + 1];
+    private final int[] cards = new int[index.getNumDragons()];
+    private final int[] indices = new int[index.getNumDragons()];
+    private final int[] places = new int[index.getNumDragons()];
+    private long[] visited = new long[1 << VISITED_BITS];
+    private int visitedCount;
+    private int[] out = new int[1 << 16];
+    private int size;
+    private int first;
+    private int mover;
+    private long reached;
+
+    /**
+     * Constructs an expander.
+     */
+    Expander() {
+      for (int i = 0; i < games.length; i++) {
+        games[i] = new HeadlessGame(setup, 0);
+      }
+    }
+
+    /**
+     * Appends the distinct successors of a state to out: stopping on every place the dragon to
+     * move can reach in its turn, and playing a swap card there.
+     *
+     * @param state the state index
+     * @return whether the dragon to move can win in this turn
+     */
+    boolean expand(int state) {
+      mover = index.unrank(state, places);
+      for (int dragon = 0; dragon < places.length; dragon++) {
+        cards[dragon] = placeCard[places[dragon]];
+        indices[dragon] = placeIndex[places[dragon]];
+      }
+      int key = reachKey();
+      if (reach[key] == 0) {
+        games[0].setPositions(cards, indices, mover);
+        Arrays.fill(visited, -1L);
+        visitedCount = 0;
+        reached = REACHED;
+        walk(0, 0);
+        reach[key] = reached;
+      }
+      long bits = reach[key];
+      if ((bits & WINS) != 0) {
+        return true;
+      }
+      first = size;
+      int start = places[mover];
+      int next = (mover + 1) % places.length;
+      for (long left = bits & ~REACHED; left != 0; left &= left - 1) {
+        places[mover] = Long.numberOfTrailingZeros(left);
+        add(index.rank(places, next));
+      }
+      places[mover] = start;
+      if (hasSwap) {
+        for (long left = bits & ~REACHED; left != 0; left &= left - 1) {
+          int place = Long.numberOfTrailingZeros(left);
+          cards[mover] = placeCard[place];
+          indices[mover] = placeIndex[place];
+          HeadlessGame game = games[0];
+          game.setPositions(cards, indices, mover);
+          game.apply(mover, GameSetup.SWAP, 0);
+          add(index.rank(game, places));
+        }
+        index.unrank(state, places);
+      }
+      return false;
+    }
+
+    /**
+     * Returns where the reachable places of the current state are cached: they only depend on the
+     * dragon to move, its place and the set of places the other dragons stand on.
+     *
+     * @return the cache slot
+     */
+    private int reachKey() {
+      int combination = 0;
+      for (int dragon = 0; dragon < places.length; dragon++) {
+        if (dragon == mover) {
+          continue;
+        }
+        // the others' places, counted as a set by the number of smaller ones among them
+        int smaller = 0;
+        for (int other = 0; other < places.length; other++) {
+          if (other != mover && places[other] < places[dragon]) {
+            smaller++;
+          }
+        }
+        combination += binomial[places[dragon]][smaller + 1];
+      }
+      return (mover * index.getNumPlaces() + places[mover]) * combinations + combination;
+    }
+
+    /**
+     * Marks the place of the dragon to move as reached and tries every face left that can move it.
+     * Swap cards end the turn, so they are played from the reached places afterwards.
+     *
+     * @param depth the number of faces used
+     * @param used  the faces used, one digit per distinct face
+     */
+    private void walk(int depth, long used) {
+      HeadlessGame game = games[depth];
+      reached |= 1L << index.placeOf(game.getDragonSquare(mover));
+      byte animal = game.animalAt(mover);
+      for (int face = 0; face < faceType.length && (reached & WINS) == 0; face++) {
+        long count = used / faceRadix[face] % (faceCount[face] + 1);
+        byte type = faceType[face];
+        if (count == faceCount[face] || type != animal && type != GameSetup.PIRATE_DRAGON) {
+          continue;
+        }
+        HeadlessGame next = games[depth + 1];
+        next.copyFrom(game);
+        int outcome = next.apply(mover, type, faceMoves[face]);
+        if (outcome == HeadlessGame.WON) {
+          reached |= WINS;
+        } else if (outcome == HeadlessGame.MOVED) {
+          long key = used + faceRadix[face] + usedStates * next.getDragonSquare(mover);
+          if (markVisited(key)) {
+            walk(depth + 1, used + faceRadix[face]);
+          }
+        }
+      }
+    }
+
+    /**
+     * Appends a successor unless the state already has it.
+     *
+     * @param state the successor
+     */
+    private void add(int state) {
+      for (int i = first; i < size; i++) {
+        if (out[i] == state) {
+          return;
+        }
+      }
+      if (size == out.length) {
+        out = Arrays.copyOf(out, size * 2);
+      }
+      out[size++] = state;
+    }
+
+    /**
+     * Adds a key to the visited set.
+     *
+     * @param key the key, not negative
+     * @return true if the key was not in the set
+     */
+    private boolean markVisited(long key) {
+      if (visitedCount * 2 >= visited.length) {
+        long[] old = visited;
+        visited = new long[old.length * 2];
+        Arrays.fill(visited, -1L);
+        visitedCount = 0;
+        for (long value : old) {
+          if (value != -1) {
+            markVisited(value);
+          }
+        }
+      }
+      int mask = visited.length - 1;
+      int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+      while (visited[slot] != -1) {
+        if (visited[slot] == key) {
+          return false;
+        }
+        slot = slot + 1 & mask;
+      }
+      visited[slot] = key;
+      visitedCount++;
+      return true;
+    }
+  }
+
+  /**
+   * Solves a board and writes its tablebase. Arguments are optionally the output file, the config
+   * path, the number of players and the number of threads.
+   *
+   * @param args command line arguments
+   * @throws Exception if the config cannot be read or the tablebase cannot be written
+   */
+  public static void main(String[] args) throws Exception {
+    String configPath = args.length > 1 ? args[1] : GameUtils.CONFIG_PATH;
+    int numPlayers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+    int threads = args.length > 3 ? Integer.parseInt(args[3])
+        : Runtime.getRuntime().availableProcessors();
+    GameSetup setup = GameSetup.load(configPath, numPlayers);
+    Path file = args.length > 0 ? Path.of(args[0])
+        : Tablebase.fileFor(Path.of(GameUtils.TABLEBASE_PATH), setup);
+    TablebaseSolver solver = new TablebaseSolver(setup, threads);
+    long start = System.nanoTime();
+    solver.generate();
+    System.out.printf("%d states, %d successors in %.1f s%n", solver.index.getNumStates(),
+        solver.getNumSuccessors(), (System.nanoTime() - start) / 1e9);
+    byte[][] tables = new byte[setup.getNumDragons()][];
+    for (int hero = 0; hero < tables.length; hero++) {
+      tables[hero] = solver.solve(hero);
+      int won = 0;
+      int lost = 0;
+      int longest = 0;
+      for (byte value : tables[hero]) {
+        won += value > 0 ? 1 : 0;
+        lost += value < 0 ? 1 : 0;
+        longest = Math.max(longest, value & Tablebase.DISTANCE);
+      }
+      System.out.printf("dragon %d: %d won, %d lost, longest %d turns, %.1f s%n", hero, won, lost,
+          longest, (System.nanoTime() - start) / 1e9);
+    }
+    Tablebase.write(file, setup, solver.index, tables);
+    System.out.printf("wrote %s (%d bytes)%n", file, file.toFile().length());
+  }
+}
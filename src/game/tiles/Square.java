@@ -28,6 +28,8 @@ public abstract class Square implements Savable {
   private final JPanel panel;
   protected Dragon occupied;
   protected ImageIcon icon; // Icon for the square itself
+  private Color overlay; // Translucent colour drawn over the icon, eg: by the heatmap
+  private Color highlight; // Colour of a thick frame drawn around the square, eg: by a preview
 
   /**
    * Constructs a Square with the specified icon.
@@ -42,6 +44,15 @@ public abstract class Square implements Savable {
         if (icon != null) {
           g.drawImage(icon.getImage(), 0, 0, getWidth(), getHeight(), this);
         }
+        if (overlay != null) {
+          g.setColor(overlay);
+          g.fillRect(0, 0, getWidth(), getHeight());
+        }
+        if (highlight != null) {
+          ((Graphics2D) g).setStroke(new BasicStroke(6));
+          g.setColor(highlight);
+          g.drawRect(3, 3, getWidth() - 6, getHeight() - 6);
+        }
         if (occupied != null) {
           ((Graphics2D) g).setStroke(new BasicStroke(2));
           g.setColor(Color.RED);
@@ -124,6 +135,26 @@ public abstract class Square implements Savable {
     panel.repaint();
   }
 
+  /**
+   * Sets the colour drawn over the square, which should be translucent.
+   *
+   * @param overlay The overlay colour, or null for none.
+   */
+  public void setOverlay(Color overlay) {
+    this.overlay = overlay;
+    panel.repaint();
+  }
+
+  /**
+   * Sets the colour of the frame drawn around the square.
+   *
+   * @param highlight The frame colour, or null for none.
+   */
+  public void setHighlight(Color highlight) {
+    this.highlight = highlight;
+    panel.repaint();
+  }
+
   /**
    * Clears the occupation of the square.
    */
@@ -295,18 +295,18 @@ public class VolcanoCard implements Savable {
 
   @Override
   public String saveState() {
-    String result = "";
+    StringBuilder result = new StringBuilder();
     for (Square square : this.squares) {
-      result += square.saveState() + "_";
+      result.append(square.saveState()).append('_');
     }
 
     if (this.cave != null) {
-      result += this.cave.saveState();
-      result += "_" + getCaveIndex() + "_" + getNumSquares();
+      result.append(this.cave.saveState());
+      result.append('_').append(getCaveIndex()).append('_').append(getNumSquares());
     } else {
-      result += -1 + "_" + getNumSquares();
+      result.append(-1).append('_').append(getNumSquares());
     }
-    return result;
+    return result.toString();
   }
 
   /**
@@ -0,0 +1,113 @@
+package game.tournament;
+
+import game.simulation.Policy;
+
+/**
+ * A policy taking part in a tournament, with its rating and record.
+ */
+public class Entrant {
+
+  private final String name;
+  private final Policy policy;
+  private final Rating rating = new Rating();
+  private int games;
+  private int wins;
+  private int draws;
+  private int byes;
+
+  /**
+   * Constructs an Entrant.
+   *
+   * @param name   the name shown in the standings
+   * @param policy the policy playing for the entrant
+   */
+  public Entrant(String name, Policy policy) {
+    this.name = name;
+    this.policy = policy;
+  }
+
+  /**
+   * Records the result of one game.
+   *
+   * @param won   whether the entrant won
+   * @param drawn whether nobody won
+   */
+  void record(boolean won, boolean drawn) {
+    games++;
+    if (won) {
+      wins++;
+    } else if (drawn) {
+      draws++;
+    }
+  }
+
+  /**
+   * Records a Swiss round the entrant sat out.
+   */
+  void recordBye() {
+    byes++;
+  }
+
+  /**
+   * Returns the name shown in the standings.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the policy playing for the entrant.
+   *
+   * @return the policy
+   */
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Returns the rating of the entrant.
+   *
+   * @return the rating
+   */
+  public Rating getRating() {
+    return rating;
+  }
+
+  /**
+   * Returns the number of games played.
+   *
+   * @return the number of games
+   */
+  public int getGames() {
+    return games;
+  }
+
+  /**
+   * Returns the number of games won.
+   *
+   * @return the number of wins
+   */
+  public int getWins() {
+    return wins;
+  }
+
+  /**
+   * Returns the number of games nobody won.
+   *
+   * @return the number of draws
+   */
+  public int getDraws() {
+    return draws;
+  }
+
+  /**
+   * Returns the number of Swiss rounds sat out.
+   *
+   * @return the number of byes
+   */
+  public int getByes() {
+    return byes;
+  }
+}
@@ -0,0 +1,88 @@
+package game.tournament;
+
+/**
+ * The Elo and Glicko ratings of one entrant. A game between several dragons is rated as a set of
+ * pairwise results: the winner beats every other dragon, and dragons that did not win draw with
+ * each other.
+ */
+public class Rating {
+
+  public static final double INITIAL_RATING = 1500;
+  public static final double INITIAL_DEVIATION = 350;
+  private static final double ELO_K = 32;
+  private static final double MIN_DEVIATION = 30;
+  private static final double Q = Math.log(10) / 400;
+
+  private double elo = INITIAL_RATING;
+  private double glicko = INITIAL_RATING;
+  private double deviation = INITIAL_DEVIATION;
+
+  /**
+   * Updates the ratings of every dragon in a game. Every update uses the ratings from before the
+   * game, so the order of the seats does not matter.
+   *
+   * @param seats      the ratings of the dragons, one per seat
+   * @param winnerSeat the seat that won, or -1 for a drawn game
+   */
+  public static void update(Rating[] seats, int winnerSeat) {
+    int n = seats.length;
+    double[] elos = new double[n];
+    double[] glickos = new double[n];
+    double[] deviations = new double[n];
+    for (int i = 0; i < n; i++) {
+      elos[i] = seats[i].elo;
+      glickos[i] = seats[i].glicko;
+      deviations[i] = seats[i].deviation;
+    }
+    for (int i = 0; i < n; i++) {
+      double eloDelta = 0;
+      double impact = 0;
+      double variance = 0;
+      for (int j = 0; j < n; j++) {
+        if (i == j) {
+          continue;
+        }
+        double score = winnerSeat == i ? 1 : winnerSeat == j ? 0 : 0.5;
+        eloDelta += score - 1 / (1 + Math.pow(10, (elos[j] - elos[i]) / 400));
+
+        double g = 1 / Math.sqrt(1 + 3 * Q * Q * deviations[j] * deviations[j]
+            / (Math.PI * Math.PI));
+        double expected = 1 / (1 + Math.pow(10, -g * (glickos[i] - glickos[j]) / 400));
+        impact += g * (score - expected);
+        variance += g * g * expected * (1 - expected);
+      }
+      Rating rating = seats[i];
+      rating.elo += ELO_K / (n - 1) * eloDelta;
+      double precision = 1 / (deviations[i] * deviations[i]) + Q * Q * variance;
+      rating.glicko += Q / precision * impact;
+      rating.deviation = Math.max(MIN_DEVIATION, Math.sqrt(1 / precision));
+    }
+  }
+
+  /**
+   * Returns the Elo rating.
+   *
+   * @return the Elo rating
+   */
+  public double getElo() {
+    return elo;
+  }
+
+  /**
+   * Returns the Glicko rating.
+   *
+   * @return the Glicko rating
+   */
+  public double getGlicko() {
+    return glicko;
+  }
+
+  /**
+   * Returns the Glicko rating deviation.
+   *
+   * @return the rating deviation
+   */
+  public double getDeviation() {
+    return deviation;
+  }
+}
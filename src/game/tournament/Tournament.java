@@ -0,0 +1,313 @@
+package game.tournament;
+
+import game.simulation.GameResult;
+import game.simulation.GameSetup;
+import game.simulation.Policy;
+import game.simulation.Simulator;
+import game.utils.GameUtils;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Ranks policies by playing them against each other on every seat of the board. Round robin
+ * tournaments cycle through every group of entrants in every seat order; Swiss tournaments group
+ * entrants of similar rating each round and play every seat order within a group.
+ *
+ * <p>Matches run on a work-stealing pool, but results are rated in match order and every match
+ * seed is derived from its number, so a tournament gives the same standings on any number of
+ * threads. Standings are rewritten every STANDINGS_INTERVAL matches while the tournament runs.
+ */
+public class Tournament {
+
+  public static final String ROUND_ROBIN = "roundrobin";
+  public static final String SWISS = "swiss";
+  private static final int STANDINGS_INTERVAL = 500;
+  private static final int MATCHES_IN_FLIGHT_PER_THREAD = 32;
+
+  private final GameSetup setup;
+  private final List<Entrant> entrants;
+  private final ForkJoinPool pool;
+  private final int threads;
+  private final long firstSeed;
+  private final Path standingsPath;
+  private long played;
+  private long total;
+
+  /**
+   * Constructs a Tournament.
+   *
+   * @param setup         the board every match is played on
+   * @param entrants      the entrants, at least one per dragon
+   * @param threads       the number of matches played at once
+   * @param firstSeed     the seed of the first match
+   * @param standingsPath the file the standings are written to
+   */
+  public Tournament(GameSetup setup, List<Entrant> entrants, int threads, long firstSeed,
+      Path standingsPath) {
+    if (entrants.size() < setup.getNumDragons()) {
+      throw new IllegalArgumentException("Need at least " + setup.getNumDragons() + " entrants");
+    }
+    this.setup = setup;
+    this.entrants = List.copyOf(entrants);
+    this.threads = threads;
+    this.pool = new ForkJoinPool(threads);
+    this.firstSeed = firstSeed;
+    this.standingsPath = standingsPath;
+  }
+
+  /**
+   * Runs a tournament. Arguments are the format (roundrobin or swiss), the number of matches, a
+   * comma separated list of policies, and optionally the number of threads, the standings file,
+   * the config path, the number of players and the first seed.
+   *
+   * @param args command line arguments
+   * @throws IOException if the config or standings file cannot be accessed
+   */
+  public static void main(String[] args) throws IOException {
+    String format = args[0];
+    long matches = Long.parseLong(args[1]);
+    String[] policyNames = args[2].split(",");
+    int threads = args.length > 3 ? Integer.parseInt(args[3])
+        : Runtime.getRuntime().availableProcessors();
+    Path standingsPath = Paths.get(args.length > 4 ? args[4] : "standings.txt");
+    String configPath = args.length > 5 ? args[5] : GameUtils.CONFIG_PATH;
+    int numPlayers = args.length > 6 ? Integer.parseInt(args[6]) : 4;
+    long firstSeed = args.length > 7 ? Long.parseLong(args[7]) : 0;
+
+    List<Entrant> entrants = new ArrayList<>();
+    for (String policyName : policyNames) {
+      long sameName = entrants.stream()
+          .filter(entrant -> entrant.getPolicy().getName().equals(policyName)).count();
+      String name = sameName == 0 ? policyName : policyName + "#" + (sameName + 1);
+      entrants.add(new Entrant(name, Policy.forName(policyName)));
+    }
+    Tournament tournament = new Tournament(GameSetup.load(configPath, numPlayers), entrants,
+        threads, firstSeed, standingsPath);
+    long start = System.nanoTime();
+    switch (format) {
+      case ROUND_ROBIN -> tournament.runRoundRobin(matches);
+      case SWISS -> tournament.runSwiss(matches);
+      default -> throw new IllegalArgumentException("Unknown format: " + format);
+    }
+    System.out.print(tournament.formatStandings());
+    System.out.printf("%d matches in %.1f s%n", matches, (System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * Plays matches cycling through every group of entrants in every seat order.
+   *
+   * @param matches the number of matches
+   * @throws IOException if the standings cannot be written
+   */
+  public void runRoundRobin(long matches) throws IOException {
+    List<int[]> cycle = new ArrayList<>();
+    int[] group = new int[setup.getNumDragons()];
+    addCombinations(group, 0, 0, cycle);
+    List<int[]> schedule = new ArrayList<>();
+    for (long match = 0; match < matches; match++) {
+      schedule.add(cycle.get((int) (match % cycle.size())));
+    }
+    total = matches;
+    play(schedule);
+    writeStandings();
+  }
+
+  /**
+   * Plays Swiss rounds until the number of matches is reached. Each round, entrants are sorted by
+   * Elo and grouped with their neighbours; when they do not divide into groups, the lowest ranked
+   * entrants with the fewest byes sit the round out.
+   *
+   * @param matches the number of matches
+   * @throws IOException if the standings cannot be written
+   */
+  public void runSwiss(long matches) throws IOException {
+    int players = setup.getNumDragons();
+    total = matches;
+    while (played < matches) {
+      List<Entrant> ranked = new ArrayList<>(entrants);
+      ranked.sort(Comparator.comparingDouble((Entrant entrant) -> -entrant.getRating().getElo())
+          .thenComparing(Entrant::getName));
+      List<Entrant> byes = new ArrayList<>(ranked);
+      byes.sort(Comparator.comparingInt(Entrant::getByes)
+          .thenComparing(entrant -> -ranked.indexOf(entrant)));
+      byes = byes.subList(0, ranked.size() % players);
+      ranked.removeAll(byes);
+      byes.forEach(Entrant::recordBye);
+
+      List<int[]> round = new ArrayList<>();
+      for (int start = 0; start < ranked.size() && played + round.size() < matches;
+          start += players) {
+        int[] group = new int[players];
+        for (int seat = 0; seat < players; seat++) {
+          group[seat] = entrants.indexOf(ranked.get(start + seat));
+        }
+        List<int[]> orders = new ArrayList<>();
+        addPermutations(group, 0, orders);
+        for (int[] order : orders) {
+          if (played + round.size() < matches) {
+            round.add(order);
+          }
+        }
+      }
+      play(round);
+    }
+    writeStandings();
+  }
+
+  /**
+   * Adds every seat order of every group of entrants to the schedule of one round robin cycle.
+   *
+   * @param group    the entrants chosen so far
+   * @param size     the number of entrants chosen so far
+   * @param next     the lowest entrant that may be chosen next
+   * @param schedule the list receiving the seatings
+   */
+  private void addCombinations(int[] group, int size, int next, List<int[]> schedule) {
+    if (size == group.length) {
+      addPermutations(group.clone(), 0, schedule);
+      return;
+    }
+    for (int entrant = next; entrant < entrants.size(); entrant++) {
+      group[size] = entrant;
+      addCombinations(group, size + 1, entrant + 1, schedule);
+    }
+  }
+
+  /**
+   * Adds every ordering of a group of entrants.
+   *
+   * @param seats the entrants, permuted in place
+   * @param fixed the number of leading seats already decided
+   * @param out   the list receiving the orderings
+   */
+  private static void addPermutations(int[] seats, int fixed, List<int[]> out) {
+    if (fixed == seats.length) {
+      out.add(seats.clone());
+      return;
+    }
+    for (int i = fixed; i < seats.length; i++) {
+      swap(seats, fixed, i);
+      addPermutations(seats, fixed + 1, out);
+      swap(seats, fixed, i);
+    }
+  }
+
+  /**
+   * Swaps two elements of an array.
+   *
+   * @param array the array
+   * @param i     the first index
+   * @param j     the second index
+   */
+  private static void swap(int[] array, int i, int j) {
+    int tmp = array[i];
+    array[i] = array[j];
+    array[j] = tmp;
+  }
+
+  /**
+   * Plays a list of matches on the pool, keeping a bounded number in flight, and rates each
+   * result in schedule order as soon as it and every match before it are done.
+   *
+   * @param schedule the entrant seated on each dragon of each match
+   * @throws IOException if the standings cannot be written
+   */
+  private void play(List<int[]> schedule) throws IOException {
+    Deque<CompletableFuture<GameResult>> inFlight = new ArrayDeque<>();
+    Deque<int[]> seatings = new ArrayDeque<>();
+    int next = 0;
+    while (next < schedule.size() || !inFlight.isEmpty()) {
+      while (next < schedule.size() && inFlight.size() < threads * MATCHES_IN_FLIGHT_PER_THREAD) {
+        int[] seating = schedule.get(next);
+        // matches before this one are either rated or in flight
+        long seed = firstSeed + played + inFlight.size();
+        inFlight.add(CompletableFuture.supplyAsync(() -> playMatch(seating, seed), pool));
+        seatings.add(seating);
+        next++;
+      }
+      rate(seatings.poll(), inFlight.poll().join());
+    }
+  }
+
+  /**
+   * Plays one match.
+   *
+   * @param seating the entrant seated on each dragon
+   * @param seed    the seed of the match
+   * @return the result
+   */
+  private GameResult playMatch(int[] seating, long seed) {
+    Policy[] policies = new Policy[seating.length];
+    for (int dragon = 0; dragon < seating.length; dragon++) {
+      policies[dragon] = entrants.get(seating[dragon]).getPolicy();
+    }
+    return new Simulator(setup, policies, Simulator.DEFAULT_MAX_TURNS).play(seed);
+  }
+
+  /**
+   * Applies the result of a match to the ratings and records of its entrants.
+   *
+   * @param seating the entrant seated on each dragon
+   * @param result  the result of the match
+   * @throws IOException if the standings cannot be written
+   */
+  private void rate(int[] seating, GameResult result) throws IOException {
+    Rating[] ratings = new Rating[seating.length];
+    for (int dragon = 0; dragon < seating.length; dragon++) {
+      Entrant entrant = entrants.get(seating[dragon]);
+      ratings[dragon] = entrant.getRating();
+      entrant.record(result.getWinner() == dragon, result.getWinner() == -1);
+    }
+    Rating.update(ratings, result.getWinner());
+    played++;
+    if (played % STANDINGS_INTERVAL == 0) {
+      writeStandings();
+    }
+  }
+
+  /**
+   * Replaces the standings file with the current standings.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  private void writeStandings() throws IOException {
+    Path temp = standingsPath.resolveSibling(standingsPath.getFileName() + ".tmp");
+    Files.writeString(temp, formatStandings());
+    Files.move(temp, standingsPath, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Formats the standings as a table sorted by Elo.
+   *
+   * @return the standings
+   */
+  public String formatStandings() {
+    List<Entrant> ranked = new ArrayList<>(entrants);
+    ranked.sort(Comparator.comparingDouble((Entrant entrant) -> -entrant.getRating().getElo())
+        .thenComparing(Entrant::getName));
+    StringBuilder table = new StringBuilder();
+    table.append(String.format("Standings after %d of %d matches%n", played, total));
+    table.append(String.format("%-4s %-12s %7s %7s %5s %7s %7s %6s %6s%n", "rank", "entrant",
+        "elo", "glicko", "rd", "games", "wins", "draws", "win%"));
+    for (int i = 0; i < ranked.size(); i++) {
+      Entrant entrant = ranked.get(i);
+      Rating rating = entrant.getRating();
+      table.append(String.format("%-4d %-12s %7.1f %7.1f %5.1f %7d %7d %6d %5.1f%%%n", i + 1,
+          entrant.getName(), rating.getElo(), rating.getGlicko(), rating.getDeviation(),
+          entrant.getGames(), entrant.getWins(), entrant.getDraws(),
+          entrant.getGames() == 0 ? 0 : 100.0 * entrant.getWins() / entrant.getGames()));
+    }
+    return table.toString();
+  }
+}
@@ -1,18 +1,27 @@
 package game.utils;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import game.engine.Autosaver;
+import game.engine.BinarySaveFormat;
+import game.engine.BlockCodec;
+import game.engine.SaveCatalog;
+import game.engine.SaveReader;
+import game.engine.SaveWriter;
 import game.engine.SavedState;
 import java.awt.Color;
 import java.awt.Dimension;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
@@ -26,12 +35,33 @@ public class GameUtils {
   public static final Integer GAMEFRAME_SIZE = 800;
   public static final String SYSTEM_SAVE_PATH = System.getProperty("user.home") + File.separator
       + "SaveFilesFieryDragons/TestDifferentBoardConfig.json";
+  public static final String FINISHED_GAMES_PATH = System.getProperty("user.home")
+      + File.separator + "SaveFilesFieryDragons" + File.separator + "finished";
+  public static final String CORPUS_PATH = System.getProperty("user.home") + File.separator
+      + "SaveFilesFieryDragons" + File.separator + "corpus.fdc";
+  public static final String HEATMAP_PATH = System.getProperty("user.home") + File.separator
+      + "SaveFilesFieryDragons" + File.separator + "heatmaps";
+  public static final String TABLEBASE_PATH = System.getProperty("user.home") + File.separator
+      + "SaveFilesFieryDragons" + File.separator + "tablebases";
+  public static final String THUMBNAIL_PATH = System.getProperty("user.home") + File.separator
+      + "SaveFilesFieryDragons" + File.separator + "thumbnails";
+  // set with -Dfierydragons.debug=true, shows what face down chit cards would do
+  public static final boolean DEBUG_MODE = Boolean.getBoolean("fierydragons.debug");
   public static final String CONFIG_PATH = "/configFiles/defaultConfig.json";
   public static final String DIFF_CONFIG_PATH = "/configFiles/TestDifferentBoardConfig.json";
+  public static final String BINARY_FILE_EXTENSION = ".fds";
+  public static final int AUTOSAVE_MILLIS = 30_000;
+  public static final String SAVE_DIRECTORY =
+      System.getProperty("user.home") + File.separator + "SaveFilesFieryDragons";
+  // how long moves may wait to be forced to disk together, 0 forces every move on its own
+  public static final long MOVE_LOG_FSYNC_MILLIS = Long.getLong("fierydragons.moveLogFsyncMillis",
+      100);
+  // none, fast or high; saves and move logs of either codec load whatever this is set to
+  public static final byte SAVE_CODEC = parseSaveCodec(System.getProperty(
+      "fierydragons.saveCodec", "fast"));
   private static final Map<Color, String> colorToStringMap = new HashMap<>();
   private static final Map<String, Color> stringToColorMap = new HashMap<>();
-  private static final String BASE_SAVE_PATH =
-      System.getProperty("user.home") + File.separator + "SaveFilesFieryDragons/game";
+  private static final String BASE_SAVE_PATH = SAVE_DIRECTORY + File.separator + "game";
   private static final String FILE_EXTENSION = ".json";
   private static final String COLOR_WHITE = "White";
   private static final String COLOR_ORANGE = "Orange";
@@ -86,6 +116,41 @@ public class GameUtils {
    * @return save path string
    */
   public static String getSavePath() {
+    return getSavePath(FILE_EXTENSION);
+  }
+
+  /**
+   * Gets the save path for the current save file in the binary format.
+   *
+   * @return save path string
+   */
+  public static String getBinarySavePath() {
+    return getSavePath(BINARY_FILE_EXTENSION);
+  }
+
+  /**
+   * Parses the codec saves are written with, falling back to the fast codec for an unknown name
+   * rather than failing to load the class.
+   *
+   * @param name none, fast or high
+   * @return the codec
+   */
+  private static byte parseSaveCodec(String name) {
+    try {
+      return BlockCodec.parse(name);
+    } catch (IllegalArgumentException e) {
+      System.out.println("Unknown save codec " + name + ", using fast instead");
+      return BlockCodec.FAST;
+    }
+  }
+
+  /**
+   * Gets the save path for the current save file with an extension.
+   *
+   * @param extension the file extension, including the dot
+   * @return save path string
+   */
+  private static String getSavePath(String extension) {
     // Get the current date and time
     LocalDateTime now = LocalDateTime.now();
 
@@ -94,30 +159,81 @@ public class GameUtils {
 
     // Format the date and time as a string
     String formattedDateTime = now.format(formatter);
-    return BASE_SAVE_PATH + formattedDateTime + FILE_EXTENSION;
+    return BASE_SAVE_PATH + formattedDateTime + extension;
   }
 
   /**
-   * Initialises the SavedState object by reading a JSON file from the specified path.
+   * Initialises the SavedState object by reading a save file from the specified path. Binary
+   * saves are recognised by their magic, anything else is parsed as JSON.
    *
-   * @param path the path to the JSON file containing the saved state.
-   * @return the SavedState object parsed from the JSON file, or null if an error occurs.
+   * @param path the path to the binary or JSON file containing the saved state.
+   * @return the SavedState object parsed from the file, or null if an error occurs.
    */
   public static SavedState initialiseSavedState(String path) {
-    Gson gson = new Gson();
-    // Load JSON file from resources
-    try (InputStream inputStream = new FileInputStream(path);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-      // Parse JSON using Gson
-      return gson.fromJson(reader, SavedState.class);
-    } catch (FileNotFoundException e) {
+    try {
+      return readSavedState(Paths.get(path));
+    } catch (NoSuchFileException e) {
       System.out.println("File not found at path: " + path);
     } catch (IOException e) {
-      System.out.println("Error reading JSON file: " + e.getMessage());
+      System.out.println("Error reading save file: " + e.getMessage());
     }
     return null;
   }
 
+  /**
+   * Reads a save file. Binary saves are recognised by the magic at its start, anything else is
+   * streamed into the JSON reader without first reading the whole file into memory.
+   *
+   * @param path the binary or JSON file
+   * @return the SavedState object read from it
+   * @throws IOException if the file cannot be read or is not a valid save
+   */
+  public static SavedState readSavedState(Path path) throws IOException {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+      in.mark(Integer.BYTES);
+      byte[] magic = in.readNBytes(Integer.BYTES);
+      in.reset();
+      if (BinarySaveFormat.isBinary(magic)) {
+        return BinarySaveFormat.read(in.readAllBytes());
+      }
+      // json saves of any version are upgraded to the current schema as they are read
+      return SaveReader.read(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Parses the contents of a save file. Binary saves are recognised by their magic, anything else
+   * is parsed as JSON.
+   *
+   * @param bytes the contents of the binary or JSON file
+   * @return the SavedState object parsed from them
+   * @throws IOException if the contents are not a valid save
+   */
+  public static SavedState parseSavedState(byte[] bytes) throws IOException {
+    if (BinarySaveFormat.isBinary(bytes)) {
+      return BinarySaveFormat.read(bytes);
+    }
+    // json saves of any version are upgraded to the current schema as they are read
+    return SaveReader.read(new InputStreamReader(new ByteArrayInputStream(bytes),
+        StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Writes the given SavedState object to a binary file at the specified save path.
+   *
+   * @param savedState the SavedState object to be encoded and saved.
+   * @param savePath   the path where the binary file will be saved.
+   */
+  public static void writeBinaryFile(SavedState savedState, String savePath) {
+    if (savedState != null) {
+      try {
+        Autosaver.write(savedState, Paths.get(savePath), SAVE_CODEC);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
   /**
    * Writes the given SavedState object to a JSON file at the specified save path.
    *
@@ -126,17 +242,21 @@ public class GameUtils {
    */
   public static void writeJsonFile(SavedState savedState, String savePath) {
     if (savedState != null) {
-      Gson gson = new GsonBuilder().setPrettyPrinting().create();
-
       // Create the directories if they do not exist
       File file = new File(savePath);
       file.getParentFile().mkdirs();
 
-      // Serialize the Config object to JSON and save to the resource directory
-      try (FileWriter writer = new FileWriter(file)) {
-        gson.toJson(savedState, writer);
+      // write it in the current schema, whatever version it was read from
+      try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+        SaveWriter.write(savedState, writer);
       } catch (IOException e) {
         e.printStackTrace();
+        return;
+      }
+      try {
+        SaveCatalog.put(file.toPath(), savedState);
+      } catch (IOException | RuntimeException e) {
+        System.out.println("Error updating save catalog: " + e.getMessage());
       }
     }
   }
@@ -0,0 +1,220 @@
+package game.view;
+
+import game.engine.SavedState;
+import game.engine.SavedState.CardRecord;
+import game.engine.SavedState.ChitRecord;
+import game.engine.SavedState.DragonRecord;
+import game.simulation.GameSetup;
+import game.utils.GameUtils;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Draws a small picture of a saved game straight from its SavedState, without building squares,
+ * chit cards or any other Swing component of the board. The squares run clockwise around the edge
+ * from the top left corner as on the board, each in the colour of its animal, with the caves just
+ * outside them in the colour of the dragon they belong to. Dragons are discs on their squares, the
+ * chit cards sit in a grid in the middle with those flipped this turn showing their animal, and the
+ * frame is in the colour of the dragon whose turn it is.
+ */
+public final class BoardThumbnail {
+
+  private static final Color BACKGROUND = new Color(60, 40, 35);
+  private static final Color FACE_DOWN = new Color(110, 110, 110);
+  private static final Color EMPTY_CAVE = new Color(150, 150, 150);
+  // indexed by GameSetup type code
+  private static final Color[] TYPE_COLOURS = {new Color(220, 80, 40), new Color(240, 200, 60),
+      new Color(130, 80, 170), new Color(60, 150, 70), new Color(20, 20, 20),
+      new Color(60, 190, 210)};
+
+  /**
+   * Private constructor to prevent instantiation of the BoardThumbnail class.
+   */
+  private BoardThumbnail() {
+    throw new UnsupportedOperationException("Utility class should not be instantiated");
+  }
+
+  /**
+   * Draws a saved game.
+   *
+   * @param savedState the saved game
+   * @param size       the width and height of the picture in pixels
+   * @return the picture
+   */
+  public static BufferedImage render(SavedState savedState, int size) {
+    BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setColor(BACKGROUND);
+      g.fillRect(0, 0, size, size);
+
+      List<CardRecord> cards = savedState.getVolcanoCards();
+      int[] firstSquare = new int[cards.size() + 1];
+      for (int i = 0; i < cards.size(); i++) {
+        firstSquare[i + 1] = firstSquare[i] + cards.get(i).squares().size();
+      }
+      int numSquares = Math.max(1, firstSquare[cards.size()]);
+
+      // the ring of squares, inset to leave room for the caves outside it
+      double margin = size / 8.0;
+      double side = size - 2 * margin;
+      double cell = Math.max(2, Math.min(4 * side / numSquares, size / 8.0));
+      for (int i = 0; i < cards.size(); i++) {
+        List<String> squares = cards.get(i).squares();
+        for (int j = 0; j < squares.size(); j++) {
+          double[] at = ringPoint(firstSquare[i] + j, numSquares, margin, side);
+          g.setColor(typeColour(squares.get(j)));
+          g.fillRect((int) (at[0] - cell / 2), (int) (at[1] - cell / 2), (int) cell, (int) cell);
+        }
+      }
+
+      // caves, in the colour of the dragon starting from them
+      List<DragonRecord> dragons = savedState.getDragons();
+      double[][] caves = new double[cards.size()][];
+      for (int i = 0; i < cards.size(); i++) {
+        if (cards.get(i).cave() == null) {
+          continue;
+        }
+        double[] at = ringPoint(firstSquare[i] + cards.get(i).cave().index(), numSquares, margin,
+            side);
+        caves[i] = outside(at, size, margin * 0.6);
+        g.setColor(EMPTY_CAVE);
+        for (DragonRecord dragon : dragons) {
+          if (dragon.caveCard() == i) {
+            g.setColor(GameUtils.getColorFromName(dragon.colour()));
+          }
+        }
+        fillDisc(g, caves[i], margin * 0.7);
+      }
+
+      // dragons, on their square or in the cave they are in
+      g.setStroke(new BasicStroke(Math.max(1f, size / 100f)));
+      for (DragonRecord dragon : dragons) {
+        if (dragon.card() < 0 || dragon.card() >= cards.size()) {
+          continue;
+        }
+        double[] at = dragon.square() < 0 ? caves[dragon.card()]
+            : ringPoint(firstSquare[dragon.card()] + dragon.square(), numSquares, margin, side);
+        if (at != null) {
+          double diameter = Math.max(cell, margin * 0.5) * 0.9;
+          g.setColor(GameUtils.getColorFromName(dragon.colour()));
+          fillDisc(g, at, diameter);
+          g.setColor(Color.BLACK);
+          g.drawOval((int) (at[0] - diameter / 2), (int) (at[1] - diameter / 2), (int) diameter,
+              (int) diameter);
+        }
+      }
+
+      drawChitCards(g, savedState, margin + cell, size - 2 * (margin + cell));
+
+      int current = savedState.getCurrentDragon();
+      if (current >= 0 && current < dragons.size()) {
+        float frame = Math.max(2f, size / 40f);
+        g.setStroke(new BasicStroke(frame));
+        g.setColor(GameUtils.getColorFromName(dragons.get(current).colour()));
+        g.drawRect((int) (frame / 2), (int) (frame / 2), (int) (size - frame),
+            (int) (size - frame));
+      }
+    } finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  /**
+   * Draws the chit cards in a grid, face down unless flipped this turn.
+   *
+   * @param g          the graphics of the picture
+   * @param savedState the saved game
+   * @param origin     the left and top edge of the grid
+   * @param extent     the width and height of the grid
+   */
+  private static void drawChitCards(Graphics2D g, SavedState savedState, double origin,
+      double extent) {
+    List<ChitRecord> chits = savedState.getChitCards();
+    if (chits.isEmpty() || extent <= 0) {
+      return;
+    }
+    Set<Integer> flipped = new HashSet<>(savedState.getFlippedChitCards());
+    int columns = (int) Math.ceil(Math.sqrt(chits.size()));
+    double pitch = extent / columns;
+    int chit = (int) Math.max(1, pitch * 0.8);
+    for (int i = 0; i < chits.size(); i++) {
+      g.setColor(flipped.contains(i) ? typeColour(chits.get(i).type()) : FACE_DOWN);
+      g.fillOval((int) (origin + (i % columns) * pitch), (int) (origin + (i / columns) * pitch),
+          chit, chit);
+    }
+  }
+
+  /**
+   * Returns the centre of a square on the ring, going clockwise from the top left corner.
+   *
+   * @param square     the index of the square on the whole ring
+   * @param numSquares the number of squares on the ring
+   * @param margin     the inset of the ring from the edge of the picture
+   * @param side       the length of a side of the ring
+   * @return the x and y of its centre
+   */
+  private static double[] ringPoint(int square, int numSquares, double margin, double side) {
+    double along = (square + 0.5) / numSquares * 4 * side;
+    int edge = (int) Math.min(3, along / side);
+    double offset = along - edge * side;
+    return switch (edge) {
+      case 0 -> new double[]{margin + offset, margin};
+      case 1 -> new double[]{margin + side, margin + offset};
+      case 2 -> new double[]{margin + side - offset, margin + side};
+      default -> new double[]{margin, margin + side - offset};
+    };
+  }
+
+  /**
+   * Moves a point of the ring outwards, away from the middle of the picture.
+   *
+   * @param at       the point
+   * @param size     the width and height of the picture
+   * @param distance how far to move it
+   * @return the moved point
+   */
+  private static double[] outside(double[] at, int size, double distance) {
+    double dx = at[0] - size / 2.0;
+    double dy = at[1] - size / 2.0;
+    // straight out through the nearest edge of the ring
+    if (Math.abs(dx) >= Math.abs(dy)) {
+      return new double[]{at[0] + Math.signum(dx) * distance, at[1]};
+    }
+    return new double[]{at[0], at[1] + Math.signum(dy) * distance};
+  }
+
+  /**
+   * Fills a disc.
+   *
+   * @param g        the graphics of the picture
+   * @param at       its centre
+   * @param diameter its diameter
+   */
+  private static void fillDisc(Graphics2D g, double[] at, double diameter) {
+    g.fillOval((int) (at[0] - diameter / 2), (int) (at[1] - diameter / 2), (int) diameter,
+        (int) diameter);
+  }
+
+  /**
+   * Returns the colour of a square or chit card type.
+   *
+   * @param type the type name, eg: Spider
+   * @return its colour, or the face down colour for an unknown type
+   */
+  private static Color typeColour(String type) {
+    try {
+      return TYPE_COLOURS[GameSetup.typeOf(type)];
+    } catch (RuntimeException e) {
+      return FACE_DOWN;
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package game.view;
 
 import game.chitcards.ChitCard;
+import game.simulation.SquareHeatmap;
+import game.tiles.Square;
 import game.tiles.VolcanoCard;
 import game.utils.GameUtils;
 import java.awt.BorderLayout;
@@ -17,6 +19,7 @@ import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JToggleButton;
 
 /**
  * Represents the game board view, containing chit cards and volcano cards. It displays chit cards
@@ -27,11 +30,14 @@ public class GameBoard {
   private static final String TIMER_TEXT = "Time: ";
   private static final String PROMPT_TEXT = "It's the turn of the player with color: ";
   private static final String WINNER_TEXT = "The winner is the player with color: ";
+  private static final String WIN_CHANCE_TEXT = "Win chances:";
   private static final Font TIMER_FONT = new Font("Times New Roman", Font.BOLD, 25);
   private static final Font MESSAGE_FONT = new Font("Times New Roman", Font.BOLD, 25);
   private static final Font WIN_MESSAGE_FONT = new Font("Times New Roman", Font.BOLD, 18);
+  private static final Font WIN_CHANCE_FONT = new Font("Times New Roman", Font.BOLD, 16);
   private static final Color TIMER_COLOR = Color.RED;
   private static final Color WIN_MESSAGE_COLOR = Color.BLACK;
+  private static final int HEATMAP_MAX_ALPHA = 170;
 
   private final List<ChitCard> chitCards;
   private final List<VolcanoCard> volcanoCards;
@@ -39,7 +45,10 @@ public class GameBoard {
   private final JPanel messagePanel; // Panel to display the prompt message and timer
   private final JLabel messageLabel; // Label to display the text in the message panel
   private final JLabel timerLabel; // Label to display the timer
+  private final JLabel winChanceLabel; // Label to display the estimated win chances
+  private final JLabel previewLabel; // Label to display the move preview of a chit card
   private final JButton saveGameButton; // Save game button
+  private final JToggleButton heatmapButton; // Shows or hides the heatmap overlay
 
   /**
    * Constructs a GameBoard with the specified chit cards and volcano cards.
@@ -57,12 +66,19 @@ public class GameBoard {
     this.messagePanel = new JPanel();
     this.messageLabel = new JLabel("");
     this.timerLabel = new JLabel("Time: 30"); // Initialize with default time
+    this.winChanceLabel = new JLabel("");
+    winChanceLabel.setFont(WIN_CHANCE_FONT);
+    this.previewLabel = new JLabel("");
+    previewLabel.setFont(WIN_CHANCE_FONT);
     setupTimerLabel();
     setupMessagePanel();
     this.saveGameButton = new JButton("Save & Exit");
     saveGameButton.setFont(new Font("Arial", Font.BOLD, 20));
     saveGameButton.setPreferredSize(new Dimension(140, 40));
     saveGameButton.addActionListener(saveGameListener);
+    this.heatmapButton = new JToggleButton("Heatmap");
+    heatmapButton.setFont(new Font("Arial", Font.BOLD, 14));
+    heatmapButton.setPreferredSize(new Dimension(140, 30));
     initialiseBoard(strategy);
   }
 
@@ -86,6 +102,62 @@ public class GameBoard {
     return saveGameButton;
   }
 
+  /**
+   * Returns the button toggling the heatmap overlay.
+   *
+   * @return The heatmap button.
+   */
+  public JToggleButton getHeatmapButton() {
+    return heatmapButton;
+  }
+
+  /**
+   * Colours every square and cave by how often simulated dragons landed on it, from clear for the
+   * least visited to deep red for the most, and shows the counts as tool tips. Squares are matched
+   * to heatmap square ids in the same order as GameSetup numbers them.
+   *
+   * @param heatmap The heatmap of the board's config, or null to remove the overlay.
+   */
+  public void showHeatmap(SquareHeatmap heatmap) {
+    int totalSquares = 0;
+    for (VolcanoCard card : volcanoCards) {
+      totalSquares += card.getNumSquares();
+    }
+    long max = heatmap == null ? 0 : Math.max(1, heatmap.max(SquareHeatmap.VISITS));
+    int offset = 0;
+    for (int card = 0; card < volcanoCards.size(); card++) {
+      VolcanoCard volcanoCard = volcanoCards.get(card);
+      for (int index = 0; index < volcanoCard.getNumSquares(); index++) {
+        paintHeat(volcanoCard.getSquare(index), heatmap, offset + index, max);
+      }
+      if (volcanoCard.getCave() != null) {
+        paintHeat(volcanoCard.getCave(), heatmap, totalSquares + card, max);
+      }
+      offset += volcanoCard.getNumSquares();
+    }
+  }
+
+  /**
+   * Colours one square by its heatmap counts.
+   *
+   * @param square  The square or cave.
+   * @param heatmap The heatmap, or null to remove the overlay.
+   * @param id      The square id in the heatmap.
+   * @param max     The largest visit count on the board.
+   */
+  private void paintHeat(Square square, SquareHeatmap heatmap, int id, long max) {
+    if (heatmap == null || id >= heatmap.getNumSquares()) {
+      square.setOverlay(null);
+      square.getPanel().setToolTipText(null);
+      return;
+    }
+    long visits = heatmap.get(id, SquareHeatmap.VISITS);
+    int alpha = (int) (HEATMAP_MAX_ALPHA * visits / max);
+    square.setOverlay(new Color(255, 0, 0, alpha));
+    square.getPanel().setToolTipText(String.format("visits %d, blocked %d, swaps %d", visits,
+        heatmap.get(id, SquareHeatmap.BLOCKED), heatmap.get(id, SquareHeatmap.SWAPS)));
+  }
+
   /**
    * Sets up the timer label with the specified font and color.
    */
@@ -100,6 +172,8 @@ public class GameBoard {
   private void setupMessagePanel() {
     messagePanel.add(messageLabel);
     messagePanel.add(timerLabel);
+    messagePanel.add(winChanceLabel);
+    messagePanel.add(previewLabel);
   }
 
   /**
@@ -144,6 +218,30 @@ public class GameBoard {
     panel.repaint();
   }
 
+  /**
+   * Shows the estimated chance of every player winning the game.
+   *
+   * @param colours The color of every player, in turn order.
+   * @param chances The win chance of every player, in the same order.
+   */
+  public void showWinChances(List<Color> colours, double[] chances) {
+    StringBuilder text = new StringBuilder(WIN_CHANCE_TEXT);
+    for (int i = 0; i < chances.length; i++) {
+      text.append(String.format("  %s %.0f%%", GameUtils.colorToString(colours.get(i)),
+          chances[i] * 100));
+    }
+    winChanceLabel.setText(text.toString());
+  }
+
+  /**
+   * Shows what the chit card under the mouse would do.
+   *
+   * @param text The preview, or an empty string to remove it.
+   */
+  public void showMovePreview(String text) {
+    previewLabel.setText(text);
+  }
+
   /**
    * Displays a popup message indicating the winner with the specified color.
    *
@@ -4,15 +4,23 @@ import static game.utils.GameUtils.GAMEFRAME_SIZE;
 
 import game.chitcards.ChitCard;
 import game.engine.GameEngine;
-import game.engine.SavedState;
+import game.simulation.SquareHeatmap;
 import game.tiles.VolcanoCard;
+import game.utils.GameUtils;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JToggleButton;
 import javax.swing.Timer;
 
 /**
@@ -27,18 +35,27 @@ public class GameFrame extends JFrame {
 
   private SetupMenu setupMenu;
   private GameBoard gameBoard;
+  private MovePreview movePreview;
   private JPanel glassPane;
   private Timer turnTimer;
   private int timeRemaining;
+  private long turnDeadline;
 
   /**
-   * Constructs a GameFrame with default properties. Sets up the frame's title, size, and default
-   * close operation, and initializes the UI.
+   * Constructs a GameFrame with default properties. Sets up the frame's title, size, and close
+   * operation, and initializes the UI. Closing the window saves a game in progress like the save
+   * button does, exiting once the save is on disk.
    */
   public GameFrame() {
     setTitle("Fiery Dragons");
     setSize(GAMEFRAME_SIZE, GAMEFRAME_SIZE);
-    setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+    addWindowListener(new WindowAdapter() {
+      @Override
+      public void windowClosing(WindowEvent e) {
+        saveGame();
+      }
+    });
     setResizable(false);
     showSetupMenu();
   }
@@ -48,6 +65,8 @@ public class GameFrame extends JFrame {
    */
   public void showSetupMenu() {
     ActionListener startGameListener = e -> {
+      GameEngine.getInstance()
+          .setComputerPlayers((Integer) setupMenu.getComputerCount().getSelectedItem());
       if (setupMenu.getSelectedFilePath() != null) {
         dispose();
         GameEngine.getInstance().loadGame(setupMenu.getSelectedFilePath());
@@ -73,6 +92,8 @@ public class GameFrame extends JFrame {
       SetBoardStrategy strategy) {
     updateSize(volcanoCards);
     gameBoard = new GameBoard(chitCards, volcanoCards, strategy, e -> this.saveGame());
+    gameBoard.getHeatmapButton().addActionListener(e -> this.toggleHeatmap());
+    movePreview = new MovePreview(gameBoard);
     switchPanel(gameBoard.getPanel());
     setupGlassPane();
   }
@@ -154,14 +175,27 @@ public class GameFrame extends JFrame {
     validate();
     repaint();
     gameBoard.promptPlayer(colour);
+    updateMovePreview();
     startTimer();
   }
 
+  /**
+   * Works out the move previews of the chit cards for the dragon to move from where it stands.
+   */
+  public void updateMovePreview() {
+    if (movePreview == null) {
+      return;
+    }
+    GameEngine engine = GameEngine.getInstance();
+    movePreview.update(engine.getDragons(), engine.getDragons().indexOf(engine.getCurrentDragon()));
+  }
+
   /**
    * Starts the turn timer.
    */
   private void startTimer() {
     timeRemaining = TURN_TIME_LIMIT;
+    turnDeadline = System.nanoTime() + TURN_TIME_LIMIT * 1_000_000_000L;
     gameBoard.updateTimer(timeRemaining);
 
     if (turnTimer != null) {
@@ -180,6 +214,15 @@ public class GameFrame extends JFrame {
     turnTimer.start();
   }
 
+  /**
+   * Returns when the turn timer of the current turn runs out.
+   *
+   * @return The System.nanoTime at which the turn ends.
+   */
+  public long getTurnDeadline() {
+    return turnDeadline;
+  }
+
   /**
    * Displays a win screen for the player with the specified color.
    *
@@ -192,6 +235,15 @@ public class GameFrame extends JFrame {
     gameBoard.winPopup(colour);
   }
 
+  /**
+   * Returns the game board shown by the frame.
+   *
+   * @return The game board, or null before a game has started.
+   */
+  public GameBoard getGameBoard() {
+    return gameBoard;
+  }
+
   /**
    * Hides the GameFrame by setting its visibility to false.
    */
@@ -200,12 +252,31 @@ public class GameFrame extends JFrame {
   }
 
   /**
-   * Saves the current game state and exits.
+   * Shows the heatmap of the current board's config when the heatmap button is selected, and
+   * removes it otherwise. The heatmap is written by BatchApplication --heatmap.
+   */
+  private void toggleHeatmap() {
+    JToggleButton button = gameBoard.getHeatmapButton();
+    if (!button.isSelected()) {
+      gameBoard.showHeatmap(null);
+      return;
+    }
+    Path file = SquareHeatmap.fileFor(Paths.get(GameUtils.HEATMAP_PATH),
+        GameEngine.getInstance().getConfigHash());
+    try {
+      gameBoard.showHeatmap(SquareHeatmap.read(file));
+    } catch (IOException e) {
+      button.setSelected(false);
+      JOptionPane.showMessageDialog(this, "No heatmap for this board: " + file, "Heatmap",
+          JOptionPane.INFORMATION_MESSAGE);
+    }
+  }
+
+  /**
+   * Saves the current game state and exits once it is written.
    */
   private void saveGame() {
-    SavedState.saveState(this.gameBoard);
-    System.out.println("Game saved!");
     this.dispose();
-    System.exit(0);
+    GameEngine.getInstance().saveAndExit();
   }
 }
@@ -106,6 +106,7 @@ public class LoadSquareBoardStrategy implements SetBoardStrategy {
 
     JPanel empty1 = new JPanel();
     empty1.add(board.getSaveGameButton(), BorderLayout.WEST);
+    empty1.add(board.getHeatmapButton());
 
     // Create an inner top panel for layout adjustments
     JPanel innerTopPanel = new JPanel(new BorderLayout());
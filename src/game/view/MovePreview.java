@@ -0,0 +1,178 @@
+package game.view;
+
+import game.chitcards.ChitCard;
+import game.engine.SavedState;
+import game.entities.Dragon;
+import game.simulation.GameSetup;
+import game.simulation.HeadlessGame;
+import game.tiles.Square;
+import game.tiles.VolcanoCard;
+import game.tiles.VolcanoCardIterator;
+import game.utils.GameUtils;
+import java.awt.Color;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Previews where a chit card would send the dragon whose turn it is while the mouse is over it:
+ * the square it would land on is highlighted, or the message panel says why it would not move.
+ * Flipped chit cards are previewed, and face down ones too in debug mode.
+ *
+ * <p>The previews of every chit card are worked out together with the headless rules whenever the
+ * dragon to move or its square changes, so hovering only looks up a table.
+ */
+public class MovePreview {
+
+  private static final Color HIGHLIGHT = Color.YELLOW;
+  // outcomes on top of the HeadlessGame ones
+  private static final int PASSES_CAVE = 5;
+  private static final int NO_SWAP = 6;
+
+  private final GameBoard board;
+  private final HeadlessGame game;
+  private final HeadlessGame work;
+  private final Map<VolcanoCard, Integer> cardIndex;
+  private final Square[] squares;
+  private final int[] outcomes;
+  private final int[] targets;
+  private Square highlighted;
+
+  /**
+   * Constructs the previews of a board that has just been laid out and starts showing them on
+   * hover.
+   *
+   * @param board The game board.
+   */
+  public MovePreview(GameBoard board) {
+    GameSetup setup = GameSetup.fromSavedState(SavedState.fromBoard(board, 0));
+    this.board = board;
+    this.game = new HeadlessGame(setup, 0);
+    this.work = new HeadlessGame(game);
+    this.cardIndex = new IdentityHashMap<>();
+    this.squares = new Square[setup.getTotalSquares() + setup.getNumCards()];
+    List<VolcanoCard> volcanoCards = board.getVolcanoCards();
+    int offset = 0;
+    for (int card = 0; card < volcanoCards.size(); card++) {
+      VolcanoCard volcanoCard = volcanoCards.get(card);
+      cardIndex.put(volcanoCard, card);
+      for (int index = 0; index < volcanoCard.getNumSquares(); index++) {
+        squares[offset + index] = volcanoCard.getSquare(index);
+      }
+      squares[setup.getTotalSquares() + card] = volcanoCard.getCave();
+      offset += volcanoCard.getNumSquares();
+    }
+    List<ChitCard> chitCards = board.getChitCards();
+    this.outcomes = new int[chitCards.size()];
+    this.targets = new int[chitCards.size()];
+    for (int chit = 0; chit < chitCards.size(); chit++) {
+      ChitCard chitCard = chitCards.get(chit);
+      int index = chit;
+      chitCard.getButton().addMouseListener(new MouseAdapter() {
+        @Override
+        public void mouseEntered(MouseEvent e) {
+          show(chitCard, index);
+        }
+
+        @Override
+        public void mouseExited(MouseEvent e) {
+          clear();
+        }
+      });
+    }
+  }
+
+  /**
+   * Works out the preview of every chit card for a dragon from where the dragons stand now.
+   *
+   * @param dragons The dragons of the game.
+   * @param mover   The index of the dragon to move.
+   */
+  public void update(List<Dragon> dragons, int mover) {
+    clear();
+    int[] cards = new int[dragons.size()];
+    int[] indices = new int[dragons.size()];
+    for (int dragon = 0; dragon < cards.length; dragon++) {
+      VolcanoCardIterator iterator = dragons.get(dragon).getVolcanoCardIterator();
+      cards[dragon] = cardIndex.get(iterator.getCurrentCard());
+      indices[dragon] = iterator.getCurrentIndex();
+    }
+    game.setPositions(cards, indices, mover);
+    for (int chit = 0; chit < outcomes.length; chit++) {
+      preview(chit, mover);
+    }
+  }
+
+  /**
+   * Works out the preview of one chit card, checking the rules in the order
+   * GameEngine.checkValidMove does.
+   *
+   * @param chit  The index of the chit card.
+   * @param mover The index of the dragon to move.
+   */
+  private void preview(int chit, int mover) {
+    byte type = game.getChitType(chit);
+    int moves = game.getChitMoves(chit);
+    int card = game.getDragonCard(mover);
+    int index = game.getDragonIndex(mover);
+    int from = game.getDragonSquare(mover);
+    targets[chit] = -1;
+    if (type == GameSetup.SWAP) {
+      work.copyFrom(game);
+      work.apply(mover, type, moves);
+      int to = work.getDragonSquare(mover);
+      outcomes[chit] = to == from ? NO_SWAP : HeadlessGame.SWAPPED;
+      targets[chit] = to == from ? -1 : to;
+    } else if (type != GameSetup.PIRATE_DRAGON && type != game.animalAt(mover)) {
+      outcomes[chit] = HeadlessGame.NO_MATCH;
+    } else if (game.getOccupant(game.peek(card, index, moves)) != -1) {
+      outcomes[chit] = HeadlessGame.BLOCKED;
+    } else if (game.passesCave(card, index, game.getSetup().getDragonAnimal(mover), moves)) {
+      outcomes[chit] = PASSES_CAVE;
+    } else if (index == -1 && moves < 0) {
+      outcomes[chit] = HeadlessGame.BLOCKED;
+    } else {
+      outcomes[chit] = game.checkMove(mover, moves);
+      targets[chit] = game.peek(card, index, moves);
+    }
+  }
+
+  /**
+   * Shows the preview of a chit card the mouse has entered, if it may be seen.
+   *
+   * @param chitCard The chit card.
+   * @param chit     The index of the chit card.
+   */
+  private void show(ChitCard chitCard, int chit) {
+    clear();
+    if (!chitCard.isFlipped() && !GameUtils.DEBUG_MODE) {
+      return;
+    }
+    if (targets[chit] != -1 && squares[targets[chit]] != null) {
+      highlighted = squares[targets[chit]];
+      highlighted.setHighlight(HIGHLIGHT);
+    }
+    board.showMovePreview(switch (outcomes[chit]) {
+      case HeadlessGame.MOVED -> "Moves here";
+      case HeadlessGame.WON -> "Wins the game";
+      case HeadlessGame.SWAPPED -> "Swaps here";
+      case HeadlessGame.NO_MATCH -> "No match";
+      case HeadlessGame.BLOCKED -> "Blocked";
+      case PASSES_CAVE -> "Passes cave";
+      default -> "Nobody to swap with";
+    });
+  }
+
+  /**
+   * Removes the preview being shown, if any.
+   */
+  private void clear() {
+    if (highlighted != null) {
+      highlighted.setHighlight(null);
+      highlighted = null;
+    }
+    board.showMovePreview("");
+  }
+}
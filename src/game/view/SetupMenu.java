@@ -1,6 +1,9 @@
 package game.view;
 
-import com.google.gson.Gson;
+import game.engine.MoveLog;
+import game.engine.SaveCatalog;
+import game.engine.SaveReader;
+import game.engine.SaveWatcher;
 import game.engine.SavedState;
 import game.utils.GameUtils;
 import java.awt.Color;
@@ -15,16 +18,28 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.filechooser.FileView;
 
 /**
  * Represents the setup menu panel for configuring the game settings. It allows players to select
@@ -35,6 +50,7 @@ public class SetupMenu {
   private static final String BACKGROUND_IMAGE_PATH = "/images/firey_dragons_background.png";
   private static final String TITLE_TEXT = "Firey Dragons";
   private static final String PLAYER_LABEL_TEXT = "Players:";
+  private static final String COMPUTER_LABEL_TEXT = "Computers:";
   private static final String START_BUTTON_TEXT = "Start Game";
 
   private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 50);
@@ -45,6 +61,15 @@ public class SetupMenu {
   private static final Dimension BUTTON_SIZE = new Dimension(640, 50);
   private static final int VERTICAL_STRUT_SIZE = 20;
   private static final Dimension SPACING_SIZE = new Dimension(10, 0);
+  private static final Dimension THUMBNAIL_PANEL_SIZE = new Dimension(
+      ThumbnailCache.SIZE + 20, ThumbnailCache.SIZE + 20);
+
+  // unfinished games are only offered when the game starts, not after every game
+  private static boolean recoveryOffered;
+  // one watcher for the whole session, handed from menu to menu
+  private static SaveWatcher saveWatcher;
+  // board pictures for the load dialog, kept from one opening to the next
+  private static ThumbnailCache thumbnails;
 
   private final JPanel mainPanel;
   private final ImageIcon backgroundImage;
@@ -52,6 +77,11 @@ public class SetupMenu {
   private JButton loadGameButton;
   private JButton clearSelectionButton;
   private JComboBox<Integer> playerCount;
+  private JComboBox<Integer> computerCount;
+  private JComboBox<SaveCatalog.Entry> savedGames;
+  private final DefaultComboBoxModel<SaveCatalog.Entry> savedGamesModel =
+      new DefaultComboBoxModel<>();
+  private boolean updatingSavedGames;
   private String selectedFilePath = null;
   private JLabel selectedFileLabel;
 
@@ -64,6 +94,78 @@ public class SetupMenu {
     backgroundImage = loadImage(BACKGROUND_IMAGE_PATH);
     mainPanel = createMainPanel();
     initialiseMenu(startGameListener);
+    if (!recoveryOffered) {
+      recoveryOffered = true;
+      new Thread(this::findUnfinishedGames, "game-recovery").start();
+    }
+  }
+
+  /**
+   * Looks for games that did not end normally, such as one cut short by a crash, and offers to
+   * recover the latest of them once the menu is on screen. Runs on a background thread.
+   */
+  private void findUnfinishedGames() {
+    List<Path> logs = MoveLog.findUnfinished(Paths.get(GameUtils.SAVE_DIRECTORY));
+    if (!logs.isEmpty()) {
+      SwingUtilities.invokeLater(() -> offerRecovery(logs));
+    }
+  }
+
+  /**
+   * Offers to recover the latest unfinished game from its last autosave and the moves logged after
+   * it, and recovers it on a background thread if accepted.
+   *
+   * @param logs the move logs of the unfinished games, latest first
+   */
+  private void offerRecovery(List<Path> logs) {
+    Path save = MoveLog.saveFor(logs.get(0));
+    int answer = JOptionPane.showConfirmDialog(mainPanel,
+        "The game in " + save.getFileName() + " did not finish. Recover it?",
+        "Recover game", JOptionPane.YES_NO_OPTION);
+    boolean accepted = answer == JOptionPane.YES_OPTION;
+    new Thread(() -> recover(logs, accepted), "game-recovery").start();
+  }
+
+  /**
+   * Recovers the latest unfinished game if accepted and selects it for loading. A game whose log
+   * cannot be read for now keeps it, so that it can be offered again; a log that can never be
+   * replayed is removed, and a declined game and older ones keep their last autosave and lose the
+   * logged moves. Runs on a background thread.
+   *
+   * @param logs     the move logs of the unfinished games, latest first
+   * @param accepted whether the latest game is to be recovered
+   */
+  private void recover(List<Path> logs, boolean accepted) {
+    List<Path> removed = new ArrayList<>(accepted ? logs.subList(1, logs.size()) : logs);
+    if (accepted) {
+      try {
+        File recovered = MoveLog.recover(logs.get(0)).toFile();
+        SwingUtilities.invokeLater(() -> selectFile(recovered));
+      } catch (MoveLog.UnrecoverableLogException e) {
+        removed.add(logs.get(0));
+        showRecoveryFailure(e.getMessage() + "\nIts logged moves are removed.");
+      } catch (IOException e) {
+        showRecoveryFailure(e.getMessage() + "\nIts logged moves are kept to try again next time.");
+      }
+    }
+    for (Path log : removed) {
+      try {
+        Files.deleteIfExists(log);
+      } catch (IOException e) {
+        System.out.println("Error removing move log: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Tells the player on the EDT that the game could not be recovered.
+   *
+   * @param reason why, and what became of its logged moves
+   */
+  private void showRecoveryFailure(String reason) {
+    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(mainPanel,
+        "The game could not be recovered: " + reason, "Recover game",
+        JOptionPane.WARNING_MESSAGE));
   }
 
   /**
@@ -115,6 +217,8 @@ public class SetupMenu {
     loadGameButton.setMaximumSize(new Dimension(640, 50));
     loadGameButton.addActionListener(e -> showFileChooser());
 
+    savedGames = createSavedGamesBox();
+
     // Label to display the selected file
     selectedFileLabel = new JLabel("No save file selected");
     selectedFileLabel.setFont(new Font("Arial", Font.ITALIC, 20));
@@ -136,6 +240,8 @@ public class SetupMenu {
     mainPanel.add(Box.createVerticalStrut(VERTICAL_STRUT_SIZE)); // Space before button
     mainPanel.add(Box.createVerticalStrut(20)); // Space before load game button
     mainPanel.add(loadGameButton);
+    mainPanel.add(Box.createVerticalStrut(10)); // Space before saved games
+    mainPanel.add(savedGames);
     mainPanel.add(Box.createVerticalStrut(10)); // Space before selected file label
     mainPanel.add(selectedFileLabel);
     mainPanel.add(Box.createVerticalStrut(10)); // Space before clear selection button
@@ -143,8 +249,122 @@ public class SetupMenu {
     mainPanel.add(Box.createVerticalStrut(20)); // Space before start game button
     mainPanel.add(startGameButton);
 
-    // add resources test json to system directory
-    loadSavedFiles();
+    watchSavedGames();
+  }
+
+  /**
+   * Creates the box listing the saved games, which selects a save to load when one is picked.
+   *
+   * @return The created JComboBox.
+   */
+  private JComboBox<SaveCatalog.Entry> createSavedGamesBox() {
+    JComboBox<SaveCatalog.Entry> box = new JComboBox<>(savedGamesModel);
+    box.setFont(new Font("Arial", Font.PLAIN, 18));
+    box.setAlignmentX(Component.CENTER_ALIGNMENT);
+    box.setMaximumSize(BUTTON_SIZE);
+    box.setRenderer(new DefaultListCellRenderer() {
+      @Override
+      public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+          boolean isSelected, boolean cellHasFocus) {
+        String text = value == null ? "Saved games (" + box.getItemCount() + ")"
+            : describeSave((SaveCatalog.Entry) value);
+        return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+      }
+    });
+    box.addActionListener(e -> {
+      SaveCatalog.Entry entry = (SaveCatalog.Entry) box.getSelectedItem();
+      if (entry != null && !updatingSavedGames) {
+        selectFile(Paths.get(GameUtils.SAVE_DIRECTORY, entry.fileName()).toFile());
+      }
+    });
+    return box;
+  }
+
+  /**
+   * Fills the saved games box with the saves known to the save watcher and keeps it up to date
+   * as saves are written and removed. The watcher does all the file reading on its own thread,
+   * and the bundled save is copied to the save directory on another, once a session.
+   */
+  private void watchSavedGames() {
+    if (saveWatcher == null) {
+      saveWatcher = new SaveWatcher(Paths.get(GameUtils.SAVE_DIRECTORY));
+      saveWatcher.start();
+      new Thread(SetupMenu::loadSavedFiles, "bundled-save").start();
+    }
+    List<SaveCatalog.Entry> known = saveWatcher.subscribe((changed, removed) ->
+        SwingUtilities.invokeLater(() -> applySaveChanges(changed, removed)));
+    applySaveChanges(known, List.of());
+  }
+
+  /**
+   * Applies changes to the saved games box, keeping it newest first and keeping the save picked
+   * in it unless that save was removed.
+   *
+   * @param changed The saves added or rewritten.
+   * @param removed The file names of the saves removed.
+   */
+  private void applySaveChanges(List<SaveCatalog.Entry> changed, List<String> removed) {
+    SaveCatalog.Entry selected = (SaveCatalog.Entry) savedGamesModel.getSelectedItem();
+    updatingSavedGames = true;
+    for (String name : removed) {
+      removeSavedGame(name);
+    }
+    for (SaveCatalog.Entry entry : changed) {
+      removeSavedGame(entry.fileName());
+      int index = 0;
+      while (index < savedGamesModel.getSize()
+          && savedGamesModel.getElementAt(index).timestamp() >= entry.timestamp()) {
+        index++;
+      }
+      savedGamesModel.insertElementAt(entry, index);
+    }
+    int index = selected == null ? -1 : indexOfSavedGame(selected.fileName());
+    savedGamesModel.setSelectedItem(index < 0 ? null : savedGamesModel.getElementAt(index));
+    updatingSavedGames = false;
+    if (selected != null && index < 0) {
+      clearFileSelection();
+    }
+  }
+
+  /**
+   * Removes a save from the saved games box, if it is there.
+   *
+   * @param name The file name of the save.
+   */
+  private void removeSavedGame(String name) {
+    int index = indexOfSavedGame(name);
+    if (index >= 0) {
+      savedGamesModel.removeElementAt(index);
+    }
+  }
+
+  /**
+   * Finds a save in the saved games box.
+   *
+   * @param name The file name of the save.
+   * @return Its index, or -1 if it is not there.
+   */
+  private int indexOfSavedGame(String name) {
+    for (int i = 0; i < savedGamesModel.getSize(); i++) {
+      if (savedGamesModel.getElementAt(i).fileName().equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Describes a save for the saved games box.
+   *
+   * @param entry The catalog entry of the save.
+   * @return Its file name, its dragons and whose turn it is.
+   */
+  private static String describeSave(SaveCatalog.Entry entry) {
+    String text = entry.fileName() + " - " + String.join(", ", entry.colours());
+    if (entry.turn() >= 0 && entry.turn() < entry.colours().size()) {
+      text += " - " + entry.colours().get(entry.turn()) + " to play";
+    }
+    return text;
   }
 
   /**
@@ -177,13 +397,43 @@ public class SetupMenu {
     playerCount.setPreferredSize(PLAYER_COUNT_SIZE);
     playerCount.setMaximumSize(playerCount.getPreferredSize()); // Ensure the combo box doesn't grow
 
+    JLabel computerLabel = new JLabel(COMPUTER_LABEL_TEXT);
+    computerLabel.setFont(LABEL_FONT);
+
+    computerCount = new JComboBox<>();
+    computerCount.setPreferredSize(PLAYER_COUNT_SIZE);
+    computerCount.setMaximumSize(computerCount.getPreferredSize());
+    updateComputerCount();
+    // there can be no more computers than players
+    playerCount.addActionListener(e -> updateComputerCount());
+
     panel.add(playerLabel);
     panel.add(Box.createRigidArea(SPACING_SIZE)); // Add some spacing
     panel.add(playerCount);
+    panel.add(Box.createRigidArea(SPACING_SIZE));
+    panel.add(Box.createRigidArea(SPACING_SIZE));
+    panel.add(computerLabel);
+    panel.add(Box.createRigidArea(SPACING_SIZE));
+    panel.add(computerCount);
 
     return panel;
   }
 
+  /**
+   * Offers from no computers up to one for every player chosen, keeping the number of computers
+   * picked unless there are now fewer players.
+   */
+  private void updateComputerCount() {
+    int players = (Integer) playerCount.getSelectedItem();
+    Integer selected = (Integer) computerCount.getSelectedItem();
+    Integer[] choices = new Integer[players + 1];
+    for (int i = 0; i <= players; i++) {
+      choices[i] = i;
+    }
+    computerCount.setModel(new DefaultComboBoxModel<>(choices));
+    computerCount.setSelectedItem(selected == null ? 0 : Math.min(selected, players));
+  }
+
   /**
    * Creates the start button.
    *
@@ -201,7 +451,9 @@ public class SetupMenu {
   }
 
   /**
-   * Shows a file chooser dialog to select a save file from the 'resources' folder.
+   * Shows a file chooser dialog to select a save file from the 'resources' folder. Each save is
+   * shown with a small picture of its board, and the save picked with a larger one, drawn in the
+   * background and filled in as they become ready.
    */
   private void showFileChooser() {
     // Specify the path to the save files folder in the user's home directory
@@ -215,25 +467,62 @@ public class SetupMenu {
     }
 
     JFileChooser fileChooser = new JFileChooser(saveFilesDirectory);
-    fileChooser.setFileFilter(new FileNameExtensionFilter("Save Files", "json"));
+    fileChooser.setFileFilter(new FileNameExtensionFilter("Save Files", "json", "fds"));
     fileChooser.setAcceptAllFileFilterUsed(false);
     fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
 
+    if (thumbnails == null) {
+      thumbnails = new ThumbnailCache(Paths.get(GameUtils.THUMBNAIL_PATH));
+    }
+    // saves may have been rewritten since the dialog was last open
+    thumbnails.forget();
+    JLabel preview = new JLabel();
+    preview.setHorizontalAlignment(JLabel.CENTER);
+    preview.setPreferredSize(THUMBNAIL_PANEL_SIZE);
+    fileChooser.setAccessory(preview);
+    fileChooser.setFileView(new FileView() {
+      @Override
+      public Icon getIcon(File file) {
+        return file.isDirectory() ? null : thumbnails.getIcon(file);
+      }
+    });
+    Runnable showPreview = () -> {
+      File file = fileChooser.getSelectedFile();
+      preview.setIcon(file == null ? null : thumbnails.getImage(file));
+    };
+    fileChooser.addPropertyChangeListener(JFileChooser.SELECTED_FILE_CHANGED_PROPERTY,
+        e -> showPreview.run());
+    thumbnails.setListener(() -> {
+      fileChooser.repaint();
+      showPreview.run();
+    });
+
     int returnValue = fileChooser.showOpenDialog(null);
+    thumbnails.setListener(null);
     if (returnValue == JFileChooser.APPROVE_OPTION) {
-      selectedFilePath = fileChooser.getSelectedFile().getPath();
-      selectedFileLabel.setText("Selected save file: " + fileChooser.getSelectedFile().getName());
-      clearSelectionButton.setVisible(true);
-      System.out.println("Selected save file: " + selectedFilePath);
+      selectFile(fileChooser.getSelectedFile());
     }
   }
 
+  /**
+   * Selects a save file to load when the game starts.
+   *
+   * @param file The save file.
+   */
+  private void selectFile(File file) {
+    selectedFilePath = file.getPath();
+    selectedFileLabel.setText("Selected save file: " + file.getName());
+    clearSelectionButton.setVisible(true);
+    System.out.println("Selected save file: " + selectedFilePath);
+  }
+
   /**
    * Clears the selected file.
    */
   private void clearFileSelection() {
     selectedFilePath = null;
     selectedFileLabel.setText("No save file selected");
+    savedGames.setSelectedIndex(-1);
     clearSelectionButton.setVisible(false);
   }
 
@@ -255,6 +544,15 @@ public class SetupMenu {
     return playerCount;
   }
 
+  /**
+   * Returns the JComboBox used for selecting how many players the computer controls.
+   *
+   * @return The JComboBox for selecting the number of computer players.
+   */
+  public JComboBox<Integer> getComputerCount() {
+    return computerCount;
+  }
+
   /**
    * Returns the main panel of the setup menu.
    *
@@ -265,16 +563,20 @@ public class SetupMenu {
   }
 
   /**
-   * add resources the test json to system directory
+   * add resources the test json to system directory, unless it is already there. Runs on a
+   * background thread.
    */
-  private void loadSavedFiles() {
-    Gson gson = new Gson();
+  private static void loadSavedFiles() {
+    if (Files.exists(Paths.get(GameUtils.SYSTEM_SAVE_PATH))) {
+      return;
+    }
     SavedState savedState = null;
     // Load JSON file from resources
-    try (InputStream inputStream = getClass().getResourceAsStream(GameUtils.DIFF_CONFIG_PATH);
+    try (InputStream inputStream = SetupMenu.class.getResourceAsStream(
+        GameUtils.DIFF_CONFIG_PATH);
         BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-      // Parse JSON using Gson
-      savedState = gson.fromJson(reader, SavedState.class);
+      // the bundled save may be of an older version, it is written back in the current one
+      savedState = SaveReader.read(reader);
     } catch (FileNotFoundException e) {
       System.out.println("File not found");
     } catch (IOException e) {
@@ -9,6 +9,7 @@ import java.awt.FlowLayout;
 import java.awt.GridLayout;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
@@ -24,6 +25,25 @@ public class SquareBoardStrategy implements SetBoardStrategy {
   private static final Dimension VOLCANO_CARD_SIZE = new Dimension(140, 140);
   private static final Dimension EMPTY_SPACE_SIZE = new Dimension(50, 50);
 
+  private final long seed;
+
+  /**
+   * Constructs a SquareBoardStrategy that shuffles the chit cards with a random seed.
+   */
+  public SquareBoardStrategy() {
+    this(new Random().nextLong());
+  }
+
+  /**
+   * Constructs a SquareBoardStrategy that shuffles the chit cards with the given seed, so the
+   * same seed always lays out the same board.
+   *
+   * @param seed The seed of the chit card shuffle.
+   */
+  public SquareBoardStrategy(long seed) {
+    this.seed = seed;
+  }
+
   /**
    * Sets up the game board by configuring the chit card area and the volcano card border.
    *
@@ -44,7 +64,7 @@ public class SquareBoardStrategy implements SetBoardStrategy {
   private void setUpChitCardPanel(GameBoard board) {
     JPanel chitCardPanel = createChitCardPanel();
     List<ChitCard> chitCards = board.getChitCards();
-    Collections.shuffle(chitCards);
+    Collections.shuffle(chitCards, new Random(this.seed));
 
     JPanel cardHolder = createCardHolderPanel(chitCards);
 
@@ -101,6 +121,7 @@ public class SquareBoardStrategy implements SetBoardStrategy {
 
     JPanel empty1 = new JPanel();
     empty1.add(board.getSaveGameButton(), BorderLayout.WEST);
+    empty1.add(board.getHeatmapButton());
 
     // Create an inner top panel for layout adjustments
     JPanel innerTopPanel = new JPanel(new BorderLayout());
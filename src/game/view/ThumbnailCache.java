@@ -0,0 +1,364 @@
+package game.view;
+
+import game.utils.GameUtils;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+
+/**
+ * Supplies BoardThumbnail pictures of save files without ever blocking the caller. A picture not
+ * at hand is asked for and null or a blank icon returned; a pool of background threads reads the
+ * save, draws the picture and calls the listener on the EDT once it is ready. The latest requests
+ * are served first, so the saves scrolled to are drawn before those scrolled past.
+ *
+ * <p>Pictures are keyed by a hash of the contents of their save, so a save that is rewritten gets
+ * a new picture and a copied save reuses the old one. The most recently used pictures are kept in
+ * memory, and more of them as PNG files in a directory, each bounded and emptied least recently
+ * used first.
+ */
+public class ThumbnailCache {
+
+  public static final int SIZE = 160;
+  public static final int ICON_SIZE = 32;
+  public static final int MEMORY_ENTRIES = 256;
+  public static final int DISK_ENTRIES = 2000;
+
+  // part of every key, to be raised whenever BoardThumbnail draws differently
+  private static final int RENDER_VERSION = 1;
+  private static final String EXTENSION = ".png";
+  private static final Icon BLANK_ICON = new ImageIcon(
+      new BufferedImage(ICON_SIZE, ICON_SIZE, BufferedImage.TYPE_INT_ARGB));
+
+  private final Path dir;
+  private final ThreadPoolExecutor executor;
+  // the content hash of each save file read since the cache was last told to forget them
+  private final Map<Path, String> keys = new ConcurrentHashMap<>();
+  private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+  private final Set<Path> failed = ConcurrentHashMap.newKeySet();
+  private final Map<String, Thumbnail> memory = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Thumbnail> eldest) {
+      return size() > MEMORY_ENTRIES;
+    }
+  };
+  // keys of the pictures on disk, least recently used first, listed once on first use
+  private Map<String, Boolean> disk;
+  private volatile Runnable listener;
+
+  /**
+   * A picture with the icon made from it for file lists.
+   *
+   * @param image the picture, SIZE pixels square
+   * @param icon  the picture scaled to ICON_SIZE
+   */
+  private record Thumbnail(ImageIcon image, ImageIcon icon) {
+
+  }
+
+  /**
+   * Constructs a cache keeping its PNG files in a directory.
+   *
+   * @param dir the directory, which is created on the first picture drawn
+   */
+  public ThumbnailCache(Path dir) {
+    this.dir = dir;
+    AtomicInteger count = new AtomicInteger();
+    int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new LifoQueue(), runnable -> {
+          Thread thread = new Thread(runnable, "thumbnail-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          thread.setPriority(Thread.MIN_PRIORITY);
+          return thread;
+        });
+  }
+
+  /**
+   * Sets what to run on the EDT each time a picture becomes ready, such as repainting the list
+   * showing them.
+   *
+   * @param listener the listener, or null for none
+   */
+  public void setListener(Runnable listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Forgets which contents each save file had, so that files rewritten since are read again.
+   * Pictures of unchanged contents are found again in the cache.
+   */
+  public void forget() {
+    keys.clear();
+    failed.clear();
+  }
+
+  /**
+   * Returns the picture of a save, asking for it if it is not ready.
+   *
+   * @param save the save file
+   * @return the picture, or null while it is being drawn or if the file is not a save
+   */
+  public ImageIcon getImage(File save) {
+    Thumbnail thumbnail = lookup(save);
+    return thumbnail == null ? null : thumbnail.image();
+  }
+
+  /**
+   * Returns the small picture of a save for a file list, asking for it if it is not ready.
+   *
+   * @param save the save file
+   * @return the icon, or a blank icon of the same size while it is being drawn or if the file is
+   *     not a save
+   */
+  public Icon getIcon(File save) {
+    Thumbnail thumbnail = lookup(save);
+    return thumbnail == null ? BLANK_ICON : thumbnail.icon();
+  }
+
+  /**
+   * Returns the picture of a save if it is in memory, and otherwise asks for it once.
+   *
+   * @param save the save file
+   * @return the picture, or null if it is not in memory
+   */
+  private Thumbnail lookup(File save) {
+    Path path = save.toPath();
+    String key = keys.get(path);
+    if (key != null) {
+      synchronized (memory) {
+        Thumbnail thumbnail = memory.get(key);
+        if (thumbnail != null) {
+          return thumbnail;
+        }
+      }
+    }
+    if (!failed.contains(path) && pending.add(path)) {
+      executor.execute(() -> load(path));
+    }
+    return null;
+  }
+
+  /**
+   * Reads a save and brings its picture into memory, from disk or by drawing it. Runs on the
+   * pool.
+   *
+   * @param path the save file
+   */
+  private void load(Path path) {
+    try {
+      byte[] bytes = Files.readAllBytes(path);
+      String key = hash(bytes);
+      boolean inMemory;
+      synchronized (memory) {
+        inMemory = memory.containsKey(key);
+      }
+      if (!inMemory) {
+        BufferedImage image = readDisk(key);
+        if (image == null) {
+          image = BoardThumbnail.render(GameUtils.parseSavedState(bytes), SIZE);
+          writeDisk(key, image);
+        }
+        Thumbnail thumbnail = new Thumbnail(new ImageIcon(image),
+            new ImageIcon(scale(image, ICON_SIZE)));
+        synchronized (memory) {
+          memory.put(key, thumbnail);
+        }
+      }
+      keys.put(path, key);
+    } catch (IOException | RuntimeException e) {
+      // not a save, or one that cannot be read, asked for again once forgotten
+      failed.add(path);
+      return;
+    } finally {
+      pending.remove(path);
+    }
+    Runnable current = listener;
+    if (current != null) {
+      SwingUtilities.invokeLater(current);
+    }
+  }
+
+  /**
+   * Reads a picture from disk and marks it as just used.
+   *
+   * @param key the key of the picture
+   * @return the picture, or null if it is not on disk
+   */
+  private BufferedImage readDisk(String key) {
+    Path file = dir.resolve(key + EXTENSION);
+    synchronized (this) {
+      if (diskIndex().get(key) == null) {
+        return null;
+      }
+    }
+    try {
+      BufferedImage image = ImageIO.read(file.toFile());
+      // the modification time keeps the order of use from one session to the next
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return image;
+    } catch (IOException e) {
+      synchronized (this) {
+        diskIndex().remove(key);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Writes a picture to disk, removing the least recently used ones beyond DISK_ENTRIES.
+   *
+   * @param key   the key of the picture
+   * @param image the picture
+   */
+  private void writeDisk(String key, BufferedImage image) {
+    Path file = dir.resolve(key + EXTENSION);
+    Path temp = null;
+    try {
+      Files.createDirectories(dir);
+      temp = Files.createTempFile(dir, key, ".tmp");
+      ImageIO.write(image, "png", temp.toFile());
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      System.out.println("Error caching thumbnail: " + e.getMessage());
+      try {
+        if (temp != null) {
+          Files.deleteIfExists(temp);
+        }
+      } catch (IOException ignored) {
+        // left for the next listing to skip, it does not end in EXTENSION
+      }
+      return;
+    }
+    List<String> evicted = new ArrayList<>();
+    synchronized (this) {
+      Map<String, Boolean> index = diskIndex();
+      index.put(key, Boolean.TRUE);
+      Iterator<String> iterator = index.keySet().iterator();
+      while (index.size() - evicted.size() > DISK_ENTRIES && iterator.hasNext()) {
+        evicted.add(iterator.next());
+      }
+      index.keySet().removeAll(evicted);
+    }
+    for (String old : evicted) {
+      try {
+        Files.deleteIfExists(dir.resolve(old + EXTENSION));
+      } catch (IOException e) {
+        System.out.println("Error removing thumbnail: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Returns the keys of the pictures on disk, listing the directory the first time.
+   *
+   * @return the keys, least recently used first
+   */
+  private Map<String, Boolean> diskIndex() {
+    if (disk == null) {
+      disk = new LinkedHashMap<>(16, 0.75f, true);
+      List<Path> files = new ArrayList<>();
+      if (Files.isDirectory(dir)) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+          stream.forEach(files::add);
+        } catch (IOException e) {
+          System.out.println("Error listing thumbnails: " + e.getMessage());
+        }
+      }
+      files.sort((a, b) -> Long.compare(a.toFile().lastModified(), b.toFile().lastModified()));
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        disk.put(name.substring(0, name.length() - EXTENSION.length()), Boolean.TRUE);
+      }
+    }
+    return disk;
+  }
+
+  /**
+   * Scales a picture down.
+   *
+   * @param image the picture
+   * @param size  the width and height to scale it to
+   * @return the scaled picture
+   */
+  private static BufferedImage scale(BufferedImage image, int size) {
+    BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = scaled.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.drawImage(image, 0, 0, size, size, null);
+    } finally {
+      g.dispose();
+    }
+    return scaled;
+  }
+
+  /**
+   * Returns the key of the contents of a save.
+   *
+   * @param bytes the contents
+   * @return the key, 32 hex digits
+   */
+  private static String hash(byte[] bytes) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update((byte) RENDER_VERSION);
+      digest.update((byte) (SIZE >>> 8));
+      digest.update((byte) SIZE);
+      digest.update(bytes);
+      return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * A queue handing out the newest task first, so that the pool draws the latest requests first.
+   */
+  private static class LifoQueue extends LinkedBlockingDeque<Runnable> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Adds a task at the head of the queue.
+     *
+     * @param runnable the task
+     * @return true, as the queue is unbounded
+     */
+    @Override
+    public boolean offer(Runnable runnable) {
+      return super.offerFirst(runnable);
+    }
+  }
+}